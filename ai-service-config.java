@@ -50,10 +50,13 @@ public class OllamaLLMService implements LLMService {
     private final WebClient webClient;
     private final AIConfiguration config;
     private final RedisTemplate<String, String> cacheTemplate;
+    private final ModelResidencyManager residencyManager;
 
-    public OllamaLLMService(AIConfiguration config, RedisTemplate<String, String> cacheTemplate) {
+    public OllamaLLMService(AIConfiguration config, RedisTemplate<String, String> cacheTemplate,
+                            ModelResidencyManager residencyManager) {
         this.config = config;
         this.cacheTemplate = cacheTemplate;
+        this.residencyManager = residencyManager;
         this.webClient = WebClient.builder()
                 .baseUrl(config.getLlm().getBaseUrl())
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
@@ -77,9 +80,11 @@ public class OllamaLLMService implements LLMService {
                 .temperature(config.getLlm().getTemperature())
                 .maxTokens(config.getLlm().getMaxTokens())
                 .stream(false)
+                .keepAlive(residencyManager.keepAliveFor(config.getLlm().getModel()))
                 .build();
 
-        return webClient.post()
+        // Attendre un chargement en cours plutôt que d'en déclencher un second
+        return residencyManager.ensureLoaded(request.getModel()).then(webClient.post()
                 .uri("/api/generate")
                 .body(Mono.just(request), OllamaRequest.class)
                 .retrieve()
@@ -90,7 +95,7 @@ public class OllamaLLMService implements LLMService {
                     cacheTemplate.opsForValue().set(cacheKey, text, Duration.ofHours(1));
                     return text;
                 })
-                .timeout(Duration.ofSeconds(30))
+                .timeout(Duration.ofSeconds(30)))
                 .doOnError(error -> log.error("Erreur génération LLM: ", error));
     }
 
@@ -102,9 +107,10 @@ public class OllamaLLMService implements LLMService {
                 .system(context.getCharacter().getSystemPrompt())
                 .temperature(config.getLlm().getTemperature())
                 .stream(true)
+                .keepAlive(residencyManager.keepAliveFor(config.getLlm().getModel()))
                 .build();
 
-        return webClient.post()
+        return residencyManager.ensureLoaded(request.getModel()).thenMany(webClient.post()
                 .uri("/api/generate")
                 .body(Mono.just(request), OllamaRequest.class)
                 .retrieve()
@@ -114,7 +120,7 @@ public class OllamaLLMService implements LLMService {
                     JsonNode node = objectMapper.readTree(chunk);
                     return node.get("response").asText();
                 })
-                .filter(text -> !text.isEmpty());
+                .filter(text -> !text.isEmpty()));
     }
 
     private String buildPrompt(ConversationContext context) {
@@ -0,0 +1,17 @@
+-- V2__minilm_embedding_dimension.sql
+-- Passage des embeddings au modèle local all-MiniLM-L6-v2 (384 dimensions)
+
+-- Les vecteurs existants viennent d'un autre modèle et ne sont pas comparables :
+-- ils sont effacés, les mémoires sans vecteur passent en fin de recherche
+DROP INDEX IF EXISTS idx_memory_vector;
+DROP INDEX IF EXISTS idx_memory_embedding;
+
+UPDATE conversation_memories SET embedding_vector = NULL;
+
+ALTER TABLE conversation_memories
+    ALTER COLUMN embedding_vector TYPE vector(384);
+
+-- Index pour la recherche vectorielle (similarité sémantique)
+CREATE INDEX idx_memory_embedding ON conversation_memories
+USING ivfflat (embedding_vector vector_cosine_ops)
+WITH (lists = 100);
@@ -0,0 +1,26 @@
+-- V3__memory_tiers.sql
+-- Paliers de mémoire : HOT (index ANN en mémoire), WARM (Postgres seulement), COLD (archivé)
+
+ALTER TABLE conversation_memories
+    ADD COLUMN tier VARCHAR(10) NOT NULL DEFAULT 'HOT';
+
+ALTER TABLE conversation_memories
+    ADD CONSTRAINT chk_memory_tier CHECK (tier IN ('HOT', 'WARM', 'COLD'));
+
+-- Chargement de l'index et budget par utilisateur
+CREATE INDEX idx_memory_user_tier ON conversation_memories(user_id, tier);
+CREATE INDEX idx_memory_tier_created ON conversation_memories(tier, created_at, id);
+
+-- Archive des mémoires froides, remplacées par un résumé (summary_id) dans conversation_memories.
+-- Mêmes colonnes et même ordre que conversation_memories, l'archivage faisant un SELECT * :
+-- une colonne ajoutée plus tard à conversation_memories impose d'adapter l'archive et cette requête
+CREATE TABLE conversation_memories_archive (LIKE conversation_memories INCLUDING DEFAULTS);
+
+ALTER TABLE conversation_memories_archive
+    ADD COLUMN summary_id UUID,
+    ADD COLUMN archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+ALTER TABLE conversation_memories_archive ADD PRIMARY KEY (id);
+
+CREATE INDEX idx_memory_archive_user ON conversation_memories_archive(user_id);
+CREATE INDEX idx_memory_archive_summary ON conversation_memories_archive(summary_id);
@@ -0,0 +1,23 @@
+-- V4__memory_vectors.sql
+-- Vecteurs des mémoires HOT pour le VectorStore pgvector (ai.vector-store.type = pgvector)
+
+-- Une ligne par mémoire HOT avec embedding ; supprimée avec la mémoire (archivage compris)
+CREATE TABLE memory_vectors (
+    id UUID PRIMARY KEY REFERENCES conversation_memories(id) ON DELETE CASCADE,
+    user_id UUID NOT NULL,
+    character_id UUID NOT NULL,
+    embedding vector(384) NOT NULL
+);
+
+-- Filtre par couple utilisateur/personnage, les petits couples sont parcourus exactement
+CREATE INDEX idx_memory_vectors_pair ON memory_vectors(user_id, character_id);
+
+INSERT INTO memory_vectors (id, user_id, character_id, embedding)
+SELECT id, user_id, character_id, embedding_vector
+FROM conversation_memories
+WHERE tier = 'HOT' AND embedding_vector IS NOT NULL;
+
+-- L'index HNSW (idx_memory_vectors_hnsw) est créé par PgVectorStore avec les paramètres
+-- ai.vector-store.pgvector.m / ef-construction.
+-- L'index ivfflat de V2, construit sur des vecteurs vidés et plus interrogé, est supprimé
+DROP INDEX IF EXISTS idx_memory_embedding;
@@ -0,0 +1,15 @@
+-- V5__memory_tier_changes.sql
+-- Journal des changements de palier (promotion, rétrogradation, archivage), relu par chaque réplica
+-- pour tenir à jour ses index en mémoire : seul le réplica qui a fait tourner le job les voit sinon.
+-- Une table à part plutôt qu'une colonne : l'archivage copie conversation_memories par SELECT *
+
+CREATE TABLE memory_tier_changes (
+    memory_id UUID NOT NULL,
+    user_id UUID NOT NULL,
+    character_id UUID NOT NULL,
+    tier VARCHAR(10) NOT NULL,
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Relecture par date et purge des entrées plus vieilles que la rétention
+CREATE INDEX idx_memory_tier_changes_at ON memory_tier_changes(changed_at);
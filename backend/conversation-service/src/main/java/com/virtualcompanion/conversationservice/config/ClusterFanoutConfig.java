@@ -0,0 +1,24 @@
+package com.virtualcompanion.conversationservice.config;
+
+public class ClusterFanoutConfig {
+
+    @Value("${websocket.cluster.broker:redis}")
+    private String broker;
+
+    /**
+     * Transport of conversation events between nodes, chosen with
+     * {@code websocket.cluster.broker}: {@code redis} (default) or {@code memory} for a single node.
+     */
+    @Bean(destroyMethod = "close")
+    public FanoutBroker fanoutBroker(ReactiveRedisTemplate<String, String> redisTemplate) {
+        switch (broker.toLowerCase(Locale.ROOT)) {
+            case "redis":
+                return new RedisFanoutBroker(redisTemplate,
+                        new ReactiveRedisMessageListenerContainer(redisTemplate.getConnectionFactory()));
+            case "memory":
+                return new InMemoryFanoutBroker();
+            default:
+                throw new IllegalStateException("Unknown websocket.cluster.broker: " + broker);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.virtualcompanion.conversationservice.config;
+
+public class ModelLaneConfig {
+
+    @Value("${ai.lanes.background.threads:1}")
+    private int backgroundThreads;
+
+    /**
+     * Low-priority lane for summarization and other background model work, kept
+     * separate from boundedElastic so it never competes with interactive generations.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler backgroundModelScheduler() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "llm-background-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        };
+
+        return Schedulers.fromExecutorService(
+                Executors.newFixedThreadPool(backgroundThreads, threadFactory), "llm-background");
+    }
+}
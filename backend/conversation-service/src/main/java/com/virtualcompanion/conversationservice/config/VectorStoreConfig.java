@@ -0,0 +1,73 @@
+package com.virtualcompanion.conversationservice.config;
+
+public class VectorStoreConfig {
+
+    @Value("${ai.vector-store.type:pgvector}")
+    private String type;
+
+    @Value("${ai.vector-store.dimension:384}")
+    private int dimension;
+
+    @Value("${ai.vector-store.m:16}")
+    private int m;
+
+    @Value("${ai.vector-store.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${ai.vector-store.ef-search:64}")
+    private int efSearch;
+
+    @Value("${ai.vector-store.batch-size:500}")
+    private int batchSize;
+
+    @Value("${ai.vector-store.pgvector.iterative-scan:strict_order}")
+    private String iterativeScan;
+
+    @Value("${ai.vector-db.host:localhost}")
+    private String milvusHost;
+
+    @Value("${ai.vector-db.port:19530}")
+    private int milvusPort;
+
+    @Value("${ai.vector-db.collection-n:conversation_embeddings}")
+    private String milvusCollection;
+
+    @Value("${ai.vector-db.metric-type:COSINE}")
+    private String milvusMetricType;
+
+    /**
+     * Durable vector store behind memory retrieval, chosen with {@code ai.vector-store.type}:
+     * {@code pgvector} (default), {@code milvus} or {@code memory}.
+     */
+    @Bean(destroyMethod = "close")
+    public VectorStore vectorStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        switch (type.toLowerCase(Locale.ROOT)) {
+            case "pgvector":
+                PgVectorStore pgVectorStore = new PgVectorStore(jdbcTemplate, transactionTemplate, m, efConstruction,
+                        efSearch, iterativeScan, batchSize);
+                // An HNSW build over a large table takes minutes; searches run exact until it is there
+                Schedulers.boundedElastic().schedule(() -> {
+                    try {
+                        pgVectorStore.ensureIndex();
+                    } catch (VectorStoreException e) {
+                        log.error("{}: {}", e.getMessage(), e.getCause() != null ? e.getCause().getMessage() : "");
+                    }
+                });
+                return pgVectorStore;
+            case "milvus":
+                MilvusVectorStore milvusVectorStore = new MilvusVectorStore(
+                        new MilvusServiceClient(ConnectParam.newBuilder()
+                                .withHost(milvusHost)
+                                .withPort(milvusPort)
+                                .build()),
+                        milvusCollection, dimension, MetricType.valueOf(milvusMetricType.toUpperCase(Locale.ROOT)),
+                        m, efConstruction, efSearch, batchSize);
+                milvusVectorStore.ensureCollection();
+                return milvusVectorStore;
+            case "memory":
+                return new InMemoryVectorStore(dimension, m, efConstruction, efSearch, 2);
+            default:
+                throw new IllegalStateException("Unknown ai.vector-store.type: " + type);
+        }
+    }
+}
@@ -4,6 +4,12 @@ public class WebSocketConfig {
 
     private final ConversationWebSocketHandler conversationWebSocketHandler;
 
+    @Value("${websocket.compression.enabled:true}")
+    private boolean compression;
+
+    @Value("${websocket.message-size-limit:65536}")
+    private int messageSizeLimit;
+
     @Bean
     public HandlerMapping handlerMapping() {
         Map<String, WebSocketHandler> map = new HashMap<>();
@@ -18,6 +24,10 @@ public class WebSocketConfig {
 
     @Bean
     public WebSocketHandlerAdapter handlerAdapter() {
-        return new WebSocketHandlerAdapter();
+        // permessage-deflate, accepté seulement si le client le propose (v1 comme v2)
+        Supplier<WebsocketServerSpec.Builder> spec = () -> WebsocketServerSpec.builder()
+                .compress(compression)
+                .maxFramePayloadLength(messageSizeLimit);
+        return new WebSocketHandlerAdapter(new HandshakeWebSocketService(new ReactorNettyRequestUpgradeStrategy(spec)));
     }
 }
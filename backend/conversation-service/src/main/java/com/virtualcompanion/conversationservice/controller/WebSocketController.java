@@ -5,6 +5,8 @@ public class WebSocketController implements WebSocketHandler {
     private final ConversationService conversationService;
     private final WebSocketSessionService sessionService;
     private final ObjectMapper objectMapper;
+    private final HeartbeatWheel heartbeatWheel;
+    private final SessionActivityAccumulator sessionActivity;
 
     @Override
     public Mono<Void> handle(WebSocketSession session) {
@@ -18,8 +20,14 @@ public class WebSocketController implements WebSocketHandler {
         // Register session
         sessionService.registerSession(sessionId, userId, session);
 
+        // Shared heartbeat: pinged on the session's turn, closed when silent past the idle timeout
+        HeartbeatWheel.Heartbeat heartbeat = heartbeatWheel.open(sessionId, () -> session
+                .close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Heartbeat timeout"))
+                .subscribe(null, error -> log.debug("Error closing idle session {}: {}", sessionId, error.getMessage())));
+
         // Handle incoming messages
         Flux<WebSocketMessage> output = session.receive()
+                .doOnNext(frame -> heartbeat.touch())
                 .map(WebSocketMessage::getPayloadAsText)
                 .flatMap(payload -> handleMessage(sessionId, userId, payload))
                 .map(response -> session.textMessage(response))
@@ -27,12 +35,13 @@ public class WebSocketController implements WebSocketHandler {
                 .onErrorResume(error -> Flux.just(session.textMessage(createErrorResponse(error))));
 
         // Send ping messages to keep connection alive
-        Flux<WebSocketMessage> pingMessages = Flux.interval(Duration.ofSeconds(30))
+        Flux<WebSocketMessage> pingMessages = heartbeat.pings()
                 .map(tick -> session.textMessage("{\"type\":\"ping\"}"));
 
         return session.send(Flux.merge(output, pingMessages))
                 .doFinally(signal -> {
                     log.info("WebSocket session {} closed with signal: {}", sessionId, signal);
+                    heartbeatWheel.close(sessionId);
                     sessionService.removeSession(sessionId);
                 });
     }
@@ -56,7 +65,8 @@ public class WebSocketController implements WebSocketHandler {
                     return handleEndConversation(userId, message);
 
                 case "pong":
-                    sessionService.updateSessionActivity(sessionId);
+                    // Written with the other sessions' activity at the next flush
+                    sessionActivity.record(sessionId);
                     return Flux.empty();
 
                 default:
@@ -24,5 +24,21 @@ public class ConversationContext {
     
     private RelationshipState relationshipState;
     
+    // Rolling summary of everything older than the recent message window
+    private String runningSummary;
+    
+    private Long summaryVersion;
+    
+    private LocalDateTime summarizedUpTo;
+    
+    // Id of the last summarized message, breaking ties between messages of the same timestamp
+    private String summarizedUpToId;
+    
+    // Timestamp of the last message already consolidated into long-term memory
+    private LocalDateTime memoryConsolidatedUpTo;
+    
+    // Id of the last consolidated message, breaking ties between messages of the same timestamp
+    private String memoryConsolidatedUpToId;
+    
     private LocalDateTime lastUpdated;
 }
@@ -0,0 +1,12 @@
+package com.virtualcompanion.conversationservice.dto;
+
+public class MessageEnrichedEvent {
+
+    private UUID conversationId;
+    private UUID userId;
+    private String messageId;
+    private EmotionData emotion;
+    private ActionData action;
+    private Boolean significant;
+    private LocalDateTime enrichedAt;
+}
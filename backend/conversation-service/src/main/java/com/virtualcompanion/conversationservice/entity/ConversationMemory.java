@@ -16,7 +16,7 @@ public class ConversationMemory {
     @Column(n = "content", columnDefinition = "TEXT", nullable = false)
     private String content;
     
-    @Column(n = "embedding_vector", columnDefinition = "vector(1536)")
+    @Column(n = "embedding_vector", columnDefinition = "vector(384)")
     private float[] embeddingVector;
     
     @Column(n = "importance_score")
@@ -31,6 +31,11 @@ public class ConversationMemory {
     @Column(n = "last_referenced_at")
     private LocalDateTime lastReferencedAt;
     
+    // HOT memories are in the in-process ANN index, WARM ones only in Postgres; COLD ones are archived
+    @Enumerated(EnumType.STRING)
+    @Column(n = "tier", nullable = false)
+    private MemoryTier tier = MemoryTier.HOT;
+    
     @Column(n = "created_at", nullable = false, updatable = false)
     @CreationTimestamp
     private LocalDateTime createdAt;
@@ -0,0 +1,7 @@
+package com.virtualcompanion.conversationservice.entity;
+
+public enum MemoryTier {
+    HOT,
+    WARM,
+    COLD
+}
@@ -0,0 +1,11 @@
+package com.virtualcompanion.conversationservice.exception;
+
+public class EmbeddingException extends RuntimeException {
+    public EmbeddingException(String message) {
+        super(message);
+    }
+
+    public EmbeddingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
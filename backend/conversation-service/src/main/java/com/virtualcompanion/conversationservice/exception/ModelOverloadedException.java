@@ -0,0 +1,7 @@
+package com.virtualcompanion.conversationservice.exception;
+
+public class ModelOverloadedException extends RuntimeException {
+    public ModelOverloadedException(String message) {
+        super(message);
+    }
+}
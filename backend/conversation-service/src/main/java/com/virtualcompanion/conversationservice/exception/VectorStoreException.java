@@ -0,0 +1,11 @@
+package com.virtualcompanion.conversationservice.exception;
+
+public class VectorStoreException extends RuntimeException {
+    public VectorStoreException(String message) {
+        super(message);
+    }
+
+    public VectorStoreException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -6,18 +6,135 @@ public interface ConversationMemoryRepository extends JpaRepository<Conversation
 
     List<ConversationMemory> findByUserIdAndCharacterIdOrderByLastUpdatedDesc(UUID userId, UUID characterId);
 
-    @Query(value = "SELECT * FROM conversation_memories WHERE user_id = :userId AND character_id = :characterId " +
-            "ORDER BY embedding <-> :queryEmbedding LIMIT :limit", nativeQuery = true)
-    List<ConversationMemory> findSimilarMemories(@Param("userId") UUID userId,
-                                                 @Param("characterId") UUID characterId,
-                                                 @Param("queryEmbedding") float[] queryEmbedding,
-                                                 @Param("limit") int limit);
-
     @Query("SELECT cm FROM ConversationMemory cm WHERE cm.userId = :userId AND cm.characterId = :characterId " +
             "AND cm.memoryType = :type ORDER BY cm.importance DESC")
     List<ConversationMemory> findByTypeAndImportance(@Param("userId") UUID userId,
                                                      @Param("characterId") UUID characterId,
                                                      @Param("type") String type);
 
+    Slice<ConversationMemory> findByTierAndCreatedAtAfterOrderByCreatedAtAscIdAsc(MemoryTier tier,
+                                                                                LocalDateTime createdAfter,
+                                                                                Pageable pageable);
+
+    /**
+     * Adds {@code delta} accesses to each memory and moves its last access forward to {@code accessedAt}.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ConversationMemory cm SET cm.accessCount = cm.accessCount + :delta, " +
+            "cm.lastAccessed = CASE WHEN cm.lastAccessed IS NULL OR cm.lastAccessed < :accessedAt " +
+            "THEN :accessedAt ELSE cm.lastAccessed END WHERE cm.id IN :ids")
+    int incrementAccess(@Param("ids") Collection<UUID> ids,
+                        @Param("delta") int delta,
+                        @Param("accessedAt") LocalDateTime accessedAt);
+
+    /**
+     * Folds a near-duplicate into the memory: importance becomes the higher of both plus
+     * {@code boost}, capped at 1. Returns 0 when the memory no longer exists.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE conversation_memories SET importance_score = " +
+            "LEAST(1.0, GREATEST(COALESCE(importance_score, 0), :importance) + :boost) WHERE id = :id", nativeQuery = true)
+    int mergeDuplicate(@Param("id") UUID id, @Param("importance") double importance, @Param("boost") double boost);
+
+    @Query("SELECT DISTINCT cm.userId FROM ConversationMemory cm WHERE cm.userId > :after ORDER BY cm.userId")
+    List<UUID> findUserIdsAfter(@Param("after") UUID after, Pageable pageable);
+
+    @Query("SELECT cm.id AS id, cm.characterId AS characterId, cm.tier AS tier, cm.importance AS importance, " +
+            "cm.accessCount AS accessCount, cm.lastAccessed AS lastAccessed, cm.createdAt AS createdAt " +
+            "FROM ConversationMemory cm WHERE cm.userId = :userId AND cm.id > :after ORDER BY cm.id")
+    List<TierCandidate> findTierCandidatesAfter(@Param("userId") UUID userId,
+                                                @Param("after") UUID after,
+                                                Pageable pageable);
+
+    @Query("SELECT cm.id AS id, cm.userId AS userId, cm.characterId AS characterId, cm.content AS content " +
+            "FROM ConversationMemory cm WHERE cm.tier = :tier AND cm.id > :after ORDER BY cm.id")
+    List<MemoryText> findTextsAfter(@Param("tier") MemoryTier tier, @Param("after") UUID after, Pageable pageable);
+
+    @Query("SELECT cm.id AS id, cm.userId AS userId, cm.characterId AS characterId, cm.content AS content " +
+            "FROM ConversationMemory cm WHERE cm.tier = :tier AND cm.createdAt > :since ORDER BY cm.createdAt, cm.id")
+    List<MemoryText> findTextsCreatedAfter(@Param("tier") MemoryTier tier,
+                                           @Param("since") LocalDateTime since,
+                                           Pageable pageable);
+
+    /**
+     * Moves the memories to the tier and logs each change in {@code memory_tier_changes}, in one statement.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "WITH changed AS (UPDATE conversation_memories SET tier = :#{#tier.name()} WHERE id IN (:ids) " +
+            "RETURNING id, user_id, character_id, tier) " +
+            "INSERT INTO memory_tier_changes (memory_id, user_id, character_id, tier) " +
+            "SELECT id, user_id, character_id, tier FROM changed", nativeQuery = true)
+    int updateTier(@Param("ids") Collection<UUID> ids, @Param("tier") MemoryTier tier);
+
+    /**
+     * Moves the memories to the archive table in one statement, recording the summary that replaces
+     * them and logging each one as gone COLD in {@code memory_tier_changes}.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "WITH moved AS (DELETE FROM conversation_memories WHERE id IN (:ids) RETURNING *), " +
+            "archived AS (INSERT INTO conversation_memories_archive SELECT moved.*, :summaryId, now() FROM moved " +
+            "RETURNING id, user_id, character_id) " +
+            "INSERT INTO memory_tier_changes (memory_id, user_id, character_id, tier) " +
+            "SELECT id, user_id, character_id, 'COLD' FROM archived", nativeQuery = true)
+    int archive(@Param("ids") Collection<UUID> ids, @Param("summaryId") UUID summaryId);
+
+    @Query(value = "SELECT memory_id AS memoryId, user_id AS userId, character_id AS characterId, tier AS tier " +
+            "FROM memory_tier_changes WHERE changed_at > :since ORDER BY changed_at, memory_id", nativeQuery = true)
+    List<TierChange> findTierChangesAfter(@Param("since") LocalDateTime since, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM memory_tier_changes WHERE changed_at < :before", nativeQuery = true)
+    int deleteTierChangesBefore(@Param("before") LocalDateTime before);
+
     void deleteByConversationId(UUID conversationId);
+
+    /**
+     * What the lexical index needs from a memory.
+     */
+    interface MemoryText {
+        UUID getId();
+
+        UUID getUserId();
+
+        UUID getCharacterId();
+
+        String getContent();
+    }
+
+    /**
+     * A memory moved to another tier by a replica's tiering job.
+     */
+    interface TierChange {
+        UUID getMemoryId();
+
+        UUID getUserId();
+
+        UUID getCharacterId();
+
+        String getTier();
+    }
+
+    /**
+     * What the tiering job needs to score a memory, without its content or embedding.
+     */
+    interface TierCandidate {
+        UUID getId();
+
+        UUID getCharacterId();
+
+        MemoryTier getTier();
+
+        Double getImportance();
+
+        Integer getAccessCount();
+
+        LocalDateTime getLastAccessed();
+
+        LocalDateTime getCreatedAt();
+    }
 }
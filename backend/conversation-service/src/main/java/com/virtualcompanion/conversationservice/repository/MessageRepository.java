@@ -16,6 +16,21 @@ public interface MessageRepository extends MongoRepository<Message, String> {
 
     Long countByConversationId(UUID conversationId);
 
+    // Keyset on (timestamp, id) past a mark: messages sharing the mark's timestamp are neither
+    // skipped nor read twice. A mark without an id (written before ids were kept) reads as
+    // strictly after its timestamp.
+    @Query(value = "{ 'conversationId': ?0, $or: [ { 'timestamp': { $gt: ?1 } }, { 'timestamp': ?1, '_id': { $gt: ?2 } } ] }",
+            sort = "{ 'timestamp': 1, '_id': 1 }")
+    List<Message> findAfterMarkAsc(UUID conversationId, LocalDateTime markTimestamp, String markId, Pageable pageable);
+
+    @Query(value = "{ 'conversationId': ?0, $or: [ { 'timestamp': { $gt: ?1 } }, { 'timestamp': ?1, '_id': { $gt: ?2 } } ] }",
+            sort = "{ 'timestamp': -1, '_id': -1 }")
+    List<Message> findAfterMarkDesc(UUID conversationId, LocalDateTime markTimestamp, String markId, Pageable pageable);
+
+    @Query(value = "{ 'conversationId': ?0, $or: [ { 'timestamp': { $gt: ?1 } }, { 'timestamp': ?1, '_id': { $gt: ?2 } } ] }",
+            count = true)
+    long countAfterMark(UUID conversationId, LocalDateTime markTimestamp, String markId);
+
     @Query(value = "{ 'conversationId': ?0 }", delete = true)
     void deleteByConversationId(UUID conversationId);
 
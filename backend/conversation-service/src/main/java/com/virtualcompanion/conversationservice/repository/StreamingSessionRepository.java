@@ -16,6 +16,11 @@ public interface StreamingSessionRepository extends JpaRepository<StreamingSessi
     @Query("UPDATE StreamingSession s SET s.lastPingAt = :now WHERE s.sessionId = :sessionId")
     void updatePing(@Param("sessionId") String sessionId, @Param("now") LocalDateTime now);
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE StreamingSession s SET s.lastPingAt = :now WHERE s.sessionId IN :sessionIds")
+    int updatePings(@Param("sessionIds") Collection<String> sessionIds, @Param("now") LocalDateTime now);
+
     @Query("SELECT s FROM StreamingSession s WHERE s.isActive = true AND s.lastPingAt < :threshold")
     List<StreamingSession> findStaleSessions(@Param("threshold") LocalDateTime threshold);
 
@@ -3,12 +3,14 @@ package com.virtualcompanion.conversationservice.service;
 public interface AIProcessorService {
     Mono<AIResponse> generateResponse(Conversation conversation,
                                       Message userMessage,
-                                      List<Message> conversationHistory,
-                                      ConversationContext conversationContext,
-                                      CharacterContext characterContext,
+                                      PreparedContext context,
                                       MessageOptions options);
 
     Flux<StreamChunk> streamResponse(Conversation conversation,
                                      Message userMessage,
                                      MessageOptions options);
+
+    Mono<String> summarize(String previousSummary, List<Message> messages);
+
+    Mono<Void> primePrefix(PreparedContext context);
 }
@@ -2,8 +2,18 @@ package com.virtualcompanion.conversationservice.service;
 
 public class AIProcessorServiceImpl implements AIProcessorService {
 
-    private final CharacterServiceClient characterClient;
-    private final EmotionAnalysisService emotionService;
+    private static final String PROVIDER = "openai";
+
+    private final CharacterCache characterCache;
+    private final ResponseCacheService responseCache;
+    private final ModelPrefixPrimer prefixPrimer;
+    private final StreamingPostProcessor postProcessor;
+    private final GenerationMetrics generationMetrics;
+    private final LlmRequestScheduler requestScheduler;
+    private final UserTierResolver tierResolver;
+    private final Scheduler backgroundModelScheduler;
+    private final BrownoutController brownoutController;
+    private final TurnTraceRecorder traceRecorder;
 
     @Value("${ai.model.name:gpt-4}")
     private String modelName;
@@ -17,67 +27,114 @@ public class AIProcessorServiceImpl implements AIProcessorService {
     @Value("${openai.api.key}")
     private String openAiApiKey;
 
+    @Value("${ai.openai.base-url:https://api.openai.com/v1}")
+    private String openAiBaseUrl;
+
+    @Value("${ai.summary.model:${ai.model.name:gpt-4}}")
+    private String summaryModelName;
+
+    @Value("${ai.summary.max-tokens:300}")
+    private Integer summaryMaxTokens;
+
+    private Tokenizer tokenizer;
+
+    @PostConstruct
+    void init() {
+        tokenizer = new OpenAiTokenizer(modelName);
+    }
+
     @Override
     public Mono<AIResponse> generateResponse(Conversation conversation,
                                              Message userMessage,
-                                             List<Message> conversationHistory,
-                                             ConversationContext conversationContext,
-                                             CharacterContext characterContext,
+                                             PreparedContext context,
                                              MessageOptions options) {
 
-        return Mono.fromCallable(() -> {
-            // Get character details
-            CharacterDetails character = characterClient.getCharacter(conversation.getCharacterId())
-                    .orElseThrow(() -> new RuntimeException("Character not found"));
+        long enqueuedAt = System.nanoTime();
+        CharacterDetails character = context.getCharacter();
+        UUID userId = conversation.getUserId();
+        // Fixed for the turn so the cache key names the model that actually answered
+        String model = brownoutController.model(modelName);
+
+        // Admission goes through the fair-share scheduler; the blocking model call runs off the granting thread
+        Mono<String> modelResponse = tierResolver.resolve(userId)
+                .flatMap(tier -> requestScheduler.schedule(PROVIDER, userId, tier, estimateCost(userMessage, options),
+                        Mono.fromCallable(() -> generateContent(character, userMessage, context, options, model, enqueuedAt))
+                                .subscribeOn(Schedulers.boundedElastic())));
+
+        // Short canned-style turns are served from the user's own response cache; personal turns never are
+        if (!responseCache.isCacheable(userMessage.getContent(), options)) {
+            return modelResponse.map(content -> buildResponse(content, false));
+        }
 
-            // Build prompt
-            String systemPrompt = buildSystemPrompt(character, conversationContext, characterContext);
-            List<ChatMessage> messages = buildChatMessages(systemPrompt, conversationHistory, userMessage);
+        // Replies draw on the user's memories and history: the key is scoped to the user
+        ResponseCacheKey cacheKey = responseCache.keyFor(userId, conversation.getCharacterId(), model,
+                context.getConversationContext(), userMessage.getContent());
 
-            // Configure model
-            StreamingChatLanguageModel model = OpenAiStreamingChatModel.builder()
-                    .apiKey(openAiApiKey)
-                    .modelName(modelName)
-                    .temperature(conversationContext.getSettings() != null &&
-                            conversationContext.getSettings().getTemperature() != null ?
-                            conversationContext.getSettings().getTemperature() : temperature)
-                    .maxTokens(options != null && options.getMaxResponseLength() != null ?
-                            options.getMaxResponseLength() : maxTokens)
-                    .build();
+        return responseCache.lookup(cacheKey)
+                .map(content -> buildResponse(content, true))
+                .switchIfEmpty(Mono.defer(() -> modelResponse
+                        .flatMap(content -> responseCache.store(cacheKey, content))
+                        .map(content -> buildResponse(content, false))));
+    }
 
-            // Generate response
-            StringBuilder responseBuilder = new StringBuilder();
-            model.generate(messages, response -> {
+    private String generateContent(CharacterDetails character,
+                                   Message userMessage,
+                                   PreparedContext context,
+                                   MessageOptions options,
+                                   String model,
+                                   long enqueuedAt) {
+
+        ConversationContext conversationContext = context.getConversationContext();
+
+        // Build prompt
+        String systemPrompt = buildSystemPrompt(character, conversationContext,
+                context.getCharacterContext(), context.getRelevantMemories());
+        List<ChatMessage> messages = buildChatMessages(systemPrompt, context.getRecentMessages(), userMessage);
+
+        // Configure model
+        StreamingChatLanguageModel chatModel = OpenAiStreamingChatModel.builder()
+                .baseUrl(openAiBaseUrl)
+                .apiKey(openAiApiKey)
+                .modelName(model)
+                .temperature(conversationContext.getSettings() != null &&
+                        conversationContext.getSettings().getTemperature() != null ?
+                        conversationContext.getSettings().getTemperature() : temperature)
+                .maxTokens(completionBudget(options))
+                .build();
+
+        // Generate response; the guard cleans tokens as they arrive and cuts loops early
+        StreamGuard guard = postProcessor.newGuard();
+        GenerationObservation observation = generationMetrics.start(
+                PROVIDER, model, GenerationMetrics.tierOf(character.getAccessLevel()), enqueuedAt);
+        observation.modelStarted();
+        try {
+            chatModel.generate(messages, response -> {
                 if (response != null) {
-                    responseBuilder.append(response);
+                    observation.onToken();
+                    guard.accept(response);
                 }
             });
+        } catch (RuntimeException e) {
+            observation.fail(e);
+            throw e;
+        }
+        guard.finish();
+        int promptTokens = tokenizer.estimateTokenCountInMessages(messages);
+        observation.complete(promptTokens, null);
+        postProcessor.recordOutcome(guard);
+        traceRecorder.describeGeneration(context.getTrace(), model, observation, promptTokens);
+        context.setTimeToFirstTokenNanos(observation.timeToFirstTokenNanos());
+
+        return guard.getContent();
+    }
 
-            String responseContent = responseBuilder.toString();
-
-            // Analyze emotion if enabled
-            EmotionData emotion = null;
-            if (options != null && Boolean.TRUE.equals(options.getIncludeEmotions())) {
-                emotion = emotionService.analyzeEmotion(responseContent, character.getPersonality());
-            }
-
-            // Extract action if enabled
-            ActionData action = null;
-            if (options != null && Boolean.TRUE.equals(options.getIncludeActions())) {
-                action = extractAction(responseContent);
-            }
-
-            // Determine if response is significant for memory
-            boolean isSignificant = analyzeSignificance(userMessage.getContent(), responseContent);
+    private AIResponse buildResponse(String responseContent, boolean cached) {
 
-            return AIResponse.builder()
-                    .content(responseContent)
-                    .emotion(emotion)
-                    .action(action)
-                    .isSignificant(isSignificant)
-                    .metadata(null)
-                    .build();
-        });
+        // Emotion, action and significance are filled in by the enrichment stage once the text is out
+        return AIResponse.builder()
+                .content(responseContent)
+                .metadata(cached ? Map.of("cached", true) : null)
+                .build();
     }
 
     @Override
@@ -85,50 +142,63 @@ public class AIProcessorServiceImpl implements AIProcessorService {
                                             Message userMessage,
                                             MessageOptions options) {
 
+        long enqueuedAt = System.nanoTime();
+        UUID userId = conversation.getUserId();
+
+        return tierResolver.resolve(userId)
+                .flatMapMany(tier -> requestScheduler.scheduleMany(PROVIDER, userId, tier,
+                        estimateCost(userMessage, options),
+                        streamContent(conversation, userMessage, enqueuedAt).subscribeOn(Schedulers.boundedElastic())));
+    }
+
+    private Flux<StreamChunk> streamContent(Conversation conversation, Message userMessage, long enqueuedAt) {
         return Flux.create(sink -> {
+            GenerationObservation observation = null;
             try {
                 // Get character details
-                CharacterDetails character = characterClient.getCharacter(conversation.getCharacterId())
+                CharacterDetails character = characterCache.getCharacter(conversation.getCharacterId())
                         .orElseThrow(() -> new RuntimeException("Character not found"));
 
                 // Build prompt
-                String systemPrompt = buildSystemPrompt(character, null, null);
+                String systemPrompt = buildSystemPrompt(character, null, null, List.of());
                 List<ChatMessage> messages = new ArrayList<>();
                 messages.add(SystemMessage.from(systemPrompt));
                 messages.add(UserMessage.from(userMessage.getContent()));
 
                 // Configure streaming model
+                String modelForTurn = brownoutController.model(modelName);
                 StreamingChatLanguageModel model = OpenAiStreamingChatModel.builder()
+                        .baseUrl(openAiBaseUrl)
                         .apiKey(openAiApiKey)
-                        .modelName(modelName)
+                        .modelName(modelForTurn)
                         .temperature(temperature)
-                        .maxTokens(maxTokens)
+                        .maxTokens(brownoutController.maxTokens(maxTokens))
                         .build();
 
                 AtomicInteger chunkIndex = new AtomicInteger(0);
-                StringBuilder fullResponse = new StringBuilder();
+                StreamGuard guard = postProcessor.newGuard();
+                GenerationObservation streamObservation = generationMetrics.start(
+                        PROVIDER, modelForTurn, GenerationMetrics.tierOf(character.getAccessLevel()), enqueuedAt);
+                observation = streamObservation;
+                streamObservation.modelStarted();
 
-                // Stream response
+                // Stream response; chunks are cleaned before they are sent, loops stop the stream
                 model.generate(messages, chunk -> {
-                    if (chunk != null && !chunk.isEmpty()) {
-                        fullResponse.append(chunk);
-
-                        StreamChunk streamChunk = StreamChunk.builder()
-                                .content(chunk)
-                                .index(chunkIndex.getAndIncrement())
-                                .isComplete(false)
-                                .build();
-
-                        sink.next(streamChunk);
+                    if (chunk != null && !chunk.isEmpty() && !guard.isStopped()) {
+                        streamObservation.onToken();
+                        emitChunk(sink, guard.accept(chunk), chunkIndex);
                     }
                 });
+                emitChunk(sink, guard.finish(), chunkIndex);
+                streamObservation.complete(tokenizer.estimateTokenCountInMessages(messages), null);
+                postProcessor.recordOutcome(guard);
 
-                // Send completion chunk
+                // Send completion chunk; fullContent is authoritative when a loop was cut
                 StreamChunk completionChunk = StreamChunk.builder()
                         .content("")
                         .index(chunkIndex.get())
                         .isComplete(true)
-                        .fullContent(fullResponse.toString())
+                        .fullContent(guard.getContent())
                         .build();
 
                 sink.next(completionChunk);
@@ -136,14 +206,91 @@ public class AIProcessorServiceImpl implements AIProcessorService {
 
             } catch (Exception e) {
                 log.error("Error in AI streaming: {}", e.getMessage());
+                if (observation != null) {
+                    observation.fail(e);
+                }
                 sink.error(e);
             }
         });
     }
 
+    private void emitChunk(FluxSink<StreamChunk> sink, String content, AtomicInteger chunkIndex) {
+        if (content.isEmpty()) {
+            return;
+        }
+
+        sink.next(StreamChunk.builder()
+                .content(content)
+                .index(chunkIndex.getAndIncrement())
+                .isComplete(false)
+                .build());
+    }
+
+    @Override
+    public Mono<String> summarize(String previousSummary, List<Message> messages) {
+        long enqueuedAt = System.nanoTime();
+        int cost = summaryMaxTokens + messages.stream().mapToInt(msg -> estimateTokens(msg.getContent())).sum();
+
+        // Background lane: lowest weight, its own in-flight cap, and runs on the low-priority threads
+        return requestScheduler.schedule(PROVIDER, null, SchedulingTier.BACKGROUND, cost, Mono.fromCallable(() -> {
+            ChatLanguageModel model = OpenAiChatModel.builder()
+                    .baseUrl(openAiBaseUrl)
+                    .apiKey(openAiApiKey)
+                    .modelName(summaryModelName)
+                    .temperature(0.2)
+                    .maxTokens(summaryMaxTokens)
+                    .build();
+
+            StringBuilder transcript = new StringBuilder();
+            if (previousSummary != null && !previousSummary.isBlank()) {
+                transcript.append("Summary so far:\n").append(previousSummary).append("\n\n");
+            }
+            transcript.append("New messages:\n");
+            for (Message msg : messages) {
+                transcript.append(msg.getRole()).append(": ").append(msg.getContent()).append("\n");
+            }
+
+            List<ChatMessage> prompt = List.of(
+                    SystemMessage.from("Update the running summary of this conversation. Merge the summary so far " +
+                            "with the new messages. Keep facts about the user, commitments, open topics and the " +
+                            "emotional tone. Write in third person, at most 200 words."),
+                    UserMessage.from(transcript.toString())
+            );
+
+            GenerationObservation observation = generationMetrics.start(
+                    PROVIDER, summaryModelName, "background", enqueuedAt);
+            observation.modelStarted();
+            try {
+                Response<AiMessage> response = model.generate(prompt);
+                TokenUsage usage = response.tokenUsage();
+                observation.complete(usage != null ? usage.inputTokenCount() : null,
+                        usage != null ? usage.outputTokenCount() : null);
+                return response.content().text();
+            } catch (RuntimeException e) {
+                observation.fail(e);
+                throw e;
+            }
+        }).subscribeOn(backgroundModelScheduler));
+    }
+
+    @Override
+    public Mono<Void> primePrefix(PreparedContext context) {
+        if (context == null || context.getCharacter() == null || !prefixPrimer.isEnabled()) {
+            return Mono.empty();
+        }
+
+        // Same system prompt as the real turn (minus per-query memories, which come last)
+        String systemPrompt = buildSystemPrompt(context.getCharacter(), context.getConversationContext(),
+                context.getCharacterContext(), List.of());
+
+        // The model the next turn will use, brownout downgrade included
+        return prefixPrimer.prime(brownoutController.model(modelName), systemPrompt, context.getRecentMessages());
+    }
+
     private String buildSystemPrompt(CharacterDetails character,
                                      ConversationContext conversationContext,
-                                     CharacterContext characterContext) {
+                                     CharacterContext characterContext,
+                                     List<String> relevantMemories) {
 
         StringBuilder prompt = new StringBuilder();
 
@@ -193,14 +340,41 @@ public class AIProcessorServiceImpl implements AIProcessorService {
             }
         }
 
+        // Rolling summary of older turns; the recent turns follow verbatim
+        if (conversationContext != null && conversationContext.getRunningSummary() != null) {
+            prompt.append("Summary of the conversation so far:\n")
+                    .append(conversationContext.getRunningSummary()).append("\n\n");
+        }
+
         // General instructions
         prompt.append("Stay in character and respond naturally. ");
         prompt.append("Be engaging and maintain the conversation flow. ");
         prompt.append("Remember previous context when relevant.");
 
+        // Per-query memories go last so the prefix above stays cacheable across turns
+        if (relevantMemories != null && !relevantMemories.isEmpty()) {
+            prompt.append("\n\nRelevant memories:\n");
+            relevantMemories.forEach(memory -> prompt.append("- ").append(memory).append("\n"));
+        }
+
         return prompt.toString();
     }
 
+    private int estimateCost(Message userMessage, MessageOptions options) {
+        return estimateTokens(userMessage.getContent()) + completionBudget(options);
+    }
+
+    private int completionBudget(MessageOptions options) {
+        int requested = options != null && options.getMaxResponseLength() != null
+                ? options.getMaxResponseLength() : maxTokens;
+        return brownoutController.maxTokens(requested);
+    }
+
+    private static int estimateTokens(String text) {
+        // Rough 4 characters per token; only used to weigh requests against each other
+        return text != null ? text.length() / 4 + 1 : 1;
+    }
+
     private List<ChatMessage> buildChatMessages(String systemPrompt,
                                                 List<Message> conversationHistory,
                                                 Message currentMessage) {
@@ -222,40 +396,4 @@ public class AIProcessorServiceImpl implements AIProcessorService {
 
         return messages;
     }
-
-    private ActionData extractAction(String response) {
-        // Simple action extraction - in production would use more sophisticated NLP
-        if (response.contains("*") && response.lastIndexOf("*") > response.indexOf("*")) {
-            String actionText = response.substring(
-                    response.indexOf("*") + 1,
-                    response.lastIndexOf("*")
-            );
-
-            return ActionData.builder()
-                    .type("gesture")
-                    .description(actionText)
-                    .duration(3.0)
-                    .build();
-        }
-
-        return null;
-    }
-
-    private boolean analyzeSignificance(String userMessage, String aiResponse) {
-        // Simple significance analysis - would be more sophisticated in production
-        String[] significantKeywords = {
-                "love", "hate", "important", "remember", "never forget",
-                "always", "promise", "secret", "confession", "truth"
-        };
-
-        String combined = (userMessage + " " + aiResponse).toLowerCase();
-
-        for (String keyword : significantKeywords) {
-            if (combined.contains(keyword)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
 }
@@ -0,0 +1,201 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * In-memory BM25 inverted index over short texts, one per user/character pair.
+ * <p>
+ * Terms are lowercased runs of letters and digits, so names, dates and places match exactly;
+ * a handful of English and French function words are dropped. Besides its BM25 score, every hit
+ * carries its coverage: the share of the IDF weight of the query terms that the document holds,
+ * which tells a document answering the query from one sharing a single word with it. Query
+ * words no memory uses count with the weight of the rarest term, so a query mostly about
+ * something the memories never mention gets a low coverage from its one common word.
+ * <p>
+ * Safe for concurrent use: searches share a read lock, changes take the write lock.
+ */
+public class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "do", "for", "from", "had", "has",
+            "have", "he", "her", "his", "i", "in", "is", "it", "its", "me", "my", "of", "on", "or", "our",
+            "she", "so", "that", "the", "their", "them", "they", "this", "to", "was", "we", "were", "what",
+            "when", "where", "which", "who", "will", "with", "you", "your",
+            "ai", "au", "aux", "avec", "ce", "ces", "dans", "de", "des", "du", "elle", "en", "es", "est",
+            "et", "été", "était", "il", "ils", "je", "la", "le", "les", "leur", "lui", "ma", "mais", "mes",
+            "moi", "mon", "ne", "nos", "notre", "nous", "ou", "où", "par", "pas", "pour", "qu", "quand",
+            "que", "qui", "sa", "se", "ses", "son", "sont", "suis", "sur", "ta", "te", "tes", "toi", "ton",
+            "tu", "un", "une", "vos", "votre", "vous");
+
+    private final Map<String, Map<UUID, Integer>> postings = new HashMap<>();
+    private final Map<UUID, Document> documents = new HashMap<>();
+    private long totalLength;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Indexes the text under the id, replacing what was indexed for it before.
+     */
+    public void add(UUID id, String text) {
+        List<String> terms = tokenize(text);
+        Map<String, Integer> frequencies = new HashMap<>();
+        terms.forEach(term -> frequencies.merge(term, 1, Integer::sum));
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            frequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(id, frequency));
+            documents.put(id, new Document(frequencies.keySet().toArray(new String[0]), terms.size()));
+            totalLength += terms.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Up to {@code k} documents containing at least one query term, best BM25 score first.
+     */
+    public List<Hit> search(String query, int k) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty() || k <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int count = documents.size();
+            if (count == 0) {
+                return List.of();
+            }
+            double averageLength = Math.max(1.0, totalLength / (double) count);
+
+            double queryWeight = 0;
+            Map<UUID, double[]> accumulators = new HashMap<>();
+            for (String term : terms) {
+                Map<UUID, Integer> posting = postings.get(term);
+                int df = posting == null ? 0 : posting.size();
+                double idf = Math.log(1 + (count - df + 0.5) / (df + 0.5));
+                queryWeight += idf;
+                if (posting == null) {
+                    continue;
+                }
+
+                for (Map.Entry<UUID, Integer> entry : posting.entrySet()) {
+                    int tf = entry.getValue();
+                    double norm = K1 * (1 - B + B * documents.get(entry.getKey()).length / averageLength);
+                    double[] accumulator = accumulators.computeIfAbsent(entry.getKey(), id -> new double[2]);
+                    accumulator[0] += idf * tf * (K1 + 1) / (tf + norm);
+                    accumulator[1] += idf;
+                }
+            }
+
+            double totalWeight = queryWeight;
+            return accumulators.entrySet().stream()
+                    .sorted(Comparator.comparingDouble((Map.Entry<UUID, double[]> entry) -> entry.getValue()[0]).reversed())
+                    .limit(k)
+                    .map(entry -> new Hit(entry.getKey(), entry.getValue()[0], entry.getValue()[1] / totalWeight))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? EmotionLexicon.fold(text.charAt(i)) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                term.append(c);
+                continue;
+            }
+            if (term.length() > 1 || (term.length() == 1 && Character.isDigit(term.charAt(0)))) {
+                String candidate = term.toString();
+                if (!STOP_WORDS.contains(candidate)) {
+                    terms.add(candidate);
+                }
+            }
+            term.setLength(0);
+        }
+        return terms;
+    }
+
+    private void removeLocked(UUID id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms) {
+            Map<UUID, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= document.length;
+    }
+
+    public static final class Hit {
+
+        private final UUID id;
+        private final double score;
+        private final double coverage;
+
+        Hit(UUID id, double score, double coverage) {
+            this.id = id;
+            this.score = score;
+            this.coverage = coverage;
+        }
+
+        public UUID id() {
+            return id;
+        }
+
+        public double score() {
+            return score;
+        }
+
+        /**
+         * Share of the IDF weight of the query terms present in the document, between 0 and 1.
+         */
+        public double coverage() {
+            return coverage;
+        }
+    }
+
+    private static final class Document {
+
+        private final String[] terms;
+        private final int length;
+
+        Document(String[] terms, int length) {
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+}
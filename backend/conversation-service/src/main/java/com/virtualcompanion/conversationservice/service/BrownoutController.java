@@ -0,0 +1,152 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Sheds optional AI work when the model path saturates, so a spike gets simpler answers
+ * instead of timeouts.
+ * <p>
+ * Pressure is the worse of scheduler queue depth against its target and p95 time to first
+ * token (from arrival) against the latency SLO, both measured over the last evaluation
+ * interval. Above 1 the level goes up one step per evaluation; it only comes down one step
+ * after several consecutive evaluations below the recovery threshold.
+ */
+public class BrownoutController {
+
+    private final MeterRegistry meterRegistry;
+    private final LlmRequestScheduler requestScheduler;
+
+    @Value("${ai.brownout.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.brownout.queue-depth-target:50}")
+    private int queueDepthTarget;
+
+    @Value("${ai.brownout.latency-slo:3s}")
+    private Duration latencySlo;
+
+    @Value("${ai.brownout.recover-threshold:0.7}")
+    private double recoverThreshold;
+
+    @Value("${ai.brownout.recovery-evaluations:5}")
+    private int recoveryEvaluations;
+
+    @Value("${ai.brownout.sample-window:512}")
+    private int sampleWindow;
+
+    @Value("${ai.brownout.short-max-tokens:200}")
+    private int shortMaxTokens;
+
+    @Value("${ai.brownout.cheap-model:gpt-3.5-turbo}")
+    private String cheapModel;
+
+    private final Sinks.Many<BrownoutLevel> levels = Sinks.many().replay().latest();
+
+    private volatile BrownoutLevel level = BrownoutLevel.NORMAL;
+    private volatile double pressure;
+
+    // Time-to-first-token samples of the current interval, guarded by this
+    private long[] samples;
+    private int sampleCount;
+    private int calmEvaluations;
+
+    @PostConstruct
+    void init() {
+        samples = new long[Math.max(1, sampleWindow)];
+        levels.tryEmitNext(level);
+
+        Gauge.builder("ai.brownout.level", this, controller -> controller.level.ordinal())
+                .description("Current brownout level, 0 = normal")
+                .register(meterRegistry);
+        Gauge.builder("ai.brownout.pressure", this, controller -> controller.pressure)
+                .description("Load relative to the brownout targets, above 1 escalates")
+                .register(meterRegistry);
+    }
+
+    public BrownoutLevel level() {
+        return level;
+    }
+
+    public boolean sheds(BrownoutLevel stage) {
+        return level.sheds(stage);
+    }
+
+    public int maxTokens(int requested) {
+        return sheds(BrownoutLevel.SHORT_RESPONSES) ? Math.min(requested, shortMaxTokens) : requested;
+    }
+
+    public String model(String requested) {
+        return sheds(BrownoutLevel.CHEAP_MODEL) ? cheapModel : requested;
+    }
+
+    /**
+     * Completes as soon as the level no longer sheds {@code stage}.
+     */
+    public Mono<Void> awaitBelow(BrownoutLevel stage) {
+        return levels.asFlux()
+                .filter(current -> !current.sheds(stage))
+                .next()
+                .then();
+    }
+
+    public synchronized void recordTimeToFirstToken(long nanos) {
+        // Ring buffer: under a flood the interval keeps its most recent samples
+        samples[sampleCount % samples.length] = nanos;
+        sampleCount++;
+    }
+
+    @Scheduled(fixedDelayString = "${ai.brownout.evaluation-interval:2s}")
+    public void evaluate() {
+        if (!enabled) {
+            return;
+        }
+
+        long p95;
+        synchronized (this) {
+            p95 = percentile95();
+            sampleCount = 0;
+        }
+
+        double queuePressure = (double) requestScheduler.queueDepth() / Math.max(1, queueDepthTarget);
+        double latencyPressure = (double) p95 / latencySlo.toNanos();
+        pressure = Math.max(queuePressure, latencyPressure);
+
+        BrownoutLevel current = level;
+        if (pressure > 1.0) {
+            calmEvaluations = 0;
+            if (current.ordinal() < BrownoutLevel.values().length - 1) {
+                transition(BrownoutLevel.values()[current.ordinal() + 1]);
+            }
+        } else if (pressure < recoverThreshold && current != BrownoutLevel.NORMAL) {
+            if (++calmEvaluations >= recoveryEvaluations) {
+                calmEvaluations = 0;
+                transition(BrownoutLevel.values()[current.ordinal() - 1]);
+            }
+        } else {
+            calmEvaluations = 0;
+        }
+    }
+
+    private void transition(BrownoutLevel next) {
+        BrownoutLevel previous = level;
+        level = next;
+        levels.tryEmitNext(next);
+
+        String direction = next.ordinal() > previous.ordinal() ? "up" : "down";
+        meterRegistry.counter("ai.brownout.transitions", "direction", direction, "level", next.name().toLowerCase(Locale.ROOT))
+                .increment();
+        if ("up".equals(direction)) {
+            log.warn("Brownout escalated to {} (pressure {})", next, String.format(Locale.ROOT, "%.2f", pressure));
+        } else {
+            log.info("Brownout recovered to {} (pressure {})", next, String.format(Locale.ROOT, "%.2f", pressure));
+        }
+    }
+
+    private long percentile95() {
+        int count = Math.min(sampleCount, samples.length);
+        if (count == 0) {
+            return 0;
+        }
+        long[] window = Arrays.copyOf(samples, count);
+        Arrays.sort(window);
+        return window[(int) Math.ceil(count * 0.95) - 1];
+    }
+}
@@ -0,0 +1,16 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Degradation steps, least visible first. Each level also applies everything below it.
+ */
+public enum BrownoutLevel {
+    NORMAL,
+    SHORT_RESPONSES,
+    NO_RETRIEVAL,
+    DEFERRED_ENRICHMENT,
+    CHEAP_MODEL;
+
+    public boolean sheds(BrownoutLevel stage) {
+        return ordinal() >= stage.ordinal();
+    }
+}
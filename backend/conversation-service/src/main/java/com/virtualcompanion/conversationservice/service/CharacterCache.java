@@ -0,0 +1,37 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class CharacterCache {
+
+    private final CharacterServiceClient characterClient;
+
+    @Value("${cache.character.ttl:1h}")
+    private Duration ttl;
+
+    @Value("${cache.character.max-size:1000}")
+    private long maxSize;
+
+    private Cache<UUID, CharacterDetails> characters;
+
+    @PostConstruct
+    void init() {
+        characters = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public Optional<CharacterDetails> getCharacter(UUID characterId) {
+        CharacterDetails cached = characters.getIfPresent(characterId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<CharacterDetails> loaded = characterClient.getCharacter(characterId);
+        loaded.ifPresent(character -> characters.put(characterId, character));
+        return loaded;
+    }
+
+    public void evict(UUID characterId) {
+        characters.invalidate(characterId);
+    }
+}
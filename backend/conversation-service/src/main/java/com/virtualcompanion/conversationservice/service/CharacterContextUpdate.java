@@ -0,0 +1,83 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Changes to one user/character {@link CharacterContext} gathered during a turn and applied as
+ * a single atomic Mongo update by {@link CharacterContextWriter#apply}.
+ * <p>
+ * Shared memories are appended with {@code $push}/{@code $each} and trimmed server side with
+ * {@code $slice} to the most recent ones, the relationship level moves with {@code $inc} and
+ * preferences are set on their own sub-path, so concurrent turns never overwrite each other
+ * and the document is never rewritten whole.
+ */
+public class CharacterContextUpdate {
+
+    private final CharacterContextWriter writer;
+    private final UUID userId;
+    private final UUID characterId;
+    private final List<String> sharedMemories = new ArrayList<>();
+    private final Map<String, Object> preferences = new LinkedHashMap<>();
+    private int relationshipDelta;
+
+    CharacterContextUpdate(CharacterContextWriter writer, UUID userId, UUID characterId) {
+        this.writer = writer;
+        this.userId = userId;
+        this.characterId = characterId;
+    }
+
+    public CharacterContextUpdate addSharedMemory(String memory) {
+        if (memory != null && !memory.isBlank()) {
+            sharedMemories.add(memory);
+        }
+        return this;
+    }
+
+    public CharacterContextUpdate addSharedMemories(Collection<String> memories) {
+        memories.forEach(this::addSharedMemory);
+        return this;
+    }
+
+    public CharacterContextUpdate incrementRelationshipLevel(int delta) {
+        relationshipDelta += delta;
+        return this;
+    }
+
+    public CharacterContextUpdate setPreference(String key, Object value) {
+        if (key == null || key.isEmpty() || key.contains(".") || key.startsWith("$")) {
+            throw new IllegalArgumentException("Invalid preference key: " + key);
+        }
+        preferences.put(key, value);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return sharedMemories.isEmpty() && preferences.isEmpty() && relationshipDelta == 0;
+    }
+
+    /**
+     * Applies the gathered changes; returns false when there was nothing to apply or the
+     * context does not exist.
+     */
+    public boolean apply() {
+        return writer.apply(this);
+    }
+
+    UUID getUserId() {
+        return userId;
+    }
+
+    UUID getCharacterId() {
+        return characterId;
+    }
+
+    Update toUpdate(int sharedMemoriesLimit, LocalDateTime now) {
+        Update update = new Update().set("lastUpdated", now);
+        if (!sharedMemories.isEmpty()) {
+            update.push("sharedMemories").slice(-sharedMemoriesLimit).each(sharedMemories.toArray());
+        }
+        if (relationshipDelta != 0) {
+            update.inc("relationshipLevel", relationshipDelta);
+        }
+        preferences.forEach((key, value) -> update.set("preferences." + key, value));
+        return update;
+    }
+}
@@ -0,0 +1,38 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Single writer of the mutable parts of {@link CharacterContext}: every change goes through a
+ * {@link CharacterContextUpdate} and lands as one server-side update on the user/character
+ * document instead of a read, modify and full save.
+ */
+public class CharacterContextWriter {
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${conversation.memory.shared-memories-limit:100}")
+    private int sharedMemoriesLimit;
+
+    public CharacterContextUpdate update(UUID userId, UUID characterId) {
+        return new CharacterContextUpdate(this, userId, characterId);
+    }
+
+    boolean apply(CharacterContextUpdate update) {
+        if (update.isEmpty()) {
+            return false;
+        }
+
+        Query query = Query.query(Criteria.where("userId").is(update.getUserId())
+                .and("characterId").is(update.getCharacterId()));
+        UpdateResult result = mongoTemplate.updateFirst(query,
+                update.toUpdate(sharedMemoriesLimit, LocalDateTime.now()), CharacterContext.class);
+
+        if (result.getMatchedCount() == 0) {
+            meterRegistry.counter("conversation.character-context.update", "outcome", "missing").increment();
+            log.debug("No character context for user {} and character {}", update.getUserId(), update.getCharacterId());
+            return false;
+        }
+        meterRegistry.counter("conversation.character-context.update", "outcome", "applied").increment();
+        return true;
+    }
+}
@@ -0,0 +1,119 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class ConversationContextAssembler {
+
+    private final ConversationContextRepository contextRepository;
+    private final CharacterContextRepository characterContextRepository;
+    private final MessageRepository messageRepository;
+    private final CharacterCache characterCache;
+    private final MemoryService memoryService;
+    private final BrownoutController brownoutController;
+
+    @Value("${conversation.context.recent-window:10}")
+    private int recentWindow;
+
+    @Value("${conversation.context.summary-interval-turns:10}")
+    private int summaryIntervalTurns;
+
+    @Value("${conversation.memory.retrieval-limit:5}")
+    private int memoryRetrievalLimit;
+
+    @Value("${conversation.prewarm.context-ttl:60s}")
+    private Duration preparedTtl;
+
+    // Contexts assembled ahead of the turn (typing / join), consumed by the next generation
+    private Cache<UUID, PreparedContext> preparedContexts;
+
+    @PostConstruct
+    void init() {
+        preparedContexts = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(preparedTtl)
+                .build();
+    }
+
+    public PreparedContext prepare(Conversation conversation) {
+        PreparedContext prepared = assemble(conversation, null);
+        prepared.setPrewarmed(true);
+        preparedContexts.put(conversation.getId(), prepared);
+        return prepared;
+    }
+
+    public PreparedContext forTurn(Conversation conversation, Message userMessage) {
+        PreparedContext prepared = preparedContexts.asMap().remove(conversation.getId());
+        if (prepared == null) {
+            return assemble(conversation, userMessage.getContent());
+        }
+
+        // Append the message that was saved after the context was warmed
+        List<Message> history = new ArrayList<>(prepared.getRecentMessages());
+        boolean alreadyPresent = history.stream()
+                .anyMatch(msg -> msg.getId() != null && msg.getId().equals(userMessage.getId()));
+        if (!alreadyPresent) {
+            history.add(userMessage);
+        }
+        if (history.size() > maxRecentMessages()) {
+            history = new ArrayList<>(history.subList(history.size() - maxRecentMessages(), history.size()));
+        }
+
+        prepared.setRecentMessages(history);
+        // Prepared before the message existed: memories are retrieved for what was actually said
+        prepared.setRelevantMemories(retrieveMemories(conversation, userMessage.getContent()));
+        return prepared;
+    }
+
+    public boolean isWarm(UUID conversationId) {
+        return preparedContexts.getIfPresent(conversationId) != null;
+    }
+
+    private PreparedContext assemble(Conversation conversation, String query) {
+        ConversationContext context = contextRepository.findByConversationId(conversation.getId())
+                .orElseThrow(() -> new IllegalStateException("Conversation context not found"));
+
+        // Every message the rolling summary does not cover yet, so none falls between the two;
+        // compaction keeps them between recent-window and one summary interval more
+        LocalDateTime summarizedUpTo = context.getSummarizedUpTo() != null
+                ? context.getSummarizedUpTo() : LocalDateTime.of(1970, 1, 1, 0, 0);
+        List<Message> recentMessages = new ArrayList<>(messageRepository.findAfterMarkDesc(
+                conversation.getId(), summarizedUpTo, context.getSummarizedUpToId(), Pageable.ofSize(maxRecentMessages())));
+        Collections.reverse(recentMessages);
+
+        CharacterContext characterContext = characterContextRepository
+                .findByUserIdAndCharacterId(conversation.getUserId(), conversation.getCharacterId())
+                .orElse(null);
+
+        CharacterDetails character = characterCache.getCharacter(conversation.getCharacterId())
+                .orElseThrow(() -> new RuntimeException("Character not found"));
+
+        // Prepared ahead of the turn (no query yet), memories wait for the message in forTurn
+        List<String> memories = query != null ? retrieveMemories(conversation, query) : List.of();
+
+        return PreparedContext.builder()
+                .conversationId(conversation.getId())
+                .conversationContext(context)
+                .characterContext(characterContext)
+                .character(character)
+                .recentMessages(recentMessages)
+                .relevantMemories(memories)
+                .prewarmed(false)
+                .preparedAt(Instant.now())
+                .build();
+    }
+
+    /**
+     * Unsummarized messages sent verbatim: the recent window plus the turns compaction lets
+     * accumulate before it runs. Beyond it (compaction lagging) the oldest are left out.
+     */
+    private int maxRecentMessages() {
+        return recentWindow + 2 * summaryIntervalTurns;
+    }
+
+    private List<String> retrieveMemories(Conversation conversation, String query) {
+        // Under brownout the turn is answered without long-term memories
+        if (brownoutController.sheds(BrownoutLevel.NO_RETRIEVAL)) {
+            return List.of();
+        }
+        return memoryService.retrieveRelevantMemories(conversation.getUserId(), conversation.getCharacterId(),
+                query, memoryRetrievalLimit);
+    }
+}
@@ -9,9 +9,15 @@ public class ConversationServiceImpl implements ConversationService {
     private final MessageRepository messageRepository;
     private final ConversationContextRepository contextRepository;
     private final CharacterContextRepository characterContextRepository;
+    private final CharacterContextWriter characterContextWriter;
 
     private final AIProcessorService aiProcessor;
     private final MemoryService memoryService;
+    private final ConversationSummaryService summaryService;
+    private final ConversationContextAssembler contextAssembler;
+    private final PrewarmService prewarmService;
+    private final ResponseEnrichmentService enrichmentService;
+    private final TurnTraceRecorder traceRecorder;
     private final AnalyticsService analyticsService;
     private final ExportService exportService;
 
@@ -163,8 +169,19 @@ public class ConversationServiceImpl implements ConversationService {
 
                     messageRepository.save(userMessage);
 
+                    long startNanos = System.nanoTime();
+                    TurnTrace trace = traceRecorder.begin(conversation, userMessage, "stream");
+
                     // Stream AI response
                     return aiProcessor.streamResponse(conversation, userMessage, request.getOptions())
+                            .doOnNext(chunk -> {
+                                if (chunk.isComplete()) {
+                                    traceRecorder.complete(trace, chunk.getFullContent(), startNanos);
+                                } else {
+                                    traceRecorder.stageOnce(trace, "first_chunk", startNanos);
+                                }
+                            })
+                            .doOnError(error -> traceRecorder.fail(trace, error, startNanos))
                             .map(chunk -> StreamingMessageEvent.builder()
                                     .eventType("message_chunk")
                                     .conversationId(conversationId.toString())
@@ -200,8 +217,8 @@ public class ConversationServiceImpl implements ConversationService {
                     // Save final analytics
                     analyticsService.finalizeConversationAnalytics(conversationId);
 
-                    // Update memory
-                    memoryService.consolidateConversationMemory(userId, conversationId);
+                    // Consolidate memory from the messages not seen yet (async, background lane)
+                    memoryService.consolidateConversationMemory(conversation);
 
                     // Publish event
                     kafkaTemplate.send("conversation-events", "conversation.ended",
@@ -308,16 +325,11 @@ public class ConversationServiceImpl implements ConversationService {
                     memoryService.updateCharacterMemory(userId, request.getCharacterId(), request.getMemories());
 
                     // Update character context
-                    characterContextRepository.findByUserIdAndCharacterId(userId, request.getCharacterId())
-                            .ifPresent(context -> {
-                                context.getSharedMemories().addAll(
-                                        request.getMemories().stream()
-                                                .map(MemoryItem::getContent)
-                                                .collect(Collectors.toList())
-                                );
-                                context.setLastUpdated(LocalDateTime.now());
-                                characterContextRepository.save(context);
-                            });
+                    characterContextWriter.update(userId, request.getCharacterId())
+                            .addSharedMemories(request.getMemories().stream()
+                                    .map(MemoryItem::getContent)
+                                    .collect(Collectors.toList()))
+                            .apply();
 
                     return null;
                 })
@@ -348,32 +360,35 @@ public class ConversationServiceImpl implements ConversationService {
                                                              Message userMessage,
                                                              SendMessageRequest request) {
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        TurnTrace trace = traceRecorder.begin(conversation, userMessage, "rest");
 
+        // Assemble context, reusing the one prepared on typing/join if still fresh
         return Mono.fromCallable(() -> {
-                    // Get conversation context
-                    ConversationContext context = contextRepository.findByConversationId(conversation.getId())
-                            .orElseThrow(() -> new IllegalStateException("Conversation context not found"));
-
-                    // Get recent messages for context
-                    List<Message> recentMessages = messageRepository.findByConversationIdOrderByTimestampDesc(
-                            conversation.getId(), Pageable.ofSize(10)).getContent();
-                    Collections.reverse(recentMessages);
-
-                    // Get character context
-                    CharacterContext characterContext = characterContextRepository
-                            .findByUserIdAndCharacterId(conversation.getUserId(), conversation.getCharacterId())
-                            .orElse(null);
-
+                    PreparedContext context = contextAssembler.forTurn(conversation, userMessage);
+                    context.setTrace(trace);
+                    traceRecorder.describeContext(trace, context);
+                    traceRecorder.stage(trace, "context", startNanos);
+                    return context;
+                })
+                .flatMap(context -> {
+                    long generationStart = System.nanoTime();
                     return aiProcessor.generateResponse(
-                            conversation,
-                            userMessage,
-                            recentMessages,
-                            context,
-                            characterContext,
-                            request.getOptions()
-                    );
+                                    conversation,
+                                    userMessage,
+                                    context,
+                                    request.getOptions()
+                            )
+                            .doOnNext(aiResponse -> {
+                                traceRecorder.stage(trace, "generation", generationStart);
+                                // The prewarm split is taken where the prepared context is consumed; cached answers have no first token
+                                if (context.getTimeToFirstTokenNanos() != null) {
+                                    prewarmService.recordTimeToFirstToken(context.isPrewarmed(), context.getTimeToFirstTokenNanos());
+                                }
+                            });
                 })
                 .flatMap(aiResponse -> Mono.fromCallable(() -> {
+                    long persistStart = System.nanoTime();
                     // Save AI response
                     Message assistantMessage = Message.builder()
                             .conversationId(conversation.getId())
@@ -385,29 +400,36 @@ public class ConversationServiceImpl implements ConversationService {
                             .timestamp(LocalDateTime.now())
                             .build();
 
-                    // Add emotion data if available
-                    if (aiResponse.getEmotion() != null) {
-                        assistantMessage.getMetadata().put("emotion", aiResponse.getEmotion());
-                    }
-
-                    // Add action data if available
-                    if (aiResponse.getAction() != null) {
-                        assistantMessage.getMetadata().put("action", aiResponse.getAction());
-                    }
-
                     // Add processing time
                     long processingTime = System.currentTimeMillis() - startTime;
                     assistantMessage.getMetadata().put("processingTime", processingTime);
 
                     Message savedMessage = messageRepository.save(assistantMessage);
-
-                    // Update memory if significant
-                    if (aiResponse.isSignificant()) {
-                        memoryService.extractAndStoreMemory(conversation, userMessage, savedMessage);
+                    boolean cached = aiResponse.getMetadata() != null
+                            && Boolean.TRUE.equals(aiResponse.getMetadata().get("cached"));
+
+                    // Emotion, action, significance and memory are handled off the critical path
+                    enrichmentService.submit(EnrichmentJob.builder()
+                            .conversation(conversation)
+                            .userMessage(userMessage)
+                            .assistantMessage(savedMessage)
+                            .options(request.getOptions())
+                            .cached(cached)
+                            .build());
+
+                    // Fold older turns into the rolling summary every few turns (async, background lane)
+                    summaryService.onTurnCompleted(conversation.getId());
+                    memoryService.onTurnCompleted(conversation);
+
+                    if (trace != null) {
+                        trace.setCached(cached);
+                        traceRecorder.stage(trace, "persist", persistStart);
+                        traceRecorder.complete(trace, aiResponse.getContent(), startNanos);
                     }
 
                     return conversationMapper.toMessageResponse(savedMessage);
                 }))
+                .doOnError(error -> traceRecorder.fail(trace, error, startNanos))
                 .subscribeOn(Schedulers.boundedElastic());
     }
 
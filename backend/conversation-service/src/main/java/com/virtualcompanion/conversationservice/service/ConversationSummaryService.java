@@ -0,0 +1,8 @@
+package com.virtualcompanion.conversationservice.service;
+
+public interface ConversationSummaryService {
+
+    void onTurnCompleted(UUID conversationId);
+
+    Mono<Boolean> compact(UUID conversationId);
+}
@@ -0,0 +1,109 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class ConversationSummaryServiceImpl implements ConversationSummaryService {
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final ConversationContextRepository contextRepository;
+    private final MessageRepository messageRepository;
+    private final AIProcessorService aiProcessor;
+    private final MongoTemplate mongoTemplate;
+    private final Scheduler backgroundModelScheduler;
+
+    @Value("${conversation.context.summary-interval-turns:10}")
+    private int summaryIntervalTurns;
+
+    @Value("${conversation.context.recent-window:10}")
+    private int recentWindow;
+
+    @Value("${conversation.context.summary-max-span:200}")
+    private int maxSpan;
+
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Compacts once the messages not yet summarized exceed the recent window by
+     * {@code summary-interval-turns} turns (a user and an assistant message each). The count is
+     * read from the stored messages, so every replica sees the same cadence, restarts included.
+     */
+    @Override
+    public void onTurnCompleted(UUID conversationId) {
+        Mono.fromCallable(() -> contextRepository.findByConversationId(conversationId)
+                        .map(context -> messageRepository.countAfterMark(conversationId,
+                                context.getSummarizedUpTo() != null ? context.getSummarizedUpTo() : BEGINNING,
+                                context.getSummarizedUpToId()))
+                        .orElse(0L))
+                .subscribeOn(backgroundModelScheduler)
+                .filter(unsummarized -> unsummarized >= recentWindow + 2L * summaryIntervalTurns)
+                .flatMap(unsummarized -> compact(conversationId))
+                .subscribe(
+                        compacted -> log.debug("Compaction for conversation {} applied: {}", conversationId, compacted),
+                        error -> log.warn("Compaction failed for conversation {}: {}", conversationId, error.getMessage()));
+    }
+
+    @Override
+    public Mono<Boolean> compact(UUID conversationId) {
+        // One compaction per conversation at a time; concurrent triggers are dropped
+        if (!inFlight.add(conversationId)) {
+            return Mono.just(false);
+        }
+
+        return Mono.fromCallable(() -> loadPendingSpan(conversationId))
+                .subscribeOn(backgroundModelScheduler)
+                .flatMap(span -> aiProcessor.summarize(span.getPreviousSummary(), span.getMessages())
+                        .publishOn(backgroundModelScheduler)
+                        .map(summary -> applySummary(conversationId, span, summary)))
+                .defaultIfEmpty(false)
+                .doFinally(signal -> inFlight.remove(conversationId));
+    }
+
+    private SummarySpan loadPendingSpan(UUID conversationId) {
+        ConversationContext context = contextRepository.findByConversationId(conversationId).orElse(null);
+        if (context == null) {
+            return null;
+        }
+
+        LocalDateTime after = context.getSummarizedUpTo() != null ? context.getSummarizedUpTo() : BEGINNING;
+        List<Message> pending = messageRepository.findAfterMarkAsc(
+                conversationId, after, context.getSummarizedUpToId(), PageRequest.of(0, maxSpan + recentWindow));
+
+        // The most recent turns stay verbatim in the prompt and are never folded into the summary
+        int spanSize = Math.min(maxSpan, pending.size() - recentWindow);
+        if (spanSize <= 0) {
+            return null;
+        }
+
+        return SummarySpan.builder()
+                .previousSummary(context.getRunningSummary())
+                .expectedVersion(context.getSummaryVersion())
+                .messages(new ArrayList<>(pending.subList(0, spanSize)))
+                .build();
+    }
+
+    private boolean applySummary(UUID conversationId, SummarySpan span, String summary) {
+        if (summary == null || summary.isBlank()) {
+            return false;
+        }
+
+        List<Message> messages = span.getMessages();
+        // Timestamp and id of the last message folded in: the next span starts right after it
+        Message last = messages.get(messages.size() - 1);
+
+        // Versioned write: a run based on a stale summary is discarded, so re-runs are idempotent
+        Query query = Query.query(Criteria.where("conversationId").is(conversationId)
+                .and("summaryVersion").is(span.getExpectedVersion()));
+
+        Update update = new Update()
+                .set("runningSummary", summary.trim())
+                .set("summarizedUpTo", last.getTimestamp())
+                .set("summarizedUpToId", last.getId())
+                .set("lastUpdated", LocalDateTime.now())
+                .inc("summaryVersion", 1);
+
+        boolean applied = mongoTemplate.updateFirst(query, update, ConversationContext.class).getModifiedCount() > 0;
+        if (applied) {
+            log.info("Compacted {} messages of conversation {} into rolling summary", messages.size(), conversationId);
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,16 @@
+package com.virtualcompanion.conversationservice.service;
+
+public interface EmbeddingService {
+
+    /**
+     * Unit-length embedding of the text; blocks until it is computed or cached.
+     */
+    float[] generateEmbedding(String text);
+
+    /**
+     * Embeddings in the order of {@code texts}, computed together where not cached.
+     */
+    List<float[]> generateEmbeddings(List<String> texts);
+
+    int dimension();
+}
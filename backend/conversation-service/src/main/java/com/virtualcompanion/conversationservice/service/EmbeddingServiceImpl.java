@@ -0,0 +1,301 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * In-process embedding engine: the MiniLM model of {@code ai.memory.embedding-model} runs on
+ * CPU through {@link OnnxSentenceEncoder}, behind a content-addressed cache.
+ * <p>
+ * Vectors are keyed by the SHA-256 of model name and text. A lookup goes to memory (Caffeine),
+ * then to the disk cache directory, then to the model. Concurrent requests for the same text
+ * share one computation, and misses from all threads are gathered into micro-batches of up to
+ * {@code conversation.memory.embedding-batch-size} texts, waiting at most
+ * {@code ai.embedding.max-batch-delay} for company. Inference runs on a single thread; ONNX
+ * Runtime parallelizes inside each batch.
+ */
+public class EmbeddingServiceImpl implements EmbeddingService {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.memory.embedding-model:sentence-transformers/all-MiniLM-L6-v2}")
+    private String modelName;
+
+    @Value("${ai.embedding.model-path:models/all-MiniLM-L6-v2}")
+    private String modelPath;
+
+    @Value("${ai.embedding.max-sequence-length:256}")
+    private int maxSequenceLength;
+
+    @Value("${ai.embedding.threads:0}")
+    private int threads;
+
+    @Value("${conversation.memory.embedding-batch-size:32}")
+    private int maxBatchSize;
+
+    @Value("${ai.embedding.max-batch-delay:5ms}")
+    private Duration maxBatchDelay;
+
+    @Value("${ai.embedding.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${ai.embedding.timeout:10s}")
+    private Duration timeout;
+
+    @Value("${ai.embedding.cache.max-entries:100000}")
+    private long cacheMaxEntries;
+
+    @Value("${ai.embedding.cache.directory:}")
+    private String cacheDirectory;
+
+    private SentenceEncoder encoder;
+    private AsyncCache<String, float[]> vectors;
+    private Path diskCache;
+
+    private Sinks.Many<PendingEmbedding> requests;
+    private Scheduler inferenceScheduler;
+    private Disposable pipeline;
+
+    private Counter memoryHits;
+    private Counter diskHits;
+    private Counter misses;
+    private DistributionSummary batchSizes;
+    private Timer batchTimer;
+
+    @PostConstruct
+    void init() {
+        if (encoder == null) {
+            try {
+                encoder = OnnxSentenceEncoder.load(Path.of(modelPath), maxSequenceLength, threads);
+                log.info("Embedding model {} loaded from {} ({} dimensions)", modelName, modelPath, encoder.dimension());
+            } catch (Exception e) {
+                // Callers degrade without embeddings; the rest of the service keeps working
+                log.error("Embedding model not available at {}: {}", modelPath, e.getMessage());
+            }
+        }
+
+        vectors = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .buildAsync();
+
+        if (cacheDirectory != null && !cacheDirectory.isBlank()) {
+            try {
+                diskCache = Files.createDirectories(Path.of(cacheDirectory));
+            } catch (IOException e) {
+                log.warn("Embedding disk cache disabled, cannot create {}: {}", cacheDirectory, e.getMessage());
+            }
+        }
+
+        memoryHits = lookupCounter("memory");
+        diskHits = lookupCounter("disk");
+        misses = lookupCounter("model");
+
+        Gauge.builder("ai.embedding.cache.hit.ratio", this, EmbeddingServiceImpl::hitRatio)
+                .description("Share of embedding lookups served without running the model")
+                .register(meterRegistry);
+
+        batchSizes = DistributionSummary.builder("ai.embedding.batch.size")
+                .description("Texts per embedding model call")
+                .register(meterRegistry);
+
+        batchTimer = Timer.builder("ai.embedding.batch.duration")
+                .description("Embedding model time per batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        requests = Sinks.many().unicast().onBackpressureBuffer(Queues.<PendingEmbedding>get(queueCapacity).get());
+        inferenceScheduler = Schedulers.newSingle("embedding-inference");
+
+        pipeline = requests.asFlux()
+                .bufferTimeout(maxBatchSize, maxBatchDelay)
+                .publishOn(inferenceScheduler)
+                .subscribe(this::runBatch);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (pipeline != null) {
+            pipeline.dispose();
+        }
+        if (inferenceScheduler != null) {
+            inferenceScheduler.dispose();
+        }
+        if (encoder != null) {
+            encoder.close();
+        }
+    }
+
+    @Override
+    public float[] generateEmbedding(String text) {
+        return await(embed(text));
+    }
+
+    @Override
+    public List<float[]> generateEmbeddings(List<String> texts) {
+        // Submitted back to back, the misses land in the same batch
+        List<CompletableFuture<float[]>> futures = texts.stream().map(this::embed).toList();
+        await(CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)));
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    @Override
+    public int dimension() {
+        return encoder != null ? encoder.dimension() : 0;
+    }
+
+    CompletableFuture<float[]> embed(String text) {
+        if (encoder == null) {
+            return CompletableFuture.failedFuture(new EmbeddingException("Embedding model not loaded"));
+        }
+
+        String hash = contentHash(text);
+        boolean[] computed = {false};
+        CompletableFuture<float[]> vector = vectors.get(hash, (key, executor) -> {
+            computed[0] = true;
+            return load(key, text);
+        });
+        if (!computed[0]) {
+            memoryHits.increment();
+        }
+        return vector;
+    }
+
+    private CompletableFuture<float[]> load(String hash, String text) {
+        float[] stored = readFromDisk(hash);
+        if (stored != null) {
+            diskHits.increment();
+            return CompletableFuture.completedFuture(stored);
+        }
+
+        misses.increment();
+        CompletableFuture<float[]> result = new CompletableFuture<>();
+        enqueue(new PendingEmbedding(hash, text, result));
+        return result;
+    }
+
+    private synchronized void enqueue(PendingEmbedding pending) {
+        if (requests.tryEmitNext(pending).isFailure()) {
+            meterRegistry.counter("ai.embedding.rejected").increment();
+            pending.result.completeExceptionally(new EmbeddingException("Embedding queue full"));
+        }
+    }
+
+    private void runBatch(List<PendingEmbedding> batch) {
+        long start = System.nanoTime();
+        float[][] embeddings;
+        try {
+            embeddings = encoder.encode(batch.stream().map(pending -> pending.text).toList());
+        } catch (RuntimeException e) {
+            log.warn("Embedding batch of {} failed: {}", batch.size(), e.getMessage());
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            return;
+        }
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizes.record(batch.size());
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(embeddings[i]);
+        }
+
+        if (diskCache != null) {
+            Schedulers.boundedElastic().schedule(() -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    writeToDisk(batch.get(i).hash, embeddings[i]);
+                }
+            });
+        }
+    }
+
+    // ========== Disk cache ==========
+
+    private float[] readFromDisk(String hash) {
+        if (diskCache == null) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(diskPath(hash));
+            if (bytes.length != encoder.dimension() * Float.BYTES) {
+                return null;
+            }
+            float[] vector = new float[encoder.dimension()];
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+            return vector;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.debug("Could not read cached embedding {}: {}", hash, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String hash, float[] vector) {
+        Path target = diskPath(hash);
+        try {
+            Files.createDirectories(target.getParent());
+            ByteBuffer bytes = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asFloatBuffer().put(vector);
+            // Written aside then moved, so readers never see a partial vector
+            Path temporary = Files.createTempFile(target.getParent(), hash, ".tmp");
+            Files.write(temporary, bytes.array());
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.debug("Could not cache embedding {}: {}", hash, e.getMessage());
+        }
+    }
+
+    private Path diskPath(String hash) {
+        // Two-character fan-out keeps directories small
+        return diskCache.resolve(hash.substring(0, 2)).resolve(hash + ".f32");
+    }
+
+    // ========== Helpers ==========
+
+    private String contentHash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof EmbeddingException embeddingError
+                    ? embeddingError
+                    : new EmbeddingException("Embedding failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new EmbeddingException("Embedding timed out after " + timeout, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmbeddingException("Interrupted while waiting for an embedding", e);
+        }
+    }
+
+    private Counter lookupCounter(String tier) {
+        return Counter.builder("ai.embedding.lookups")
+                .tag("tier", tier)
+                .description("Embedding lookups by the tier that served them")
+                .register(meterRegistry);
+    }
+
+    private double hitRatio() {
+        double hits = memoryHits.count() + diskHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0.0 : hits / total;
+    }
+
+    private static final class PendingEmbedding {
+
+        private final String hash;
+        private final String text;
+        private final CompletableFuture<float[]> result;
+
+        PendingEmbedding(String hash, String text, CompletableFuture<float[]> result) {
+            this.hash = hash;
+            this.text = text;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.virtualcompanion.conversationservice.service;
+
+public interface EmotionAnalysisService {
+
+    EmotionData analyzeEmotion(String text, PersonalityTraitsDto personality);
+
+    /**
+     * Sentiment of the text in [-1, 1], 0 when nothing in it carries emotion.
+     */
+    double analyzeSentiment(String text);
+}
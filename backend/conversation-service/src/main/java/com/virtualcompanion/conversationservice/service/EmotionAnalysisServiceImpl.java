@@ -0,0 +1,211 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Lexicon emotion and sentiment analysis, run on every response and message.
+ * <p>
+ * The lexicon is compiled once at startup into an {@link EmotionLexicon} trie. A message is
+ * scanned in a single pass: each character is folded and fed to the trie as it is read, so no
+ * lowercased copy, token substring or per-word lookup key is ever built. Scores accumulate in a
+ * small array; only the returned {@link EmotionData} and its score map are allocated.
+ * <p>
+ * A negation flips the next emotion word within {@code negation-window} words to its opposite
+ * at half weight (or cancels it when it has none); an intensifier scales the emotion words in
+ * the following {@code intensifier-window} words. Both scopes end at a clause boundary.
+ * ALL-CAPS words and exclamation marks add intensity.
+ */
+public class EmotionAnalysisServiceImpl implements EmotionAnalysisService {
+
+    private static final String NEUTRAL = "neutral";
+    private static final String[] EXPRESSIONS = {
+            "smile", "frown", "scowl", "wide_eyes", "raised_brows", "grimace", "soft_smile"
+    };
+    private static final double NEGATED_WEIGHT = 0.5;
+    private static final double SHOUT_FACTOR = 1.3;
+    private static final double EXCLAMATION_BOOST = 0.1;
+    private static final int MAX_EXCLAMATIONS = 3;
+
+    @Value("${conversation.emotion.lexicon:classpath:emotion-lexicon.tsv}")
+    private Resource lexiconResource;
+
+    @Value("${conversation.emotion.negation-window:3}")
+    private int negationWindow;
+
+    @Value("${conversation.emotion.intensifier-window:2}")
+    private int intensifierWindow;
+
+    private EmotionLexicon lexicon;
+
+    @PostConstruct
+    void init() throws IOException {
+        try (InputStream source = lexiconResource.getInputStream()) {
+            lexicon = EmotionLexicon.load(source);
+        }
+        log.info("Emotion lexicon compiled: {} entries from {}", lexicon.size(), lexiconResource.getDescription());
+    }
+
+    @Override
+    public EmotionData analyzeEmotion(String text, PersonalityTraitsDto personality) {
+        double[] scores = new double[EmotionLexicon.EMOTIONS.length];
+        if (text == null || score(text, scores) == 0) {
+            return neutral();
+        }
+
+        int primary = 0;
+        double total = 0;
+        for (int i = 0; i < scores.length; i++) {
+            total += scores[i];
+            if (scores[i] > scores[primary]) {
+                primary = i;
+            }
+        }
+        if (total <= 0) {
+            return neutral();
+        }
+
+        Map<String, Double> emotionScores = new HashMap<>();
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0) {
+                emotionScores.put(EmotionLexicon.EMOTIONS[i], scores[i] / total);
+            }
+        }
+
+        // Saturating: one plain word ~0.5, a few strong ones approach 1
+        double intensity = scores[primary] / (scores[primary] + 1.0) * reactivity(personality);
+
+        return EmotionData.builder()
+                .primary(EmotionLexicon.EMOTIONS[primary])
+                .intensity(Math.min(1.0, intensity))
+                .expression(EXPRESSIONS[primary])
+                .emotionScores(emotionScores)
+                .build();
+    }
+
+    @Override
+    public double analyzeSentiment(String text) {
+        double[] scores = new double[EmotionLexicon.EMOTIONS.length];
+        if (text == null || score(text, scores) == 0) {
+            return 0.0;
+        }
+
+        double weighted = 0;
+        double total = 0;
+        for (int i = 0; i < scores.length; i++) {
+            weighted += EmotionLexicon.VALENCE[i] * scores[i];
+            total += scores[i];
+        }
+        // The +1 keeps a single weak word from reading as fully positive or negative
+        return Math.max(-1.0, Math.min(1.0, weighted / (total + 1.0)));
+    }
+
+    /**
+     * Adds the emotion weights found in {@code text} to {@code scores} and returns the number
+     * of emotion words matched.
+     */
+    int score(CharSequence text, double[] scores) {
+        int length = text.length();
+        int hits = 0;
+        int exclamations = 0;
+
+        int word = 0;
+        int negatedUntil = -1;
+        int intensifiedUntil = -1;
+        double intensifier = 1.0;
+
+        boolean inWord = false;
+        int node = 0;
+        boolean upper = true;
+        int letters = 0;
+
+        // One step past the end closes the last word
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+
+            if (Character.isLetterOrDigit(c) || (inWord && (c == '\'' || c == '’'))) {
+                if (!inWord) {
+                    inWord = true;
+                    node = 0;
+                    upper = true;
+                    letters = 0;
+                }
+                if (node >= 0) {
+                    node = lexicon.child(node, EmotionLexicon.fold(c));
+                }
+                if (Character.isLetter(c)) {
+                    letters++;
+                    upper &= Character.isUpperCase(c);
+                }
+                continue;
+            }
+
+            if (inWord) {
+                inWord = false;
+                int entry = node >= 0 ? lexicon.entry(node) : -1;
+                if (entry >= 0) {
+                    switch (lexicon.kind(entry)) {
+                        case EmotionLexicon.NEGATION -> negatedUntil = word + negationWindow;
+                        case EmotionLexicon.INTENSIFIER -> {
+                            intensifier = lexicon.weight(entry);
+                            intensifiedUntil = word + intensifierWindow;
+                        }
+                        default -> {
+                            double weight = lexicon.weight(entry);
+                            if (word <= intensifiedUntil) {
+                                weight *= intensifier;
+                            }
+                            if (upper && letters > 1) {
+                                weight *= SHOUT_FACTOR;
+                            }
+                            int emotion = lexicon.emotion(entry);
+                            if (word <= negatedUntil) {
+                                // A negation applies to the first emotion word it reaches
+                                negatedUntil = -1;
+                                emotion = EmotionLexicon.OPPOSITES[emotion];
+                                weight *= NEGATED_WEIGHT;
+                            }
+                            if (emotion >= 0) {
+                                scores[emotion] += weight;
+                                hits++;
+                            }
+                        }
+                    }
+                }
+                word++;
+            }
+
+            if (c == '!') {
+                exclamations++;
+            }
+            if (c == '.' || c == ',' || c == ';' || c == ':' || c == '!' || c == '?' || c == '\n') {
+                negatedUntil = -1;
+                intensifiedUntil = -1;
+            }
+        }
+
+        if (hits > 0 && exclamations > 0) {
+            double boost = 1.0 + EXCLAMATION_BOOST * Math.min(exclamations, MAX_EXCLAMATIONS);
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] *= boost;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Neurotic characters react more strongly, stable ones less: 0.75 to 1.25.
+     */
+    private static double reactivity(PersonalityTraitsDto personality) {
+        if (personality == null || personality.getNeuroticism() == null) {
+            return 1.0;
+        }
+        return 0.75 + 0.5 * Math.max(0.0, Math.min(1.0, personality.getNeuroticism()));
+    }
+
+    private static EmotionData neutral() {
+        return EmotionData.builder()
+                .primary(NEUTRAL)
+                .intensity(0.0)
+                .expression(NEUTRAL)
+                .emotionScores(new HashMap<>())
+                .build();
+    }
+}
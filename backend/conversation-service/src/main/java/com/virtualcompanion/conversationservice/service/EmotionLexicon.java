@@ -0,0 +1,232 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Emotion lexicon compiled into a character trie held in primitive arrays, so a scan can walk
+ * it one character at a time without building substrings or boxing.
+ * <p>
+ * Edges live in an open-addressed table keyed by {@code node << 16 | char}; a node that ends a
+ * lexicon word points to its entry. Words are stored lowercased with ’ folded to ', and
+ * {@link #child} expects the caller to fold the same way.
+ * <p>
+ * Source format, one entry per line, tab separated, {@code #} comments:
+ * {@code word emotion weight}, {@code word @negation} or {@code word @intensifier factor}.
+ */
+public final class EmotionLexicon {
+
+    public static final String[] EMOTIONS = {
+            "happy", "sad", "angry", "fearful", "surprised", "disgusted", "affectionate"
+    };
+
+    /** Emotion a negated word counts towards, or -1 when negation just cancels it. */
+    static final int[] OPPOSITES = {1, 0, -1, -1, -1, -1, -1};
+
+    /** Valence of each emotion for the sentiment score. */
+    static final double[] VALENCE = {1.0, -1.0, -1.0, -0.7, 0.2, -0.8, 1.0};
+
+    public static final byte WORD = 0;
+    public static final byte NEGATION = 1;
+    public static final byte INTENSIFIER = 2;
+
+    private static final long EMPTY = -1L;
+
+    private final long[] edgeKeys;
+    private final int[] edgeTargets;
+    private final int edgeShift;
+    private final int[] nodeEntries;
+    private final byte[] kinds;
+    private final int[] emotions;
+    private final double[] weights;
+
+    private EmotionLexicon(long[] edgeKeys, int[] edgeTargets, int[] nodeEntries,
+                           byte[] kinds, int[] emotions, double[] weights) {
+        this.edgeKeys = edgeKeys;
+        this.edgeTargets = edgeTargets;
+        this.edgeShift = 64 - Integer.numberOfTrailingZeros(edgeKeys.length);
+        this.nodeEntries = nodeEntries;
+        this.kinds = kinds;
+        this.emotions = emotions;
+        this.weights = weights;
+    }
+
+    public static EmotionLexicon load(InputStream source) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8))) {
+            return parse(reader.lines().toList());
+        }
+    }
+
+    public static EmotionLexicon parse(List<String> lines) {
+        Map<Long, Integer> edges = new HashMap<>();
+        List<Integer> nodeEntries = new ArrayList<>(List.of(-1));
+        List<Byte> kinds = new ArrayList<>();
+        List<Integer> emotions = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+
+        int lineNumber = 0;
+        for (String line : lines) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\t");
+            if (fields.length < 2) {
+                throw new IllegalArgumentException("Lexicon line " + lineNumber + " has no category: " + line);
+            }
+
+            byte kind;
+            int emotion = -1;
+            double weight;
+            switch (fields[1]) {
+                case "@negation" -> {
+                    kind = NEGATION;
+                    weight = 0;
+                }
+                case "@intensifier" -> {
+                    kind = INTENSIFIER;
+                    weight = parseWeight(fields, lineNumber);
+                }
+                default -> {
+                    kind = WORD;
+                    emotion = emotionIndex(fields[1]);
+                    if (emotion < 0) {
+                        throw new IllegalArgumentException("Lexicon line " + lineNumber + " has unknown emotion " + fields[1]);
+                    }
+                    weight = parseWeight(fields, lineNumber);
+                }
+            }
+
+            int node = 0;
+            String word = fields[0];
+            for (int i = 0; i < word.length(); i++) {
+                long key = edgeKey(node, fold(word.charAt(i)));
+                Integer next = edges.get(key);
+                if (next == null) {
+                    next = nodeEntries.size();
+                    nodeEntries.add(-1);
+                    edges.put(key, next);
+                }
+                node = next;
+            }
+
+            // A repeated word keeps its last definition
+            int entry = nodeEntries.get(node);
+            if (entry < 0) {
+                entry = kinds.size();
+                nodeEntries.set(node, entry);
+                kinds.add(kind);
+                emotions.add(emotion);
+                weights.add(weight);
+            } else {
+                kinds.set(entry, kind);
+                emotions.set(entry, emotion);
+                weights.set(entry, weight);
+            }
+        }
+
+        // Load factor at most 0.5 keeps probe sequences short
+        int capacity = Integer.highestOneBit(Math.max(2, edges.size() * 2 - 1)) << 1;
+        long[] edgeKeys = new long[capacity];
+        int[] edgeTargets = new int[capacity];
+        Arrays.fill(edgeKeys, EMPTY);
+        int shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        edges.forEach((key, target) -> {
+            int slot = slot(key, shift);
+            while (edgeKeys[slot] != EMPTY) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            edgeKeys[slot] = key;
+            edgeTargets[slot] = target;
+        });
+
+        byte[] kindArray = new byte[kinds.size()];
+        int[] emotionArray = new int[kinds.size()];
+        double[] weightArray = new double[kinds.size()];
+        for (int i = 0; i < kinds.size(); i++) {
+            kindArray[i] = kinds.get(i);
+            emotionArray[i] = emotions.get(i);
+            weightArray[i] = weights.get(i);
+        }
+
+        return new EmotionLexicon(edgeKeys, edgeTargets,
+                nodeEntries.stream().mapToInt(Integer::intValue).toArray(),
+                kindArray, emotionArray, weightArray);
+    }
+
+    /**
+     * Node reached from {@code node} by the already folded character, or -1.
+     */
+    public int child(int node, char c) {
+        long key = edgeKey(node, c);
+        int slot = slot(key, edgeShift);
+        while (true) {
+            long candidate = edgeKeys[slot];
+            if (candidate == key) {
+                return edgeTargets[slot];
+            }
+            if (candidate == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & (edgeKeys.length - 1);
+        }
+    }
+
+    /**
+     * Entry of the word ending at {@code node}, or -1.
+     */
+    public int entry(int node) {
+        return nodeEntries[node];
+    }
+
+    public byte kind(int entry) {
+        return kinds[entry];
+    }
+
+    public int emotion(int entry) {
+        return emotions[entry];
+    }
+
+    public double weight(int entry) {
+        return weights[entry];
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    /**
+     * Lowercases one character the way lexicon words are stored.
+     */
+    public static char fold(char c) {
+        if (c == '’') {
+            return '\'';
+        }
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    static int emotionIndex(String emotion) {
+        for (int i = 0; i < EMOTIONS.length; i++) {
+            if (EMOTIONS[i].equals(emotion)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static double parseWeight(String[] fields, int lineNumber) {
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("Lexicon line " + lineNumber + " has no weight");
+        }
+        return Double.parseDouble(fields[2]);
+    }
+
+    private static long edgeKey(int node, char c) {
+        return ((long) node << 16) | c;
+    }
+
+    private static int slot(long key, int shift) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+}
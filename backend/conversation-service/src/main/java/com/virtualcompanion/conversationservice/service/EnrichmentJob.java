@@ -0,0 +1,10 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class EnrichmentJob {
+
+    private Conversation conversation;
+    private Message userMessage;
+    private Message assistantMessage;
+    private MessageOptions options;
+    private boolean cached;
+}
@@ -0,0 +1,54 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class GenerationMetrics {
+
+    public static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry meterRegistry;
+    private final BrownoutController brownoutController;
+
+    /**
+     * Starts observing one model call. {@code enqueuedAtNanos} is when the request entered the
+     * service, so time spent waiting before the provider is called shows up as queue wait.
+     */
+    public GenerationObservation start(String provider, String model, String tier, long enqueuedAtNanos) {
+        Tags tags = Tags.of(
+                "provider", provider != null ? provider : UNKNOWN,
+                "model", model != null ? model : UNKNOWN,
+                "tier", tier != null ? tier.toLowerCase(Locale.ROOT) : UNKNOWN);
+
+        return new GenerationObservation(
+                timer("ai.generation.queue.wait", "Time between request arrival and the model call", tags),
+                timer("ai.generation.ttft", "Time from the model call to the first token", tags),
+                timer("ai.generation.inter.token", "Gap between consecutive streamed tokens", tags),
+                timer("ai.generation.model.time", "Time from the model call to the last token", tags),
+                summary("ai.generation.tokens.per.second", "Decode rate after the first token", null, tags),
+                summary("ai.generation.tokens", "Prompt tokens per call", "tokens", tags.and("kind", "prompt")),
+                summary("ai.generation.tokens", "Completion tokens per call", "tokens", tags.and("kind", "completion")),
+                meterRegistry,
+                tags,
+                enqueuedAtNanos,
+                brownoutController::recordTimeToFirstToken);
+    }
+
+    public static String tierOf(Object accessLevel) {
+        return accessLevel != null ? accessLevel.toString() : UNKNOWN;
+    }
+
+    private Timer timer(String name, String description, Tags tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary summary(String name, String description, String baseUnit, Tags tags) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit(baseUnit)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,121 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Timing of a single generation, from arrival to last token. Tokens of one stream are
+ * delivered sequentially, so no synchronization is needed; the observation records once.
+ */
+public class GenerationObservation {
+
+    private final Timer queueWait;
+    private final Timer timeToFirstToken;
+    private final Timer interTokenGap;
+    private final Timer modelTime;
+    private final DistributionSummary tokensPerSecond;
+    private final DistributionSummary promptTokens;
+    private final DistributionSummary completionTokens;
+    private final MeterRegistry meterRegistry;
+    private final Tags tags;
+    private final LongConsumer firstTokenListener;
+
+    private final long enqueuedAt;
+    private volatile long modelStartedAt;
+    private volatile long firstTokenAt;
+    private volatile long lastTokenAt;
+    private volatile int tokenCount;
+    private volatile boolean finished;
+
+    GenerationObservation(Timer queueWait, Timer timeToFirstToken, Timer interTokenGap, Timer modelTime,
+                          DistributionSummary tokensPerSecond, DistributionSummary promptTokens,
+                          DistributionSummary completionTokens, MeterRegistry meterRegistry, Tags tags,
+                          long enqueuedAt, LongConsumer firstTokenListener) {
+        this.queueWait = queueWait;
+        this.timeToFirstToken = timeToFirstToken;
+        this.interTokenGap = interTokenGap;
+        this.modelTime = modelTime;
+        this.tokensPerSecond = tokensPerSecond;
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.meterRegistry = meterRegistry;
+        this.tags = tags;
+        this.enqueuedAt = enqueuedAt;
+        this.firstTokenListener = firstTokenListener;
+    }
+
+    /**
+     * The request leaves the queue and is sent to the provider.
+     */
+    public void modelStarted() {
+        modelStartedAt = System.nanoTime();
+        queueWait.record(modelStartedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+    }
+
+    public void onToken() {
+        long now = System.nanoTime();
+        if (tokenCount++ == 0) {
+            firstTokenAt = now;
+            timeToFirstToken.record(now - startedAt(), TimeUnit.NANOSECONDS);
+            // What the user waited, queueing included
+            firstTokenListener.accept(now - enqueuedAt);
+        } else {
+            interTokenGap.record(now - lastTokenAt, TimeUnit.NANOSECONDS);
+        }
+        lastTokenAt = now;
+    }
+
+    /**
+     * Records the totals. Counts reported by the provider win; otherwise streamed chunks
+     * stand in for completion tokens and the prompt count is left out.
+     */
+    public void complete(Integer promptTokenCount, Integer completionTokenCount) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        long end = tokenCount > 0 ? lastTokenAt : System.nanoTime();
+        modelTime.record(end - startedAt(), TimeUnit.NANOSECONDS);
+
+        int completion = completionTokenCount != null ? completionTokenCount : tokenCount;
+        if (promptTokenCount != null) {
+            promptTokens.record(promptTokenCount);
+        }
+        completionTokens.record(completion);
+
+        long decodeNanos = lastTokenAt - firstTokenAt;
+        if (tokenCount > 1 && decodeNanos > 0) {
+            tokensPerSecond.record((completion - 1) / (decodeNanos / 1e9));
+        }
+
+        meterRegistry.counter("ai.generation.requests", tags.and("outcome", "success")).increment();
+    }
+
+    public void fail(Throwable error) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        meterRegistry.counter("ai.generation.requests",
+                tags.and("outcome", "error", "exception", error.getClass().getSimpleName())).increment();
+    }
+
+    public long queueWaitNanos() {
+        return modelStartedAt != 0 ? modelStartedAt - enqueuedAt : 0;
+    }
+
+    public long timeToFirstTokenNanos() {
+        return tokenCount > 0 ? firstTokenAt - startedAt() : 0;
+    }
+
+    public long modelNanos() {
+        return tokenCount > 0 ? lastTokenAt - startedAt() : 0;
+    }
+
+    public int tokenCount() {
+        return tokenCount;
+    }
+
+    private long startedAt() {
+        return modelStartedAt != 0 ? modelStartedAt : enqueuedAt;
+    }
+}
@@ -0,0 +1,499 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Hierarchical navigable small world graph over int8-quantized vectors, scored by inner
+ * product (cosine for the unit vectors {@link EmbeddingService} produces).
+ * <p>
+ * Each vector is stored as 8-bit codes with one float scale ({@code max |v| / 127}), a quarter
+ * of its float size. Queries stay in float and are scored against the codes directly, so only
+ * stored vectors lose precision; callers that need exact order rerank the top candidates.
+ * <p>
+ * Removal is logical: removed nodes keep routing searches but are never returned, and a
+ * replaced vector is a new node. {@link #compactIfNeeded} rebuilds the graph from the live nodes
+ * once the removed ones pile up, and snapshots leave them out. Readers share a lock, writers are
+ * exclusive; an index holds one user/character pair, so writers are rare and short.
+ */
+public class HnswIndex {
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random = new Random(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<UUID, Integer> positions = new HashMap<>();
+    private int entryPoint = -1;
+    private int topLevel = -1;
+    private int live;
+
+    public HnswIndex(int dimension, int m, int efConstruction) {
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelFactor = 1.0 / Math.log(m);
+    }
+
+    /**
+     * Inserts the vector, replacing the one already stored under {@code id}.
+     */
+    public void add(UUID id, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " dimensions, got " + vector.length);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            insertLocked(new Node(id, vector, randomLevel()), vector);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(UUID id) {
+        lock.writeLock().lock();
+        try {
+            return removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the graph from the live nodes when the removed ones exceed
+     * {@code maxRemovedRatio} of them; returns whether it did. Nodes keep their codes and level,
+     * only their links are recomputed.
+     */
+    public boolean compactIfNeeded(double maxRemovedRatio) {
+        lock.writeLock().lock();
+        try {
+            int removed = nodes.size() - live;
+            if (removed == 0 || removed <= live * maxRemovedRatio) {
+                return false;
+            }
+
+            List<Node> kept = new ArrayList<>(live);
+            for (Node node : nodes) {
+                if (!node.removed) {
+                    kept.add(node);
+                }
+            }
+            nodes.clear();
+            positions.clear();
+            entryPoint = -1;
+            topLevel = -1;
+            live = 0;
+            for (Node node : kept) {
+                insertLocked(new Node(node.id, node.codes, node.scale, node.level), node.decode());
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Up to {@code k} stored vectors closest to {@code query}, best first. {@code ef} is the
+     * candidate list size: higher finds more of the true neighbours at a higher cost.
+     */
+    public List<Neighbour> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || live == 0) {
+                return List.of();
+            }
+
+            int current = entryPoint;
+            for (int layer = topLevel; layer > 0; layer--) {
+                current = greedyClosest(query, current, layer);
+            }
+
+            List<Neighbour> results = new ArrayList<>(k);
+            for (Candidate candidate : searchLayer(query, current, Math.max(ef, k), 0)) {
+                Node node = nodes.get(candidate.node);
+                if (!node.removed) {
+                    results.add(new Neighbour(node.id, candidate.similarity));
+                    if (results.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(UUID id) {
+        lock.readLock().lock();
+        try {
+            return positions.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    // ========== Graph ==========
+
+    private void insertLocked(Node node, float[] vector) {
+        int position = nodes.size();
+        nodes.add(node);
+        positions.put(node.id, position);
+        live++;
+
+        if (entryPoint < 0) {
+            entryPoint = position;
+            topLevel = node.level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int layer = topLevel; layer > node.level; layer--) {
+            current = greedyClosest(vector, current, layer);
+        }
+        for (int layer = Math.min(topLevel, node.level); layer >= 0; layer--) {
+            List<Candidate> candidates = searchLayer(vector, current, efConstruction, layer);
+            int[] neighbours = selectNeighbours(candidates, m);
+            node.links[layer] = neighbours;
+            for (int neighbour : neighbours) {
+                link(neighbour, position, layer);
+            }
+            current = candidates.get(0).node;
+        }
+
+        if (node.level > topLevel) {
+            topLevel = node.level;
+            entryPoint = position;
+        }
+    }
+
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        float best = score(query, nodes.get(current));
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : nodes.get(current).links[layer]) {
+                float similarity = score(query, nodes.get(neighbour));
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer; returns up to {@code ef} nodes, most similar first.
+     */
+    private List<Candidate> searchLayer(float[] query, int entry, int ef, int layer) {
+        BitSet visited = new BitSet(nodes.size());
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.similarity).reversed());
+        PriorityQueue<Candidate> found = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.similarity));
+
+        Candidate start = new Candidate(entry, score(query, nodes.get(entry)));
+        visited.set(entry);
+        frontier.add(start);
+        found.add(start);
+
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (found.size() >= ef && closest.similarity < found.peek().similarity) {
+                break;
+            }
+            for (int neighbour : nodes.get(closest.node).links[layer]) {
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float similarity = score(query, nodes.get(neighbour));
+                if (found.size() < ef || similarity > found.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    frontier.add(candidate);
+                    found.add(candidate);
+                    if (found.size() > ef) {
+                        found.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> ordered = new ArrayList<>(found);
+        ordered.sort(Comparator.comparingDouble((Candidate c) -> c.similarity).reversed());
+        return ordered;
+    }
+
+    /**
+     * Neighbour selection heuristic: keep a candidate only if it is closer to the base than to
+     * every neighbour already kept, so links spread in different directions; fill up with the
+     * closest of the rest.
+     */
+    private int[] selectNeighbours(List<Candidate> candidates, int limit) {
+        List<Integer> selected = new ArrayList<>(limit);
+        List<Integer> skipped = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() == limit) {
+                break;
+            }
+            Node node = nodes.get(candidate.node);
+            boolean diverse = true;
+            for (int kept : selected) {
+                if (similarity(node, nodes.get(kept)) > candidate.similarity) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : skipped).add(candidate.node);
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < limit; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void link(int from, int to, int layer) {
+        Node node = nodes.get(from);
+        int[] links = node.links[layer];
+        int capacity = layer == 0 ? 2 * m : m;
+        int[] extended = Arrays.copyOf(links, links.length + 1);
+        extended[links.length] = to;
+
+        if (extended.length <= capacity) {
+            node.links[layer] = extended;
+            return;
+        }
+
+        List<Candidate> candidates = new ArrayList<>(extended.length);
+        for (int neighbour : extended) {
+            candidates.add(new Candidate(neighbour, similarity(node, nodes.get(neighbour))));
+        }
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.similarity).reversed());
+        node.links[layer] = selectNeighbours(candidates, capacity);
+    }
+
+    private boolean removeLocked(UUID id) {
+        Integer position = positions.remove(id);
+        if (position == null) {
+            return false;
+        }
+        nodes.get(position).removed = true;
+        live--;
+        return true;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1.0 - random.nextDouble()) * levelFactor);
+    }
+
+    // ========== Quantized scoring ==========
+
+    private static float score(float[] query, Node node) {
+        float sum = 0;
+        byte[] codes = node.codes;
+        for (int i = 0; i < codes.length; i++) {
+            sum += query[i] * codes[i];
+        }
+        return sum * node.scale;
+    }
+
+    private static float similarity(Node a, Node b) {
+        int sum = 0;
+        for (int i = 0; i < a.codes.length; i++) {
+            sum += a.codes[i] * b.codes[i];
+        }
+        return sum * a.scale * b.scale;
+    }
+
+    // ========== Snapshot ==========
+
+    /**
+     * Writes the live nodes only, renumbered, with their links to removed nodes dropped. When
+     * the entry point was removed, the highest live node takes its place.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            int[] renumbered = new int[nodes.size()];
+            int liveEntry = -1;
+            int count = 0;
+            for (int position = 0; position < nodes.size(); position++) {
+                Node node = nodes.get(position);
+                if (node.removed) {
+                    renumbered[position] = -1;
+                    continue;
+                }
+                renumbered[position] = count++;
+                if (liveEntry < 0 || node.level > nodes.get(liveEntry).level) {
+                    liveEntry = position;
+                }
+            }
+            if (entryPoint >= 0 && !nodes.get(entryPoint).removed) {
+                liveEntry = entryPoint;
+            }
+
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(dimension);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(liveEntry < 0 ? -1 : renumbered[liveEntry]);
+            out.writeInt(liveEntry < 0 ? -1 : nodes.get(liveEntry).level);
+            out.writeInt(count);
+            for (Node node : nodes) {
+                if (node.removed) {
+                    continue;
+                }
+                out.writeLong(node.id.getMostSignificantBits());
+                out.writeLong(node.id.getLeastSignificantBits());
+                out.writeBoolean(false);
+                out.writeFloat(node.scale);
+                out.write(node.codes);
+                out.writeInt(node.level);
+                for (int[] links : node.links) {
+                    int kept = 0;
+                    for (int link : links) {
+                        if (renumbered[link] >= 0) {
+                            kept++;
+                        }
+                    }
+                    out.writeInt(kept);
+                    for (int link : links) {
+                        if (renumbered[link] >= 0) {
+                            out.writeInt(renumbered[link]);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static HnswIndex readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported index snapshot version " + version);
+        }
+        HnswIndex index = new HnswIndex(in.readInt(), in.readInt(), in.readInt());
+        index.entryPoint = in.readInt();
+        index.topLevel = in.readInt();
+
+        int count = in.readInt();
+        for (int position = 0; position < count; position++) {
+            UUID id = new UUID(in.readLong(), in.readLong());
+            boolean removed = in.readBoolean();
+            float scale = in.readFloat();
+            byte[] codes = new byte[index.dimension];
+            in.readFully(codes);
+            int level = in.readInt();
+
+            Node node = new Node(id, codes, scale, level);
+            node.removed = removed;
+            for (int layer = 0; layer <= level; layer++) {
+                int[] links = new int[in.readInt()];
+                for (int i = 0; i < links.length; i++) {
+                    links[i] = in.readInt();
+                }
+                node.links[layer] = links;
+            }
+
+            index.nodes.add(node);
+            if (!removed) {
+                index.positions.put(id, position);
+                index.live++;
+            }
+        }
+        return index;
+    }
+
+    public static final class Neighbour {
+
+        private final UUID id;
+        private final float similarity;
+
+        Neighbour(UUID id, float similarity) {
+            this.id = id;
+            this.similarity = similarity;
+        }
+
+        public UUID id() {
+            return id;
+        }
+
+        public float similarity() {
+            return similarity;
+        }
+    }
+
+    private static final class Candidate {
+
+        private final int node;
+        private final float similarity;
+
+        Candidate(int node, float similarity) {
+            this.node = node;
+            this.similarity = similarity;
+        }
+    }
+
+    private static final class Node {
+
+        private final UUID id;
+        private final byte[] codes;
+        private final float scale;
+        private final int level;
+        private final int[][] links;
+        private boolean removed;
+
+        Node(UUID id, float[] vector, int level) {
+            this.id = id;
+            this.level = level;
+            this.links = new int[level + 1][0];
+
+            float max = 0;
+            for (float v : vector) {
+                max = Math.max(max, Math.abs(v));
+            }
+            this.scale = max > 0 ? max / 127f : 1f;
+            this.codes = new byte[vector.length];
+            for (int i = 0; i < vector.length; i++) {
+                codes[i] = (byte) Math.round(vector[i] / scale);
+            }
+        }
+
+        Node(UUID id, byte[] codes, float scale, int level) {
+            this.id = id;
+            this.codes = codes;
+            this.scale = scale;
+            this.level = level;
+            this.links = new int[level + 1][0];
+        }
+
+        float[] decode() {
+            float[] vector = new float[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                vector[i] = codes[i] * scale;
+            }
+            return vector;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Memory retrieval combining the lexical ({@link MemoryLexicalIndex}) and vector
+ * ({@link MemoryVectorIndex}, or the configured {@link VectorStore} while it loads) rankings
+ * of a user/character pair.
+ * <p>
+ * The lexical index is asked first. Matches covering at least {@code early-exit-coverage} of
+ * the query terms the memories know are confident; when there are some, but no more than the
+ * limit, the query names something only those memories state: they are returned and the query
+ * is neither embedded nor searched by vector. A common word matching many memories does not
+ * qualify. Otherwise both rankings are taken {@code candidates} times
+ * deeper than needed and merged with reciprocal rank fusion, {@code 1 / (rrf-k + rank)} summed
+ * over the rankings, so a memory found by both beats one found by either.
+ * <p>
+ * Also the single entry point to index or drop a memory in both indexes and the vector store,
+ * which all hold the {@link MemoryTier#HOT} memories only.
+ */
+public class HybridMemoryRetriever {
+
+    private final MemoryLexicalIndex lexicalIndex;
+    private final MemoryVectorIndex vectorIndex;
+    private final VectorStore vectorStore;
+    private final EmbeddingService embeddingService;
+    private final ConversationMemoryRepository memoryRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${conversation.memory.hybrid.candidates:4}")
+    private int candidateFactor;
+
+    @Value("${conversation.memory.hybrid.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${conversation.memory.hybrid.early-exit-coverage:0.9}")
+    private double earlyExitCoverage;
+
+    private Timer lexicalTimer;
+    private Timer hybridTimer;
+    private Timer vectorTimer;
+
+    @PostConstruct
+    void init() {
+        lexicalTimer = retrievalTimer("lexical");
+        hybridTimer = retrievalTimer("hybrid");
+        vectorTimer = retrievalTimer("vector");
+    }
+
+    public void add(ConversationMemory memory) {
+        vectorIndex.add(memory);
+        lexicalIndex.add(memory);
+        if (memory.getId() == null || memory.getEmbedding() == null
+                || (memory.getTier() != null && memory.getTier() != MemoryTier.HOT)) {
+            return;
+        }
+        try {
+            vectorStore.upsert(VectorRecord.builder()
+                    .id(memory.getId())
+                    .userId(memory.getUserId())
+                    .characterId(memory.getCharacterId())
+                    .vector(memory.getEmbedding())
+                    .build());
+        } catch (VectorStoreException e) {
+            // The in-process indexes have it; the store catches up when the memory is tiered again
+            log.warn("Could not store vector of memory {} in {}: {}", memory.getId(), vectorStore.name(), e.getMessage());
+        }
+    }
+
+    public void remove(ConversationMemory memory) {
+        remove(memory.getUserId(), memory.getCharacterId(), memory.getId());
+    }
+
+    public void remove(UUID userId, UUID characterId, UUID memoryId) {
+        vectorIndex.remove(userId, characterId, memoryId);
+        lexicalIndex.remove(userId, characterId, memoryId);
+        try {
+            vectorStore.delete(List.of(memoryId));
+        } catch (VectorStoreException e) {
+            // Retrieval drops rows that are no longer HOT, so a stale vector only costs a candidate
+            log.warn("Could not delete vector of memory {} from {}: {}", memoryId, vectorStore.name(), e.getMessage());
+        }
+    }
+
+    public List<ConversationMemory> retrieve(UUID userId, UUID characterId, String query, int limit) {
+        long start = System.nanoTime();
+        int depth = limit * Math.max(2, candidateFactor);
+
+        Optional<List<Bm25Index.Hit>> lexical = lexicalIndex.search(userId, characterId, query, depth);
+        List<Bm25Index.Hit> hits = lexical.orElse(List.of());
+
+        List<UUID> confident = hits.stream()
+                .filter(hit -> hit.coverage() >= earlyExitCoverage)
+                .map(Bm25Index.Hit::id)
+                .collect(Collectors.toList());
+        if (!confident.isEmpty() && confident.size() <= limit) {
+            List<ConversationMemory> memories = load(confident, Map.of());
+            lexicalTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return memories;
+        }
+
+        List<ConversationMemory> vector;
+        try {
+            float[] embedding = embeddingService.generateEmbedding(query);
+            vector = vectorIndex.findSimilar(userId, characterId, embedding, depth)
+                    .orElseGet(() -> searchStore(userId, characterId, embedding, depth));
+        } catch (EmbeddingException | VectorStoreException e) {
+            if (lexical.isEmpty()) {
+                throw e;
+            }
+            // Without a vector ranking the lexical one still answers
+            log.warn("Vector retrieval failed, retrieving memories lexically: {}", e.getMessage());
+            vector = List.of();
+        }
+
+        if (lexical.isEmpty()) {
+            List<ConversationMemory> memories = vector.stream().limit(limit).collect(Collectors.toList());
+            vectorTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return memories;
+        }
+
+        Map<UUID, ConversationMemory> loaded = vector.stream()
+                .collect(Collectors.toMap(ConversationMemory::getId, memory -> memory, (a, b) -> a));
+        List<UUID> fused = fuse(List.of(
+                vector.stream().map(ConversationMemory::getId).collect(Collectors.toList()),
+                hits.stream().map(Bm25Index.Hit::id).collect(Collectors.toList())), rrfK, limit);
+        List<ConversationMemory> memories = load(fused, loaded);
+        hybridTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return memories;
+    }
+
+    /**
+     * Reciprocal rank fusion: the {@code limit} ids with the highest sum of
+     * {@code 1 / (k + rank)} over the rankings they appear in, rank starting at 1.
+     */
+    public static List<UUID> fuse(List<List<UUID>> rankings, int k, int limit) {
+        Map<UUID, Double> scores = new LinkedHashMap<>();
+        for (List<UUID> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                scores.merge(ranking.get(rank), 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<UUID, Double>comparingByValue().reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private List<ConversationMemory> searchStore(UUID userId, UUID characterId, float[] embedding, int depth) {
+        List<UUID> ids = vectorStore.search(userId, characterId, embedding, depth).stream()
+                .map(VectorMatch::getId)
+                .collect(Collectors.toList());
+        return ids.isEmpty() ? List.of() : load(ids, Map.of());
+    }
+
+    /**
+     * The memories in the given order, reading from Postgres only those not loaded yet. Rows
+     * archived or demoted since they were indexed are left out.
+     */
+    private List<ConversationMemory> load(List<UUID> ids, Map<UUID, ConversationMemory> loaded) {
+        List<UUID> missing = ids.stream().filter(id -> !loaded.containsKey(id)).collect(Collectors.toList());
+        Map<UUID, ConversationMemory> byId = new HashMap<>(loaded);
+        if (!missing.isEmpty()) {
+            memoryRepository.findAllById(missing).forEach(memory -> byId.put(memory.getId(), memory));
+        }
+        return ids.stream()
+                .map(byId::get)
+                .filter(memory -> memory != null && (memory.getTier() == null || memory.getTier() == MemoryTier.HOT
+                        || loaded.containsKey(memory.getId())))
+                .collect(Collectors.toList());
+    }
+
+    private Timer retrievalTimer(String path) {
+        return Timer.builder("ai.memory.retrieval")
+                .description("Memory retrieval by path: lexical early exit, hybrid fusion, or vector only")
+                .tag("path", path)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
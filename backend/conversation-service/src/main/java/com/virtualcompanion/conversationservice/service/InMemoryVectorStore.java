@@ -0,0 +1,120 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * {@link VectorStore} held in process: one {@link HnswIndex} per user/character pair, plus
+ * the exact vectors to rerank the int8 graph candidates with.
+ * <p>
+ * Nothing survives a restart, so it suits tests and single-node deployments small enough for
+ * {@link MemoryVectorIndex} to carry retrieval on its own.
+ */
+public class InMemoryVectorStore implements VectorStore {
+
+    private final int dimension;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int oversample;
+
+    private final Map<String, HnswIndex> shards = new ConcurrentHashMap<>();
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    public InMemoryVectorStore(int dimension, int m, int efConstruction, int efSearch, int oversample) {
+        this.dimension = dimension;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.oversample = Math.max(1, oversample);
+    }
+
+    @Override
+    public void upsert(VectorRecord record) {
+        float[] vector = record.getVector();
+        if (vector == null || vector.length != dimension) {
+            throw new VectorStoreException("Expected a vector of " + dimension + " dimensions for " + record.getId());
+        }
+
+        String key = shardKey(record.getUserId(), record.getCharacterId());
+        Entry previous = entries.put(record.getId(), new Entry(key, vector.clone()));
+        if (previous != null && !previous.shard.equals(key)) {
+            HnswIndex shard = shards.get(previous.shard);
+            if (shard != null) {
+                shard.remove(record.getId());
+            }
+        }
+        shards.computeIfAbsent(key, k -> new HnswIndex(dimension, m, efConstruction)).add(record.getId(), vector);
+    }
+
+    @Override
+    public void upsertAll(List<VectorRecord> records) {
+        records.forEach(this::upsert);
+    }
+
+    @Override
+    public void delete(Collection<UUID> ids) {
+        for (UUID id : ids) {
+            Entry entry = entries.remove(id);
+            if (entry != null) {
+                HnswIndex shard = shards.get(entry.shard);
+                if (shard != null) {
+                    shard.remove(id);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<VectorMatch> search(UUID userId, UUID characterId, float[] query, int k) {
+        if (query.length != dimension) {
+            throw new VectorStoreException("Expected a query of " + dimension + " dimensions, got " + query.length);
+        }
+        HnswIndex shard = shards.get(shardKey(userId, characterId));
+        if (shard == null || k <= 0) {
+            return List.of();
+        }
+
+        int candidates = k * oversample;
+        return shard.search(query, candidates, Math.max(efSearch, candidates)).stream()
+                .map(neighbour -> {
+                    Entry entry = entries.get(neighbour.id());
+                    return entry != null ? VectorMatch.builder().id(neighbour.id()).similarity(dot(query, entry.vector)).build() : null;
+                })
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingDouble(VectorMatch::getSimilarity).reversed())
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+
+    @Override
+    public void close() {
+        shards.clear();
+        entries.clear();
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static String shardKey(UUID userId, UUID characterId) {
+        return userId + ":" + characterId;
+    }
+
+    private static final class Entry {
+
+        private final String shard;
+        private final float[] vector;
+
+        Entry(String shard, float[] vector) {
+            this.shard = shard;
+            this.vector = vector;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Admission scheduler in front of every model provider.
+ * <p>
+ * Each provider has a concurrency cap. Waiting requests are picked by weighted fair queuing
+ * across tiers (stride scheduling: the tier with the lowest virtual pass goes next and advances
+ * by 1/weight), then by deficit round robin across the users of that tier, so a single user
+ * flooding a tier only delays their own requests. Background work (summaries, consolidation)
+ * is its own tier with the lowest weight and a separate in-flight cap. Requests still waiting
+ * when their deadline expires are dropped instead of being sent to a model nobody waits for.
+ */
+public class LlmRequestScheduler {
+
+    private static final long STRIDE = 1L << 20;
+    private static final UUID SYSTEM_USER = new UUID(0L, 0L);
+
+    private static final int QUEUED = 0;
+    private static final int GRANTED = 1;
+    private static final int DONE = 2;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.scheduler.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.scheduler.max-concurrent.openai:32}")
+    private int openAiMaxConcurrent;
+
+    @Value("${ai.scheduler.max-concurrent.ollama:4}")
+    private int ollamaMaxConcurrent;
+
+    @Value("${ai.scheduler.max-concurrent.default:8}")
+    private int defaultMaxConcurrent;
+
+    @Value("${ai.scheduler.max-queue-size:500}")
+    private int maxQueueSize;
+
+    @Value("${ai.scheduler.user-quantum:1000}")
+    private int userQuantum;
+
+    @Value("${ai.scheduler.weights.vip:16}")
+    private int vipWeight;
+
+    @Value("${ai.scheduler.weights.premium:8}")
+    private int premiumWeight;
+
+    @Value("${ai.scheduler.weights.standard:4}")
+    private int standardWeight;
+
+    @Value("${ai.scheduler.weights.free:2}")
+    private int freeWeight;
+
+    @Value("${ai.scheduler.weights.background:1}")
+    private int backgroundWeight;
+
+    @Value("${ai.scheduler.background.max-concurrent:1}")
+    private int backgroundMaxConcurrent;
+
+    @Value("${ai.scheduler.deadline.interactive:20s}")
+    private Duration interactiveDeadline;
+
+    @Value("${ai.scheduler.deadline.background:10m}")
+    private Duration backgroundDeadline;
+
+    private final Map<String, ProviderQueue> providers = new ConcurrentHashMap<>();
+    private final Map<SchedulingTier, Long> strides = new EnumMap<>(SchedulingTier.class);
+
+    @PostConstruct
+    void init() {
+        strides.put(SchedulingTier.VIP, STRIDE / Math.max(1, vipWeight));
+        strides.put(SchedulingTier.PREMIUM, STRIDE / Math.max(1, premiumWeight));
+        strides.put(SchedulingTier.STANDARD, STRIDE / Math.max(1, standardWeight));
+        strides.put(SchedulingTier.FREE, STRIDE / Math.max(1, freeWeight));
+        strides.put(SchedulingTier.BACKGROUND, STRIDE / Math.max(1, backgroundWeight));
+    }
+
+    /**
+     * Runs {@code work} once the request is admitted; the permit is held until it terminates.
+     *
+     * @param cost estimated tokens, used by the per-user deficit round robin
+     */
+    public <T> Mono<T> schedule(String provider, UUID userId, SchedulingTier tier, int cost, Mono<T> work) {
+        if (!enabled) {
+            return work;
+        }
+        return acquire(provider, userId, tier, cost)
+                .flatMap(ticket -> work.doFinally(signal -> ticket.release()));
+    }
+
+    public <T> Flux<T> scheduleMany(String provider, UUID userId, SchedulingTier tier, int cost, Flux<T> work) {
+        if (!enabled) {
+            return work;
+        }
+        return acquire(provider, userId, tier, cost)
+                .flatMapMany(ticket -> work.doFinally(signal -> ticket.release()));
+    }
+
+    /**
+     * Requests waiting for admission across all providers.
+     */
+    public int queueDepth() {
+        int depth = 0;
+        for (ProviderQueue queue : providers.values()) {
+            depth += queue.depth();
+        }
+        return depth;
+    }
+
+    private Mono<Ticket> acquire(String provider, UUID userId, SchedulingTier tier, int cost) {
+        ProviderQueue queue = providers.computeIfAbsent(provider, ProviderQueue::new);
+        Duration deadline = tier == SchedulingTier.BACKGROUND ? backgroundDeadline : interactiveDeadline;
+
+        return Mono.<Ticket>create(sink -> {
+                    Ticket ticket = new Ticket(queue, userId != null ? userId : SYSTEM_USER, tier,
+                            Math.max(1, cost), System.nanoTime() + deadline.toNanos(), sink);
+                    sink.onCancel(ticket::cancel);
+                    queue.enqueue(ticket);
+                })
+                .timeout(deadline, Mono.defer(() -> Mono.error(dropped(provider, tier, "deadline"))));
+    }
+
+    private ModelOverloadedException dropped(String provider, SchedulingTier tier, String reason) {
+        meterRegistry.counter("ai.scheduler.dropped",
+                "provider", provider, "tier", tier.name().toLowerCase(Locale.ROOT), "reason", reason).increment();
+        return new ModelOverloadedException("Model " + provider + " is overloaded (" + reason + ")");
+    }
+
+    private int maxConcurrentFor(String provider) {
+        return switch (provider) {
+            case "openai" -> openAiMaxConcurrent;
+            case "ollama" -> ollamaMaxConcurrent;
+            default -> defaultMaxConcurrent;
+        };
+    }
+
+    /**
+     * Waiting requests and in-flight permits of one provider. All state is guarded by the
+     * queue's monitor; sinks are completed outside of it.
+     */
+    private final class ProviderQueue {
+
+        private final String provider;
+        private final int maxConcurrent;
+        private final Map<SchedulingTier, TierQueue> tiers = new EnumMap<>(SchedulingTier.class);
+
+        private int inFlight;
+        private int backgroundInFlight;
+        private int waiting;
+        private long virtualTime;
+
+        ProviderQueue(String provider) {
+            this.provider = provider;
+            this.maxConcurrent = maxConcurrentFor(provider);
+            for (SchedulingTier tier : SchedulingTier.values()) {
+                tiers.put(tier, new TierQueue());
+            }
+
+            Gauge.builder("ai.scheduler.queue.depth", this, ProviderQueue::depth)
+                    .tag("provider", provider)
+                    .register(meterRegistry);
+            Gauge.builder("ai.scheduler.in.flight", this, ProviderQueue::active)
+                    .tag("provider", provider)
+                    .register(meterRegistry);
+        }
+
+        void enqueue(Ticket ticket) {
+            boolean accepted;
+            synchronized (this) {
+                accepted = waiting < maxQueueSize;
+                if (accepted) {
+                    TierQueue tierQueue = tiers.get(ticket.tier);
+                    // An idle tier rejoins at the current virtual time instead of cashing in banked credit
+                    if (tierQueue.isEmpty()) {
+                        tierQueue.pass = Math.max(tierQueue.pass, virtualTime);
+                    }
+                    tierQueue.add(ticket);
+                    waiting++;
+                }
+            }
+
+            if (accepted) {
+                dispatch();
+            } else if (ticket.state.compareAndSet(QUEUED, DONE)) {
+                ticket.sink.error(dropped(provider, ticket.tier, "queue_full"));
+            }
+        }
+
+        /**
+         * Purges a request cancelled or timed out while waiting, so it stops counting against
+         * the queue size and depth right away instead of when a worker reaches it.
+         */
+        void abandon(Ticket ticket) {
+            synchronized (this) {
+                if (tiers.get(ticket.tier).remove(ticket)) {
+                    waiting--;
+                }
+            }
+        }
+
+        void release(Ticket ticket) {
+            synchronized (this) {
+                inFlight--;
+                if (ticket.tier == SchedulingTier.BACKGROUND) {
+                    backgroundInFlight--;
+                }
+            }
+            dispatch();
+        }
+
+        private void dispatch() {
+            List<Ticket> granted = new ArrayList<>();
+            List<Ticket> expired = new ArrayList<>();
+
+            synchronized (this) {
+                long now = System.nanoTime();
+                while (inFlight < maxConcurrent) {
+                    Ticket next = poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (now - next.deadline > 0) {
+                        if (next.state.compareAndSet(QUEUED, DONE)) {
+                            expired.add(next);
+                        }
+                        continue;
+                    }
+                    if (!next.state.compareAndSet(QUEUED, GRANTED)) {
+                        continue;
+                    }
+
+                    inFlight++;
+                    if (next.tier == SchedulingTier.BACKGROUND) {
+                        backgroundInFlight++;
+                    }
+                    granted.add(next);
+                }
+            }
+
+            for (Ticket ticket : expired) {
+                ticket.sink.error(dropped(provider, ticket.tier, "deadline"));
+            }
+            for (Ticket ticket : granted) {
+                Timer.builder("ai.scheduler.queue.time")
+                        .description("Time a model request waited for admission")
+                        .tags("provider", provider, "tier", ticket.tier.name().toLowerCase(Locale.ROOT))
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+                ticket.sink.success(ticket);
+            }
+        }
+
+        // Weighted fair queuing across tiers: lowest pass first
+        private Ticket poll() {
+            while (true) {
+                TierQueue best = null;
+                SchedulingTier bestTier = null;
+                for (Map.Entry<SchedulingTier, TierQueue> entry : tiers.entrySet()) {
+                    TierQueue candidate = entry.getValue();
+                    if (candidate.isEmpty()) {
+                        continue;
+                    }
+                    if (entry.getKey() == SchedulingTier.BACKGROUND && backgroundInFlight >= backgroundMaxConcurrent) {
+                        continue;
+                    }
+                    if (best == null || candidate.pass < best.pass) {
+                        best = candidate;
+                        bestTier = entry.getKey();
+                    }
+                }
+                if (best == null) {
+                    return null;
+                }
+
+                int before = best.size;
+                Ticket ticket = best.poll();
+                waiting -= before - best.size;
+                if (ticket != null) {
+                    virtualTime = best.pass;
+                    best.pass += strides.get(bestTier);
+                    return ticket;
+                }
+            }
+        }
+
+        private synchronized int depth() {
+            return waiting;
+        }
+
+        private synchronized int active() {
+            return inFlight;
+        }
+    }
+
+    /**
+     * Deficit round robin across the users of one tier.
+     */
+    private final class TierQueue {
+
+        private final Map<UUID, UserQueue> users = new HashMap<>();
+        private final ArrayDeque<UserQueue> active = new ArrayDeque<>();
+        private long pass;
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void add(Ticket ticket) {
+            UserQueue userQueue = users.get(ticket.userId);
+            if (userQueue == null) {
+                userQueue = new UserQueue(ticket.userId);
+                users.put(ticket.userId, userQueue);
+                active.addLast(userQueue);
+            }
+            userQueue.tickets.addLast(ticket);
+            size++;
+        }
+
+        Ticket poll() {
+            while (!active.isEmpty()) {
+                UserQueue userQueue = active.peekFirst();
+                Ticket head = userQueue.tickets.peekFirst();
+
+                // Requests cancelled before they were queued, or while being purged, are skipped here
+                if (head.state.get() != QUEUED) {
+                    userQueue.tickets.pollFirst();
+                    size--;
+                    retireIfEmpty(userQueue);
+                    continue;
+                }
+
+                if (userQueue.deficit < head.cost) {
+                    userQueue.deficit += userQuantum;
+                    active.addLast(active.pollFirst());
+                    continue;
+                }
+
+                userQueue.tickets.pollFirst();
+                userQueue.deficit -= head.cost;
+                size--;
+                retireIfEmpty(userQueue);
+                return head;
+            }
+            return null;
+        }
+
+        boolean remove(Ticket ticket) {
+            UserQueue userQueue = users.get(ticket.userId);
+            if (userQueue == null || !userQueue.tickets.remove(ticket)) {
+                return false;
+            }
+            size--;
+            if (userQueue.tickets.isEmpty()) {
+                active.remove(userQueue);
+                users.remove(userQueue.userId);
+            }
+            return true;
+        }
+
+        private void retireIfEmpty(UserQueue userQueue) {
+            if (userQueue.tickets.isEmpty()) {
+                active.pollFirst();
+                users.remove(userQueue.userId);
+            }
+        }
+    }
+
+    private static final class UserQueue {
+
+        private final UUID userId;
+        private final ArrayDeque<Ticket> tickets = new ArrayDeque<>();
+        private long deficit;
+
+        UserQueue(UUID userId) {
+            this.userId = userId;
+        }
+    }
+
+    private static final class Ticket {
+
+        private final ProviderQueue queue;
+        private final UUID userId;
+        private final SchedulingTier tier;
+        private final int cost;
+        private final long enqueuedAt = System.nanoTime();
+        private final long deadline;
+        private final MonoSink<Ticket> sink;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        Ticket(ProviderQueue queue, UUID userId, SchedulingTier tier, int cost, long deadline, MonoSink<Ticket> sink) {
+            this.queue = queue;
+            this.userId = userId;
+            this.tier = tier;
+            this.cost = cost;
+            this.deadline = deadline;
+            this.sink = sink;
+        }
+
+        void cancel() {
+            // Cancelled after admission: give the permit back; before it: leave the queue
+            int previous = state.getAndSet(DONE);
+            if (previous == GRANTED) {
+                queue.release(this);
+            } else if (previous == QUEUED) {
+                queue.abandon(this);
+            }
+        }
+
+        void release() {
+            if (state.compareAndSet(GRANTED, DONE)) {
+                queue.release(this);
+            }
+        }
+    }
+}
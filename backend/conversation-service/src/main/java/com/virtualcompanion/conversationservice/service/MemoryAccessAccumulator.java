@@ -0,0 +1,131 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Collects memory access statistics off the retrieval path and writes them in batches.
+ * <p>
+ * Retrieval only bumps an in-memory counter per memory. Every flush interval the counters are
+ * drained and written as additive UPDATEs ({@code accessCount + delta}), one statement per
+ * distinct delta and chunk of ids, so concurrent flushes from other instances compose and a
+ * memory read a hundred times between flushes costs one row update.
+ * <p>
+ * What is pending when the process dies is lost; the counters are ranking hints, so that is
+ * accepted. {@code lastAccessed} is accurate to the flush interval.
+ */
+public class MemoryAccessAccumulator {
+
+    private final ConversationMemoryRepository memoryRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${conversation.memory.access-max-pending:100000}")
+    private int maxPending;
+
+    @Value("${conversation.memory.access-flush-chunk:500}")
+    private int chunkSize;
+
+    private final ConcurrentHashMap<UUID, PendingAccess> pending = new ConcurrentHashMap<>();
+
+    private Counter recorded;
+    private Counter dropped;
+    private Counter rowsWritten;
+    private Timer flushTimer;
+
+    @PostConstruct
+    void init() {
+        recorded = Counter.builder("conversation.memory.access.recorded")
+                .description("Memory accesses recorded by retrieval")
+                .register(meterRegistry);
+        dropped = Counter.builder("conversation.memory.access.dropped")
+                .description("Memory accesses dropped: too many memories pending, or a failed flush")
+                .register(meterRegistry);
+        rowsWritten = Counter.builder("conversation.memory.access.rows")
+                .description("Memory rows updated by access flushes")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("conversation.memory.access.flush")
+                .description("Time to write pending memory access statistics")
+                .register(meterRegistry);
+
+        Gauge.builder("conversation.memory.access.pending", pending, Map::size)
+                .description("Memories with access statistics waiting to be written")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        flush();
+    }
+
+    public void record(Collection<UUID> memoryIds) {
+        LocalDateTime now = LocalDateTime.now();
+        for (UUID id : memoryIds) {
+            if (id == null) {
+                continue;
+            }
+            if (pending.size() >= maxPending && !pending.containsKey(id)) {
+                dropped.increment();
+                continue;
+            }
+            pending.compute(id, (key, access) -> access == null ? new PendingAccess(1, now) : access.plus(now));
+            recorded.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${conversation.memory.access-flush-interval:30s}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        // Each entry is removed atomically, so an access recorded meanwhile starts a new one
+        Map<Integer, List<UUID>> idsByDelta = new HashMap<>();
+        Map<Integer, LocalDateTime> latestByDelta = new HashMap<>();
+        for (UUID id : pending.keySet()) {
+            PendingAccess access = pending.remove(id);
+            if (access == null) {
+                continue;
+            }
+            idsByDelta.computeIfAbsent(access.count, delta -> new ArrayList<>()).add(id);
+            latestByDelta.merge(access.count, access.lastAccessed, (a, b) -> a.isAfter(b) ? a : b);
+        }
+
+        int rows = 0;
+        for (Map.Entry<Integer, List<UUID>> group : idsByDelta.entrySet()) {
+            List<UUID> ids = group.getValue();
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                List<UUID> chunk = ids.subList(from, Math.min(ids.size(), from + chunkSize));
+                try {
+                    rows += memoryRepository.incrementAccess(chunk, group.getKey(), latestByDelta.get(group.getKey()));
+                } catch (Exception e) {
+                    // Not retried: losing a few counts is accepted, holding them would let the
+                    // backlog grow while the database is unavailable
+                    log.warn("Could not write access statistics of {} memories: {}", chunk.size(), e.getMessage());
+                    dropped.increment((double) chunk.size() * group.getKey());
+                }
+            }
+        }
+
+        rowsWritten.increment(rows);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Flushed access statistics of {} memories", rows);
+    }
+
+    public int pending() {
+        return pending.size();
+    }
+
+    private static final class PendingAccess {
+
+        private final int count;
+        private final LocalDateTime lastAccessed;
+
+        PendingAccess(int count, LocalDateTime lastAccessed) {
+            this.count = count;
+            this.lastAccessed = lastAccessed;
+        }
+
+        PendingAccess plus(LocalDateTime accessedAt) {
+            return new PendingAccess(count + 1, accessedAt.isAfter(lastAccessed) ? accessedAt : lastAccessed);
+        }
+    }
+}
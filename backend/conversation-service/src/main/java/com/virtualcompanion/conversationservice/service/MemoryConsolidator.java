@@ -0,0 +1,219 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Incremental consolidation of conversation messages into the character's shared memories.
+ * <p>
+ * Each conversation keeps a high-water mark ({@code memoryConsolidatedUpTo} and
+ * {@code memoryConsolidatedUpToId} on its {@link ConversationContext}, the timestamp and id of
+ * the last message consumed); a run reads only the messages after it, oldest first, in chunks
+ * of {@code conversation.memory.consolidation-chunk-size}, and moves the mark after each chunk.
+ * Runs happen on a low-priority thread, every few turns and once more when the conversation
+ * ends, so ending a conversation only schedules work and each run costs what was said since the
+ * previous one.
+ * <p>
+ * Requests for a conversation that is already being consolidated are coalesced into one more
+ * run. The memories of a chunk are written before its mark moves: a crash in between replays
+ * that chunk. Memories already among the character's shared memories, most of them pushed by
+ * the turn that produced them, are not pushed again.
+ */
+public class MemoryConsolidator {
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final MessageRepository messageRepository;
+    private final MongoTemplate mongoTemplate;
+    private final CharacterContextWriter characterContextWriter;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${conversation.memory.consolidation-chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${conversation.memory.consolidation-interval-turns:20}")
+    private int intervalTurns;
+
+    @Value("${conversation.memory.consolidation-importance:0.7}")
+    private double importanceThreshold;
+
+    @Value("${conversation.memory.consolidation-threads:1}")
+    private int threads;
+
+    private final Cache<UUID, AtomicInteger> turnCounters = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofHours(6))
+            .build();
+
+    // Conversations being consolidated, with whether another run was requested meanwhile
+    private final ConcurrentHashMap<UUID, AtomicBoolean> runs = new ConcurrentHashMap<>();
+
+    private Scheduler scheduler;
+    private Counter messagesRead;
+    private Timer runTimer;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "memory-consolidation-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        };
+        scheduler = Schedulers.fromExecutorService(
+                Executors.newFixedThreadPool(threads, threadFactory), "memory-consolidation");
+
+        messagesRead = Counter.builder("conversation.memory.consolidation.messages")
+                .description("Messages read by memory consolidation")
+                .register(meterRegistry);
+        runTimer = Timer.builder("conversation.memory.consolidation")
+                .description("Time to consolidate the new messages of a conversation")
+                .register(meterRegistry);
+
+        Gauge.builder("conversation.memory.consolidation.running", runs, Map::size)
+                .description("Conversations being consolidated")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.dispose();
+    }
+
+    public void onTurnCompleted(Conversation conversation) {
+        int turns = turnCounters.get(conversation.getId(), id -> new AtomicInteger()).incrementAndGet();
+        if (turns % intervalTurns == 0) {
+            request(conversation);
+        }
+    }
+
+    public void request(Conversation conversation) {
+        AtomicBoolean started = new AtomicBoolean();
+        runs.compute(conversation.getId(), (id, again) -> {
+            if (again == null) {
+                started.set(true);
+                return new AtomicBoolean();
+            }
+            again.set(true);
+            return again;
+        });
+
+        if (started.get()) {
+            scheduler.schedule(() -> run(conversation));
+        }
+    }
+
+    private void run(Conversation conversation) {
+        UUID conversationId = conversation.getId();
+        do {
+            try {
+                consolidate(conversation);
+            } catch (Exception e) {
+                log.warn("Memory consolidation failed for conversation {}: {}", conversationId, e.getMessage());
+            }
+            // Keep the entry, and go again, only if someone asked while this run was going
+        } while (runs.computeIfPresent(conversationId, (id, again) -> again.getAndSet(false) ? again : null) != null);
+    }
+
+    /**
+     * Consolidates the messages after the conversation's high-water mark and returns how many
+     * were consumed.
+     */
+    int consolidate(Conversation conversation) {
+        long start = System.nanoTime();
+        UUID conversationId = conversation.getId();
+
+        Query contextQuery = Query.query(Criteria.where("conversationId").is(conversationId));
+        contextQuery.fields().include("memoryConsolidatedUpTo").include("memoryConsolidatedUpToId");
+        ConversationContext context = mongoTemplate.findOne(contextQuery, ConversationContext.class);
+        if (context == null) {
+            log.debug("No context for conversation {}, nothing to consolidate", conversationId);
+            return 0;
+        }
+
+        Set<String> shared = sharedMemories(conversation);
+        LocalDateTime mark = context.getMemoryConsolidatedUpTo();
+        String markId = context.getMemoryConsolidatedUpToId();
+        int pageSize = Math.max(2, chunkSize);
+        int consumed = 0;
+        int stored = 0;
+
+        while (true) {
+            List<Message> chunk = messageRepository.findAfterMarkAsc(
+                    conversationId, mark != null ? mark : BEGINNING, markId, PageRequest.of(0, pageSize));
+            messagesRead.increment(chunk.size());
+
+            List<String> importantMemories = new ArrayList<>();
+            LocalDateTime consumedUpTo = mark;
+            String consumedUpToId = markId;
+            int consumedInChunk = 0;
+
+            for (int i = 0; i < chunk.size(); i++) {
+                Message current = chunk.get(i);
+                if ("user".equals(current.getRole())) {
+                    if (i + 1 == chunk.size()) {
+                        // Its reply is not loaded yet: left for the next chunk or run
+                        break;
+                    }
+                    Message next = chunk.get(i + 1);
+                    if ("assistant".equals(next.getRole())) {
+                        String memory = MemoryHeuristics.extractMemoryContent(current.getContent(), next.getContent());
+                        if (memory != null && MemoryHeuristics.calculateImportance(memory) > importanceThreshold
+                                && shared.add(memory)) {
+                            importantMemories.add(memory);
+                        }
+                        current = next;
+                        i++;
+                        consumedInChunk++;
+                    }
+                }
+                consumedUpTo = current.getTimestamp();
+                consumedUpToId = current.getId();
+                consumedInChunk++;
+            }
+
+            if (consumedInChunk == 0) {
+                break;
+            }
+
+            characterContextWriter.update(conversation.getUserId(), conversation.getCharacterId())
+                    .addSharedMemories(importantMemories)
+                    .apply();
+
+            // Conditional on the mark read: a concurrent run elsewhere wins and this one stops
+            Update update = new Update()
+                    .set("memoryConsolidatedUpTo", consumedUpTo)
+                    .set("memoryConsolidatedUpToId", consumedUpToId);
+            Query markQuery = Query.query(Criteria.where("conversationId").is(conversationId)
+                    .and("memoryConsolidatedUpTo").is(mark)
+                    .and("memoryConsolidatedUpToId").is(markId));
+            if (mongoTemplate.updateFirst(markQuery, update, ConversationContext.class).getModifiedCount() == 0) {
+                log.debug("Consolidation mark of conversation {} moved concurrently", conversationId);
+                break;
+            }
+
+            mark = consumedUpTo;
+            markId = consumedUpToId;
+            consumed += consumedInChunk;
+            stored += importantMemories.size();
+
+            if (chunk.size() < pageSize) {
+                break;
+            }
+        }
+
+        runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (consumed > 0) {
+            log.info("Consolidated {} messages of conversation {} into {} memories", consumed, conversationId, stored);
+        }
+        return consumed;
+    }
+
+    private Set<String> sharedMemories(Conversation conversation) {
+        Query query = Query.query(Criteria.where("userId").is(conversation.getUserId())
+                .and("characterId").is(conversation.getCharacterId()));
+        query.fields().include("sharedMemories");
+        CharacterContext characterContext = mongoTemplate.findOne(query, CharacterContext.class);
+        return characterContext != null && characterContext.getSharedMemories() != null
+                ? new HashSet<>(characterContext.getSharedMemories())
+                : new HashSet<>();
+    }
+}
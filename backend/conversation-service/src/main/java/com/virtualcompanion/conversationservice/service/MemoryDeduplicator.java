@@ -0,0 +1,301 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Near-duplicate detection for new memories, per user/character pair, so a fact the user
+ * repeats ("I love my dog Max") strengthens the memory already stored instead of adding
+ * another row, another embedding call and another retrieval slot.
+ * <p>
+ * A memory is the set of its terms ({@link Bm25Index#tokenize}), each kept as a 64-bit hash.
+ * Candidates are found with MinHash LSH, {@value #BANDS} bands of {@value #ROWS} rows: two
+ * memories share a bucket with probability {@code 1 - (1 - J^2)^8}, over 0.99 for a Jaccard
+ * similarity {@code J} of 0.8. Candidates are then compared exactly on their term sets, and
+ * the most similar one reaching {@code similarity} is the duplicate. Short texts make SimHash
+ * distances too noisy to tell "my sister's birthday" from "my brother's birthday"; exact
+ * Jaccard on the candidates does.
+ * <p>
+ * Signatures of {@link MemoryTier#HOT} and {@link MemoryTier#WARM} memories are loaded from
+ * Postgres at startup; until then every memory is stored as new. Memories saved by the other
+ * replicas are read back every {@code catch-up-interval}, from {@code catch-up-overlap} before
+ * the previous pass started; they are new, so HOT. Memories archived since are forgotten when
+ * they are next matched, as the merge finds no row.
+ */
+public class MemoryDeduplicator {
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+    private static final int BANDS = 8;
+    private static final int ROWS = 2;
+    private static final long[] SEEDS = new long[BANDS * ROWS];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < SEEDS.length; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private final ConversationMemoryRepository memoryRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${conversation.memory.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${conversation.memory.dedup.similarity:0.8}")
+    private double similarity;
+
+    @Value("${conversation.memory.dedup.importance-boost:0.05}")
+    private double importanceBoost;
+
+    @Value("${conversation.memory.dedup.rebuild-page-size:5000}")
+    private int rebuildPageSize;
+
+    @Value("${conversation.memory.dedup.catch-up-overlap:1m}")
+    private Duration catchUpOverlap;
+
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+    private volatile LocalDateTime indexedUntil;
+    private volatile boolean ready;
+
+    private Counter merged;
+    private Counter unique;
+
+    @PostConstruct
+    void init() {
+        merged = outcomeCounter("merged");
+        unique = outcomeCounter("unique");
+
+        Gauge.builder("conversation.memory.dedup.signatures", shards, all -> all.values().stream().mapToInt(Shard::size).sum())
+                .description("Memory signatures held for near-duplicate detection")
+                .register(meterRegistry);
+
+        if (enabled) {
+            Schedulers.boundedElastic().schedule(this::load);
+        }
+    }
+
+    /**
+     * Folds the content into the pair's nearest existing memory when it is a near duplicate:
+     * that memory's importance becomes the higher of both plus {@code importance-boost},
+     * capped at 1. Returns the id of the memory merged into, or empty when the content is new
+     * and must be stored.
+     */
+    public Optional<UUID> absorb(UUID userId, UUID characterId, String content, double importance) {
+        if (!enabled || !ready) {
+            return Optional.empty();
+        }
+
+        long[] terms = terms(content);
+        Shard shard = shards.get(shardKey(userId, characterId));
+        while (terms.length > 0 && shard != null) {
+            UUID duplicate = shard.nearest(terms, similarity);
+            if (duplicate == null) {
+                break;
+            }
+            if (memoryRepository.mergeDuplicate(duplicate, importance, importanceBoost) > 0) {
+                merged.increment();
+                return Optional.of(duplicate);
+            }
+            // Archived or deleted since it was indexed
+            shard.remove(duplicate);
+        }
+
+        unique.increment();
+        return Optional.empty();
+    }
+
+    public void add(ConversationMemory memory) {
+        if (!enabled || memory.getId() == null || memory.getContent() == null || memory.getTier() == MemoryTier.COLD) {
+            return;
+        }
+        add(memory.getUserId(), memory.getCharacterId(), memory.getId(), memory.getContent());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adds the signatures of memories other replicas saved since the last pass.
+     */
+    @Scheduled(fixedDelayString = "${conversation.memory.dedup.catch-up-interval:30s}")
+    public void catchUp() {
+        if (!enabled || !ready) {
+            return;
+        }
+        LocalDateTime passStart = LocalDateTime.now();
+        int added = 0;
+        try {
+            List<ConversationMemoryRepository.MemoryText> page;
+            int number = 0;
+            do {
+                page = memoryRepository.findTextsCreatedAfter(MemoryTier.HOT, indexedUntil.minus(catchUpOverlap),
+                        PageRequest.of(number++, rebuildPageSize));
+                for (ConversationMemoryRepository.MemoryText text : page) {
+                    add(text.getUserId(), text.getCharacterId(), text.getId(), text.getContent());
+                }
+                added += page.size();
+            } while (page.size() == rebuildPageSize);
+        } catch (Exception e) {
+            log.warn("Memory signature catch-up failed, retried next pass: {}", e.getMessage());
+            return;
+        }
+        indexedUntil = passStart;
+        log.debug("Memory signature catch-up read {} memories", added);
+    }
+
+    void load() {
+        long start = System.nanoTime();
+        LocalDateTime loadStart = LocalDateTime.now();
+        int loaded = 0;
+        try {
+            for (MemoryTier tier : List.of(MemoryTier.HOT, MemoryTier.WARM)) {
+                UUID after = FIRST_ID;
+                List<ConversationMemoryRepository.MemoryText> page;
+                do {
+                    page = memoryRepository.findTextsAfter(tier, after, PageRequest.of(0, rebuildPageSize));
+                    for (ConversationMemoryRepository.MemoryText text : page) {
+                        add(text.getUserId(), text.getCharacterId(), text.getId(), text.getContent());
+                    }
+                    loaded += page.size();
+                    if (!page.isEmpty()) {
+                        after = page.get(page.size() - 1).getId();
+                    }
+                } while (page.size() == rebuildPageSize);
+            }
+        } catch (Exception e) {
+            log.error("Memory signature load failed, near-duplicate detection stays off: {}", e.getMessage());
+            return;
+        }
+
+        indexedUntil = loadStart;
+        ready = true;
+        log.info("Memory deduplication ready in {} ms: {} signatures in {} shards",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), loaded, shards.size());
+    }
+
+    private void add(UUID userId, UUID characterId, UUID memoryId, String content) {
+        long[] terms = terms(content);
+        if (terms.length > 0) {
+            shards.computeIfAbsent(shardKey(userId, characterId), key -> new Shard()).add(memoryId, terms);
+        }
+    }
+
+    /**
+     * Distinct term hashes of the text, sorted.
+     */
+    static long[] terms(String content) {
+        return Bm25Index.tokenize(content).stream()
+                .mapToLong(term -> mix(term.hashCode() * 0x9E3779B97F4A7C15L + term.length()))
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Jaccard similarity of two sorted hash sets.
+     */
+    static double jaccard(long[] a, long[] b) {
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = a.length + b.length - shared;
+        return union == 0 ? 0 : shared / (double) union;
+    }
+
+    private static long[] bandKeys(long[] terms) {
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long key = band;
+            for (int row = 0; row < ROWS; row++) {
+                long seed = SEEDS[band * ROWS + row];
+                long min = Long.MAX_VALUE;
+                for (long term : terms) {
+                    min = Math.min(min, mix(term ^ seed));
+                }
+                key = mix(key * 31 + min);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    private Counter outcomeCounter(String outcome) {
+        return Counter.builder("conversation.memory.dedup")
+                .description("New memories merged into a near duplicate, or stored as unique")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String shardKey(UUID userId, UUID characterId) {
+        return userId + ":" + characterId;
+    }
+
+    /**
+     * One pair's term sets and LSH buckets. Writes are one per new memory, so a monitor is enough.
+     */
+    private static final class Shard {
+
+        private final Map<UUID, long[]> terms = new HashMap<>();
+        private final Map<Long, Set<UUID>> buckets = new HashMap<>();
+
+        synchronized void add(UUID id, long[] memoryTerms) {
+            remove(id);
+            terms.put(id, memoryTerms);
+            for (long key : bandKeys(memoryTerms)) {
+                buckets.computeIfAbsent(key, k -> new HashSet<>(2)).add(id);
+            }
+        }
+
+        synchronized void remove(UUID id) {
+            long[] removed = terms.remove(id);
+            if (removed == null) {
+                return;
+            }
+            for (long key : bandKeys(removed)) {
+                Set<UUID> bucket = buckets.get(key);
+                if (bucket != null && bucket.remove(id) && bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+
+        synchronized UUID nearest(long[] query, double threshold) {
+            UUID best = null;
+            double bestSimilarity = threshold;
+            Set<UUID> seen = new HashSet<>();
+            for (long key : bandKeys(query)) {
+                for (UUID candidate : buckets.getOrDefault(key, Set.of())) {
+                    if (seen.add(candidate)) {
+                        double candidateSimilarity = jaccard(query, terms.get(candidate));
+                        if (candidateSimilarity >= bestSimilarity) {
+                            best = candidate;
+                            bestSimilarity = candidateSimilarity;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        synchronized int size() {
+            return terms.size();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Rule-based memory extraction shared by per-turn memory storage and conversation consolidation.
+ */
+final class MemoryHeuristics {
+
+    private MemoryHeuristics() {
+    }
+
+    static String extractMemoryContent(String userMessage, String aiResponse) {
+        // Simplified memory extraction - would use NLP in production
+        if (userMessage.toLowerCase().contains("my name is")) {
+            return "User's name: " + userMessage.substring(userMessage.toLowerCase().indexOf("my name is") + 11);
+        }
+
+        if (userMessage.toLowerCase().contains("i like") || userMessage.toLowerCase().contains("i love")) {
+            return "User preference: " + userMessage;
+        }
+
+        if (aiResponse.toLowerCase().contains("i'll remember") || aiResponse.toLowerCase().contains("noted")) {
+            return "Important: " + userMessage;
+        }
+
+        return null;
+    }
+
+    static String determineMemoryType(String content) {
+        content = content.toLowerCase();
+
+        if (content.contains("name") || content.contains("age") || content.contains("location")) {
+            return "fact";
+        } else if (content.contains("like") || content.contains("prefer") || content.contains("favorite")) {
+            return "preference";
+        } else if (content.contains("happened") || content.contains("did") || content.contains("went")) {
+            return "event";
+        } else {
+            return "general";
+        }
+    }
+
+    static double calculateImportance(String content) {
+        // Simple importance calculation - would be more sophisticated in production
+        double importance = 0.5;
+
+        String[] importantKeywords = {"always", "never", "important", "remember", "love", "hate"};
+        for (String keyword : importantKeywords) {
+            if (content.toLowerCase().contains(keyword)) {
+                importance += 0.1;
+            }
+        }
+
+        return Math.min(importance, 1.0);
+    }
+}
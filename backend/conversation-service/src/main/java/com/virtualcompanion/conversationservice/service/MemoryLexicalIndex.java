@@ -0,0 +1,163 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * In-process BM25 index of memory contents, one {@link Bm25Index} per user/character pair,
+ * covering the same {@link MemoryTier#HOT} memories as {@link MemoryVectorIndex}.
+ * <p>
+ * It is rebuilt from Postgres at startup, reading only ids and contents; until then
+ * {@link #search} returns empty and retrieval is vector only. Memories saved by the other
+ * replicas, and the tier changes their tiering jobs logged in {@code memory_tier_changes}, are
+ * read back every {@code catch-up-interval}, from {@code catch-up-overlap} before the previous
+ * pass started.
+ */
+public class MemoryLexicalIndex {
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    private final ConversationMemoryRepository memoryRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.lexical-index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.lexical-index.rebuild-page-size:5000}")
+    private int rebuildPageSize;
+
+    @Value("${ai.lexical-index.catch-up-overlap:1m}")
+    private Duration catchUpOverlap;
+
+    private final Map<String, Bm25Index> shards = new ConcurrentHashMap<>();
+    private volatile LocalDateTime indexedUntil;
+    private volatile boolean ready;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("ai.memory.lexical.documents", shards, all -> all.values().stream().mapToInt(Bm25Index::size).sum())
+                .description("Memories in the in-process lexical index")
+                .register(meterRegistry);
+
+        Gauge.builder("ai.memory.lexical.ready", this, index -> index.ready ? 1 : 0)
+                .description("1 once the lexical index serves retrieval, 0 while it is loading")
+                .register(meterRegistry);
+
+        if (enabled) {
+            Schedulers.boundedElastic().schedule(this::load);
+        }
+    }
+
+    /**
+     * Up to {@code limit} lexical matches of the pair, or empty while the index is not ready.
+     */
+    public Optional<List<Bm25Index.Hit>> search(UUID userId, UUID characterId, String query, int limit) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        Bm25Index shard = shards.get(shardKey(userId, characterId));
+        return Optional.of(shard != null ? shard.search(query, limit) : List.of());
+    }
+
+    public void add(ConversationMemory memory) {
+        if (!enabled || memory.getId() == null || memory.getContent() == null
+                || (memory.getTier() != null && memory.getTier() != MemoryTier.HOT)) {
+            return;
+        }
+        add(memory.getUserId(), memory.getCharacterId(), memory.getId(), memory.getContent());
+    }
+
+    public void remove(UUID userId, UUID characterId, UUID memoryId) {
+        Bm25Index shard = shards.get(shardKey(userId, characterId));
+        if (shard != null) {
+            shard.remove(memoryId);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adds the memories other replicas saved, and applies the tier changes they made, since the
+     * last pass.
+     */
+    @Scheduled(fixedDelayString = "${ai.lexical-index.catch-up-interval:30s}")
+    public void catchUp() {
+        if (!enabled || !ready) {
+            return;
+        }
+        LocalDateTime passStart = LocalDateTime.now();
+        int added = 0;
+        int changed = 0;
+        try {
+            List<ConversationMemoryRepository.MemoryText> page;
+            int number = 0;
+            do {
+                page = memoryRepository.findTextsCreatedAfter(MemoryTier.HOT, indexedUntil.minus(catchUpOverlap),
+                        PageRequest.of(number++, rebuildPageSize));
+                for (ConversationMemoryRepository.MemoryText text : page) {
+                    add(text.getUserId(), text.getCharacterId(), text.getId(), text.getContent());
+                }
+                added += page.size();
+            } while (page.size() == rebuildPageSize);
+
+            List<ConversationMemoryRepository.TierChange> changes;
+            number = 0;
+            do {
+                changes = memoryRepository.findTierChangesAfter(indexedUntil.minus(catchUpOverlap),
+                        PageRequest.of(number++, rebuildPageSize));
+                List<UUID> promoted = new ArrayList<>();
+                for (ConversationMemoryRepository.TierChange change : changes) {
+                    // Replayed in order: a memory promoted after its demotion ends up indexed
+                    if (MemoryTier.HOT.name().equals(change.getTier())) {
+                        promoted.add(change.getMemoryId());
+                    } else {
+                        promoted.remove(change.getMemoryId());
+                        remove(change.getUserId(), change.getCharacterId(), change.getMemoryId());
+                    }
+                }
+                memoryRepository.findAllById(promoted).forEach(this::add);
+                changed += changes.size();
+            } while (changes.size() == rebuildPageSize);
+        } catch (Exception e) {
+            log.warn("Lexical memory index catch-up failed, retried next pass: {}", e.getMessage());
+            return;
+        }
+        indexedUntil = passStart;
+        log.debug("Lexical memory index catch-up read {} memories and {} tier changes", added, changed);
+    }
+
+    void load() {
+        long start = System.nanoTime();
+        LocalDateTime loadStart = LocalDateTime.now();
+        int loaded = 0;
+        try {
+            UUID after = FIRST_ID;
+            List<ConversationMemoryRepository.MemoryText> page;
+            do {
+                page = memoryRepository.findTextsAfter(MemoryTier.HOT, after, PageRequest.of(0, rebuildPageSize));
+                for (ConversationMemoryRepository.MemoryText text : page) {
+                    add(text.getUserId(), text.getCharacterId(), text.getId(), text.getContent());
+                }
+                loaded += page.size();
+                if (!page.isEmpty()) {
+                    after = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == rebuildPageSize);
+        } catch (Exception e) {
+            log.error("Lexical memory index load failed, retrieval stays vector only: {}", e.getMessage());
+            return;
+        }
+
+        indexedUntil = loadStart;
+        ready = true;
+        log.info("Lexical memory index ready in {} ms: {} memories in {} shards",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), loaded, shards.size());
+    }
+
+    private void add(UUID userId, UUID characterId, UUID memoryId, String content) {
+        shards.computeIfAbsent(shardKey(userId, characterId), key -> new Bm25Index()).add(memoryId, content);
+    }
+
+    private static String shardKey(UUID userId, UUID characterId) {
+        return userId + ":" + characterId;
+    }
+}
@@ -3,7 +3,9 @@ package com.virtualcompanion.conversationservice.service;
 public interface MemoryService {
     void extractAndStoreMemory(Conversation conversation, Message userMessage, Message aiMessage);
 
-    void consolidateConversationMemory(UUID userId, UUID conversationId);
+    void consolidateConversationMemory(Conversation conversation);
+
+    void onTurnCompleted(Conversation conversation);
 
     void updateCharacterMemory(UUID userId, UUID characterId, List<MemoryItem> memories);
 
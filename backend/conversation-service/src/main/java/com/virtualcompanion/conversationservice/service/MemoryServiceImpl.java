@@ -3,17 +3,31 @@ package com.virtualcompanion.conversationservice.service;
 public class MemoryServiceImpl implements MemoryService {
 
     private final ConversationMemoryRepository memoryRepository;
-    private final CharacterContextRepository characterContextRepository;
-    private final MessageRepository messageRepository;
+    private final CharacterContextWriter characterContextWriter;
     private final EmbeddingService embeddingService;
+    private final HybridMemoryRetriever memoryRetriever;
+    private final MemoryAccessAccumulator accessAccumulator;
+    private final MemoryConsolidator memoryConsolidator;
+    private final MemoryDeduplicator memoryDeduplicator;
 
     @Override
     public void extractAndStoreMemory(Conversation conversation, Message userMessage, Message aiMessage) {
         try {
             // Extract key information from the exchange
-            String memoryContent = extractMemoryContent(userMessage.getContent(), aiMessage.getContent());
+            String memoryContent = MemoryHeuristics.extractMemoryContent(userMessage.getContent(), aiMessage.getContent());
 
             if (memoryContent != null && !memoryContent.isEmpty()) {
+                double importance = MemoryHeuristics.calculateImportance(memoryContent);
+
+                // A repeated fact strengthens the memory already stored, without embedding it again
+                Optional<UUID> duplicate = memoryDeduplicator.absorb(conversation.getUserId(),
+                        conversation.getCharacterId(), memoryContent, importance);
+                if (duplicate.isPresent()) {
+                    accessAccumulator.record(List.of(duplicate.get()));
+                    log.debug("Merged memory for conversation {} into {}", conversation.getId(), duplicate.get());
+                    return;
+                }
+
                 // Generate embedding
                 float[] embedding = embeddingService.generateEmbedding(memoryContent);
 
@@ -24,14 +38,17 @@ public class MemoryServiceImpl implements MemoryService {
                         .characterId(conversation.getCharacterId())
                         .content(memoryContent)
                         .embedding(embedding)
-                        .memoryType(determineMemoryType(memoryContent))
-                        .importance(calculateImportance(memoryContent))
+                        .memoryType(MemoryHeuristics.determineMemoryType(memoryContent))
+                        .importance(importance)
                         .sourceMessageId(userMessage.getId())
                         .createdAt(LocalDateTime.now())
                         .lastAccessed(LocalDateTime.now())
+                        .tier(MemoryTier.HOT)
                         .build();
 
-                memoryRepository.save(memory);
+                ConversationMemory saved = memoryRepository.save(memory);
+                memoryRetriever.add(saved);
+                memoryDeduplicator.add(saved);
 
                 // Update character context
                 updateCharacterContextMemory(conversation.getUserId(),
@@ -46,51 +63,47 @@ public class MemoryServiceImpl implements MemoryService {
     }
 
     @Override
-    public void consolidateConversationMemory(UUID userId, UUID conversationId) {
-        try {
-            // Get all messages from the conversation
-            List<Message> messages = messageRepository
-                    .findByConversationIdOrderByTimestampDesc(conversationId, PageRequest.of(0, 1000))
-                    .getContent();
-
-            // Extract important memories
-            List<String> importantMemories = new ArrayList<>();
-
-            for (int i = 0; i < messages.size() - 1; i++) {
-                Message current = messages.get(i);
-                Message next = messages.get(i + 1);
-
-                if ("user".equals(current.getRole()) && "assistant".equals(next.getRole())) {
-                    String memory = extractMemoryContent(current.getContent(), next.getContent());
-                    if (memory != null && calculateImportance(memory) > 0.7) {
-                        importantMemories.add(memory);
-                    }
-                }
-            }
+    public void consolidateConversationMemory(Conversation conversation) {
+        // Only schedules the run: the consolidator picks up from its high-water mark in the background
+        memoryConsolidator.request(conversation);
+    }
 
-            // Update character context with consolidated memories
-            if (!importantMemories.isEmpty()) {
-                characterContextRepository.findByUserIdAndCharacterId(userId, conversationId)
-                        .ifPresent(context -> {
-                            context.getSharedMemories().addAll(importantMemories);
-                            context.setLastUpdated(LocalDateTime.now());
-                            characterContextRepository.save(context);
-                        });
-            }
+    @Override
+    public void onTurnCompleted(Conversation conversation) {
+        memoryConsolidator.onTurnCompleted(conversation);
+    }
 
-            log.info("Consolidated {} memories from conversation {}", importantMemories.size(), conversationId);
+    @Override
+    public void updateCharacterMemory(UUID userId, UUID characterId, List<MemoryItem> items) {
+        List<MemoryItem> memories = new ArrayList<>(items.size());
+        for (MemoryItem item : items) {
+            Optional<UUID> duplicate = memoryDeduplicator.absorb(userId, characterId, item.getContent(),
+                    item.getImportance() != null ? item.getImportance() : 0.5);
+            if (duplicate.isPresent()) {
+                accessAccumulator.record(List.of(duplicate.get()));
+            } else {
+                memories.add(item);
+            }
+        }
+        if (memories.isEmpty()) {
+            return;
+        }
 
+        // One embedding call for the whole update, computed as a batch
+        List<float[]> embeddings;
+        try {
+            embeddings = embeddingService.generateEmbeddings(memories.stream()
+                    .map(MemoryItem::getContent)
+                    .collect(Collectors.toList()));
         } catch (Exception e) {
-            log.error("Failed to consolidate conversation memory: {}", e.getMessage());
+            log.error("Failed to embed character memories: {}", e.getMessage());
+            return;
         }
-    }
 
-    @Override
-    public void updateCharacterMemory(UUID userId, UUID characterId, List<MemoryItem> memories) {
-        for (MemoryItem item : memories) {
+        for (int i = 0; i < memories.size(); i++) {
+            MemoryItem item = memories.get(i);
+            float[] embedding = embeddings.get(i);
             try {
-                float[] embedding = embeddingService.generateEmbedding(item.getContent());
-
                 ConversationMemory memory = ConversationMemory.builder()
                         .userId(userId)
                         .characterId(characterId)
@@ -101,9 +114,12 @@ public class MemoryServiceImpl implements MemoryService {
                         .metadata(item.getMetadata())
                         .createdAt(LocalDateTime.now())
                         .lastAccessed(LocalDateTime.now())
+                        .tier(MemoryTier.HOT)
                         .build();
 
-                memoryRepository.save(memory);
+                ConversationMemory saved = memoryRepository.save(memory);
+                memoryRetriever.add(saved);
+                memoryDeduplicator.add(saved);
             } catch (Exception e) {
                 log.error("Failed to update character memory: {}", e.getMessage());
             }
@@ -113,19 +129,13 @@ public class MemoryServiceImpl implements MemoryService {
     @Override
     public List<String> retrieveRelevantMemories(UUID userId, UUID characterId, String query, int limit) {
         try {
-            // Generate query embedding
-            float[] queryEmbedding = embeddingService.generateEmbedding(query);
-
-            // Find similar memories
-            List<ConversationMemory> relevantMemories = memoryRepository
-                    .findSimilarMemories(userId, characterId, queryEmbedding, limit);
+            // Lexical and vector rankings fused, or lexical alone when it matches confidently
+            List<ConversationMemory> relevantMemories = memoryRetriever.retrieve(userId, characterId, query, limit);
 
-            // Update access time
-            relevantMemories.forEach(memory -> {
-                memory.setLastAccessed(LocalDateTime.now());
-                memory.setAccessCount(memory.getAccessCount() + 1);
-            });
-            memoryRepository.saveAll(relevantMemories);
+            // Access statistics are written later in batches, not on the read path
+            accessAccumulator.record(relevantMemories.stream()
+                    .map(ConversationMemory::getId)
+                    .collect(Collectors.toList()));
 
             return relevantMemories.stream()
                     .map(ConversationMemory::getContent)
@@ -137,62 +147,10 @@ public class MemoryServiceImpl implements MemoryService {
         }
     }
 
-    private String extractMemoryContent(String userMessage, String aiResponse) {
-        // Simplified memory extraction - would use NLP in production
-        if (userMessage.toLowerCase().contains("my name is")) {
-            return "User's name: " + userMessage.substring(userMessage.toLowerCase().indexOf("my name is") + 11);
-        }
-
-        if (userMessage.toLowerCase().contains("i like") || userMessage.toLowerCase().contains("i love")) {
-            return "User preference: " + userMessage;
-        }
-
-        if (aiResponse.toLowerCase().contains("i'll remember") || aiResponse.toLowerCase().contains("noted")) {
-            return "Important: " + userMessage;
-        }
-
-        return null;
-    }
-
-    private String determineMemoryType(String content) {
-        content = content.toLowerCase();
-
-        if (content.contains("name") || content.contains("age") || content.contains("location")) {
-            return "fact";
-        } else if (content.contains("like") || content.contains("prefer") || content.contains("favorite")) {
-            return "preference";
-        } else if (content.contains("happened") || content.contains("did") || content.contains("went")) {
-            return "event";
-        } else {
-            return "general";
-        }
-    }
-
-    private double calculateImportance(String content) {
-        // Simple importance calculation - would be more sophisticated in production
-        double importance = 0.5;
-
-        String[] importantKeywords = {"always", "never", "important", "remember", "love", "hate"};
-        for (String keyword : importantKeywords) {
-            if (content.toLowerCase().contains(keyword)) {
-                importance += 0.1;
-            }
-        }
-
-        return Math.min(importance, 1.0);
-    }
-
     private void updateCharacterContextMemory(UUID userId, UUID characterId, String memory) {
-        characterContextRepository.findByUserIdAndCharacterId(userId, characterId)
-                .ifPresent(context -> {
-                    if (context.getSharedMemories().size() >= 100) {
-                        // Remove oldest memories if limit reached
-                        context.getSharedMemories().remove(0);
-                    }
-
-                    context.getSharedMemories().add(memory);
-                    context.setLastUpdated(LocalDateTime.now());
-                    characterContextRepository.save(context);
-                });
+        // Appended and trimmed to the most recent ones by Mongo, atomically
+        characterContextWriter.update(userId, characterId)
+                .addSharedMemory(memory)
+                .apply();
     }
 }
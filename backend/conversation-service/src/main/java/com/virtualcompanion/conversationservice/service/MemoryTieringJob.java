@@ -0,0 +1,343 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Keeps each user's memory footprint bounded by moving memories between tiers.
+ * <p>
+ * Every memory gets a retention score: its importance, reinforced by how often it was
+ * retrieved, halved every {@code half-life} since it was last used. A user's memories are
+ * ranked by that score; the best {@code hot-budget} are {@link MemoryTier#HOT} and served from
+ * the in-process indexes, the next ones up to {@code warm-budget} stay {@link MemoryTier#WARM}
+ * in Postgres only, and the rest, or any memory whose score fell below {@code cold-score},
+ * go {@link MemoryTier#COLD}: they are folded into one summary memory per character and chunk,
+ * and moved to the archive table.
+ * <p>
+ * Each run handles the next {@code users-per-run} users and writes in chunks of
+ * {@code chunk-size} ids, so a run costs the same whatever the number of users; the cursor
+ * wraps around once every user has been seen. A user's memories are read {@code page-size} at
+ * a time and only the best {@code warm-budget} are held, in a min-heap: a memory pushed out of
+ * it can never rank back in, so it is archived as the pages go.
+ * <p>
+ * Replicas run the job independently; a user is tiered under a Redis lock, held at most
+ * {@code lock-ttl}, so two replicas never summarize and archive the same memories. Every tier
+ * change is logged in {@code memory_tier_changes}, from which the other replicas update their
+ * in-process indexes; entries older than {@code change-retention} are purged each run.
+ */
+public class MemoryTieringJob {
+
+    private static final UUID FIRST_USER = new UUID(0L, 0L);
+    private static final UUID FIRST_MEMORY = new UUID(0L, 0L);
+    private static final String LOCK_PREFIX = "memory:tiering:";
+    // Deletes the lock only while this replica still holds it: after the ttl it may be another's
+    private static final RedisScript<Long> RELEASE_LOCK = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final ConversationMemoryRepository memoryRepository;
+    private final HybridMemoryRetriever memoryRetriever;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${conversation.memory.tiering.enabled:true}")
+    private boolean enabled;
+
+    @Value("${conversation.memory.tiering.users-per-run:200}")
+    private int usersPerRun;
+
+    @Value("${conversation.memory.tiering.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${conversation.memory.tiering.page-size:1000}")
+    private int pageSize;
+
+    @Value("${conversation.memory.tiering.lock-ttl:5m}")
+    private Duration lockTtl;
+
+    @Value("${conversation.memory.tiering.change-retention:7d}")
+    private Duration changeRetention;
+
+    @Value("${conversation.memory.tiering.hot-budget:2000}")
+    private int hotBudget;
+
+    @Value("${conversation.memory.tiering.warm-budget:10000}")
+    private int warmBudget;
+
+    @Value("${conversation.memory.tiering.half-life:30d}")
+    private Duration halfLife;
+
+    @Value("${conversation.memory.tiering.access-weight:0.1}")
+    private double accessWeight;
+
+    @Value("${conversation.memory.tiering.cold-score:0.02}")
+    private double coldScore;
+
+    @Value("${conversation.memory.tiering.summary-max-length:2000}")
+    private int summaryMaxLength;
+
+    private final String lockOwner = UUID.randomUUID().toString();
+    private volatile UUID cursor = FIRST_USER;
+
+    private final Map<MemoryTier, Counter> moved = new EnumMap<>(MemoryTier.class);
+    private Timer runTimer;
+
+    @PostConstruct
+    void init() {
+        for (MemoryTier tier : MemoryTier.values()) {
+            moved.put(tier, Counter.builder("conversation.memory.tiering.moved")
+                    .description("Memories moved to a tier by the tiering job")
+                    .tag("tier", tier.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        runTimer = Timer.builder("conversation.memory.tiering")
+                .description("Time of a memory tiering run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${conversation.memory.tiering.interval:15m}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<UUID> users = memoryRepository.findUserIdsAfter(cursor, PageRequest.of(0, usersPerRun));
+        cursor = users.size() < usersPerRun ? FIRST_USER : users.get(users.size() - 1);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (UUID userId : users) {
+            try {
+                tierUser(userId, now);
+            } catch (Exception e) {
+                log.warn("Memory tiering failed for user {}: {}", userId, e.getMessage());
+            }
+        }
+
+        try {
+            memoryRepository.deleteTierChangesBefore(now.minus(changeRetention));
+        } catch (Exception e) {
+            log.warn("Could not purge the memory tier change log: {}", e.getMessage());
+        }
+
+        runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Memory tiering run over {} users", users.size());
+    }
+
+    void tierUser(UUID userId, LocalDateTime now) {
+        String lock = LOCK_PREFIX + userId;
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lock, lockOwner, lockTtl).block())) {
+            log.debug("Memory tiering of user {} skipped, another replica is on it", userId);
+            return;
+        }
+        try {
+            tierUserLocked(userId, now);
+        } finally {
+            redisTemplate.execute(RELEASE_LOCK, List.of(lock), List.of(lockOwner))
+                    .subscribe(released -> {
+                        if (released == 0) {
+                            log.warn("Tiering lock of user {} expired during the run, lock-ttl {} is too short", userId, lockTtl);
+                        }
+                    }, error -> log.debug("Could not release tiering lock of user {}: {}", userId, error.getMessage()));
+        }
+    }
+
+    private void tierUserLocked(UUID userId, LocalDateTime now) {
+        PriorityQueue<Scored> kept = new PriorityQueue<>(Comparator.comparingDouble((Scored scored) -> scored.score));
+        Map<UUID, List<ConversationMemoryRepository.TierCandidate>> toColdByCharacter = new HashMap<>();
+        int cold = 0;
+
+        UUID after = FIRST_MEMORY;
+        List<ConversationMemoryRepository.TierCandidate> page;
+        do {
+            page = memoryRepository.findTierCandidatesAfter(userId, after, PageRequest.of(0, pageSize));
+            for (ConversationMemoryRepository.TierCandidate candidate : page) {
+                double score = score(candidate, now);
+                ConversationMemoryRepository.TierCandidate demoted = candidate;
+                if (score >= coldScore && warmBudget > 0) {
+                    kept.add(new Scored(candidate, score));
+                    demoted = kept.size() > warmBudget ? kept.poll().candidate : null;
+                }
+                if (demoted == null) {
+                    continue;
+                }
+
+                cold++;
+                List<ConversationMemoryRepository.TierCandidate> toCold =
+                        toColdByCharacter.computeIfAbsent(demoted.getCharacterId(), id -> new ArrayList<>());
+                toCold.add(demoted);
+                if (toCold.size() >= chunkSize) {
+                    archive(userId, demoted.getCharacterId(), ids(toCold), now);
+                    toCold.clear();
+                }
+            }
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == pageSize);
+
+        for (Map.Entry<UUID, List<ConversationMemoryRepository.TierCandidate>> character : toColdByCharacter.entrySet()) {
+            if (!character.getValue().isEmpty()) {
+                archive(userId, character.getKey(), ids(character.getValue()), now);
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(kept);
+        ranked.sort(Comparator.comparingDouble((Scored scored) -> scored.score).reversed());
+        List<ConversationMemoryRepository.TierCandidate> toHot = new ArrayList<>();
+        List<ConversationMemoryRepository.TierCandidate> toWarm = new ArrayList<>();
+        for (int rank = 0; rank < ranked.size(); rank++) {
+            ConversationMemoryRepository.TierCandidate candidate = ranked.get(rank).candidate;
+            MemoryTier target = rank < hotBudget ? MemoryTier.HOT : MemoryTier.WARM;
+            if (target != candidate.getTier()) {
+                (target == MemoryTier.HOT ? toHot : toWarm).add(candidate);
+            }
+        }
+
+        for (List<ConversationMemoryRepository.TierCandidate> chunk : chunks(toWarm)) {
+            memoryRepository.updateTier(ids(chunk), MemoryTier.WARM);
+            chunk.forEach(candidate -> memoryRetriever.remove(userId, candidate.getCharacterId(), candidate.getId()));
+            moved.get(MemoryTier.WARM).increment(chunk.size());
+        }
+
+        for (List<ConversationMemoryRepository.TierCandidate> chunk : chunks(toHot)) {
+            memoryRepository.updateTier(ids(chunk), MemoryTier.HOT);
+            memoryRepository.findAllById(ids(chunk)).forEach(memoryRetriever::add);
+            moved.get(MemoryTier.HOT).increment(chunk.size());
+        }
+
+        if (!toHot.isEmpty() || !toWarm.isEmpty() || cold > 0) {
+            log.debug("Tiered memories of user {}: {} hot, {} warm, {} cold", userId, toHot.size(), toWarm.size(), cold);
+        }
+    }
+
+    /**
+     * Importance plus access reinforcement, decayed by half for every half-life since last use.
+     */
+    double score(ConversationMemoryRepository.TierCandidate candidate, LocalDateTime now) {
+        double importance = candidate.getImportance() != null ? candidate.getImportance() : 0.5;
+        int accesses = candidate.getAccessCount() != null ? candidate.getAccessCount() : 0;
+
+        LocalDateTime lastUsed = candidate.getCreatedAt();
+        if (candidate.getLastAccessed() != null && (lastUsed == null || candidate.getLastAccessed().isAfter(lastUsed))) {
+            lastUsed = candidate.getLastAccessed();
+        }
+        double halfLives = lastUsed == null ? 0 : Math.max(0, Duration.between(lastUsed, now).getSeconds())
+                / (double) halfLife.getSeconds();
+
+        return (importance + accessWeight * Math.log1p(accesses)) * Math.pow(0.5, halfLives);
+    }
+
+    private void archive(UUID userId, UUID characterId, List<UUID> ids, LocalDateTime now) {
+        List<ConversationMemory> memories = memoryRepository.findAllById(ids);
+        if (memories.isEmpty()) {
+            return;
+        }
+
+        ConversationMemory summary = memoryRepository.save(ConversationMemory.builder()
+                .userId(userId)
+                .characterId(characterId)
+                .content(summarize(memories))
+                .embedding(centroid(memories))
+                .memoryType("summary")
+                .importance(memories.stream()
+                        .map(ConversationMemory::getImportance)
+                        .filter(Objects::nonNull)
+                        .max(Double::compare)
+                        .orElse(0.5))
+                .tier(MemoryTier.WARM)
+                .createdAt(now)
+                .lastAccessed(now)
+                .build());
+
+        int archived;
+        try {
+            archived = memoryRepository.archive(ids, summary.getId());
+        } catch (Exception e) {
+            // The chunk stays where it was and is tried again next run, without a second summary
+            memoryRepository.delete(summary);
+            throw e;
+        }
+        if (archived == 0) {
+            // Deleted or archived meanwhile: the summary would stand for nothing
+            memoryRepository.delete(summary);
+            return;
+        }
+        if (archived < memories.size()) {
+            // Kept: the rows that did move point to it
+            log.info("Archived {} of {} memories of user {} under summary {}, the others were gone",
+                    archived, memories.size(), userId, summary.getId());
+        }
+
+        memories.forEach(memoryRetriever::remove);
+        moved.get(MemoryTier.COLD).increment(archived);
+    }
+
+    private String summarize(List<ConversationMemory> memories) {
+        StringBuilder summary = new StringBuilder("Earlier memories: ");
+        int prefix = summary.length();
+        memories.stream()
+                .sorted(Comparator.comparing(ConversationMemory::getImportance,
+                        Comparator.nullsLast(Comparator.reverseOrder())))
+                .map(ConversationMemory::getContent)
+                .filter(content -> content != null && !content.isBlank())
+                .distinct()
+                .forEach(content -> {
+                    if (summary.length() + content.length() + 2 <= summaryMaxLength) {
+                        summary.append(summary.length() > prefix ? "; " : "").append(content.trim());
+                    }
+                });
+        return summary.toString();
+    }
+
+    private static float[] centroid(List<ConversationMemory> memories) {
+        float[] centroid = null;
+        for (ConversationMemory memory : memories) {
+            float[] embedding = memory.getEmbedding();
+            if (embedding == null || (centroid != null && embedding.length != centroid.length)) {
+                continue;
+            }
+            if (centroid == null) {
+                centroid = new float[embedding.length];
+            }
+            for (int d = 0; d < embedding.length; d++) {
+                centroid[d] += embedding[d];
+            }
+        }
+        if (centroid == null) {
+            return null;
+        }
+
+        double norm = 0;
+        for (float value : centroid) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        for (int d = 0; d < centroid.length; d++) {
+            centroid[d] /= (float) Math.sqrt(norm);
+        }
+        return centroid;
+    }
+
+    private List<List<ConversationMemoryRepository.TierCandidate>> chunks(List<ConversationMemoryRepository.TierCandidate> candidates) {
+        List<List<ConversationMemoryRepository.TierCandidate>> chunks = new ArrayList<>();
+        for (int from = 0; from < candidates.size(); from += chunkSize) {
+            chunks.add(candidates.subList(from, Math.min(candidates.size(), from + chunkSize)));
+        }
+        return chunks;
+    }
+
+    private static List<UUID> ids(List<ConversationMemoryRepository.TierCandidate> candidates) {
+        return candidates.stream().map(ConversationMemoryRepository.TierCandidate::getId).collect(Collectors.toList());
+    }
+
+    private static final class Scored {
+
+        private final ConversationMemoryRepository.TierCandidate candidate;
+        private final double score;
+
+        Scored(ConversationMemoryRepository.TierCandidate candidate, double score) {
+            this.candidate = candidate;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * In-process nearest-neighbour index of memory embeddings, one {@link HnswIndex} per
+ * user/character pair, so retrieval no longer scans the pair's rows in Postgres every turn.
+ * Only {@link MemoryTier#HOT} memories are indexed; the tiering job removes the others.
+ * <p>
+ * At startup the index is restored from its last local snapshot and brought up to date with
+ * the memories created since; without a usable snapshot it is rebuilt from Postgres. Until
+ * then {@link #findSimilar} returns empty and callers keep using the pgvector query. New
+ * memories are added as they are saved on this node; those saved by the other replicas are
+ * read back every {@code catch-up-interval}, from {@code catch-up-overlap} before the newest
+ * memory indexed so that rows committed late or stamped by a clock behind are not missed. Tier
+ * changes the other replicas' tiering jobs made are replayed from {@code memory_tier_changes}
+ * on the same passes, promoted memories added and demoted or archived ones removed; a restart
+ * from a snapshot replays them from when it was written, and a snapshot older than the log's
+ * retention is not used. The snapshot is rewritten periodically and at shutdown; shards whose
+ * removed vectors exceed {@code compact-threshold} of their live ones are rebuilt first.
+ * <p>
+ * The graph holds int8 vectors, so a search returns {@code oversample} times the requested
+ * candidates and reranks them on the exact stored embeddings.
+ */
+public class MemoryVectorIndex {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final int SNAPSHOT_MAGIC = 0x4D454D4A;
+
+    private final ConversationMemoryRepository memoryRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.vector-index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.vector-index.m:16}")
+    private int m;
+
+    @Value("${ai.vector-index.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${ai.vector-index.ef-search:64}")
+    private int efSearch;
+
+    @Value("${ai.vector-index.oversample:2}")
+    private int oversample;
+
+    @Value("${ai.vector-index.rebuild-page-size:1000}")
+    private int rebuildPageSize;
+
+    @Value("${ai.vector-index.snapshot-path:cache/memory-index.bin}")
+    private String snapshotPath;
+
+    @Value("${ai.vector-index.catch-up-overlap:1m}")
+    private Duration catchUpOverlap;
+
+    @Value("${ai.vector-index.compact-threshold:0.3}")
+    private double compactThreshold;
+
+    @Value("${conversation.memory.tiering.change-retention:7d}")
+    private Duration tierChangeRetention;
+
+    private final Map<String, HnswIndex> shards = new ConcurrentHashMap<>();
+    private final AtomicReference<LocalDateTime> indexedUntil = new AtomicReference<>(EPOCH);
+    private volatile LocalDateTime tierChangesUntil;
+    private volatile boolean ready;
+
+    private Timer searchTimer;
+
+    @PostConstruct
+    void init() {
+        searchTimer = Timer.builder("ai.memory.index.search")
+                .description("Nearest-neighbour search and rerank of memories")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        Gauge.builder("ai.memory.index.vectors", shards, all -> all.values().stream().mapToInt(HnswIndex::size).sum())
+                .description("Memory vectors in the in-process index")
+                .register(meterRegistry);
+
+        Gauge.builder("ai.memory.index.ready", this, index -> index.ready ? 1 : 0)
+                .description("1 once the index serves retrieval, 0 while it is loading")
+                .register(meterRegistry);
+
+        if (enabled) {
+            Schedulers.boundedElastic().schedule(this::load);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        snapshot();
+    }
+
+    /**
+     * Up to {@code limit} memories of the pair closest to the query, or empty while the index
+     * is not ready.
+     */
+    public Optional<List<ConversationMemory>> findSimilar(UUID userId, UUID characterId, float[] query, int limit) {
+        if (!ready) {
+            return Optional.empty();
+        }
+
+        long start = System.nanoTime();
+        HnswIndex shard = shards.get(shardKey(userId, characterId));
+        if (shard == null) {
+            return Optional.of(List.of());
+        }
+        if (shard.dimension() != query.length) {
+            return Optional.empty();
+        }
+
+        List<UUID> candidates = shard.search(query, limit * oversample, Math.max(efSearch, limit * oversample)).stream()
+                .map(HnswIndex.Neighbour::id)
+                .collect(Collectors.toList());
+        List<ConversationMemory> memories = rerank(memoryRepository.findAllById(candidates), query, limit);
+
+        searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return Optional.of(memories);
+    }
+
+    public void add(ConversationMemory memory) {
+        if (!enabled || memory.getId() == null || memory.getEmbedding() == null || !isHot(memory)) {
+            return;
+        }
+        shards.computeIfAbsent(shardKey(memory.getUserId(), memory.getCharacterId()),
+                        key -> new HnswIndex(memory.getEmbedding().length, m, efConstruction))
+                .add(memory.getId(), memory.getEmbedding());
+        if (memory.getCreatedAt() != null) {
+            indexedUntil.accumulateAndGet(memory.getCreatedAt(), (a, b) -> a.isAfter(b) ? a : b);
+        }
+    }
+
+    public void remove(ConversationMemory memory) {
+        remove(memory.getUserId(), memory.getCharacterId(), memory.getId());
+    }
+
+    public void remove(UUID userId, UUID characterId, UUID memoryId) {
+        HnswIndex shard = shards.get(shardKey(userId, characterId));
+        if (shard != null) {
+            shard.remove(memoryId);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Scheduled(fixedDelayString = "${ai.vector-index.snapshot-interval:10m}")
+    public void snapshot() {
+        if (!enabled || !ready) {
+            return;
+        }
+
+        Path target = Path.of(snapshotPath);
+        try {
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), "memory-index", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(indexedUntil.get().toEpochSecond(ZoneOffset.UTC));
+                out.writeLong(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
+                Map<String, HnswIndex> current = Map.copyOf(shards);
+                int compacted = 0;
+                for (HnswIndex shard : current.values()) {
+                    if (shard.compactIfNeeded(compactThreshold)) {
+                        compacted++;
+                    }
+                }
+                if (compacted > 0) {
+                    log.debug("Memory index compacted {} shards", compacted);
+                }
+                out.writeInt(current.size());
+                for (Map.Entry<String, HnswIndex> shard : current.entrySet()) {
+                    out.writeUTF(shard.getKey());
+                    shard.getValue().writeTo(out);
+                }
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Memory index snapshot written to {}", target);
+        } catch (IOException e) {
+            log.warn("Could not write memory index snapshot {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the memories other replicas saved, and applies the tier changes they made, since the
+     * last pass.
+     */
+    @Scheduled(fixedDelayString = "${ai.vector-index.catch-up-interval:30s}")
+    public void catchUp() {
+        if (!enabled || !ready) {
+            return;
+        }
+        LocalDateTime passStart = LocalDateTime.now();
+        try {
+            int added = addCreatedAfter(indexedUntil.get().minus(catchUpOverlap));
+            int changed = applyTierChangesAfter(tierChangesUntil.minus(catchUpOverlap));
+            tierChangesUntil = passStart;
+            log.debug("Memory index catch-up added {} memories, applied {} tier changes", added, changed);
+        } catch (Exception e) {
+            log.warn("Memory index catch-up failed, retried next pass: {}", e.getMessage());
+        }
+    }
+
+    // ========== Loading ==========
+
+    void load() {
+        long start = System.nanoTime();
+        LocalDateTime loadStart = LocalDateTime.now();
+        tierChangesUntil = loadStart;
+        LocalDateTime snapshotUntil = restoreSnapshot();
+        // Memories created in the snapshot's last second may be in it already and are skipped
+        LocalDateTime since = snapshotUntil != null ? snapshotUntil.minusSeconds(1) : EPOCH;
+
+        int loaded;
+        try {
+            loaded = addCreatedAfter(since);
+            if (snapshotUntil != null) {
+                // Memories promoted, demoted or archived since the snapshot was written
+                applyTierChangesAfter(tierChangesUntil.minus(catchUpOverlap));
+            }
+            tierChangesUntil = loadStart;
+        } catch (Exception e) {
+            log.error("Memory index load failed, retrieval stays on pgvector: {}", e.getMessage());
+            return;
+        }
+
+        ready = true;
+        log.info("Memory index ready in {} ms: {} shards, snapshot {}, {} memories loaded from the database",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), shards.size(),
+                snapshotUntil != null ? "up to " + snapshotUntil : "not used", loaded);
+    }
+
+    private int addCreatedAfter(LocalDateTime since) {
+        int added = 0;
+        Slice<ConversationMemory> page;
+        int number = 0;
+        do {
+            page = memoryRepository.findByTierAndCreatedAtAfterOrderByCreatedAtAscIdAsc(
+                    MemoryTier.HOT, since, PageRequest.of(number++, rebuildPageSize));
+            for (ConversationMemory memory : page) {
+                // Already indexed, from the snapshot or a previous pass: re-inserting only churns the graph
+                HnswIndex shard = shards.get(shardKey(memory.getUserId(), memory.getCharacterId()));
+                if (shard == null || !shard.contains(memory.getId())) {
+                    add(memory);
+                    added++;
+                }
+            }
+        } while (page.hasNext());
+        return added;
+    }
+
+    private int applyTierChangesAfter(LocalDateTime since) {
+        int applied = 0;
+        List<ConversationMemoryRepository.TierChange> page;
+        int number = 0;
+        do {
+            page = memoryRepository.findTierChangesAfter(since, PageRequest.of(number++, rebuildPageSize));
+            List<UUID> promoted = new ArrayList<>();
+            for (ConversationMemoryRepository.TierChange change : page) {
+                // Replayed in order: a memory promoted after its demotion ends up indexed
+                if (MemoryTier.HOT.name().equals(change.getTier())) {
+                    promoted.add(change.getMemoryId());
+                } else {
+                    promoted.remove(change.getMemoryId());
+                    remove(change.getUserId(), change.getCharacterId(), change.getMemoryId());
+                }
+            }
+            // Read back as they are now, add() skipping those demoted again since
+            for (ConversationMemory memory : memoryRepository.findAllById(promoted)) {
+                HnswIndex shard = shards.get(shardKey(memory.getUserId(), memory.getCharacterId()));
+                if (shard == null || !shard.contains(memory.getId())) {
+                    add(memory);
+                }
+            }
+            applied += page.size();
+        } while (page.size() == rebuildPageSize);
+        return applied;
+    }
+
+    /**
+     * Restores the shards of the snapshot and returns the creation time it covers, or
+     * {@code null} when there is no usable snapshot. Tier changes are replayed from the time
+     * the snapshot was written, so one older than the change log's retention is not usable.
+     */
+    private LocalDateTime restoreSnapshot() {
+        Path source = Path.of(snapshotPath);
+        if (!Files.isRegularFile(source)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("not a memory index snapshot");
+            }
+            LocalDateTime until = LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+            LocalDateTime writtenAt = LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+            if (writtenAt.isBefore(LocalDateTime.now().minus(tierChangeRetention))) {
+                throw new IOException("written " + writtenAt + ", before the tier changes still logged");
+            }
+            int count = in.readInt();
+            Map<String, HnswIndex> restored = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                restored.put(in.readUTF(), HnswIndex.readFrom(in));
+            }
+
+            // Replaces shards add() created meanwhile: their memories are newer than the
+            // snapshot and come back with the database pass that follows
+            shards.putAll(restored);
+            indexedUntil.accumulateAndGet(until, (a, b) -> a.isAfter(b) ? a : b);
+            tierChangesUntil = writtenAt;
+            return until;
+        } catch (IOException e) {
+            log.warn("Ignoring memory index snapshot {}: {}", snapshotPath, e.getMessage());
+            return null;
+        }
+    }
+
+    // ========== Helpers ==========
+
+    private static List<ConversationMemory> rerank(List<ConversationMemory> memories, float[] query, int limit) {
+        return memories.stream()
+                // A snapshot may still hold memories demoted or archived since it was written
+                .filter(memory -> isHot(memory) && memory.getEmbedding() != null && memory.getEmbedding().length == query.length)
+                .sorted(Comparator.comparingDouble((ConversationMemory memory) -> dot(query, memory.getEmbedding())).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static boolean isHot(ConversationMemory memory) {
+        return memory.getTier() == null || memory.getTier() == MemoryTier.HOT;
+    }
+
+    private static String shardKey(UUID userId, UUID characterId) {
+        return userId + ":" + characterId;
+    }
+}
@@ -0,0 +1,178 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * {@link VectorStore} on Milvus, one collection for all pairs with {@code user_id} as the
+ * partition key, so a pair's search only visits its user's partition.
+ * <p>
+ * The collection and its HNSW index are created on first start with the configured
+ * {@code M}, {@code efConstruction} and metric, then loaded. Reads use session consistency:
+ * an instance sees its own upserts and deletes, other instances within the bounded staleness
+ * Milvus allows. L2 distances are turned into cosine similarity, vectors being unit length.
+ */
+public class MilvusVectorStore implements VectorStore {
+
+    private static final String ID = "id";
+    private static final String USER_ID = "user_id";
+    private static final String CHARACTER_ID = "character_id";
+    private static final String EMBEDDING = "embedding";
+
+    private final MilvusServiceClient client;
+    private final String collection;
+    private final int dimension;
+    private final MetricType metricType;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int batchSize;
+
+    public MilvusVectorStore(MilvusServiceClient client, String collection, int dimension, MetricType metricType,
+                             int m, int efConstruction, int efSearch, int batchSize) {
+        this.client = client;
+        this.collection = collection;
+        this.dimension = dimension;
+        this.metricType = metricType;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Creates the collection and its index when missing, then loads it for search.
+     */
+    public void ensureCollection() {
+        Boolean exists = check(client.hasCollection(HasCollectionParam.newBuilder()
+                .withCollectionName(collection)
+                .build()), "hasCollection");
+
+        if (!Boolean.TRUE.equals(exists)) {
+            check(client.createCollection(CreateCollectionParam.newBuilder()
+                    .withCollectionName(collection)
+                    .withDescription("Embeddings of HOT conversation memories")
+                    .addFieldType(FieldType.newBuilder().withName(ID).withDataType(DataType.VarChar)
+                            .withMaxLength(36).withPrimaryKey(true).withAutoID(false).build())
+                    .addFieldType(FieldType.newBuilder().withName(USER_ID).withDataType(DataType.VarChar)
+                            .withMaxLength(36).withPartitionKey(true).build())
+                    .addFieldType(FieldType.newBuilder().withName(CHARACTER_ID).withDataType(DataType.VarChar)
+                            .withMaxLength(36).build())
+                    .addFieldType(FieldType.newBuilder().withName(EMBEDDING).withDataType(DataType.FloatVector)
+                            .withDimension(dimension).build())
+                    .build()), "createCollection");
+
+            check(client.createIndex(CreateIndexParam.newBuilder()
+                    .withCollectionName(collection)
+                    .withFieldName(EMBEDDING)
+                    .withIndexType(IndexType.HNSW)
+                    .withMetricType(metricType)
+                    .withExtraParam("{\"M\":" + m + ",\"efConstruction\":" + efConstruction + "}")
+                    .withSyncMode(Boolean.TRUE)
+                    .build()), "createIndex");
+            log.info("Created Milvus collection {} ({} dimensions, HNSW M={} efConstruction={}, {})",
+                    collection, dimension, m, efConstruction, metricType);
+        }
+
+        check(client.loadCollection(LoadCollectionParam.newBuilder()
+                .withCollectionName(collection)
+                .build()), "loadCollection");
+    }
+
+    @Override
+    public void upsert(VectorRecord record) {
+        upsertAll(List.of(record));
+    }
+
+    @Override
+    public void upsertAll(List<VectorRecord> records) {
+        for (int from = 0; from < records.size(); from += batchSize) {
+            List<VectorRecord> batch = records.subList(from, Math.min(records.size(), from + batchSize));
+            List<String> ids = new ArrayList<>(batch.size());
+            List<String> userIds = new ArrayList<>(batch.size());
+            List<String> characterIds = new ArrayList<>(batch.size());
+            List<List<Float>> vectors = new ArrayList<>(batch.size());
+            for (VectorRecord record : batch) {
+                if (record.getVector() == null || record.getVector().length != dimension) {
+                    throw new VectorStoreException("Expected a vector of " + dimension + " dimensions for " + record.getId());
+                }
+                ids.add(record.getId().toString());
+                userIds.add(record.getUserId().toString());
+                characterIds.add(record.getCharacterId().toString());
+                vectors.add(toList(record.getVector()));
+            }
+
+            check(client.upsert(UpsertParam.newBuilder()
+                    .withCollectionName(collection)
+                    .withFields(List.of(
+                            new InsertParam.Field(ID, ids),
+                            new InsertParam.Field(USER_ID, userIds),
+                            new InsertParam.Field(CHARACTER_ID, characterIds),
+                            new InsertParam.Field(EMBEDDING, vectors)))
+                    .build()), "upsert");
+        }
+    }
+
+    @Override
+    public void delete(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        check(client.delete(DeleteParam.newBuilder()
+                .withCollectionName(collection)
+                .withExpr(ID + " in [" + ids.stream().map(id -> "\"" + id + "\"").collect(Collectors.joining(",")) + "]")
+                .build()), "delete");
+    }
+
+    @Override
+    public List<VectorMatch> search(UUID userId, UUID characterId, float[] query, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        SearchResults results = check(client.search(SearchParam.newBuilder()
+                .withCollectionName(collection)
+                .withMetricType(metricType)
+                .withVectorFieldName(EMBEDDING)
+                .withVectors(List.of(toList(query)))
+                .withTopK(k)
+                .withExpr(USER_ID + " == \"" + userId + "\" && " + CHARACTER_ID + " == \"" + characterId + "\"")
+                .withParams("{\"ef\":" + Math.max(efSearch, k) + "}")
+                .withConsistencyLevel(ConsistencyLevelEnum.SESSION)
+                .build()), "search");
+
+        return new SearchResultsWrapper(results.getResults()).getIDScore(0).stream()
+                .map(score -> VectorMatch.builder()
+                        .id(UUID.fromString(score.getStrID()))
+                        .similarity(similarity(score.getScore()))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String name() {
+        return "milvus";
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private double similarity(float score) {
+        // Milvus reports squared L2 distance, 2 - 2 cos for unit vectors; IP and COSINE are similarities
+        return metricType == MetricType.L2 ? 1 - score / 2.0 : score;
+    }
+
+    private <T> T check(R<T> response, String operation) {
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            throw new VectorStoreException("Milvus " + operation + " on " + collection + " failed: " + response.getMessage(),
+                    response.getException());
+        }
+        return response.getData();
+    }
+
+    private static List<Float> toList(float[] vector) {
+        List<Float> values = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            values.add(value);
+        }
+        return values;
+    }
+}
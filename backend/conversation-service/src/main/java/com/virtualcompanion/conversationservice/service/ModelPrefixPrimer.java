@@ -0,0 +1,73 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class ModelPrefixPrimer {
+
+    private final WebClient.Builder webClientBuilder;
+    private final ModelResidencyManager residencyManager;
+
+    @Value("${ai.prewarm.prefix.enabled:${ai.local.enabled:true}}")
+    private boolean enabled;
+
+    @Value("${ai.ollama.base-url:http://localhost:11434}")
+    private String ollamaBaseUrl;
+
+    @Value("${ai.openai.base-url:https://api.openai.com/v1}")
+    private String turnBaseUrl;
+
+    @Value("${ai.prewarm.prefix.timeout:10s}")
+    private Duration timeout;
+
+    private WebClient ollamaClient;
+
+    @PostConstruct
+    void init() {
+        ollamaClient = webClientBuilder.baseUrl(ollamaBaseUrl).build();
+        // Turns go through the OpenAI-compatible endpoint: priming only pays off when that is
+        // Ollama's own (/v1 of the same server), since its KV cache is the one the turn reuses
+        if (enabled && !turnBaseUrl.startsWith(ollamaBaseUrl)) {
+            log.info("Prefix priming disabled: turns are generated by {}, not by Ollama at {}", turnBaseUrl, ollamaBaseUrl);
+            enabled = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Zero-token eval: Ollama evaluates the system prompt and history into its KV cache
+     * (num_predict = 0) and keeps the model loaded, so the real request only pays for the new turn.
+     */
+    public Mono<Void> prime(String model, String systemPrompt, List<Message> history) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+
+        List<Map<String, String>> messages = new ArrayList<>();
+        messages.add(Map.of("role", "system", "content", systemPrompt));
+        for (Message msg : history) {
+            if ("user".equals(msg.getRole()) || "assistant".equals(msg.getRole())) {
+                messages.add(Map.of("role", msg.getRole(), "content", msg.getContent()));
+            }
+        }
+
+        Map<String, Object> request = Map.of(
+                "model", model,
+                "messages", messages,
+                "stream", false,
+                "keep_alive", residencyManager.keepAliveFor(model),
+                "options", Map.of("num_predict", 0)
+        );
+
+        // Share an in-flight model load instead of racing it with a second one
+        return residencyManager.ensureLoaded(model)
+                .then(ollamaClient.post()
+                        .uri("/api/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(request)
+                        .retrieve()
+                        .toBodilessEntity()
+                        .timeout(timeout))
+                .then();
+    }
+}
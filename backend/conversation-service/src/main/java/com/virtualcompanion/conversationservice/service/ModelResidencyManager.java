@@ -0,0 +1,287 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Tracks which local (Ollama) models are resident and keeps the ones in demand loaded.
+ * <p>
+ * Configured models are warmed at startup. Every request records demand; models above the
+ * hot threshold get a long {@code keep_alive} and are re-pinned before they expire, others get
+ * the default. When resident models exceed the memory budget, the least demanded ones are
+ * unloaded. Concurrent requests for a model that is being loaded share the same load.
+ */
+public class ModelResidencyManager {
+
+    private final WebClient.Builder webClientBuilder;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.residency.enabled:${ai.local.enabled:true}}")
+    private boolean enabled;
+
+    @Value("${ai.ollama.base-url:http://localhost:11434}")
+    private String ollamaBaseUrl;
+
+    @Value("${ai.residency.warm-models:}")
+    private List<String> warmModels;
+
+    @Value("${ai.residency.demand-half-life:5m}")
+    private Duration demandHalfLife;
+
+    @Value("${ai.residency.hot-threshold:10}")
+    private double hotThreshold;
+
+    @Value("${ai.residency.keep-alive.hot:2h}")
+    private Duration hotKeepAlive;
+
+    @Value("${ai.residency.keep-alive.default:10m}")
+    private Duration defaultKeepAlive;
+
+    @Value("${ai.residency.memory-budget:0B}")
+    private DataSize memoryBudget;
+
+    @Value("${ai.residency.refresh-interval:30s}")
+    private Duration refreshInterval;
+
+    @Value("${ai.residency.load-timeout:120s}")
+    private Duration loadTimeout;
+
+    private final Map<String, ModelState> models = new ConcurrentHashMap<>();
+    private final Map<String, Mono<Void>> loading = new ConcurrentHashMap<>();
+
+    private WebClient ollamaClient;
+
+    @PostConstruct
+    void init() {
+        ollamaClient = webClientBuilder.baseUrl(ollamaBaseUrl).build();
+
+        Gauge.builder("ai.model.resident.count", models,
+                        states -> states.values().stream().filter(state -> state.resident).count())
+                .description("Local models currently loaded")
+                .register(meterRegistry);
+        Gauge.builder("ai.model.resident.bytes", models,
+                        states -> states.values().stream().filter(state -> state.resident).mapToLong(state -> state.sizeBytes).sum())
+                .description("Memory held by resident local models")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        if (!enabled || warmModels == null) {
+            return;
+        }
+
+        // Warm sequentially so startup does not load every model at once
+        Flux.fromIterable(warmModels)
+                .filter(model -> !model.isBlank())
+                .concatMap(model -> ensureLoaded(model.trim()))
+                .subscribe(null, error -> log.warn("Model warm-up failed: {}", error.getMessage()));
+    }
+
+    /**
+     * Completes once the model is resident. Callers arriving during a load wait on that load;
+     * a failed load completes empty so the request can still try (and load) on its own.
+     */
+    public Mono<Void> ensureLoaded(String model) {
+        if (!enabled || model == null) {
+            return Mono.empty();
+        }
+
+        ModelState state = stateOf(model);
+        state.recordDemand(demandHalfLife);
+        if (state.isResident(Instant.now())) {
+            return Mono.empty();
+        }
+
+        return loading.computeIfAbsent(model, this::load)
+                .onErrorResume(error -> Mono.empty());
+    }
+
+    /**
+     * keep_alive to send with a request for this model, in seconds.
+     */
+    public long keepAliveFor(String model) {
+        if (!enabled || model == null) {
+            return defaultKeepAlive.toSeconds();
+        }
+        return stateOf(model).demand(demandHalfLife) >= hotThreshold
+                ? hotKeepAlive.toSeconds()
+                : defaultKeepAlive.toSeconds();
+    }
+
+    /**
+     * Reconciles with Ollama's view of loaded models, re-pins hot models before they expire
+     * and unloads cold ones when over the memory budget.
+     */
+    @Scheduled(fixedDelayString = "${ai.residency.refresh-interval:30s}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+
+        JsonNode running;
+        try {
+            running = ollamaClient.get()
+                    .uri("/api/ps")
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .block(Duration.ofSeconds(5));
+        } catch (Exception e) {
+            log.debug("Could not read resident models: {}", e.getMessage());
+            return;
+        }
+        if (running == null) {
+            return;
+        }
+
+        Set<String> resident = new HashSet<>();
+        for (JsonNode node : running.path("models")) {
+            String name = node.path("name").asText();
+            ModelState state = stateOf(name);
+            state.resident = true;
+            state.sizeBytes = node.path("size_vram").asLong(0) > 0 ? node.path("size_vram").asLong() : node.path("size").asLong(0);
+            state.expiresAt = parseInstant(node.path("expires_at").asText(null));
+            resident.add(name);
+        }
+        models.forEach((name, state) -> {
+            if (!resident.contains(name) && !loading.containsKey(name)) {
+                state.resident = false;
+            }
+        });
+
+        repinHotModels();
+        relieveMemoryPressure();
+    }
+
+    private void repinHotModels() {
+        Instant horizon = Instant.now().plus(refreshInterval.multipliedBy(2));
+        models.forEach((name, state) -> {
+            if (state.resident && state.expiresAt != null && state.expiresAt.isBefore(horizon)
+                    && state.demand(demandHalfLife) >= hotThreshold) {
+                sendKeepAlive(name, hotKeepAlive.toSeconds())
+                        .subscribe(null, error -> log.debug("Re-pin of {} failed: {}", name, error.getMessage()));
+            }
+        });
+    }
+
+    private void relieveMemoryPressure() {
+        long budget = memoryBudget.toBytes();
+        if (budget <= 0) {
+            return;
+        }
+
+        List<Map.Entry<String, ModelState>> residentModels = models.entrySet().stream()
+                .filter(entry -> entry.getValue().resident)
+                .sorted(Comparator.comparingDouble(entry -> entry.getValue().demand(demandHalfLife)))
+                .collect(Collectors.toList());
+
+        long used = residentModels.stream().mapToLong(entry -> entry.getValue().sizeBytes).sum();
+        for (Map.Entry<String, ModelState> entry : residentModels) {
+            if (used <= budget) {
+                break;
+            }
+            ModelState state = entry.getValue();
+            if (state.demand(demandHalfLife) >= hotThreshold) {
+                break;
+            }
+
+            log.info("Unloading model {} ({} bytes) under memory pressure", entry.getKey(), state.sizeBytes);
+            sendKeepAlive(entry.getKey(), 0)
+                    .doOnSuccess(done -> meterRegistry.counter("ai.model.unloads", "model", entry.getKey(),
+                            "reason", "memory_pressure").increment())
+                    .subscribe(null, error -> log.warn("Unload of {} failed: {}", entry.getKey(), error.getMessage()));
+            state.resident = false;
+            used -= state.sizeBytes;
+        }
+    }
+
+    private Mono<Void> load(String model) {
+        ModelState state = stateOf(model);
+        long keepAlive = keepAliveFor(model);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        log.info("Loading model {} (keep_alive {}s)", model, keepAlive);
+
+        return sendKeepAlive(model, keepAlive)
+                .timeout(loadTimeout)
+                .doOnSuccess(done -> {
+                    state.resident = true;
+                    state.expiresAt = Instant.now().plusSeconds(keepAlive);
+                    sample.stop(loadTimer(model, "success"));
+                })
+                .doOnError(error -> {
+                    log.warn("Loading model {} failed: {}", model, error.getMessage());
+                    sample.stop(loadTimer(model, "error"));
+                })
+                .doFinally(signal -> loading.remove(model))
+                .cache();
+    }
+
+    // A generate request without a prompt only loads (or, with keep_alive 0, unloads) the model
+    private Mono<Void> sendKeepAlive(String model, long keepAliveSeconds) {
+        return ollamaClient.post()
+                .uri("/api/generate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("model", model, "keep_alive", keepAliveSeconds, "stream", false))
+                .retrieve()
+                .toBodilessEntity()
+                .then();
+    }
+
+    private Timer loadTimer(String model, String outcome) {
+        return Timer.builder("ai.model.load.duration")
+                .description("Time to load a local model into memory")
+                .tags("model", model, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private ModelState stateOf(String model) {
+        return models.computeIfAbsent(model, name -> {
+            ModelState state = new ModelState();
+            Gauge.builder("ai.model.resident", state, s -> s.resident ? 1 : 0)
+                    .tag("model", name)
+                    .register(meterRegistry);
+            Gauge.builder("ai.model.demand", state, s -> s.demand(demandHalfLife))
+                    .description("Exponentially decayed request rate")
+                    .tag("model", name)
+                    .register(meterRegistry);
+            return state;
+        });
+    }
+
+    private static Instant parseInstant(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static final class ModelState {
+
+        private volatile boolean resident;
+        private volatile long sizeBytes;
+        private volatile Instant expiresAt;
+
+        private double demand;
+        private long demandUpdatedAt = System.nanoTime();
+
+        synchronized void recordDemand(Duration halfLife) {
+            decay(halfLife);
+            demand += 1;
+        }
+
+        synchronized double demand(Duration halfLife) {
+            decay(halfLife);
+            return demand;
+        }
+
+        boolean isResident(Instant now) {
+            return resident && (expiresAt == null || expiresAt.isAfter(now));
+        }
+
+        private void decay(Duration halfLife) {
+            long now = System.nanoTime();
+            demand *= Math.pow(0.5, (double) (now - demandUpdatedAt) / halfLife.toNanos());
+            demandUpdatedAt = now;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Sentence-transformers model exported to ONNX (e.g. all-MiniLM-L6-v2), run on CPU with ONNX
+ * Runtime. The model directory holds {@code model.onnx} and its {@code vocab.txt}.
+ * <p>
+ * A batch is padded to its longest text, so batching texts of similar length wastes least. The
+ * sentence vector is the mean of the token states under the attention mask, L2-normalized, as
+ * the sentence-transformers pooling does.
+ */
+public class OnnxSentenceEncoder implements SentenceEncoder {
+
+    private static final String INPUT_IDS = "input_ids";
+    private static final String ATTENTION_MASK = "attention_mask";
+    private static final String TOKEN_TYPE_IDS = "token_type_ids";
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final WordPieceTokenizer tokenizer;
+    private final int maxSequenceLength;
+    private final int dimension;
+    private final boolean tokenTypeInput;
+
+    private OnnxSentenceEncoder(OrtEnvironment environment, OrtSession session, WordPieceTokenizer tokenizer,
+                                int maxSequenceLength) throws OrtException {
+        this.environment = environment;
+        this.session = session;
+        this.tokenizer = tokenizer;
+        this.maxSequenceLength = maxSequenceLength;
+        this.tokenTypeInput = session.getInputNames().contains(TOKEN_TYPE_IDS);
+
+        TensorInfo output = (TensorInfo) session.getOutputInfo().values().iterator().next().getInfo();
+        long[] shape = output.getShape();
+        this.dimension = (int) shape[shape.length - 1];
+    }
+
+    public static OnnxSentenceEncoder load(Path modelDirectory, int maxSequenceLength, int threads)
+            throws IOException, OrtException {
+        WordPieceTokenizer tokenizer = WordPieceTokenizer.load(modelDirectory.resolve("vocab.txt"));
+
+        OrtEnvironment environment = OrtEnvironment.getEnvironment();
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+        if (threads > 0) {
+            options.setIntraOpNumThreads(threads);
+        }
+        OrtSession session = environment.createSession(modelDirectory.resolve("model.onnx").toString(), options);
+
+        return new OnnxSentenceEncoder(environment, session, tokenizer, maxSequenceLength);
+    }
+
+    @Override
+    public float[][] encode(List<String> texts) {
+        int batch = texts.size();
+        int[][] tokens = new int[batch][];
+        int length = 0;
+        for (int i = 0; i < batch; i++) {
+            tokens[i] = tokenizer.encode(texts.get(i), maxSequenceLength);
+            length = Math.max(length, tokens[i].length);
+        }
+
+        long[] ids = new long[batch * length];
+        long[] mask = new long[batch * length];
+        for (int i = 0; i < batch; i++) {
+            for (int j = 0; j < tokens[i].length; j++) {
+                ids[i * length + j] = tokens[i][j];
+                mask[i * length + j] = 1;
+            }
+        }
+
+        long[] shape = {batch, length};
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put(INPUT_IDS, OnnxTensor.createTensor(environment, LongBuffer.wrap(ids), shape));
+            inputs.put(ATTENTION_MASK, OnnxTensor.createTensor(environment, LongBuffer.wrap(mask), shape));
+            if (tokenTypeInput) {
+                inputs.put(TOKEN_TYPE_IDS, OnnxTensor.createTensor(environment, LongBuffer.wrap(new long[batch * length]), shape));
+            }
+
+            try (OrtSession.Result result = session.run(inputs)) {
+                float[][][] states = (float[][][]) result.get(0).getValue();
+                return meanPool(states, tokens);
+            }
+        } catch (OrtException e) {
+            throw new EmbeddingException("Embedding inference failed for a batch of " + batch, e);
+        } finally {
+            inputs.values().forEach(OnnxTensor::close);
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public void close() {
+        try {
+            session.close();
+        } catch (OrtException e) {
+            log.warn("Could not close embedding model session: {}", e.getMessage());
+        }
+    }
+
+    private float[][] meanPool(float[][][] states, int[][] tokens) {
+        float[][] vectors = new float[states.length][dimension];
+        for (int i = 0; i < states.length; i++) {
+            float[] vector = vectors[i];
+            int count = tokens[i].length;
+            for (int j = 0; j < count; j++) {
+                float[] state = states[i][j];
+                for (int d = 0; d < dimension; d++) {
+                    vector[d] += state[d];
+                }
+            }
+
+            double norm = 0;
+            for (int d = 0; d < dimension; d++) {
+                vector[d] /= count;
+                norm += vector[d] * vector[d];
+            }
+            float scale = norm > 0 ? (float) (1.0 / Math.sqrt(norm)) : 0f;
+            for (int d = 0; d < dimension; d++) {
+                vector[d] *= scale;
+            }
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,182 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * {@link VectorStore} on pgvector: the {@code memory_vectors} table (V4), searched through an
+ * HNSW index on cosine distance.
+ * <p>
+ * The store owns its index. {@link #ensureIndex()} creates {@code idx_memory_vectors_hnsw}
+ * with the configured {@code m} and {@code ef_construction}, and rebuilds it concurrently when
+ * those changed or a previous build left it invalid; instances starting together serialize on
+ * an advisory lock. Each search sets {@code hnsw.ef_search}, and optionally
+ * {@code hnsw.iterative_scan} (pgvector 0.8+) so the pair filter does not starve the top k,
+ * for its own transaction only.
+ */
+public class PgVectorStore implements VectorStore {
+
+    private static final String INDEX_NAME = "idx_memory_vectors_hnsw";
+    private static final long INDEX_LOCK = 0x4D454D56L;
+
+    private static final String UPSERT = "INSERT INTO memory_vectors (id, user_id, character_id, embedding) "
+            + "VALUES (?, ?, ?, ?::vector) ON CONFLICT (id) DO UPDATE SET user_id = EXCLUDED.user_id, "
+            + "character_id = EXCLUDED.character_id, embedding = EXCLUDED.embedding";
+
+    private static final String SEARCH = "SELECT id, 1 - (embedding <=> ?::vector) AS similarity FROM memory_vectors "
+            + "WHERE user_id = ? AND character_id = ? ORDER BY embedding <=> ?::vector LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final String iterativeScan;
+    private final int batchSize;
+
+    public PgVectorStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, int m, int efConstruction,
+                         int efSearch, String iterativeScan, int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.iterativeScan = iterativeScan;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Creates the HNSW index, or rebuilds it when invalid or built with other parameters.
+     * Runs outside any transaction: concurrent builds cannot.
+     */
+    public void ensureIndex() {
+        String wanted = "m=" + m + ",ef_construction=" + efConstruction;
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT pg_advisory_lock(" + INDEX_LOCK + ")");
+                    try {
+                        ensureIndex(statement, wanted);
+                    } finally {
+                        statement.execute("SELECT pg_advisory_unlock(" + INDEX_LOCK + ")");
+                    }
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            throw new VectorStoreException("Could not build the pgvector HNSW index", e);
+        }
+    }
+
+    private void ensureIndex(Statement statement, String wanted) throws SQLException {
+        String options = null;
+        boolean exists = false;
+        boolean valid = false;
+        try (ResultSet index = statement.executeQuery("SELECT array_to_string(c.reloptions, ','), i.indisvalid "
+                + "FROM pg_class c JOIN pg_index i ON i.indexrelid = c.oid WHERE c.relname = '" + INDEX_NAME + "'")) {
+            if (index.next()) {
+                exists = true;
+                options = index.getString(1);
+                valid = index.getBoolean(2);
+            }
+        }
+
+        if (exists && valid && wanted.equals(options)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        String build = "CREATE INDEX CONCURRENTLY %s ON memory_vectors USING hnsw (embedding vector_cosine_ops) "
+                + "WITH (m = " + m + ", ef_construction = " + efConstruction + ")";
+        if (!exists) {
+            statement.execute(String.format(build, INDEX_NAME));
+        } else {
+            // Build the replacement first so searches keep an index until the swap
+            statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME + "_next");
+            statement.execute(String.format(build, INDEX_NAME + "_next"));
+            statement.execute("DROP INDEX CONCURRENTLY " + INDEX_NAME);
+            statement.execute("ALTER INDEX " + INDEX_NAME + "_next RENAME TO " + INDEX_NAME);
+        }
+        log.info("pgvector HNSW index {} {} with {} in {} ms", INDEX_NAME, exists ? "rebuilt" : "created", wanted,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public void upsert(VectorRecord record) {
+        upsertAll(List.of(record));
+    }
+
+    @Override
+    public void upsertAll(List<VectorRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT, records, batchSize, (statement, record) -> {
+                statement.setObject(1, record.getId());
+                statement.setObject(2, record.getUserId());
+                statement.setObject(3, record.getCharacterId());
+                statement.setString(4, toLiteral(record.getVector()));
+            });
+        } catch (DataAccessException e) {
+            throw new VectorStoreException("Could not upsert " + records.size() + " vectors", e);
+        }
+    }
+
+    @Override
+    public void delete(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM memory_vectors WHERE id = ANY(?)",
+                    (PreparedStatementSetter) statement -> statement.setArray(1,
+                            statement.getConnection().createArrayOf("uuid", ids.toArray())));
+        } catch (DataAccessException e) {
+            throw new VectorStoreException("Could not delete " + ids.size() + " vectors", e);
+        }
+    }
+
+    @Override
+    public List<VectorMatch> search(UUID userId, UUID characterId, float[] query, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        String literal = toLiteral(query);
+        try {
+            return transactionTemplate.execute(status -> {
+                jdbcTemplate.queryForObject("SELECT set_config('hnsw.ef_search', ?, true)", String.class,
+                        String.valueOf(Math.max(efSearch, k)));
+                if (iterativeScan != null && !iterativeScan.isBlank()) {
+                    jdbcTemplate.queryForObject("SELECT set_config('hnsw.iterative_scan', ?, true)", String.class,
+                            iterativeScan);
+                }
+                return jdbcTemplate.query(SEARCH, (row, number) -> VectorMatch.builder()
+                                .id(row.getObject("id", UUID.class))
+                                .similarity(row.getDouble("similarity"))
+                                .build(),
+                        literal, userId, characterId, literal, k);
+            });
+        } catch (DataAccessException | TransactionException e) {
+            throw new VectorStoreException("pgvector search failed", e);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "pgvector";
+    }
+
+    @Override
+    public void close() {
+        // The data source belongs to the application context
+    }
+
+    static String toLiteral(float[] vector) {
+        StringBuilder literal = new StringBuilder(vector.length * 10).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(vector[i]);
+        }
+        return literal.append(']').toString();
+    }
+}
@@ -0,0 +1,15 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class PreparedContext {
+
+    private UUID conversationId;
+    private ConversationContext conversationContext;
+    private CharacterContext characterContext;
+    private CharacterDetails character;
+    private List<Message> recentMessages;
+    private List<String> relevantMemories;
+    private boolean prewarmed;
+    private Instant preparedAt;
+    private TurnTrace trace;
+    private Long timeToFirstTokenNanos;
+}
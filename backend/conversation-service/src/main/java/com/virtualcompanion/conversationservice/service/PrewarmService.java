@@ -0,0 +1,10 @@
+package com.virtualcompanion.conversationservice.service;
+
+public interface PrewarmService {
+
+    Mono<Void> prewarm(UUID userId, UUID conversationId, String trigger);
+
+    boolean isWarm(UUID conversationId);
+
+    void recordTimeToFirstToken(boolean prewarmed, long nanos);
+}
@@ -0,0 +1,88 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class PrewarmServiceImpl implements PrewarmService {
+
+    private final ConversationRepository conversationRepository;
+    private final ConversationContextAssembler contextAssembler;
+    private final AIProcessorService aiProcessor;
+    private final MeterRegistry meterRegistry;
+    private final BrownoutController brownoutController;
+
+    @Value("${conversation.prewarm.enabled:true}")
+    private boolean enabled;
+
+    @Value("${conversation.prewarm.min-interval:15s}")
+    private Duration minInterval;
+
+    @Value("${conversation.prewarm.max-concurrent:8}")
+    private int maxConcurrent;
+
+    // One prewarm per conversation per interval, so idle typing cannot amplify load
+    private Cache<UUID, Boolean> recentPrewarms;
+    private Semaphore permits;
+
+    @PostConstruct
+    void init() {
+        recentPrewarms = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(minInterval)
+                .build();
+        permits = new Semaphore(maxConcurrent);
+    }
+
+    @Override
+    public Mono<Void> prewarm(UUID userId, UUID conversationId, String trigger) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+
+        // Speculative work is the first thing to go under overload
+        if (brownoutController.level() != BrownoutLevel.NORMAL) {
+            return skipped(trigger, "brownout");
+        }
+
+        if (recentPrewarms.asMap().putIfAbsent(conversationId, Boolean.TRUE) != null) {
+            return skipped(trigger, "rate_limited");
+        }
+
+        if (!permits.tryAcquire()) {
+            recentPrewarms.invalidate(conversationId);
+            return skipped(trigger, "saturated");
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        return Mono.fromCallable(() -> conversationRepository.findByIdAndUserId(conversationId, userId)
+                        .map(contextAssembler::prepare)
+                        .orElse(null))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(aiProcessor::primePrefix)
+                .doOnSuccess(done -> sample.stop(meterRegistry.timer("conversation.prewarm.duration", "trigger", trigger)))
+                .onErrorResume(error -> {
+                    log.debug("Prewarm failed for conversation {}: {}", conversationId, error.getMessage());
+                    meterRegistry.counter("conversation.prewarm.failed", "trigger", trigger).increment();
+                    return Mono.empty();
+                })
+                .doFinally(signal -> permits.release());
+    }
+
+    @Override
+    public boolean isWarm(UUID conversationId) {
+        return contextAssembler.isWarm(conversationId);
+    }
+
+    @Override
+    public void recordTimeToFirstToken(boolean prewarmed, long nanos) {
+        Timer.builder("conversation.prewarm.ttft")
+                .description("Time to first token, split by whether the turn was prewarmed")
+                .tag("prewarmed", String.valueOf(prewarmed))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Mono<Void> skipped(String trigger, String reason) {
+        meterRegistry.counter("conversation.prewarm.skipped", "trigger", trigger, "reason", reason).increment();
+        return Mono.empty();
+    }
+}
@@ -0,0 +1,20 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Identifies a cacheable turn. Replies are generated from the user's own context (memories,
+ * summary, history), so the scope names the user: an answer is only ever replayed to the user
+ * it was generated for.
+ */
+public class ResponseCacheKey {
+
+    private UUID userId;
+    private UUID characterId;
+    private String modelName;
+    private String responseStyle;
+    private String normalizedPrompt;
+    private String promptHash; // SHA-256 of scope + normalized prompt
+
+    public String scope() {
+        return userId + ":" + characterId + ":" + modelName + ":" + (responseStyle != null ? responseStyle : "default");
+    }
+}
@@ -0,0 +1,12 @@
+package com.virtualcompanion.conversationservice.service;
+
+public interface ResponseCacheService {
+
+    boolean isCacheable(String userMessage, MessageOptions options);
+
+    ResponseCacheKey keyFor(UUID userId, UUID characterId, String modelName, ConversationContext context, String userMessage);
+
+    Mono<String> lookup(ResponseCacheKey key);
+
+    Mono<String> store(ResponseCacheKey key, String response);
+}
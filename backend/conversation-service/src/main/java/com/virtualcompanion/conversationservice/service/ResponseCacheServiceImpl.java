@@ -0,0 +1,361 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class ResponseCacheServiceImpl implements ResponseCacheService {
+
+    private static final String KEY_PREFIX = "ai:response:v2:";
+
+    // Turns mentioning the user themselves feed memory and must never be answered from a shared cache
+    private static final Set<String> PERSONAL_MARKERS = Set.of(
+            "i", "i'm", "im", "i've", "i'll", "i'd", "me", "my", "mine", "myself",
+            "remember", "name", "birthday", "love", "hate", "important", "always", "never",
+            "promise", "secret", "confession", "truth", "forget"
+    );
+
+    // Responses carrying links, handles or numbers are too specific to be replayed to other users
+    private static final Pattern SENSITIVE_CONTENT = Pattern.compile("(https?://|www\\.|\\S+@\\S+\\.\\w+|\\d{3,})");
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final EmbeddingService embeddingService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cache.ai-response.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.ai-response.ttl:5m}")
+    private Duration localTtl;
+
+    @Value("${cache.ai-response.redis-ttl:6h}")
+    private Duration redisTtl;
+
+    @Value("${cache.ai-response.max-size:5000}")
+    private long maxSize;
+
+    @Value("${cache.ai-response.max-prompt-words:8}")
+    private int maxPromptWords;
+
+    @Value("${cache.ai-response.max-response-length:600}")
+    private int maxResponseLength;
+
+    @Value("${cache.ai-response.admission-threshold:2}")
+    private int admissionThreshold;
+
+    @Value("${cache.ai-response.semantic.enabled:false}")
+    private boolean semanticEnabled;
+
+    @Value("${cache.ai-response.similarity-threshold:0.95}")
+    private double similarityThreshold;
+
+    @Value("${cache.ai-response.semantic.max-entries-per-character:256}")
+    private int maxSemanticEntries;
+
+    private Cache<String, String> localCache;
+    private Cache<String, AtomicInteger> admissionCounters;
+    private Cache<String, SemanticBucket> semanticBuckets;
+    private Cache<String, float[]> pendingEmbeddings;
+
+    private Counter l1Hits;
+    private Counter l2Hits;
+    private Counter semanticHits;
+    private Counter misses;
+
+    @PostConstruct
+    void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+
+        admissionCounters = Caffeine.newBuilder()
+                .maximumSize(maxSize * 4)
+                .expireAfterWrite(redisTtl)
+                .build();
+
+        semanticBuckets = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(redisTtl)
+                .build();
+
+        pendingEmbeddings = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(2))
+                .build();
+
+        l1Hits = lookupCounter("l1");
+        l2Hits = lookupCounter("l2");
+        semanticHits = lookupCounter("semantic");
+        misses = lookupCounter("miss");
+
+        Gauge.builder("ai.response.cache.hit.ratio", this, ResponseCacheServiceImpl::hitRatio)
+                .description("Share of cacheable turns answered from the response cache")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean isCacheable(String userMessage, MessageOptions options) {
+        if (!enabled || userMessage == null || userMessage.isBlank()) {
+            return false;
+        }
+
+        // Per-request tone or length overrides change the expected answer
+        if (options != null && (options.getPreferredTone() != null || options.getMaxResponseLength() != null)) {
+            return false;
+        }
+
+        String normalized = normalize(userMessage);
+        if (normalized.isEmpty()) {
+            return false;
+        }
+
+        String[] words = normalized.split(" ");
+        if (words.length > maxPromptWords) {
+            return false;
+        }
+
+        for (String word : words) {
+            if (PERSONAL_MARKERS.contains(word) || word.chars().anyMatch(Character::isDigit)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public ResponseCacheKey keyFor(UUID userId, UUID characterId, String modelName, ConversationContext context, String userMessage) {
+        String responseStyle = context != null && context.getSettings() != null
+                ? context.getSettings().getResponseStyle()
+                : null;
+
+        ResponseCacheKey key = ResponseCacheKey.builder()
+                .userId(userId)
+                .characterId(characterId)
+                .modelName(modelName)
+                .responseStyle(responseStyle)
+                .normalizedPrompt(normalize(userMessage))
+                .build();
+
+        key.setPromptHash(sha256(key.scope() + "\n" + key.getNormalizedPrompt()));
+        return key;
+    }
+
+    @Override
+    public Mono<String> lookup(ResponseCacheKey key) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+
+        return Mono.justOrEmpty(localCache.getIfPresent(key.getPromptHash()))
+                .doOnNext(hit -> l1Hits.increment())
+                .switchIfEmpty(Mono.defer(() -> fetchFromRedis(key.getPromptHash())
+                        .doOnNext(hit -> l2Hits.increment())))
+                .switchIfEmpty(Mono.defer(() -> semanticLookup(key)))
+                .switchIfEmpty(Mono.fromRunnable(misses::increment))
+                .onErrorResume(error -> {
+                    log.warn("Response cache lookup failed for {}: {}", key.getPromptHash(), error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public Mono<String> store(ResponseCacheKey key, String response) {
+        if (!enabled) {
+            return Mono.just(response);
+        }
+
+        String rejection = rejectionReason(response);
+        if (rejection != null) {
+            return rejected(rejection, response);
+        }
+
+        // Admission: a prompt must miss several times before its answer is reused
+        int seen = admissionCounters.get(key.getPromptHash(), hash -> new AtomicInteger()).incrementAndGet();
+        if (seen < admissionThreshold) {
+            return rejected("admission", response);
+        }
+
+        // setIfAbsent keeps the first validated answer; later writes cannot overwrite it
+        return redisTemplate.opsForValue()
+                .setIfAbsent(KEY_PREFIX + key.getPromptHash(), response, redisTtl)
+                .doOnNext(stored -> {
+                    if (Boolean.TRUE.equals(stored)) {
+                        localCache.put(key.getPromptHash(), response);
+                        indexSemantic(key);
+                    }
+                })
+                .thenReturn(response)
+                .onErrorResume(error -> {
+                    log.warn("Response cache store failed for {}: {}", key.getPromptHash(), error.getMessage());
+                    return Mono.just(response);
+                });
+    }
+
+    // ========== Tiers ==========
+
+    private Mono<String> fetchFromRedis(String promptHash) {
+        return redisTemplate.opsForValue().get(KEY_PREFIX + promptHash)
+                .doOnNext(value -> localCache.put(promptHash, value));
+    }
+
+    private Mono<String> semanticLookup(ResponseCacheKey key) {
+        if (!semanticEnabled) {
+            return Mono.empty();
+        }
+
+        return Mono.fromCallable(() -> unitVector(embeddingService.generateEmbedding(key.getNormalizedPrompt())))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(embedding -> {
+                    pendingEmbeddings.put(key.getPromptHash(), embedding);
+
+                    SemanticBucket bucket = semanticBuckets.getIfPresent(key.scope());
+                    String nearestHash = bucket != null ? bucket.nearest(embedding, similarityThreshold) : null;
+                    if (nearestHash == null) {
+                        return Mono.empty();
+                    }
+
+                    return Mono.justOrEmpty(localCache.getIfPresent(nearestHash))
+                            .switchIfEmpty(Mono.defer(() -> fetchFromRedis(nearestHash)));
+                })
+                .doOnNext(hit -> semanticHits.increment());
+    }
+
+    private void indexSemantic(ResponseCacheKey key) {
+        if (!semanticEnabled) {
+            return;
+        }
+
+        float[] embedding = pendingEmbeddings.getIfPresent(key.getPromptHash());
+        if (embedding == null) {
+            return;
+        }
+
+        semanticBuckets.get(key.scope(), scope -> new SemanticBucket(maxSemanticEntries))
+                .add(key.getPromptHash(), embedding);
+        pendingEmbeddings.invalidate(key.getPromptHash());
+    }
+
+    // ========== Poisoning Guard ==========
+
+    private String rejectionReason(String response) {
+        if (response == null || response.isBlank()) {
+            return "empty";
+        }
+        if (response.length() > maxResponseLength) {
+            return "too_long";
+        }
+        if (SENSITIVE_CONTENT.matcher(response).find()) {
+            return "sensitive_content";
+        }
+        return null;
+    }
+
+    private Mono<String> rejected(String reason, String response) {
+        meterRegistry.counter("ai.response.cache.rejected", "reason", reason).increment();
+        return Mono.just(response);
+    }
+
+    // ========== Utility Methods ==========
+
+    static String normalize(String text) {
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(folded.length());
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '\'') {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+
+        return normalized.toString();
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static float[] unitVector(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = norm > 0 ? (float) (vector[i] / norm) : 0f;
+        }
+        return unit;
+    }
+
+    private Counter lookupCounter(String tier) {
+        return Counter.builder("ai.response.cache.lookups")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private double hitRatio() {
+        double hits = l1Hits.count() + l2Hits.count() + semanticHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0.0 : hits / total;
+    }
+
+    /**
+     * Bounded per-scope set of unit prompt embeddings, oldest entries evicted first.
+     */
+    private static final class SemanticBucket {
+
+        private final int capacity;
+        private final ArrayDeque<String> hashes = new ArrayDeque<>();
+        private final ArrayDeque<float[]> embeddings = new ArrayDeque<>();
+
+        SemanticBucket(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void add(String promptHash, float[] embedding) {
+            if (hashes.size() >= capacity) {
+                hashes.pollFirst();
+                embeddings.pollFirst();
+            }
+            hashes.addLast(promptHash);
+            embeddings.addLast(embedding);
+        }
+
+        synchronized String nearest(float[] query, double threshold) {
+            String best = null;
+            double bestScore = threshold;
+
+            Iterator<String> hashIt = hashes.iterator();
+            for (float[] candidate : embeddings) {
+                String hash = hashIt.next();
+                if (candidate.length != query.length) {
+                    continue;
+                }
+
+                double dot = 0;
+                for (int i = 0; i < query.length; i++) {
+                    dot += query[i] * candidate[i];
+                }
+
+                if (dot >= bestScore) {
+                    bestScore = dot;
+                    best = hash;
+                }
+            }
+
+            return best;
+        }
+    }
+}
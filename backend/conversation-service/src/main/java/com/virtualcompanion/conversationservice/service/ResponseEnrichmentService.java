@@ -0,0 +1,8 @@
+package com.virtualcompanion.conversationservice.service;
+
+public interface ResponseEnrichmentService {
+
+    void submit(EnrichmentJob job);
+
+    Flux<MessageEnrichedEvent> enrichedEvents();
+}
@@ -0,0 +1,177 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class ResponseEnrichmentServiceImpl implements ResponseEnrichmentService {
+
+    private static final String[] SIGNIFICANT_KEYWORDS = {
+            "love", "hate", "important", "remember", "never forget",
+            "always", "promise", "secret", "confession", "truth"
+    };
+
+    private final CharacterCache characterCache;
+    private final EmotionAnalysisService emotionService;
+    private final MemoryService memoryService;
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final BrownoutController brownoutController;
+
+    @Value("${conversation.enrichment.concurrency:4}")
+    private int concurrency;
+
+    @Value("${conversation.enrichment.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Sinks.Many<MessageEnrichedEvent> events = Sinks.many().multicast().directBestEffort();
+
+    private Sinks.Many<EnrichmentJob> jobs;
+    private Disposable pipeline;
+    private Timer enrichmentTimer;
+
+    @PostConstruct
+    void start() {
+        jobs = Sinks.many().unicast().onBackpressureBuffer(Queues.<EnrichmentJob>get(queueCapacity).get());
+
+        enrichmentTimer = Timer.builder("conversation.enrichment.duration")
+                .description("Time spent enriching a response after it was returned")
+                .register(meterRegistry);
+
+        Gauge.builder("conversation.enrichment.pending", pending, AtomicInteger::get)
+                .description("Responses waiting for enrichment")
+                .register(meterRegistry);
+
+        // flatMap bounds the work in flight; the merged output is serialized, so events can be emitted safely.
+        // Under brownout jobs wait for recovery; the bounded queue drops what does not fit meanwhile.
+        pipeline = jobs.asFlux()
+                .flatMap(job -> brownoutController.awaitBelow(BrownoutLevel.DEFERRED_ENRICHMENT)
+                        .then(Mono.fromCallable(() -> enrich(job)))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(error -> {
+                            log.warn("Enrichment failed for message {}: {}",
+                                    job.getAssistantMessage().getId(), error.getMessage());
+                            meterRegistry.counter("conversation.enrichment.failed").increment();
+                            return Mono.empty();
+                        })
+                        .doFinally(signal -> pending.decrementAndGet()), concurrency)
+                .subscribe(events::tryEmitNext);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (pipeline != null) {
+            pipeline.dispose();
+        }
+    }
+
+    @Override
+    public synchronized void submit(EnrichmentJob job) {
+        // Enrichment is best effort: when the queue is full the response simply stays un-enriched
+        pending.incrementAndGet();
+        if (jobs.tryEmitNext(job).isFailure()) {
+            pending.decrementAndGet();
+            meterRegistry.counter("conversation.enrichment.dropped").increment();
+            log.warn("Enrichment queue full, skipping message {}", job.getAssistantMessage().getId());
+        }
+    }
+
+    @Override
+    public Flux<MessageEnrichedEvent> enrichedEvents() {
+        return events.asFlux();
+    }
+
+    private MessageEnrichedEvent enrich(EnrichmentJob job) {
+        long start = System.nanoTime();
+
+        Conversation conversation = job.getConversation();
+        Message assistantMessage = job.getAssistantMessage();
+        String content = assistantMessage.getContent();
+        MessageOptions options = job.getOptions();
+
+        // Analyze emotion if enabled
+        EmotionData emotion = null;
+        if (options != null && Boolean.TRUE.equals(options.getIncludeEmotions())) {
+            emotion = characterCache.getCharacter(conversation.getCharacterId())
+                    .map(character -> emotionService.analyzeEmotion(content, character.getPersonality()))
+                    .orElse(null);
+        }
+
+        double sentiment = emotionService.analyzeSentiment(content);
+
+        // Extract action if enabled
+        ActionData action = null;
+        if (options != null && Boolean.TRUE.equals(options.getIncludeActions())) {
+            action = extractAction(content);
+        }
+
+        // Cached answers are shared across users and never become memories
+        boolean significant = !job.isCached() && analyzeSignificance(job.getUserMessage().getContent(), content);
+
+        LocalDateTime enrichedAt = LocalDateTime.now();
+        patchMetadata(assistantMessage.getId(), emotion, sentiment, action, significant, enrichedAt);
+
+        // Update memory if significant
+        if (significant) {
+            memoryService.extractAndStoreMemory(conversation, job.getUserMessage(), assistantMessage);
+        }
+
+        enrichmentTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        return MessageEnrichedEvent.builder()
+                .conversationId(conversation.getId())
+                .userId(conversation.getUserId())
+                .messageId(assistantMessage.getId())
+                .emotion(emotion)
+                .action(action)
+                .significant(significant)
+                .enrichedAt(enrichedAt)
+                .build();
+    }
+
+    private void patchMetadata(String messageId, EmotionData emotion, double sentiment, ActionData action,
+                               boolean significant, LocalDateTime enrichedAt) {
+        // Field-level update: the message may already have been read or edited since it was saved
+        Update update = new Update()
+                .set("metadata.sentimentScore", sentiment)
+                .set("metadata.significant", significant)
+                .set("metadata.enrichedAt", enrichedAt);
+
+        if (emotion != null) {
+            update.set("metadata.emotion", emotion);
+        }
+        if (action != null) {
+            update.set("metadata.action", action);
+        }
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(messageId)), update, Message.class);
+    }
+
+    private ActionData extractAction(String response) {
+        // Simple action extraction - in production would use more sophisticated NLP
+        if (response.contains("*") && response.lastIndexOf("*") > response.indexOf("*")) {
+            String actionText = response.substring(
+                    response.indexOf("*") + 1,
+                    response.lastIndexOf("*")
+            );
+
+            return ActionData.builder()
+                    .type("gesture")
+                    .description(actionText)
+                    .duration(3.0)
+                    .build();
+        }
+
+        return null;
+    }
+
+    private boolean analyzeSignificance(String userMessage, String aiResponse) {
+        // Simple significance analysis - would be more sophisticated in production
+        String combined = (userMessage + " " + aiResponse).toLowerCase();
+
+        for (String keyword : SIGNIFICANT_KEYWORDS) {
+            if (combined.contains(keyword)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
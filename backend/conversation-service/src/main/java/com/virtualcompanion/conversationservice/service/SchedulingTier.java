@@ -0,0 +1,24 @@
+package com.virtualcompanion.conversationservice.service;
+
+public enum SchedulingTier {
+    VIP,
+    PREMIUM,
+    STANDARD,
+    FREE,
+    BACKGROUND;
+
+    /**
+     * Maps a user's subscription level onto an interactive tier; unknown levels get the lowest one.
+     */
+    public static SchedulingTier fromSubscription(Object subscriptionLevel) {
+        if (subscriptionLevel == null) {
+            return FREE;
+        }
+        try {
+            SchedulingTier tier = valueOf(subscriptionLevel.toString().toUpperCase(Locale.ROOT));
+            return tier == BACKGROUND ? FREE : tier;
+        } catch (IllegalArgumentException e) {
+            return FREE;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Model that turns a batch of texts into unit-length sentence vectors, one row per text.
+ */
+public interface SentenceEncoder extends AutoCloseable {
+
+    float[][] encode(List<String> texts);
+
+    int dimension();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,90 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Collects WebSocket session activity (pongs) off the socket path and writes it in batches.
+ * <p>
+ * A pong only adds the session to an in-memory set. Every flush interval the set is drained
+ * and written as one UPDATE per chunk of session ids, so a session answering every ping costs
+ * one row update per interval whatever the ping rate, and 50k sessions a few hundred statements.
+ * <p>
+ * {@code lastPingAt} is accurate to the flush interval. Liveness itself is tracked in memory by
+ * the heartbeat wheel; what is pending when the process dies is lost, which is accepted.
+ */
+public class SessionActivityAccumulator {
+
+    private final StreamingSessionRepository streamingSessionRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${websocket.heartbeat.activity-flush-chunk:500}")
+    private int chunkSize;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private Counter rowsWritten;
+    private Counter dropped;
+    private Timer flushTimer;
+
+    @PostConstruct
+    void init() {
+        rowsWritten = Counter.builder("websocket.session.activity.rows")
+                .description("Session rows updated by activity flushes")
+                .register(meterRegistry);
+        dropped = Counter.builder("websocket.session.activity.dropped")
+                .description("Session activity lost to a failed flush")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("websocket.session.activity.flush")
+                .description("Time to write pending session activity")
+                .register(meterRegistry);
+
+        Gauge.builder("websocket.session.activity.pending", pending, Set::size)
+                .description("Sessions with activity waiting to be written")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        flush();
+    }
+
+    public void record(String sessionId) {
+        pending.add(sessionId);
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.heartbeat.activity-flush-interval:30s}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+
+        // Each id is removed on its own, so activity recorded meanwhile waits for the next flush
+        List<String> sessionIds = new ArrayList<>();
+        for (String sessionId : pending) {
+            if (pending.remove(sessionId)) {
+                sessionIds.add(sessionId);
+            }
+        }
+
+        int rows = 0;
+        for (int from = 0; from < sessionIds.size(); from += chunkSize) {
+            List<String> chunk = sessionIds.subList(from, Math.min(sessionIds.size(), from + chunkSize));
+            try {
+                rows += streamingSessionRepository.updatePings(chunk, now);
+            } catch (Exception e) {
+                // Not retried: the next pong of a live session records it again
+                log.warn("Could not write activity of {} sessions: {}", chunk.size(), e.getMessage());
+                dropped.increment(chunk.size());
+            }
+        }
+
+        rowsWritten.increment(rows);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Flushed activity of {} sessions", rows);
+    }
+
+    public int pending() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,347 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Incremental post-processor for one generation. Tokens are cleaned and released as they
+ * arrive; repetition loops, role leaks and degenerate output stop the stream early instead
+ * of being detected (and regenerated) once the whole response exists.
+ * <p>
+ * Not thread-safe: a stream delivers its tokens sequentially.
+ */
+public class StreamGuard {
+
+    // A new line starting with one of these means the model is writing the next turn itself
+    private static final String[] ROLE_MARKERS = {
+            "user:", "utilisateur:", "assistant:", "system:", "human:", "### instruction"
+    };
+
+    // Template tokens that leak when the stop sequence is not honoured
+    private static final String[] STOP_SEQUENCES = {
+            "<|im_end|>", "<|im_start|>", "<|eot_id|>", "</s>", "[INST]"
+    };
+
+    private static final int MAX_MARKER_LENGTH = 16;
+
+    private final boolean enabled;
+    private final int window;
+    private final int maxPeriod;
+    private final int minRepeats;
+    private final int minLoopWords;
+    private final int maxCharRun;
+    private final int maxWordLength;
+
+    private final StringBuilder pending = new StringBuilder();
+    private final StringBuilder emitted = new StringBuilder();
+
+    // Current line, for role marker detection
+    private final StringBuilder lineHead = new StringBuilder(MAX_MARKER_LENGTH);
+    private int lineStart;
+    private boolean lineCleared;
+
+    // Sliding window of word hashes over the released text
+    private final long[] wordHashes;
+    private final int[] wordOffsets;
+    private long wordCount;
+    private long currentWordHash;
+    private int currentWordLength;
+    private int currentWordOffset;
+
+    private char lastChar;
+    private int charRun;
+    private int newlineRun;
+    private int contentLength = -1;
+    private String stopReason;
+
+    public StreamGuard(boolean enabled, int window, int maxPeriod, int minRepeats,
+                       int minLoopWords, int maxCharRun, int maxWordLength) {
+        this.enabled = enabled;
+        this.window = window;
+        this.maxPeriod = maxPeriod;
+        this.minRepeats = minRepeats;
+        this.minLoopWords = minLoopWords;
+        this.maxCharRun = maxCharRun;
+        this.maxWordLength = maxWordLength;
+        this.wordHashes = new long[window];
+        this.wordOffsets = new int[window];
+    }
+
+    /**
+     * Feeds one token and returns the cleaned text that can be sent now (possibly empty).
+     */
+    public String accept(String token) {
+        if (token == null || token.isEmpty() || stopReason != null) {
+            return "";
+        }
+        if (!enabled) {
+            emitted.append(token);
+            return token;
+        }
+
+        for (int i = 0; i < token.length() && stopReason == null; i++) {
+            appendNormalized(token.charAt(i));
+        }
+
+        return release(stopReason != null);
+    }
+
+    /**
+     * Flushes whatever was held back once the model has finished.
+     */
+    public String finish() {
+        if (!enabled || stopReason != null) {
+            return "";
+        }
+        return release(true);
+    }
+
+    public boolean isStopped() {
+        return stopReason != null;
+    }
+
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * Full cleaned response, with a detected repetition loop cut back to its first occurrence.
+     */
+    public String getContent() {
+        int length = contentLength >= 0 ? contentLength : emitted.length();
+        return emitted.substring(0, length).trim();
+    }
+
+    // ========== Cleanup ==========
+
+    private void appendNormalized(char c) {
+        if (c == '\r' || (Character.isISOControl(c) && c != '\n' && c != '\t')) {
+            return;
+        }
+        if (c == '\t') {
+            c = ' ';
+        }
+
+        // Leading whitespace of the response is dropped
+        if (emitted.length() == 0 && pending.length() == 0 && Character.isWhitespace(c)) {
+            return;
+        }
+
+        // Collapse spaces, keep at most one blank line
+        if (c == ' ' && (lastChar == ' ' || lastChar == '\n')) {
+            return;
+        }
+        if (c == '\n') {
+            if (++newlineRun > 2) {
+                return;
+            }
+            if (pending.length() > 0 && pending.charAt(pending.length() - 1) == ' ') {
+                pending.setLength(pending.length() - 1);
+            }
+        } else {
+            newlineRun = 0;
+        }
+
+        if (checkDegenerate(c)) {
+            return;
+        }
+
+        pending.append(c);
+        lastChar = c;
+
+        if (c == '\n') {
+            lineHead.setLength(0);
+            lineStart = pending.length();
+            lineCleared = false;
+        } else if (!lineCleared) {
+            trackLineHead(c);
+        }
+
+        checkStopSequences();
+    }
+
+    private boolean checkDegenerate(char c) {
+        charRun = c == lastChar && !Character.isWhitespace(c) ? charRun + 1 : 1;
+        if (charRun > maxCharRun) {
+            stop("char_run", -1);
+            return true;
+        }
+        if (c == '\uFFFD') {
+            stop("invalid_text", -1);
+            return true;
+        }
+        return false;
+    }
+
+    private void trackLineHead(char c) {
+        if (lineHead.length() == 0 && c == ' ') {
+            return;
+        }
+        lineHead.append(Character.toLowerCase(c));
+
+        boolean prefixOfMarker = false;
+        for (String marker : ROLE_MARKERS) {
+            if (lineHead.length() >= marker.length() && lineHead.indexOf(marker) == 0) {
+                pending.setLength(lineStart);
+                if (emitted.length() == 0 && lineStart == 0 && "assistant:".equals(marker)) {
+                    // Echoed own role at the very start: strip it and keep going
+                    lineHead.setLength(0);
+                    lineCleared = true;
+                    lastChar = '\n';
+                    return;
+                }
+                // The model started speaking for someone else: drop the line and stop
+                stop("role_leak", -1);
+                return;
+            }
+            if (marker.startsWith(lineHead.toString())) {
+                prefixOfMarker = true;
+            }
+        }
+
+        if (!prefixOfMarker || lineHead.length() >= MAX_MARKER_LENGTH) {
+            lineCleared = true;
+        }
+    }
+
+    private void checkStopSequences() {
+        for (String sequence : STOP_SEQUENCES) {
+            int start = pending.length() - sequence.length();
+            if (start >= 0 && pending.indexOf(sequence, start) == start) {
+                pending.setLength(start);
+                stop("stop_sequence", -1);
+                return;
+            }
+        }
+    }
+
+    // ========== Release ==========
+
+    private String release(boolean flush) {
+        int holdFrom = pending.length();
+
+        if (!flush) {
+            // Hold back a possible role marker at the start of the current line
+            if (!lineCleared) {
+                holdFrom = Math.min(holdFrom, lineStart);
+            }
+            // Hold back a possible partial stop sequence
+            holdFrom = Math.min(holdFrom, pending.length() - partialStopSequenceLength());
+        }
+
+        if (holdFrom <= 0) {
+            return "";
+        }
+
+        String released = pending.substring(0, holdFrom);
+        pending.delete(0, holdFrom);
+        lineStart = Math.max(0, lineStart - holdFrom);
+
+        int emittedBefore = emitted.length();
+        emitted.append(released);
+        for (int i = 0; i < released.length() && contentLength < 0; i++) {
+            trackWords(released.charAt(i), emittedBefore + i);
+        }
+        if (flush) {
+            completeWord();
+        }
+
+        // Never send past a loop detected inside this chunk
+        if (contentLength >= 0 && contentLength < emitted.length()) {
+            return released.substring(0, Math.max(0, contentLength - emittedBefore));
+        }
+        return released;
+    }
+
+    private int partialStopSequenceLength() {
+        int longest = 0;
+        for (String sequence : STOP_SEQUENCES) {
+            for (int k = Math.min(sequence.length() - 1, pending.length()); k > longest; k--) {
+                if (pending.indexOf(sequence.substring(0, k), pending.length() - k) == pending.length() - k) {
+                    longest = k;
+                    break;
+                }
+            }
+        }
+        return longest;
+    }
+
+    // ========== Repetition Detection ==========
+
+    private void trackWords(char c, int offset) {
+        if (Character.isLetterOrDigit(c) || c == '\'') {
+            // Chinese and Japanese put no spaces between words: each character counts as one
+            boolean unspaced = isUnspaced(c);
+            if (unspaced) {
+                completeWord();
+            }
+            if (currentWordLength == 0) {
+                currentWordOffset = offset;
+                currentWordHash = 1125899906842597L;
+            }
+            currentWordHash = 31 * currentWordHash + Character.toLowerCase(c);
+            if (++currentWordLength > maxWordLength) {
+                stop("long_word", currentWordOffset);
+            }
+            if (unspaced) {
+                completeWord();
+            }
+        } else {
+            completeWord();
+        }
+    }
+
+    private static boolean isUnspaced(char c) {
+        if (c < '\u3040') {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA;
+    }
+
+    private void completeWord() {
+        if (currentWordLength == 0) {
+            return;
+        }
+
+        int slot = (int) (wordCount % window);
+        wordHashes[slot] = currentWordHash;
+        wordOffsets[slot] = currentWordOffset;
+        wordCount++;
+        currentWordLength = 0;
+
+        detectLoop();
+    }
+
+    private void detectLoop() {
+        int available = (int) Math.min(wordCount, window);
+
+        for (int period = 1; period <= maxPeriod && period * minRepeats <= available; period++) {
+            int matched = 0;
+            while (matched + period < available
+                    && hashAt(wordCount - 1 - matched) == hashAt(wordCount - 1 - matched - period)) {
+                matched++;
+            }
+
+            if (matched >= period * (minRepeats - 1) && matched + period >= minLoopWords) {
+                // Keep the first occurrence of the repeated block, cut everything after it
+                int firstRepeatOffset = wordOffsets[(int) ((wordCount - matched) % window)];
+                stop("repetition", firstRepeatOffset);
+                return;
+            }
+        }
+    }
+
+    private long hashAt(long index) {
+        return wordHashes[(int) (index % window)];
+    }
+
+    private void stop(String reason, int cutOffset) {
+        if (stopReason != null) {
+            return;
+        }
+        stopReason = reason;
+        if (cutOffset >= 0) {
+            contentLength = cutOffset;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class StreamingPostProcessor {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.stream-guard.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.stream-guard.window-words:64}")
+    private int windowWords;
+
+    @Value("${ai.stream-guard.max-period:16}")
+    private int maxPeriod;
+
+    @Value("${ai.stream-guard.min-repeats:3}")
+    private int minRepeats;
+
+    @Value("${ai.stream-guard.min-loop-words:8}")
+    private int minLoopWords;
+
+    @Value("${ai.stream-guard.max-char-run:24}")
+    private int maxCharRun;
+
+    @Value("${ai.stream-guard.max-word-length:80}")
+    private int maxWordLength;
+
+    public StreamGuard newGuard() {
+        return new StreamGuard(enabled, windowWords, maxPeriod, minRepeats, minLoopWords, maxCharRun, maxWordLength);
+    }
+
+    public void recordOutcome(StreamGuard guard) {
+        String outcome = guard.isStopped() ? guard.getStopReason() : "clean";
+        meterRegistry.counter("ai.stream.guard.outcomes", "outcome", outcome).increment();
+    }
+}
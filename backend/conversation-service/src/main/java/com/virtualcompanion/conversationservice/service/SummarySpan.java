@@ -0,0 +1,8 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class SummarySpan {
+
+    private String previousSummary;
+    private Long expectedVersion;
+    private List<Message> messages;
+}
@@ -0,0 +1,23 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class TurnTrace {
+
+    private String traceId;
+    private Instant recordedAt;
+    private String mode;
+    private String user;
+    private String conversation;
+    private String character;
+    private String input;
+    private String output;
+    private int recentMessages;
+    private int memories;
+    private boolean prewarmed;
+    private boolean cached;
+    private String model;
+    private Integer promptTokens;
+    private Integer completionTokens;
+    private String brownoutLevel;
+    private String error;
+    private Map<String, Long> stages;
+}
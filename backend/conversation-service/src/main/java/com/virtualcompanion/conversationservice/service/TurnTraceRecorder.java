@@ -0,0 +1,297 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Capture mode for replayable turn traces: one JSON line per turn with its inputs, context
+ * sizes, per-stage timings and output, written to a local file off the request path.
+ * <p>
+ * Nothing identifying leaves the process. Ids become keyed pseudonyms, and every word of the
+ * text is replaced by a keyed pseudo-word of the same length and character classes. Length,
+ * token count, punctuation and word repetition survive, so replay exercises the same prompt
+ * sizes and post-processing paths. Without a configured salt a random one is drawn at startup,
+ * so pseudonyms cannot be linked across runs.
+ * <p>
+ * Stages are nanoseconds: {@code context}, {@code queue_wait}, {@code ttft}, {@code model},
+ * {@code generation}, {@code persist}, {@code first_chunk} and {@code total}, as far as the
+ * path records them.
+ */
+public class TurnTraceRecorder {
+
+    private static final String HMAC = "HmacSHA256";
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final BrownoutController brownoutController;
+
+    @Value("${conversation.trace.enabled:false}")
+    private volatile boolean enabled;
+
+    @Value("${conversation.trace.path:traces/turns.jsonl}")
+    private String path;
+
+    @Value("${conversation.trace.sample-rate:1.0}")
+    private double sampleRate;
+
+    @Value("${conversation.trace.salt:}")
+    private String salt;
+
+    @Value("${conversation.trace.max-file-size:1GB}")
+    private DataSize maxFileSize;
+
+    @Value("${conversation.trace.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private SecretKeySpec key;
+    private ThreadLocal<Mac> macs;
+    private Sinks.Many<TurnTrace> traces;
+    private Disposable pipeline;
+    private Scheduler writerScheduler;
+    private BufferedWriter writer;
+    private long bytesWritten;
+
+    @PostConstruct
+    void init() {
+        byte[] secret = salt != null && !salt.isBlank()
+                ? salt.getBytes(StandardCharsets.UTF_8)
+                : new SecureRandom().generateSeed(32);
+        key = new SecretKeySpec(secret, HMAC);
+        macs = ThreadLocal.withInitial(this::newMac);
+
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            Path file = Path.of(path);
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            bytesWritten = Files.size(file);
+        } catch (IOException e) {
+            log.error("Turn trace capture disabled, cannot open {}: {}", path, e.getMessage());
+            enabled = false;
+            return;
+        }
+
+        traces = Sinks.many().unicast().onBackpressureBuffer(Queues.<TurnTrace>get(queueCapacity).get());
+        writerScheduler = Schedulers.newSingle("turn-trace-writer");
+
+        Gauge.builder("conversation.trace.pending", pending, AtomicInteger::get)
+                .description("Turn traces waiting to be written")
+                .register(meterRegistry);
+
+        pipeline = traces.asFlux()
+                .publishOn(writerScheduler)
+                .bufferTimeout(256, Duration.ofSeconds(1))
+                .subscribe(this::write);
+
+        log.info("Capturing turn traces to {} (sample rate {})", path, sampleRate);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (traces != null) {
+            traces.tryEmitComplete();
+        }
+        if (writerScheduler != null) {
+            writerScheduler.disposeGracefully().block(Duration.ofSeconds(5));
+        }
+        if (pipeline != null) {
+            pipeline.dispose();
+        }
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Could not close turn trace file: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Starts a trace for this turn, or returns {@code null} when capture is off or the turn is
+     * not sampled. Every other method accepts {@code null}.
+     */
+    public TurnTrace begin(Conversation conversation, Message userMessage, String mode) {
+        if (!enabled || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+
+        return TurnTrace.builder()
+                .traceId(UUID.randomUUID().toString())
+                .recordedAt(Instant.now())
+                .mode(mode)
+                .user(pseudonym(conversation.getUserId()))
+                .conversation(pseudonym(conversation.getId()))
+                .character(pseudonym(conversation.getCharacterId()))
+                .input(anonymize(userMessage.getContent()))
+                .brownoutLevel(brownoutController.level().name())
+                .stages(new LinkedHashMap<>())
+                .build();
+    }
+
+    public void describeContext(TurnTrace trace, PreparedContext context) {
+        if (trace == null || context == null) {
+            return;
+        }
+        trace.setRecentMessages(context.getRecentMessages() != null ? context.getRecentMessages().size() : 0);
+        trace.setMemories(context.getRelevantMemories() != null ? context.getRelevantMemories().size() : 0);
+        trace.setPrewarmed(context.isPrewarmed());
+    }
+
+    /**
+     * Model-side timings of the generation, taken from its observation.
+     */
+    public void describeGeneration(TurnTrace trace, String model, GenerationObservation observation,
+                                   Integer promptTokens) {
+        if (trace == null) {
+            return;
+        }
+        trace.setModel(model);
+        trace.setPromptTokens(promptTokens);
+        trace.setCompletionTokens(observation.tokenCount());
+        trace.getStages().put("queue_wait", observation.queueWaitNanos());
+        trace.getStages().put("ttft", observation.timeToFirstTokenNanos());
+        trace.getStages().put("model", observation.modelNanos());
+    }
+
+    public void stage(TurnTrace trace, String stage, long sinceNanos) {
+        if (trace != null) {
+            trace.getStages().put(stage, System.nanoTime() - sinceNanos);
+        }
+    }
+
+    /**
+     * Like {@link #stage} but keeps the first value, for events seen on every chunk.
+     */
+    public void stageOnce(TurnTrace trace, String stage, long sinceNanos) {
+        if (trace != null && !trace.getStages().containsKey(stage)) {
+            stage(trace, stage, sinceNanos);
+        }
+    }
+
+    public void complete(TurnTrace trace, String output, long startNanos) {
+        if (trace == null) {
+            return;
+        }
+        trace.setOutput(anonymize(output));
+        stage(trace, "total", startNanos);
+        submit(trace);
+    }
+
+    public void fail(TurnTrace trace, Throwable error, long startNanos) {
+        if (trace == null) {
+            return;
+        }
+        trace.setError(error.getClass().getSimpleName());
+        stage(trace, "total", startNanos);
+        submit(trace);
+    }
+
+    /**
+     * Traces accepted but not yet written.
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    public String pseudonym(UUID id) {
+        if (id == null) {
+            return null;
+        }
+        byte[] digest = macs.get().doFinal(id.toString().getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest, 0, 8);
+    }
+
+    /**
+     * Replaces every letter/digit run with a pseudo-word of the same length and character
+     * classes. The same word always maps to the same pseudo-word within a run.
+     */
+    public String anonymize(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+
+        StringBuilder out = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(codePoint)) {
+                out.appendCodePoint(codePoint);
+                i += Character.charCount(codePoint);
+                continue;
+            }
+
+            int end = i;
+            while (end < text.length() && Character.isLetterOrDigit(text.codePointAt(end))) {
+                end += Character.charCount(text.codePointAt(end));
+            }
+            appendPseudoWord(out, text.substring(i, end));
+            i = end;
+        }
+        return out.toString();
+    }
+
+    private void appendPseudoWord(StringBuilder out, String word) {
+        byte[] digest = macs.get().doFinal(word.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+        int position = 0;
+        for (int offset = 0; offset < word.length(); ) {
+            int codePoint = word.codePointAt(offset);
+            int value = (digest[position % digest.length] & 0xff) + position / digest.length;
+            if (Character.isDigit(codePoint)) {
+                out.append((char) ('0' + value % 10));
+            } else {
+                char letter = (char) ('a' + value % 26);
+                out.append(Character.isUpperCase(codePoint) ? Character.toUpperCase(letter) : letter);
+            }
+            offset += Character.charCount(codePoint);
+            position++;
+        }
+    }
+
+    // Called from request threads: the unicast sink rejects concurrent emissions
+    private synchronized void submit(TurnTrace trace) {
+        pending.incrementAndGet();
+        if (traces.tryEmitNext(trace).isFailure()) {
+            pending.decrementAndGet();
+            meterRegistry.counter("conversation.trace.dropped").increment();
+        }
+    }
+
+    private void write(List<TurnTrace> batch) {
+        try {
+            for (TurnTrace trace : batch) {
+                if (bytesWritten >= maxFileSize.toBytes()) {
+                    if (enabled) {
+                        log.warn("Turn trace file {} reached {}, capture stopped", path, maxFileSize);
+                        enabled = false;
+                    }
+                    break;
+                }
+                String line = objectMapper.writeValueAsString(trace);
+                writer.write(line);
+                writer.newLine();
+                bytesWritten += line.length() + 1;
+            }
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Could not write turn traces: {}", e.getMessage());
+            meterRegistry.counter("conversation.trace.dropped").increment(batch.size());
+        } finally {
+            pending.addAndGet(-batch.size());
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
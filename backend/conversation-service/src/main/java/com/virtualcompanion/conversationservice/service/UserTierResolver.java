@@ -0,0 +1,44 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class UserTierResolver {
+
+    private final UserServiceClient userClient;
+
+    @Value("${cache.user-tier.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${cache.user-tier.max-size:100000}")
+    private long maxSize;
+
+    private Cache<UUID, SchedulingTier> tiers;
+
+    @PostConstruct
+    void init() {
+        tiers = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public Mono<SchedulingTier> resolve(UUID userId) {
+        if (userId == null) {
+            return Mono.just(SchedulingTier.FREE);
+        }
+
+        SchedulingTier cached = tiers.getIfPresent(userId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+
+        return Mono.fromCallable(() -> userClient.getUser(userId)
+                        .map(user -> SchedulingTier.fromSubscription(user.getSubscriptionLevel()))
+                        .orElse(SchedulingTier.FREE))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(tier -> tiers.put(userId, tier))
+                .onErrorResume(error -> {
+                    // A failed lookup is not cached; the turn is scheduled at the lowest interactive tier
+                    log.debug("Could not resolve subscription tier for user {}: {}", userId, error.getMessage());
+                    return Mono.just(SchedulingTier.FREE);
+                });
+    }
+}
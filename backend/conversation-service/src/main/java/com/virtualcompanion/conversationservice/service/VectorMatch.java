@@ -0,0 +1,7 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class VectorMatch {
+
+    private UUID id;
+    private double similarity;
+}
@@ -0,0 +1,9 @@
+package com.virtualcompanion.conversationservice.service;
+
+public class VectorRecord {
+
+    private UUID id;
+    private UUID userId;
+    private UUID characterId;
+    private float[] vector;
+}
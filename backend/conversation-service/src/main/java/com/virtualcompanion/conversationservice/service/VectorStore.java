@@ -0,0 +1,30 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Durable nearest-neighbour store of memory vectors, partitioned by user/character pair.
+ * <p>
+ * Vectors are unit length and compared by cosine similarity. Searches only see the vectors of
+ * the pair they are asked for. Writes are idempotent: upserting an id again replaces its vector,
+ * deleting an unknown id does nothing.
+ */
+public interface VectorStore extends AutoCloseable {
+
+    void upsert(VectorRecord record);
+
+    void upsertAll(List<VectorRecord> records);
+
+    void delete(Collection<UUID> ids);
+
+    /**
+     * Up to {@code k} vectors of the pair closest to the query, most similar first.
+     */
+    List<VectorMatch> search(UUID userId, UUID characterId, float[] query, int k);
+
+    /**
+     * Short backend name, used in logs and metric tags.
+     */
+    String name();
+
+    @Override
+    void close();
+}
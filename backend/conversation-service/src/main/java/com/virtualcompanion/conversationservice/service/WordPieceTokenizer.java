@@ -0,0 +1,141 @@
+package com.virtualcompanion.conversationservice.service;
+
+/**
+ * Uncased BERT WordPiece tokenizer, as used by the MiniLM sentence-transformers models: clean
+ * and lowercase the text, strip accents, split on whitespace and punctuation, then split each
+ * word greedily into the longest vocabulary pieces ({@code ##} marks a continuation).
+ */
+public class WordPieceTokenizer {
+
+    private static final String CLS = "[CLS]";
+    private static final String SEP = "[SEP]";
+    private static final String UNK = "[UNK]";
+    private static final String CONTINUATION = "##";
+    private static final int MAX_WORD_LENGTH = 100;
+
+    private final Map<String, Integer> vocabulary;
+    private final int clsId;
+    private final int sepId;
+    private final int unkId;
+
+    public WordPieceTokenizer(List<String> vocabulary) {
+        this.vocabulary = new HashMap<>(vocabulary.size() * 2);
+        for (int i = 0; i < vocabulary.size(); i++) {
+            this.vocabulary.putIfAbsent(vocabulary.get(i), i);
+        }
+        this.clsId = requireToken(CLS);
+        this.sepId = requireToken(SEP);
+        this.unkId = requireToken(UNK);
+    }
+
+    public static WordPieceTokenizer load(Path vocabularyFile) throws IOException {
+        return new WordPieceTokenizer(Files.readAllLines(vocabularyFile, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Token ids of {@code text} between [CLS] and [SEP], at most {@code maxLength} in total.
+     */
+    public int[] encode(String text, int maxLength) {
+        List<Integer> ids = new ArrayList<>();
+        ids.add(clsId);
+        int limit = maxLength - 1;
+
+        for (String word : basicTokens(text)) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            appendWordPieces(word, ids, limit);
+        }
+
+        ids.add(sepId);
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    List<String> basicTokens(String text) {
+        String normalized = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            int type = Character.getType(c);
+            if (type == Character.NON_SPACING_MARK || c == 0 || c == 0xFFFD || (Character.isISOControl(c) && !Character.isWhitespace(c))) {
+                continue;
+            }
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                flush(word, words);
+            } else if (isPunctuation(c) || isCjk(c)) {
+                flush(word, words);
+                words.add(String.valueOf(c));
+            } else {
+                word.append(c);
+            }
+        }
+        flush(word, words);
+        return words;
+    }
+
+    private void appendWordPieces(String word, List<Integer> ids, int limit) {
+        if (word.length() > MAX_WORD_LENGTH) {
+            ids.add(unkId);
+            return;
+        }
+
+        List<Integer> pieces = new ArrayList<>();
+        int start = 0;
+        while (start < word.length()) {
+            Integer piece = null;
+            int end = word.length();
+            while (start < end) {
+                String candidate = start == 0 ? word.substring(start, end) : CONTINUATION + word.substring(start, end);
+                piece = vocabulary.get(candidate);
+                if (piece != null) {
+                    break;
+                }
+                end--;
+            }
+            if (piece == null) {
+                // A word with an unknown part is unknown as a whole
+                ids.add(unkId);
+                return;
+            }
+            pieces.add(piece);
+            start = end;
+        }
+
+        for (int i = 0; i < pieces.size() && ids.size() < limit; i++) {
+            ids.add(pieces.get(i));
+        }
+    }
+
+    private int requireToken(String token) {
+        Integer id = vocabulary.get(token);
+        if (id == null) {
+            throw new IllegalArgumentException("Vocabulary has no " + token + " token");
+        }
+        return id;
+    }
+
+    private static void flush(StringBuilder word, List<String> words) {
+        if (word.length() > 0) {
+            words.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static boolean isPunctuation(char c) {
+        // BERT treats every non-alphanumeric ASCII symbol as punctuation, plus Unicode P* classes
+        if ((c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126)) {
+            return true;
+        }
+        int type = Character.getType(c);
+        return type == Character.CONNECTOR_PUNCTUATION || type == Character.DASH_PUNCTUATION
+                || type == Character.START_PUNCTUATION || type == Character.END_PUNCTUATION
+                || type == Character.INITIAL_QUOTE_PUNCTUATION || type == Character.FINAL_QUOTE_PUNCTUATION
+                || type == Character.OTHER_PUNCTUATION;
+    }
+
+    private static boolean isCjk(char c) {
+        return (c >= 0x4E00 && c <= 0x9FFF) || (c >= 0x3400 && c <= 0x4DBF) || (c >= 0xF900 && c <= 0xFAFF);
+    }
+}
@@ -0,0 +1,82 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Protocol v2: binary frames, each one CBOR array whose first element tells its kind.
+ * <pre>
+ *   [0, type, payload, timestamp]       any message but a stream chunk; timestamp in epoch ms
+ *   [1, stream, text, conversationId]   first chunk of a stream, binding the stream number
+ *   [1, stream, text]                   next chunks of the stream
+ *   [2, stream, text]                   last chunk; the stream number is not used again
+ * </pre>
+ * Stream numbers are small integers interned per session, so a chunk costs a few bytes of
+ * framing around its text instead of the type, ids and timestamp of a v1 JSON message.
+ * Holds the session's stream table: one instance per session. A response cut short still ends
+ * with a last chunk, empty, so its stream number is released and the next response binds anew.
+ * <p>
+ * Clients may send v2 frames as CBOR maps of a {@code WebSocketMessageDto}, or as v1 JSON text.
+ */
+public class CborFrameCodec implements FrameCodec {
+
+    private static final int EVENT = 0;
+    private static final int CHUNK = 1;
+    private static final int LAST_CHUNK = 2;
+
+    private final ObjectMapper cborMapper;
+    private final ObjectMapper jsonMapper;
+
+    private final Map<String, Integer> streams = new HashMap<>();
+    private int nextStream;
+
+    public CborFrameCodec(ObjectMapper cborMapper, ObjectMapper jsonMapper) {
+        this.cborMapper = cborMapper;
+        this.jsonMapper = jsonMapper;
+    }
+
+    @Override
+    public WebSocketMessage encode(WebSocketSession session, WebSocketMessageDto message) {
+        byte[] bytes = toBytes(message);
+        return bytes != null ? session.binaryMessage(factory -> factory.wrap(bytes)) : null;
+    }
+
+    public byte[] toBytes(WebSocketMessageDto message) {
+        try {
+            if (message.getType() == MessageType.AI_RESPONSE_CHUNK && message.getPayload() instanceof AIResponseChunk) {
+                return cborMapper.writeValueAsBytes(chunkFrame((AIResponseChunk) message.getPayload()));
+            }
+            return cborMapper.writeValueAsBytes(Arrays.asList(EVENT, message.getType(), message.getPayload(),
+                    message.getTimestamp() != null ? message.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : null));
+        } catch (JsonProcessingException e) {
+            log.error("Error converting {} to CBOR: ", message.getType(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public WebSocketMessageDto decode(WebSocketMessage frame) throws IOException {
+        if (frame.getType() == WebSocketMessage.Type.TEXT) {
+            return jsonMapper.readValue(frame.getPayloadAsText(), WebSocketMessageDto.class);
+        }
+        DataBuffer payload = frame.getPayload();
+        byte[] bytes = new byte[payload.readableByteCount()];
+        payload.read(bytes);
+        return cborMapper.readValue(bytes, WebSocketMessageDto.class);
+    }
+
+    private List<Object> chunkFrame(AIResponseChunk chunk) {
+        String text = chunk.getChunk() != null ? chunk.getChunk() : "";
+        Integer stream = streams.get(chunk.getConversationId());
+        boolean first = stream == null;
+        if (first) {
+            stream = nextStream++;
+        }
+
+        if (chunk.isComplete()) {
+            streams.remove(chunk.getConversationId());
+        } else if (first) {
+            streams.put(chunk.getConversationId(), stream);
+        }
+
+        int kind = chunk.isComplete() ? LAST_CHUNK : CHUNK;
+        return first ? Arrays.asList(kind, stream, text, chunk.getConversationId()) : List.of(kind, stream, text);
+    }
+}
@@ -0,0 +1,124 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Merges consecutive chunks of a response stream into fewer, larger ones for protocol v2.
+ * <p>
+ * The first chunk goes out alone, so time to first token is unchanged. Later chunks are held
+ * and sent together once {@code interval} has passed since the first of them was held, once
+ * they reach {@code maxBytes} of UTF-8 text, or with the last chunk of the stream.
+ */
+public final class ChunkCoalescer {
+
+    private ChunkCoalescer() {
+    }
+
+    public static Flux<AIResponseChunk> coalesce(Flux<AIResponseChunk> chunks, Duration interval, int maxBytes,
+                                                 Scheduler scheduler) {
+        return Flux.create(sink -> {
+            Buffer buffer = new Buffer(sink, interval, maxBytes, scheduler);
+            Disposable upstream = chunks.subscribe(buffer::add,
+                    error -> {
+                        buffer.flush();
+                        sink.error(error);
+                    },
+                    () -> {
+                        buffer.flush();
+                        sink.complete();
+                    });
+            sink.onDispose(() -> {
+                upstream.dispose();
+                buffer.cancelTimer();
+            });
+        });
+    }
+
+    static int utf8Length(CharSequence text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static final class Buffer {
+
+        private final FluxSink<AIResponseChunk> sink;
+        private final Duration interval;
+        private final int maxBytes;
+        private final Scheduler scheduler;
+
+        private final StringBuilder text = new StringBuilder();
+        private String conversationId;
+        private int bytes;
+        private boolean held;
+        private boolean started;
+        private Disposable timer;
+
+        Buffer(FluxSink<AIResponseChunk> sink, Duration interval, int maxBytes, Scheduler scheduler) {
+            this.sink = sink;
+            this.interval = interval;
+            this.maxBytes = maxBytes;
+            this.scheduler = scheduler;
+        }
+
+        synchronized void add(AIResponseChunk chunk) {
+            if (!started && !chunk.isComplete()) {
+                started = true;
+                sink.next(chunk);
+                return;
+            }
+            started = true;
+
+            conversationId = chunk.getConversationId();
+            if (chunk.getChunk() != null) {
+                text.append(chunk.getChunk());
+                bytes += utf8Length(chunk.getChunk());
+            }
+            if (!held) {
+                held = true;
+                timer = scheduler.schedule(this::flush, interval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            if (chunk.isComplete()) {
+                emit(true);
+            } else if (bytes >= maxBytes) {
+                emit(false);
+            }
+        }
+
+        synchronized void flush() {
+            if (held) {
+                emit(false);
+            }
+        }
+
+        synchronized void cancelTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        private void emit(boolean complete) {
+            cancelTimer();
+            sink.next(AIResponseChunk.builder()
+                    .conversationId(conversationId)
+                    .chunk(text.toString())
+                    .isComplete(complete)
+                    .build());
+            text.setLength(0);
+            bytes = 0;
+            held = false;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Delivers events to every session that joined a conversation, or to every session of a user,
+ * on whichever node of the cluster it is open.
+ * <p>
+ * Each conversation and each user is a topic. A node subscribes to the channel of a topic while
+ * at least one of its own sessions belongs to it, and says so in the topic's presence set,
+ * refreshed every {@code presence-refresh} and expiring after {@code presence-ttl}. An event is
+ * delivered at once to the sessions here, then queued in the topic's outbox: every
+ * {@code batch-window}, the events waiting are published once as a {@link FanoutBatch}, and
+ * only if the presence set names another node. One batch per topic is in flight at a time, so
+ * the other nodes receive the events of this node in the order they were published.
+ * <p>
+ * Whether other nodes hold the topic is cached for {@code presence-cache} while subscribed: a
+ * node joining publishes an empty batch, which drops the cached answer.
+ * <p>
+ * Payloads cross the channel as JSON; each event carries the class of its payload so that the
+ * receiving node hands its sessions the same type as the sending one.
+ */
+public class ClusterFanout {
+
+    private static final String CHANNEL_PREFIX = "ws:";
+    private static final String PRESENCE_PREFIX = "ws:presence:";
+    private static final String CONVERSATION = "conversation:";
+    private static final String USER = "user:";
+    // Only payload classes of the service are rebuilt from a batch; others stay as read
+    private static final String PAYLOAD_PACKAGE = "com.virtualcompanion.";
+
+    private final FanoutBroker broker;
+    private final LocalSessionRegistry sessionRegistry;
+    private final OutboundQueues outboundQueues;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${websocket.cluster.node-id:}")
+    private String nodeId;
+
+    @Value("${websocket.cluster.batch-window:10ms}")
+    private Duration batchWindow;
+
+    @Value("${websocket.cluster.batch-max:64}")
+    private int batchMax;
+
+    @Value("${websocket.cluster.presence-ttl:30s}")
+    private Duration presenceTtl;
+
+    @Value("${websocket.cluster.presence-cache:1s}")
+    private Duration presenceCache;
+
+    private Scheduler scheduler = Schedulers.parallel();
+
+    private final Map<String, Disposable> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final Map<String, CachedPresence> presence = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Long>> lastSequences = new ConcurrentHashMap<>();
+
+    private Counter publishedBatches;
+    private Counter localBatches;
+    private Counter failedBatches;
+    private Counter receivedEvents;
+    private Counter gaps;
+    private DistributionSummary batchSize;
+
+    @PostConstruct
+    void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = UUID.randomUUID().toString();
+        }
+        publishedBatches = batchCounter("published");
+        localBatches = batchCounter("local");
+        failedBatches = batchCounter("failed");
+        receivedEvents = Counter.builder("websocket.fanout.received")
+                .description("Events received from other nodes and delivered to sessions here")
+                .register(meterRegistry);
+        gaps = Counter.builder("websocket.fanout.gaps")
+                .description("Batches of another node missing from the sequence received")
+                .register(meterRegistry);
+        batchSize = DistributionSummary.builder("websocket.fanout.batch.size")
+                .description("Events per batch published to the other nodes")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("websocket.fanout.subscriptions", subscriptions, Map::size)
+                .description("Conversation and user channels this node is subscribed to")
+                .register(meterRegistry);
+        log.info("Cluster fan-out on {} as node {}", broker.name(), nodeId);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Registers a new session of the user, subscribing to the user's channel if it is the
+     * user's first session here.
+     */
+    public void connect(String sessionId, String userId) {
+        synchronized (subscriptions) {
+            if (sessionRegistry.register(sessionId, userId)) {
+                subscribe(USER + userId);
+            }
+        }
+    }
+
+    /**
+     * Adds the session to the conversation, subscribing to its channel if it is the first here.
+     */
+    public void join(String sessionId, String conversationId) {
+        synchronized (subscriptions) {
+            if (sessionRegistry.join(sessionId, conversationId)) {
+                subscribe(CONVERSATION + conversationId);
+            }
+        }
+    }
+
+    public void leave(String sessionId, String conversationId) {
+        synchronized (subscriptions) {
+            if (sessionRegistry.leave(sessionId, conversationId)) {
+                unsubscribe(CONVERSATION + conversationId);
+            }
+        }
+    }
+
+    /**
+     * Forgets a closed session, dropping the channels it was the last session here on.
+     */
+    public void disconnect(String sessionId) {
+        synchronized (subscriptions) {
+            String userId = sessionRegistry.userOf(sessionId);
+            sessionRegistry.unregister(sessionId).forEach(conversationId -> unsubscribe(CONVERSATION + conversationId));
+            if (userId != null && sessionRegistry.sessionsOf(userId).isEmpty()) {
+                unsubscribe(USER + userId);
+            }
+        }
+    }
+
+    /**
+     * Sends the message to the sessions that joined the conversation, on all nodes, but those
+     * of {@code excludeUserId}.
+     */
+    public void publish(String conversationId, WebSocketMessageDto message, String excludeUserId) {
+        String topic = CONVERSATION + conversationId;
+        deliver(topic, message, excludeUserId);
+        enqueue(topic, event(message, excludeUserId));
+    }
+
+    /**
+     * Sends the message to every session of the user, on all nodes.
+     */
+    public void sendToUser(String userId, WebSocketMessageDto message) {
+        String topic = USER + userId;
+        deliver(topic, message, null);
+        enqueue(topic, event(message, null));
+    }
+
+    @Scheduled(fixedDelayString = "${websocket.cluster.presence-refresh:10s}")
+    void refreshPresence() {
+        subscriptions.keySet().forEach(this::announce);
+
+        // A retired outbox takes no more events: a publish holding it moves to a new one
+        long idleSince = scheduler.now(TimeUnit.MILLISECONDS) - presenceTtl.toMillis();
+        outboxes.forEach((topic, outbox) -> {
+            if (outbox.retireIfIdle(idleSince)) {
+                outboxes.remove(topic, outbox);
+            }
+        });
+        presence.keySet().removeIf(topic -> !subscriptions.containsKey(topic));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        synchronized (subscriptions) {
+            try {
+                // Leaving for good: the other nodes stop publishing to us now, not after the ttl
+                Flux.fromIterable(subscriptions.keySet())
+                        .flatMap(topic -> broker.withdraw(PRESENCE_PREFIX + topic, nodeId))
+                        .then()
+                        .block(Duration.ofSeconds(2));
+            } catch (RuntimeException e) {
+                log.warn("Could not withdraw presence from {}: {}", broker.name(), e.getMessage());
+            }
+            subscriptions.values().forEach(Disposable::dispose);
+            subscriptions.clear();
+        }
+    }
+
+    private void subscribe(String topic) {
+        subscriptions.computeIfAbsent(topic, c -> broker.subscribe(CHANNEL_PREFIX + c)
+                .subscribe(this::receive,
+                        error -> log.error("Fan-out subscription to {} failed: ", c, error)));
+
+        // Present, then said so on the channel: nodes holding a cached answer ask again
+        broker.announce(PRESENCE_PREFIX + topic, nodeId, presenceTtl)
+                .then(Mono.fromCallable(() -> objectMapper.writeValueAsString(FanoutBatch.builder()
+                        .origin(nodeId)
+                        .topic(topic)
+                        .events(List.of())
+                        .build())))
+                .flatMap(notice -> broker.publish(CHANNEL_PREFIX + topic, notice))
+                .subscribe(null, error -> log.warn("Could not announce {} on {}: {}",
+                        topic, broker.name(), error.getMessage()));
+    }
+
+    private void unsubscribe(String topic) {
+        Disposable subscription = subscriptions.remove(topic);
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        presence.remove(topic);
+        lastSequences.remove(topic);
+        broker.withdraw(PRESENCE_PREFIX + topic, nodeId)
+                .subscribe(null, error -> log.debug("Could not withdraw from {}: {}",
+                        topic, error.getMessage()));
+    }
+
+    private void announce(String topic) {
+        broker.announce(PRESENCE_PREFIX + topic, nodeId, presenceTtl)
+                .subscribe(null, error -> log.warn("Could not refresh presence in {}: {}",
+                        topic, error.getMessage()));
+    }
+
+    private void receive(String payload) {
+        FanoutBatch batch;
+        try {
+            batch = objectMapper.readValue(payload, FanoutBatch.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Dropping unreadable fan-out batch: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(batch.getOrigin())) {
+            return;
+        }
+        String topic = batch.getTopic();
+        if (batch.getEvents() == null || batch.getEvents().isEmpty()) {
+            presence.remove(topic);
+            return;
+        }
+
+        Long last = lastSequences.computeIfAbsent(topic, c -> new ConcurrentHashMap<>())
+                .put(batch.getOrigin(), batch.getSequence());
+        if (last != null && batch.getSequence() > last + 1) {
+            gaps.increment(batch.getSequence() - last - 1);
+        }
+
+        for (FanoutEvent event : batch.getEvents()) {
+            receivedEvents.increment(deliver(topic, restore(event), event.getExcludeUserId()));
+        }
+    }
+
+    private int deliver(String topic, WebSocketMessageDto message, String excludeUserId) {
+        Collection<String> sessionIds = topic.startsWith(USER)
+                ? sessionRegistry.sessionsOf(topic.substring(USER.length()))
+                : sessionRegistry.recipients(topic.substring(CONVERSATION.length()), excludeUserId);
+        int delivered = 0;
+        for (String sessionId : sessionIds) {
+            OutboundQueue outbound = outboundQueues.get(sessionId);
+            if (outbound != null) {
+                outbound.offer(message);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    private void enqueue(String topic, FanoutEvent event) {
+        long now = scheduler.now(TimeUnit.MILLISECONDS);
+        Outbox outbox = outboxes.computeIfAbsent(topic, t -> new Outbox());
+        while (!outbox.offer(event, now)) {
+            // Retired while idle since we looked it up: a new outbox, with its own sequence, takes over
+            outboxes.remove(topic, outbox);
+            outbox = outboxes.computeIfAbsent(topic, t -> new Outbox());
+        }
+        if (outbox.startFlush()) {
+            Outbox flushed = outbox;
+            scheduler.schedule(() -> flush(topic, flushed), batchWindow.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static FanoutEvent event(WebSocketMessageDto message, String excludeUserId) {
+        Object payload = message.getPayload();
+        return FanoutEvent.builder()
+                .excludeUserId(excludeUserId)
+                .payloadType(payload != null ? payload.getClass().getName() : null)
+                .message(message)
+                .build();
+    }
+
+    /**
+     * The message of a received event, its payload read back as the class it was sent as rather
+     * than the map JSON gives, so queues and codecs treat it as they do local messages.
+     */
+    private WebSocketMessageDto restore(FanoutEvent event) {
+        WebSocketMessageDto message = event.getMessage();
+        String payloadType = event.getPayloadType();
+        if (message.getPayload() == null || payloadType == null || !payloadType.startsWith(PAYLOAD_PACKAGE)) {
+            return message;
+        }
+        try {
+            return WebSocketMessageDto.builder()
+                    .type(message.getType())
+                    .payload(objectMapper.convertValue(message.getPayload(), Class.forName(payloadType)))
+                    .timestamp(message.getTimestamp())
+                    .build();
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            log.warn("Delivering {} payload untyped, {} unreadable: {}", message.getType(), payloadType, e.getMessage());
+            return message;
+        }
+    }
+
+    private void flush(String topic, Outbox outbox) {
+        List<FanoutEvent> events = outbox.take(batchMax);
+        othersPresent(topic)
+                .flatMap(others -> {
+                    if (!others) {
+                        localBatches.increment();
+                        return Mono.empty();
+                    }
+                    FanoutBatch batch = FanoutBatch.builder()
+                            .origin(nodeId)
+                            .topic(topic)
+                            .sequence(outbox.nextSequence())
+                            .events(events)
+                            .build();
+                    return Mono.fromCallable(() -> objectMapper.writeValueAsString(batch))
+                            .flatMap(payload -> broker.publish(CHANNEL_PREFIX + topic, payload))
+                            .doOnNext(reached -> {
+                                publishedBatches.increment();
+                                batchSize.record(events.size());
+                            });
+                })
+                .subscribe(null,
+                        error -> {
+                            failedBatches.increment();
+                            log.warn("Could not publish {} events of {}: {}",
+                                    events.size(), topic, error.getMessage());
+                            if (outbox.more()) {
+                                flush(topic, outbox);
+                            }
+                        },
+                        () -> {
+                            // Events queued meanwhile waited a window already: next batch right away
+                            if (outbox.more()) {
+                                flush(topic, outbox);
+                            }
+                        });
+    }
+
+    private Mono<Boolean> othersPresent(String topic) {
+        long now = scheduler.now(TimeUnit.MILLISECONDS);
+        CachedPresence cached = presence.get(topic);
+        if (cached != null && cached.expiresAt > now) {
+            return Mono.just(cached.others);
+        }
+        return broker.present(PRESENCE_PREFIX + topic)
+                .map(nodes -> nodes.stream().anyMatch(node -> !node.equals(nodeId)))
+                .doOnNext(others -> {
+                    // Only while subscribed can a join notice reach us to drop the cached answer
+                    if (subscriptions.containsKey(topic)) {
+                        presence.put(topic, new CachedPresence(others, now + presenceCache.toMillis()));
+                    }
+                });
+    }
+
+    private Counter batchCounter(String outcome) {
+        return Counter.builder("websocket.fanout.batches")
+                .description("Event batches of a conversation or user: published to other nodes, kept local, or failed")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Events of one topic waiting to be published, and whether a flush is scheduled or in flight.
+     */
+    private static final class Outbox {
+
+        private final List<FanoutEvent> pending = new ArrayList<>();
+        private boolean flushing;
+        private boolean retired;
+        private long sequence;
+        private long lastUsed;
+
+        /**
+         * Queues the event; false if the outbox is retired and the event has to go to a new one.
+         */
+        synchronized boolean offer(FanoutEvent event, long now) {
+            if (retired) {
+                return false;
+            }
+            pending.add(event);
+            lastUsed = now;
+            return true;
+        }
+
+        /**
+         * True if events wait and no flush is scheduled: the caller has to schedule one.
+         */
+        synchronized boolean startFlush() {
+            if (flushing || pending.isEmpty()) {
+                return false;
+            }
+            flushing = true;
+            return true;
+        }
+
+        synchronized List<FanoutEvent> take(int max) {
+            List<FanoutEvent> head = pending.subList(0, Math.min(Math.max(1, max), pending.size()));
+            List<FanoutEvent> batch = new ArrayList<>(head);
+            head.clear();
+            return batch;
+        }
+
+        /**
+         * True if events are still waiting; otherwise the flush ends.
+         */
+        synchronized boolean more() {
+            if (pending.isEmpty()) {
+                flushing = false;
+                return false;
+            }
+            return true;
+        }
+
+        synchronized long nextSequence() {
+            return ++sequence;
+        }
+
+        /**
+         * Retires the outbox if nothing was queued since {@code time}; true once retired.
+         */
+        synchronized boolean retireIfIdle(long time) {
+            if (!flushing && pending.isEmpty() && lastUsed < time) {
+                retired = true;
+            }
+            return retired;
+        }
+    }
+
+    private static final class CachedPresence {
+
+        private final boolean others;
+        private final long expiresAt;
+
+        CachedPresence(boolean others, long expiresAt) {
+            this.others = others;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
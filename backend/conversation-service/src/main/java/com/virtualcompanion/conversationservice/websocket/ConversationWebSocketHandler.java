@@ -5,13 +5,31 @@ public class ConversationWebSocketHandler implements WebSocketHandler {
     private final MessageService messageService;
     private final AIProcessorService aiProcessor;
     private final ConversationService conversationService;
+    private final PrewarmService prewarmService;
+    private final ResponseEnrichmentService enrichmentService;
     private final JwtTokenProvider jwtTokenProvider;
     private final ObjectMapper objectMapper;
-    
-    // Sessions actives par utilisateur
-    private final Map<String, WebSocketSession> activeSessions = new ConcurrentHashMap<>();
-    // Flux de messages par conversation
-    private final Map<String, Sinks.Many<WebSocketMessage>> conversationSinks = new ConcurrentHashMap<>();
+    private final OutboundQueues outboundQueues;
+    private final FrameCodecs frameCodecs;
+    // Sessions ouvertes sur ce nœud, et diffusion vers celles des autres nœuds
+    private final ClusterFanout clusterFanout;
+    private final HeartbeatWheel heartbeatWheel;
+
+    @PostConstruct
+    void subscribeToEnrichment() {
+        // Les émotions/actions arrivent après la réponse : on les pousse au client dès qu'elles sont prêtes
+        enrichmentService.enrichedEvents()
+                .subscribe(event -> sendMessageToUser(event.getUserId().toString(), WebSocketMessageDto.builder()
+                        .type(MessageType.AI_RESPONSE_ENRICHED)
+                        .payload(event)
+                        .timestamp(LocalDateTime.now())
+                        .build()));
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return WireProtocol.subProtocols();
+    }
 
     @Override
     public Mono<Void> handle(WebSocketSession session) {
@@ -21,24 +39,36 @@ public class ConversationWebSocketHandler implements WebSocketHandler {
         // Authentifier l'utilisateur
         return authenticateSession(session)
                 .flatMap(userId -> {
-                    activeSessions.put(userId, session);
+                    clusterFanout.connect(sessionId, userId);
+                    FrameCodec codec = frameCodecs.forSession(session);
+
+                    // File sortante bornée de la session : un client trop lent est déconnecté
+                    OutboundQueue outbound = outboundQueues.open(sessionId, () -> session
+                            .close(CloseStatus.SERVICE_OVERLOAD.withReason("Outbound queue full"))
+                            .subscribe(null, error -> log.debug("Error closing slow session {}: ", sessionId, error)));
+
+                    // Battement partagé : un seul timer pour toutes les sessions, les muettes sont fermées
+                    HeartbeatWheel.Heartbeat heartbeat = heartbeatWheel.open(sessionId, () -> session
+                            .close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Heartbeat timeout"))
+                            .subscribe(null, error -> log.debug("Error closing idle session {}: ", sessionId, error)));
                     
-                    // Gérer les messages entrants
+                    // Gérer les messages entrants ; toute trame reçue, pong compris, prouve que le client vit
                     Mono<Void> input = session.receive()
-                            .map(WebSocketMessage::getPayloadAsText)
-                            .flatMap(message -> handleIncomingMessage(userId, message, session))
+                            .doOnNext(frame -> heartbeat.touch())
+                            .filter(frame -> frame.getType() != WebSocketMessage.Type.PONG)
+                            .flatMap(frame -> handleIncomingMessage(userId, decode(codec, frame), session))
                             .doOnError(error -> log.error("Error handling message: ", error))
                             .then();
                     
-                    // Envoyer le ping/pong pour maintenir la connexion
-                    Flux<WebSocketMessage> pingPong = Flux.interval(Duration.ofSeconds(30))
+                    // Envoyer le ping/pong pour maintenir la connexion, au tour de la session sur la roue
+                    Flux<WebSocketMessage> pingPong = heartbeat.pings()
                             .map(tick -> session.pingMessage(factory -> 
                                     factory.wrap("ping".getBytes())));
                     
-                    // Combiner les flux sortants
+                    // Combiner les flux sortants : un seul flux long, dans l'ordre de la file
                     Mono<Void> output = session.send(
                             Flux.merge(
-                                    getOutgoingMessages(userId, session),
+                                    outbound.flux().mapNotNull(message -> codec.encode(session, message)),
                                     pingPong
                             )
                     );
@@ -48,6 +78,8 @@ public class ConversationWebSocketHandler implements WebSocketHandler {
                 .doFinally(signal -> {
                     log.info("WebSocket connection closed: {} - {}", sessionId, signal);
                     removeSession(sessionId);
+                    outboundQueues.close(sessionId);
+                    heartbeatWheel.close(sessionId);
                 });
     }
 
@@ -78,8 +110,17 @@ public class ConversationWebSocketHandler implements WebSocketHandler {
 
     // ========== Message Handling ==========
 
-    private Mono<Void> handleIncomingMessage(String userId, String message, WebSocketSession session) {
-        return Mono.fromCallable(() -> objectMapper.readValue(message, WebSocketMessageDto.class))
+    private Mono<WebSocketMessageDto> decode(FrameCodec codec, WebSocketMessage frame) {
+        // Décodé tout de suite : le tampon de la trame est libéré après réception
+        try {
+            return Mono.just(codec.decode(frame));
+        } catch (Exception e) {
+            return Mono.error(e);
+        }
+    }
+
+    private Mono<Void> handleIncomingMessage(String userId, Mono<WebSocketMessageDto> message, WebSocketSession session) {
+        return message
                 .flatMap(wsMessage -> {
                     log.debug("Received message type: {} from user: {}", wsMessage.getType(), userId);
                     
@@ -88,7 +129,7 @@ public class ConversationWebSocketHandler implements WebSocketHandler {
                         case TYPING -> handleTypingIndicator(userId, wsMessage);
                         case READ_RECEIPT -> handleReadReceipt(userId, wsMessage);
                         case JOIN_CONVERSATION -> handleJoinConversation(userId, wsMessage, session);
-                        case LEAVE_CONVERSATION -> handleLeaveConversation(userId, wsMessage);
+                        case LEAVE_CONVERSATION -> handleLeaveConversation(userId, wsMessage, session);
                         case VOICE_START -> handleVoiceStart(userId, wsMessage);
                         case VOICE_END -> handleVoiceEnd(userId, wsMessage);
                         default -> Mono.empty();
@@ -125,28 +166,55 @@ public class ConversationWebSocketHandler implements WebSocketHandler {
     }
 
     private Mono<Void> streamAIResponse(String conversationId, MessageDto userMessage, WebSocketSession session) {
-        return aiProcessor.streamResponse(conversationId, userMessage)
+        // Ce flux ne consomme pas le contexte préparé : le TTFT préchauffé/non préchauffé est mesuré côté REST
+        Flux<AIResponseChunk> chunks = aiProcessor.streamResponse(conversationId, userMessage)
+                .map(chunk -> AIResponseChunk.builder()
+                        .conversationId(conversationId)
+                        .chunk(chunk.getContent())
+                        .isComplete(chunk.isComplete())
+                        .build());
+
+        // Protocole v2 : les tokens sont regroupés en trames toutes les N ms ou N octets
+        AtomicBoolean completed = new AtomicBoolean();
+        return frameCodecs.forSession(session, chunks)
                 .doOnNext(chunk -> {
-                    WebSocketMessageDto wsMessage = WebSocketMessageDto.builder()
-                            .type(MessageType.AI_RESPONSE_CHUNK)
-                            .payload(AIResponseChunk.builder()
-                                    .conversationId(conversationId)
-                                    .chunk(chunk.getContent())
-                                    .isComplete(chunk.isComplete())
-                                    .build())
-                            .timestamp(LocalDateTime.now())
-                            .build();
-                    
-                    sendMessageToSession(session, wsMessage);
+                    if (chunk.isComplete()) {
+                        completed.set(true);
+                    }
+                    sendChunk(session, chunk);
+                })
+                .doFinally(signal -> {
+                    // Réponse coupée (erreur, annulation, délestage) : un dernier morceau vide clôt le flux,
+                    // pour que le client l'abandonne et que le codec v2 libère son numéro
+                    if (!completed.get()) {
+                        sendChunk(session, AIResponseChunk.builder()
+                                .conversationId(conversationId)
+                                .chunk("")
+                                .isComplete(true)
+                                .build());
+                    }
                 })
                 .then();
     }
 
+    private void sendChunk(WebSocketSession session, AIResponseChunk chunk) {
+        sendMessageToSession(session, WebSocketMessageDto.builder()
+                .type(MessageType.AI_RESPONSE_CHUNK)
+                .payload(chunk)
+                .timestamp(LocalDateTime.now())
+                .build());
+    }
+
     // ========== Typing Indicators ==========
 
     private Mono<Void> handleTypingIndicator(String userId, WebSocketMessageDto wsMessage) {
         TypingPayload payload = objectMapper.convertValue(wsMessage.getPayload(), TypingPayload.class);
         
+        // L'utilisateur commence à écrire : préparer le contexte et le préfixe du modèle
+        if (payload.isTyping()) {
+            triggerPrewarm(userId, payload.getConversationId(), "typing");
+        }
+        
         // Broadcaster l'indicateur aux autres participants
         return broadcastToConversation(payload.getConversationId(), WebSocketMessageDto.builder()
                 .type(MessageType.USER_TYPING)
@@ -167,15 +235,12 @@ public class ConversationWebSocketHandler implements WebSocketHandler {
         
         String conversationId = payload.getConversationId();
         
-        // Créer un sink pour cette conversation si nécessaire
-        Sinks.Many<WebSocketMessage> sink = conversationSinks.computeIfAbsent(
-                conversationId,
-                k -> Sinks.many().multicast().onBackpressureBuffer()
-        );
+        triggerPrewarm(userId, conversationId, "join");
         
-        // Charger les messages récents
+        // Charger les messages récents ; une fois l'accès vérifié, la session reçoit les événements de la conversation
         return messageService.getRecentMessages(conversationId, userId, 50)
                 .collectList()
+                .doOnNext(messages -> clusterFanout.join(session.getId(), conversationId))
                 .map(messages -> WebSocketMessageDto.builder()
                         .type(MessageType.CONVERSATION_HISTORY)
                         .payload(ConversationHistoryPayload.builder()
@@ -188,14 +253,14 @@ public class ConversationWebSocketHandler implements WebSocketHandler {
                 .then();
     }
 
-    private Mono<Void> handleLeaveConversation(String userId, WebSocketMessageDto wsMessage) {
+    private Mono<Void> handleLeaveConversation(String userId, WebSocketMessageDto wsMessage, WebSocketSession session) {
         LeaveConversationPayload payload = objectMapper.convertValue(
                 wsMessage.getPayload(), LeaveConversationPayload.class);
         
         // Nettoyer les ressources
         return Mono.fromRunnable(() -> {
             log.info("User {} leaving conversation {}", userId, payload.getConversationId());
-            // Logique de nettoyage si nécessaire
+            clusterFanout.leave(session.getId(), payload.getConversationId());
         });
     }
 
@@ -250,41 +315,36 @@ public class ConversationWebSocketHandler implements WebSocketHandler {
                 ));
     }
 
-    // ========== Outgoing Messages ==========
+    // ========== Prewarm ==========
 
-    private Flux<WebSocketMessage> getOutgoingMessages(String userId, WebSocketSession session) {
-        // Créer un flux personnel pour cet utilisateur
-        Sinks.Many<WebSocketMessage> userSink = Sinks.many().multicast().onBackpressureBuffer();
-        
-        return userSink.asFlux()
-                .doOnError(error -> log.error("Error in outgoing message flux: ", error))
-                .onErrorContinue((error, obj) -> 
-                        log.error("Error sending message to user {}: ", userId, error));
+    private void triggerPrewarm(String userId, String conversationId, String trigger) {
+        // Fire-and-forget : le préchauffage ne retarde jamais le traitement de l'événement
+        prewarmService.prewarm(UUID.fromString(userId), UUID.fromString(conversationId), trigger)
+                .subscribe(null, error -> log.debug("Prewarm error for conversation {}: ", conversationId, error));
     }
 
     // ========== Utility Methods ==========
 
     private void sendMessageToUser(String userId, WebSocketMessageDto message) {
-        WebSocketSession session = activeSessions.get(userId);
-        if (session != null && session.isOpen()) {
-            sendMessageToSession(session, message);
-        }
+        // Toutes les sessions de l'utilisateur, sur ce nœud et sur les autres
+        clusterFanout.sendToUser(userId, message);
     }
 
     private void sendMessageToSession(WebSocketSession session, WebSocketMessageDto message) {
-        try {
-            String json = objectMapper.writeValueAsString(message);
-            session.send(Mono.just(session.textMessage(json))).subscribe();
-        } catch (Exception e) {
-            log.error("Error sending message to session: ", e);
+        sendMessageToSession(session.getId(), message);
+    }
+
+    private void sendMessageToSession(String sessionId, WebSocketMessageDto message) {
+        // Mis en file : sérialisé et envoyé dans l'ordre par le flux sortant de la session
+        OutboundQueue outbound = outboundQueues.get(sessionId);
+        if (outbound != null) {
+            outbound.offer(message);
         }
     }
 
     private Mono<Void> broadcastToConversation(String conversationId, WebSocketMessageDto message, String excludeUserId) {
-        return conversationService.getConversationParticipants(conversationId)
-                .filter(userId -> !userId.equals(excludeUserId))
-                .doOnNext(userId -> sendMessageToUser(userId, message))
-                .then();
+        // Publié une fois pour le cluster : chaque nœud le remet aux sessions qui ont rejoint la conversation
+        return Mono.fromRunnable(() -> clusterFanout.publish(conversationId, message, excludeUserId));
     }
 
     private Mono<Void> sendError(WebSocketSession session, String error) {
@@ -297,20 +357,10 @@ public class ConversationWebSocketHandler implements WebSocketHandler {
                 .timestamp(LocalDateTime.now())
                 .build();
         
-        return session.send(Mono.just(session.textMessage(toJson(errorMessage))));
+        return Mono.fromRunnable(() -> sendMessageToSession(session, errorMessage));
     }
 
     private void removeSession(String sessionId) {
-        activeSessions.entrySet().removeIf(entry -> 
-                entry.getValue().getId().equals(sessionId));
-    }
-
-    private String toJson(Object obj) {
-        try {
-            return objectMapper.writeValueAsString(obj);
-        } catch (Exception e) {
-            log.error("Error converting to JSON: ", e);
-            return "{}";
-        }
+        clusterFanout.disconnect(sessionId);
     }
 }
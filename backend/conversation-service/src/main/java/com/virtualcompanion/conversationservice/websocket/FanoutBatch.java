@@ -0,0 +1,15 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Events a node publishes on the channel of a topic, {@code conversation:<id>} or
+ * {@code user:<id>}, in one message, oldest first. Sequences count up per origin and topic. A
+ * batch without events tells the other nodes its origin has just started holding sessions of
+ * the topic.
+ */
+public class FanoutBatch {
+
+    private String origin;
+    private String topic;
+    private long sequence;
+    private List<FanoutEvent> events;
+}
@@ -0,0 +1,41 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Transport shared by the conversation-service nodes: pub/sub channels carrying
+ * {@link FanoutBatch}es, and presence sets telling which nodes hold members of a conversation.
+ * <p>
+ * A presence entry expires on its own unless announced again, so a node that dies without
+ * withdrawing drops out after its time to live.
+ */
+public interface FanoutBroker extends AutoCloseable {
+
+    /**
+     * Publishes to the channel; completes with the number of subscribers it reached.
+     */
+    Mono<Long> publish(String channel, String payload);
+
+    /**
+     * Messages of the channel, in publish order, from subscription until cancelled.
+     */
+    Flux<String> subscribe(String channel);
+
+    /**
+     * Adds or refreshes the member in the presence set for {@code ttl}.
+     */
+    Mono<Void> announce(String key, String member, Duration ttl);
+
+    Mono<Void> withdraw(String key, String member);
+
+    /**
+     * Members of the presence set whose entry has not expired.
+     */
+    Mono<Set<String>> present(String key);
+
+    /**
+     * Short backend name, used in logs.
+     */
+    String name();
+
+    @Override
+    void close();
+}
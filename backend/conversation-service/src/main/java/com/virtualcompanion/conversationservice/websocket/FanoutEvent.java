@@ -0,0 +1,12 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * One message of a {@link FanoutBatch}, with the class of its payload, which JSON alone does
+ * not keep.
+ */
+public class FanoutEvent {
+
+    private String excludeUserId;
+    private String payloadType;
+    private WebSocketMessageDto message;
+}
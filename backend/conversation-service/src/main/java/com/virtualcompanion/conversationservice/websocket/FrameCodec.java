@@ -0,0 +1,15 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Turns messages into WebSocket frames and back, for one {@link WireProtocol}. A codec may
+ * keep per-session state and is then used by that session only, from its outbound flux.
+ */
+public interface FrameCodec {
+
+    /**
+     * The frame for the message, or {@code null} when it cannot be encoded.
+     */
+    WebSocketMessage encode(WebSocketSession session, WebSocketMessageDto message);
+
+    WebSocketMessageDto decode(WebSocketMessage frame) throws IOException;
+}
@@ -0,0 +1,42 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Picks the {@link FrameCodec} of a session from its negotiated {@link WireProtocol}, and
+ * coalesces response streams for the sessions that speak v2.
+ */
+public class FrameCodecs {
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${websocket.protocol.v2.flush-interval:40ms}")
+    private Duration flushInterval;
+
+    @Value("${websocket.protocol.v2.flush-bytes:512}")
+    private int flushBytes;
+
+    private ObjectMapper cborMapper;
+    private JsonFrameCodec jsonCodec;
+
+    @PostConstruct
+    void init() {
+        // Same modules and settings as the JSON mapper, so payloads encode alike in both protocols
+        cborMapper = objectMapper.copyWith(new CBORFactory());
+        jsonCodec = new JsonFrameCodec(objectMapper);
+    }
+
+    public FrameCodec forSession(WebSocketSession session) {
+        return WireProtocol.of(session.getHandshakeInfo()) == WireProtocol.V2
+                ? new CborFrameCodec(cborMapper, objectMapper)
+                : jsonCodec;
+    }
+
+    /**
+     * The chunks as the session should receive them: unchanged for v1, coalesced for v2.
+     */
+    public Flux<AIResponseChunk> forSession(WebSocketSession session, Flux<AIResponseChunk> chunks) {
+        if (WireProtocol.of(session.getHandshakeInfo()) != WireProtocol.V2) {
+            return chunks;
+        }
+        return ChunkCoalescer.coalesce(chunks, flushInterval, flushBytes, Schedulers.parallel());
+    }
+}
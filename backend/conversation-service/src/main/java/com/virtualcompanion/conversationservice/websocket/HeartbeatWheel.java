@@ -0,0 +1,182 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Pings every open WebSocket session once per {@code interval} from a single timer, and closes
+ * the ones not heard from within {@code idle-timeout}.
+ * <p>
+ * Sessions are spread over a wheel of {@code interval / tick} slots, a new session going into
+ * the slot just visited. Every {@code tick} the timer moves to the next slot and handles all its
+ * sessions in one pass: live ones get their ping signal, idle ones are collected and closed
+ * together after the pass. Each session is visited once per turn, so a tick costs the sessions
+ * of one slot and the node holds one timer whatever the number of connections.
+ * <p>
+ * Liveness is kept in memory: any frame received, pongs included, counts. Sessions opened
+ * without an idle action are pinged but never closed.
+ */
+public class HeartbeatWheel {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${websocket.heartbeat.interval:30s}")
+    private Duration interval;
+
+    @Value("${websocket.heartbeat.tick:1s}")
+    private Duration tick;
+
+    @Value("${websocket.heartbeat.idle-timeout:90s}")
+    private Duration idleTimeout;
+
+    private Scheduler scheduler = Schedulers.parallel();
+
+    private final Map<String, Heartbeat> heartbeats = new ConcurrentHashMap<>();
+
+    private List<Set<Heartbeat>> slots;
+    private volatile int cursor;
+    private Disposable timer;
+
+    private Counter pings;
+    private Counter reaped;
+    private Timer tickTimer;
+
+    @PostConstruct
+    void init() {
+        int size = (int) Math.max(1, (interval.toMillis() + tick.toMillis() - 1) / tick.toMillis());
+        slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+
+        pings = Counter.builder("websocket.heartbeat.pings")
+                .description("Pings signalled to sessions by the heartbeat wheel")
+                .register(meterRegistry);
+        reaped = Counter.builder("websocket.heartbeat.reaped")
+                .description("Sessions closed for not answering within the idle timeout")
+                .register(meterRegistry);
+        tickTimer = Timer.builder("websocket.heartbeat.tick")
+                .description("Time to handle one slot of the heartbeat wheel")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("websocket.heartbeat.sessions", heartbeats, Map::size)
+                .description("Sessions on the heartbeat wheel")
+                .register(meterRegistry);
+
+        timer = scheduler.schedulePeriodically(this::tick, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (timer != null) {
+            timer.dispose();
+        }
+    }
+
+    /**
+     * Puts a new session on the wheel; {@code onIdle} runs when it is reaped, null to never reap it.
+     */
+    public Heartbeat open(String sessionId, Runnable onIdle) {
+        Heartbeat heartbeat = new Heartbeat(sessionId, cursor, onIdle);
+        Heartbeat previous = heartbeats.put(sessionId, heartbeat);
+        if (previous != null) {
+            previous.remove();
+        }
+        slots.get(heartbeat.slot).add(heartbeat);
+        return heartbeat;
+    }
+
+    public Heartbeat get(String sessionId) {
+        return heartbeats.get(sessionId);
+    }
+
+    public void close(String sessionId) {
+        Heartbeat heartbeat = heartbeats.remove(sessionId);
+        if (heartbeat != null) {
+            heartbeat.remove();
+        }
+    }
+
+    public int size() {
+        return heartbeats.size();
+    }
+
+    void tick() {
+        // The periodic task stops for good on an exception: a failed tick is logged, not thrown
+        try {
+            long start = System.nanoTime();
+            long now = scheduler.now(TimeUnit.MILLISECONDS);
+            int slot = (cursor + 1) % slots.size();
+            cursor = slot;
+
+            List<Heartbeat> idle = new ArrayList<>();
+            int signalled = 0;
+            for (Heartbeat heartbeat : slots.get(slot)) {
+                if (heartbeat.onIdle != null && now - heartbeat.lastSeen > idleTimeout.toMillis()) {
+                    idle.add(heartbeat);
+                } else {
+                    heartbeat.ping();
+                    signalled++;
+                }
+            }
+
+            for (Heartbeat heartbeat : idle) {
+                heartbeat.remove();
+                heartbeats.remove(heartbeat.sessionId, heartbeat);
+                try {
+                    heartbeat.onIdle.run();
+                } catch (RuntimeException e) {
+                    log.warn("Error closing an idle session: {}", e.getMessage());
+                }
+            }
+            if (!idle.isEmpty()) {
+                log.info("Closed {} sessions idle for more than {}", idle.size(), idleTimeout);
+            }
+
+            pings.increment(signalled);
+            reaped.increment(idle.size());
+            tickTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            log.error("Heartbeat tick failed: ", e);
+        }
+    }
+
+    /**
+     * A session on the wheel: its ping signal, to merge into the session's outbound frames, and
+     * the time it was last heard from.
+     */
+    public final class Heartbeat {
+
+        private final String sessionId;
+        private final int slot;
+        private final Runnable onIdle;
+        private final Sinks.Many<Long> sink = Sinks.many().multicast().directBestEffort();
+        private volatile long lastSeen;
+        private long sent;
+
+        private Heartbeat(String sessionId, int slot, Runnable onIdle) {
+            this.sessionId = sessionId;
+            this.slot = slot;
+            this.onIdle = onIdle;
+            this.lastSeen = scheduler.now(TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * One signal per turn of the wheel, numbered from 0; a ping the session is not ready
+         * for is skipped.
+         */
+        public Flux<Long> pings() {
+            return sink.asFlux();
+        }
+
+        public void touch() {
+            lastSeen = scheduler.now(TimeUnit.MILLISECONDS);
+        }
+
+        private void ping() {
+            sink.tryEmitNext(sent++);
+        }
+
+        private void remove() {
+            slots.get(slot).remove(this);
+            sink.tryEmitComplete();
+        }
+    }
+}
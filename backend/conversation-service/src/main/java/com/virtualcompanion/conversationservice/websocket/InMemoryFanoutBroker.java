@@ -0,0 +1,70 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * {@link FanoutBroker} held in process, with the delivery and expiry semantics of
+ * {@link RedisFanoutBroker}: messages reach the subscribers of the moment, in publish order,
+ * and are lost when there are none.
+ * <p>
+ * Suits single-node deployments, and tests running several nodes against one instance.
+ */
+public class InMemoryFanoutBroker implements FanoutBroker {
+
+    private final Map<String, Sinks.Many<String>> channels = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Long>> presence = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Long> publish(String channel, String payload) {
+        return Mono.fromSupplier(() -> {
+            Sinks.Many<String> sink = channels.get(channel);
+            if (sink == null) {
+                return 0L;
+            }
+            // Publishers on several threads take turns, as commands on one Redis connection do
+            synchronized (sink) {
+                sink.tryEmitNext(payload);
+                return (long) sink.currentSubscriberCount();
+            }
+        });
+    }
+
+    @Override
+    public Flux<String> subscribe(String channel) {
+        return channels.computeIfAbsent(channel, c -> Sinks.many().multicast().directBestEffort()).asFlux();
+    }
+
+    @Override
+    public Mono<Void> announce(String key, String member, Duration ttl) {
+        return Mono.fromRunnable(() -> presence.computeIfAbsent(key, k -> new ConcurrentHashMap<>())
+                .put(member, System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    @Override
+    public Mono<Void> withdraw(String key, String member) {
+        return Mono.fromRunnable(() -> presence.computeIfPresent(key, (k, members) -> {
+            members.remove(member);
+            return members.isEmpty() ? null : members;
+        }));
+    }
+
+    @Override
+    public Mono<Set<String>> present(String key) {
+        return Mono.fromSupplier(() -> {
+            long now = System.currentTimeMillis();
+            return presence.getOrDefault(key, Map.of()).entrySet().stream()
+                    .filter(entry -> entry.getValue() >= now)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+        });
+    }
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+
+    @Override
+    public void close() {
+        channels.values().forEach(sink -> sink.tryEmitComplete());
+        channels.clear();
+    }
+}
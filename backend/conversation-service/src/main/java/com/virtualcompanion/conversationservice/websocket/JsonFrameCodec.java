@@ -0,0 +1,33 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Protocol v1: every message is a JSON text frame. Stateless, shared by all v1 sessions.
+ */
+public class JsonFrameCodec implements FrameCodec {
+
+    private final ObjectMapper objectMapper;
+
+    public JsonFrameCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public WebSocketMessage encode(WebSocketSession session, WebSocketMessageDto message) {
+        String text = toText(message);
+        return text != null ? session.textMessage(text) : null;
+    }
+
+    public String toText(WebSocketMessageDto message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            log.error("Error converting {} to JSON: ", message.getType(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public WebSocketMessageDto decode(WebSocketMessage frame) throws IOException {
+        return objectMapper.readValue(frame.getPayloadAsText(), WebSocketMessageDto.class);
+    }
+}
@@ -0,0 +1,113 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * The WebSocket sessions open on this node: the user of each, and the conversations each has
+ * joined. A user may have several sessions, one per device or tab.
+ * <p>
+ * Changes are serialized so that {@link #register}, {@link #join}, {@link #leave} and
+ * {@link #unregister} can tell when a user or a conversation gains its first or loses its last
+ * session here, which is when the node subscribes to its channel or drops it. Lookups read concurrent maps without locking.
+ */
+public class LocalSessionRegistry {
+
+    private final Map<String, String> userBySession = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByConversation = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> conversationsBySession = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the session of the user; true if it is the user's first session here.
+     */
+    public synchronized boolean register(String sessionId, String userId) {
+        userBySession.put(sessionId, userId);
+        Set<String> sessions = sessionsByUser.computeIfAbsent(userId, u -> ConcurrentHashMap.newKeySet());
+        return sessions.add(sessionId) && sessions.size() == 1;
+    }
+
+    /**
+     * Adds the session to the conversation; true if it is the first session here to join it.
+     */
+    public synchronized boolean join(String sessionId, String conversationId) {
+        if (!userBySession.containsKey(sessionId)) {
+            return false;
+        }
+        conversationsBySession.computeIfAbsent(sessionId, s -> ConcurrentHashMap.newKeySet()).add(conversationId);
+        Set<String> sessions = sessionsByConversation.computeIfAbsent(conversationId, c -> ConcurrentHashMap.newKeySet());
+        return sessions.add(sessionId) && sessions.size() == 1;
+    }
+
+    /**
+     * Removes the session from the conversation; true if it was the last session here in it.
+     */
+    public synchronized boolean leave(String sessionId, String conversationId) {
+        Set<String> conversations = conversationsBySession.get(sessionId);
+        if (conversations != null) {
+            conversations.remove(conversationId);
+        }
+        return removeFromConversation(sessionId, conversationId);
+    }
+
+    /**
+     * Forgets the session; returns the conversations it was the last session here in.
+     */
+    public synchronized List<String> unregister(String sessionId) {
+        String userId = userBySession.remove(sessionId);
+        if (userId != null) {
+            sessionsByUser.computeIfPresent(userId, (u, sessions) -> {
+                sessions.remove(sessionId);
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+
+        List<String> emptied = new ArrayList<>();
+        Set<String> conversations = conversationsBySession.remove(sessionId);
+        if (conversations != null) {
+            for (String conversationId : conversations) {
+                if (removeFromConversation(sessionId, conversationId)) {
+                    emptied.add(conversationId);
+                }
+            }
+        }
+        return emptied;
+    }
+
+    public String userOf(String sessionId) {
+        return userBySession.get(sessionId);
+    }
+
+    public Set<String> sessionsOf(String userId) {
+        return sessionsByUser.getOrDefault(userId, Set.of());
+    }
+
+    /**
+     * Sessions here that joined the conversation, but those of {@code excludeUserId}.
+     */
+    public List<String> recipients(String conversationId, String excludeUserId) {
+        return sessionsByConversation.getOrDefault(conversationId, Set.of()).stream()
+                .filter(sessionId -> {
+                    String userId = userBySession.get(sessionId);
+                    return userId != null && !userId.equals(excludeUserId);
+                })
+                .collect(Collectors.toList());
+    }
+
+    public Set<String> conversations() {
+        return Collections.unmodifiableSet(sessionsByConversation.keySet());
+    }
+
+    public int sessionCount() {
+        return userBySession.size();
+    }
+
+    private boolean removeFromConversation(String sessionId, String conversationId) {
+        Set<String> sessions = sessionsByConversation.get(conversationId);
+        if (sessions == null || !sessions.remove(sessionId)) {
+            return false;
+        }
+        if (sessions.isEmpty()) {
+            sessionsByConversation.remove(conversationId);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,246 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Outbound messages of one WebSocket session: a bounded multi-producer queue drained by the
+ * single long-lived {@link Flux} the session sends, in order and only as fast as the socket
+ * takes them.
+ * <p>
+ * A consumer falling behind is handled in steps, cheapest loss first:
+ * <ol>
+ *   <li>typing indicators are dropped once {@code ephemeral-depth} messages wait, and queued
+ *   ones are shed when the queue is full: they are stale by the time they would be sent</li>
+ *   <li>stream chunks are appended to the chunk of the same stream still waiting at the tail,
+ *   once {@code coalesce-depth} messages wait: the client gets the same text in fewer frames</li>
+ *   <li>a message that still does not fit trips the overflow policy: {@code disconnect} closes
+ *   the session (the client reconnects and reloads the history), {@code drop} discards it</li>
+ * </ol>
+ * The bound is soft by at most the number of concurrent producers.
+ */
+public class OutboundQueue {
+
+    public enum Overflow { DISCONNECT, DROP }
+
+    private final String sessionId;
+    private final int capacity;
+    private final int ephemeralDepth;
+    private final int coalesceDepth;
+    private final Overflow overflow;
+    private final OutboundQueues.Meters meters;
+    private final Runnable onOverflow;
+
+    private final ConcurrentLinkedDeque<Entry> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private volatile FluxSink<WebSocketMessageDto> sink;
+    private volatile boolean closed;
+
+    OutboundQueue(String sessionId, int capacity, int ephemeralDepth, int coalesceDepth, Overflow overflow,
+                  OutboundQueues.Meters meters, Runnable onOverflow) {
+        this.sessionId = sessionId;
+        this.capacity = capacity;
+        this.ephemeralDepth = Math.min(ephemeralDepth, capacity);
+        this.coalesceDepth = Math.min(coalesceDepth, capacity);
+        this.overflow = overflow;
+        this.meters = meters;
+        this.onOverflow = onOverflow;
+    }
+
+    /**
+     * The messages to send, in the order they were offered. Subscribed once, by the session's
+     * {@code send}.
+     */
+    public Flux<WebSocketMessageDto> flux() {
+        return Flux.create(emitter -> {
+            sink = emitter;
+            emitter.onRequest(requested -> drain());
+            emitter.onDispose(this::close);
+            drain();
+        });
+    }
+
+    /**
+     * Queues the message, or applies the slow-consumer policy. Returns whether it will be sent,
+     * possibly merged with the chunk before it.
+     */
+    public boolean offer(WebSocketMessageDto message) {
+        if (closed) {
+            return false;
+        }
+
+        Kind kind = Kind.of(message);
+        int waiting = depth.get();
+        meters.depth.record(waiting);
+        maxDepth.accumulateAndGet(waiting, Math::max);
+
+        if (kind == Kind.EPHEMERAL && waiting >= ephemeralDepth) {
+            drop("ephemeral");
+            return false;
+        }
+
+        if (kind == Kind.CHUNK && waiting >= coalesceDepth) {
+            Entry tail = queue.peekLast();
+            if (tail != null && tail.append(message)) {
+                coalesced.incrementAndGet();
+                meters.coalesced.increment();
+                return true;
+            }
+        }
+
+        if (waiting >= capacity && shedEphemeral() == 0) {
+            if (overflow == Overflow.DROP) {
+                drop("overflow");
+                return false;
+            }
+            drop("disconnect");
+            log.warn("Outbound queue of session {} full ({} messages), disconnecting the slow consumer", sessionId, waiting);
+            close();
+            FluxSink<WebSocketMessageDto> current = sink;
+            if (current != null) {
+                current.complete();
+            }
+            onOverflow.run();
+            return false;
+        }
+
+        queue.offer(new Entry(kind, message));
+        depth.incrementAndGet();
+        drain();
+        return true;
+    }
+
+    public int depth() {
+        return depth.get();
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    int maxDepth() {
+        return maxDepth.get();
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.clear();
+        depth.set(0);
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            FluxSink<WebSocketMessageDto> current = sink;
+            if (current != null) {
+                while (!closed && current.requestedFromDownstream() > 0) {
+                    Entry entry = queue.poll();
+                    if (entry == null) {
+                        break;
+                    }
+                    depth.decrementAndGet();
+                    current.next(entry.take());
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private int shedEphemeral() {
+        int shed = 0;
+        for (Iterator<Entry> entries = queue.iterator(); entries.hasNext(); ) {
+            Entry entry = entries.next();
+            if (entry.kind == Kind.EPHEMERAL && queue.removeFirstOccurrence(entry)) {
+                depth.decrementAndGet();
+                drop("ephemeral");
+                shed++;
+            }
+        }
+        return shed;
+    }
+
+    private void drop(String reason) {
+        dropped.incrementAndGet();
+        meters.dropped(reason).increment();
+    }
+
+    enum Kind {
+        ESSENTIAL, CHUNK, EPHEMERAL;
+
+        static Kind of(WebSocketMessageDto message) {
+            if (message.getType() == MessageType.USER_TYPING) {
+                return EPHEMERAL;
+            }
+            if (message.getType() == MessageType.AI_RESPONSE_CHUNK && message.getPayload() instanceof AIResponseChunk) {
+                return CHUNK;
+            }
+            return ESSENTIAL;
+        }
+    }
+
+    /**
+     * A queued message. Chunks stay open to appends from later chunks of the same stream until
+     * the drain takes them.
+     */
+    private static final class Entry {
+
+        private final Kind kind;
+        private final WebSocketMessageDto message;
+        private StringBuilder appended;
+        private boolean complete;
+        private boolean taken;
+
+        Entry(Kind kind, WebSocketMessageDto message) {
+            this.kind = kind;
+            this.message = message;
+            this.complete = kind == Kind.CHUNK && ((AIResponseChunk) message.getPayload()).isComplete();
+        }
+
+        synchronized boolean append(WebSocketMessageDto next) {
+            if (taken || kind != Kind.CHUNK || complete || Kind.of(next) != Kind.CHUNK) {
+                return false;
+            }
+            AIResponseChunk first = (AIResponseChunk) message.getPayload();
+            AIResponseChunk chunk = (AIResponseChunk) next.getPayload();
+            if (!Objects.equals(first.getConversationId(), chunk.getConversationId())) {
+                return false;
+            }
+            if (appended == null) {
+                appended = new StringBuilder(first.getChunk() != null ? first.getChunk() : "");
+            }
+            if (chunk.getChunk() != null) {
+                appended.append(chunk.getChunk());
+            }
+            complete = chunk.isComplete();
+            return true;
+        }
+
+        synchronized WebSocketMessageDto take() {
+            taken = true;
+            if (appended == null) {
+                return message;
+            }
+            AIResponseChunk first = (AIResponseChunk) message.getPayload();
+            return WebSocketMessageDto.builder()
+                    .type(message.getType())
+                    .payload(AIResponseChunk.builder()
+                            .conversationId(first.getConversationId())
+                            .chunk(appended.toString())
+                            .isComplete(complete)
+                            .build())
+                    .timestamp(message.getTimestamp())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * Creates and tracks the {@link OutboundQueue} of every open session, with the slow-consumer
+ * settings of {@code websocket.outbound.*}.
+ * <p>
+ * Meters are shared, not tagged per session: queue depth is a distribution sampled at every
+ * offer, drops are counted by reason, and each closing session records its own drop count and
+ * deepest backlog, so a few slow clients show up in the upper percentiles.
+ */
+public class OutboundQueues {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${websocket.outbound.capacity:256}")
+    private int capacity;
+
+    @Value("${websocket.outbound.ephemeral-depth:32}")
+    private int ephemeralDepth;
+
+    @Value("${websocket.outbound.coalesce-depth:8}")
+    private int coalesceDepth;
+
+    @Value("${websocket.outbound.overflow:disconnect}")
+    private String overflow;
+
+    private final Map<String, OutboundQueue> queues = new ConcurrentHashMap<>();
+
+    private Meters meters;
+    private DistributionSummary sessionDrops;
+    private DistributionSummary sessionMaxDepth;
+
+    @PostConstruct
+    void init() {
+        meters = new Meters(meterRegistry);
+        sessionDrops = DistributionSummary.builder("websocket.outbound.session.dropped")
+                .description("Messages dropped over a session's lifetime, recorded when it closes")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        sessionMaxDepth = DistributionSummary.builder("websocket.outbound.session.max-depth")
+                .description("Deepest outbound backlog of a session, recorded when it closes")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        Gauge.builder("websocket.outbound.queued", queues, all -> all.values().stream().mapToInt(OutboundQueue::depth).sum())
+                .description("Messages waiting in outbound queues, all sessions")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The queue of a new session; {@code onOverflow} runs when the overflow policy disconnects it.
+     */
+    public OutboundQueue open(String sessionId, Runnable onOverflow) {
+        OutboundQueue queue = new OutboundQueue(sessionId, capacity, ephemeralDepth, coalesceDepth,
+                OutboundQueue.Overflow.valueOf(overflow.toUpperCase(Locale.ROOT)), meters, onOverflow);
+        queues.put(sessionId, queue);
+        return queue;
+    }
+
+    public OutboundQueue get(String sessionId) {
+        return queues.get(sessionId);
+    }
+
+    public void close(String sessionId) {
+        OutboundQueue queue = queues.remove(sessionId);
+        if (queue == null) {
+            return;
+        }
+        queue.close();
+        sessionDrops.record(queue.dropped());
+        sessionMaxDepth.record(queue.maxDepth());
+        if (queue.dropped() > 0 || queue.coalesced() > 0) {
+            log.info("Session {} closed after dropping {} and coalescing {} outbound messages (max depth {})",
+                    sessionId, queue.dropped(), queue.coalesced(), queue.maxDepth());
+        }
+    }
+
+    static final class Meters {
+
+        final DistributionSummary depth;
+        final Counter coalesced;
+        private final Map<String, Counter> dropped = new ConcurrentHashMap<>();
+        private final MeterRegistry registry;
+
+        Meters(MeterRegistry registry) {
+            this.registry = registry;
+            this.depth = DistributionSummary.builder("websocket.outbound.depth")
+                    .description("Messages already waiting when a session is offered one")
+                    .publishPercentiles(0.5, 0.99)
+                    .register(registry);
+            this.coalesced = Counter.builder("websocket.outbound.coalesced")
+                    .description("Stream chunks appended to a chunk still waiting to be sent")
+                    .register(registry);
+        }
+
+        Counter dropped(String reason) {
+            return dropped.computeIfAbsent(reason, r -> Counter.builder("websocket.outbound.dropped")
+                    .description("Outbound messages dropped by the slow-consumer policy")
+                    .tag("reason", r)
+                    .register(registry));
+        }
+    }
+}
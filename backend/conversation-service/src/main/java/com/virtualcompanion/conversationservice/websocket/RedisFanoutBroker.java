@@ -0,0 +1,56 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * {@link FanoutBroker} on Redis: channels are Redis pub/sub channels, received through the
+ * shared listener container (one connection for all subscriptions of the node), and presence
+ * sets are sorted sets scored by the expiry time of each member.
+ */
+public class RedisFanoutBroker implements FanoutBroker {
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ReactiveRedisMessageListenerContainer listenerContainer;
+
+    @Override
+    public Mono<Long> publish(String channel, String payload) {
+        return redisTemplate.convertAndSend(channel, payload);
+    }
+
+    @Override
+    public Flux<String> subscribe(String channel) {
+        return listenerContainer.receive(ChannelTopic.of(channel))
+                .map(ReactiveSubscription.Message::getMessage);
+    }
+
+    @Override
+    public Mono<Void> announce(String key, String member, Duration ttl) {
+        long now = System.currentTimeMillis();
+        ReactiveZSetOperations<String, String> presence = redisTemplate.opsForZSet();
+        // Expired members are pruned on the way; the key itself outlives its last refresh by one ttl
+        return presence.add(key, member, now + ttl.toMillis())
+                .then(presence.removeRangeByScore(key, Range.closed(0.0, (double) now)))
+                .then(redisTemplate.expire(key, ttl))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> withdraw(String key, String member) {
+        return redisTemplate.opsForZSet().remove(key, member).then();
+    }
+
+    @Override
+    public Mono<Set<String>> present(String key) {
+        return redisTemplate.opsForZSet()
+                .rangeByScore(key, Range.closed((double) System.currentTimeMillis(), Double.POSITIVE_INFINITY))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public String name() {
+        return "redis";
+    }
+
+    @Override
+    public void close() {
+        listenerContainer.destroy();
+    }
+}
@@ -0,0 +1,38 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+/**
+ * WebSocket protocol versions, negotiated through {@code Sec-WebSocket-Protocol}. Clients
+ * that ask for none, or for one this server does not know, get {@link #V1}.
+ * <ul>
+ *   <li>{@code vc.v1}: one JSON text frame per {@code WebSocketMessageDto}, stream chunks
+ *   included</li>
+ *   <li>{@code vc.v2}: CBOR binary frames with interned stream ids, stream chunks coalesced
+ *   (see {@link CborFrameCodec})</li>
+ * </ul>
+ * Both work with or without permessage-deflate, which the client negotiates separately.
+ */
+public enum WireProtocol {
+    V1("vc.v1"),
+    V2("vc.v2");
+
+    private final String subProtocol;
+
+    WireProtocol(String subProtocol) {
+        this.subProtocol = subProtocol;
+    }
+
+    public String subProtocol() {
+        return subProtocol;
+    }
+
+    /**
+     * Sub-protocols offered to clients, preferred first.
+     */
+    public static List<String> subProtocols() {
+        return List.of(V2.subProtocol, V1.subProtocol);
+    }
+
+    public static WireProtocol of(HandshakeInfo handshake) {
+        return V2.subProtocol.equals(handshake.getSubProtocol()) ? V2 : V1;
+    }
+}
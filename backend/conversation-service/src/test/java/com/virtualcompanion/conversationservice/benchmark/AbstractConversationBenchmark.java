@@ -0,0 +1,137 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Shared environment of the end-to-end benchmarks: the service on a random port in front of
+ * {@link StubModelServer}, Postgres, MongoDB and Redis in Testcontainers, and user/character
+ * services and JWT mocked (the bearer token is the user id).
+ * <p>
+ * Excluded from the default build; run with {@code mvn verify -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+abstract class AbstractConversationBenchmark {
+
+    protected static final StubModelServer MODEL = new StubModelServer(profileFromSystemProperties()).start();
+
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    static {
+        POSTGRES.start();
+        MONGO.start();
+        REDIS.start();
+        // Shared by every benchmark class in the run, so it is closed with the JVM
+        Runtime.getRuntime().addShutdownHook(new Thread(MODEL::close));
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.r2dbc.url", () -> "r2dbc:postgresql://" + POSTGRES.getHost() + ":"
+                + POSTGRES.getMappedPort(5432) + "/" + POSTGRES.getDatabaseName());
+        registry.add("spring.r2dbc.username", POSTGRES::getUsername);
+        registry.add("spring.r2dbc.password", POSTGRES::getPassword);
+        registry.add("spring.data.mongodb.uri", MONGO::getReplicaSetUrl);
+        registry.add("spring.redis.host", REDIS::getHost);
+        registry.add("spring.redis.port", () -> REDIS.getMappedPort(6379));
+        registry.add("spring.redis.password", () -> "");
+        // No broker in the benchmark: fail Kafka sends fast instead of blocking on metadata
+        registry.add("spring.kafka.producer.properties.max.block.ms", () -> "50");
+
+        registry.add("ai.openai.base-url", MODEL::openAiBaseUrl);
+        registry.add("openai.api.key", () -> "stub");
+        registry.add("ai.ollama.base-url", MODEL::baseUrl);
+        registry.add("ai.llm.base-url", MODEL::baseUrl);
+        registry.add("cache.ai-response.enabled", () -> "false");
+    }
+
+    @LocalServerPort
+    protected int port;
+
+    @MockBean
+    private JwtTokenProvider jwtTokenProvider;
+
+    @MockBean
+    private CharacterServiceClient characterClient;
+
+    @MockBean
+    private UserServiceClient userClient;
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+    protected final UUID characterId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUpMocks() {
+        // The token is the user id
+        when(jwtTokenProvider.validateToken(anyString())).thenReturn(true);
+        when(jwtTokenProvider.getUserIdFromToken(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(characterClient.getCharacter(any())).thenReturn(Optional.of(CharacterDetails.builder()
+                .id(characterId)
+                .name("Stub")
+                .description("a benchmark companion")
+                .build()));
+    }
+
+    protected WebClient apiClient() {
+        return WebClient.create("http://localhost:" + port + "/api/v1");
+    }
+
+    protected Mono<String> createConversation(WebClient client, String token) {
+        return client.post()
+                .uri("/conversations")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .bodyValue(Map.of("characterId", characterId, "title", "benchmark"))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(body -> body.get("id").asText());
+    }
+
+    protected Mono<Void> sendMessage(WebClient client, String token, String conversationId, String content) {
+        return client.post()
+                .uri("/conversations/{id}/messages", conversationId)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .bodyValue(Map.of("content", content))
+                .retrieve()
+                .toBodilessEntity()
+                .then();
+    }
+
+    protected static void report(String name, Histogram histogram, int errors, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf(Locale.ROOT,
+                "%-24s n=%d errors=%d throughput=%.1f/s p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms%n",
+                name, histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(95) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6, histogram.getMaxValue() / 1e6);
+    }
+
+    private static StubModelProfile profileFromSystemProperties() {
+        StubModelProfile profile = StubModelProfile.defaults();
+        profile.setTimeToFirstToken(Duration.ofMillis(Long.getLong("benchmark.ttft-ms", 250)));
+        profile.setTokensPerSecond(Double.parseDouble(System.getProperty("benchmark.tokens-per-second", "40")));
+        profile.setJitter(Double.parseDouble(System.getProperty("benchmark.jitter", "0.25")));
+        profile.setErrorRate(Double.parseDouble(System.getProperty("benchmark.error-rate", "0")));
+        profile.setCompletionTokens(Integer.getInteger("benchmark.completion-tokens", 64));
+        profile.setSeed(Long.getLong("benchmark.seed", 42L));
+        return profile;
+    }
+
+    protected JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Workload shared by every {@link VectorStore} backend, so they can be compared on the same
+ * numbers: batched upsert throughput, filtered top-k latency, recall@k against an exact scan
+ * of the pair's vectors, and whether deleted vectors stop being returned.
+ * <p>
+ * Memories are synthetic unit vectors drawn around topic centres and spread over pairs as in
+ * production, a few heavy users and many light ones. Sizes are set with
+ * {@code -Dbenchmark.store.memories}, {@code .pairs}, {@code .queries}, {@code .k},
+ * {@code .batch} and {@code .dimension}. Excluded from the default build; run one backend with
+ * e.g. {@code mvn verify -Pbenchmark -Dtest=PgVectorStoreBenchmark}.
+ */
+@Tag("benchmark")
+abstract class AbstractVectorStoreBenchmark {
+
+    protected static final int MEMORIES = Integer.getInteger("benchmark.store.memories", 50_000);
+    protected static final int PAIRS = Integer.getInteger("benchmark.store.pairs", 100);
+    protected static final int QUERIES = Integer.getInteger("benchmark.store.queries", 1_000);
+    protected static final int K = Integer.getInteger("benchmark.store.k", 5);
+    protected static final int BATCH = Integer.getInteger("benchmark.store.batch", 500);
+    protected static final int DIMENSION = Integer.getInteger("benchmark.store.dimension", 384);
+
+    private final Random random = new Random(42);
+    private VectorStore store;
+
+    /**
+     * A store over empty storage, with the same index parameters as the defaults of
+     * {@code ai.vector-store.*}.
+     */
+    protected abstract VectorStore open() throws Exception;
+
+    /**
+     * Called once all vectors are written and before the first search, for backends that
+     * index asynchronously.
+     */
+    protected void afterLoad(VectorStore store) throws Exception {
+    }
+
+    @BeforeEach
+    void openStore() throws Exception {
+        store = open();
+    }
+
+    @AfterEach
+    void closeStore() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Vector store: batched upsert throughput, filtered top-k latency, recall@k, delete visibility")
+    void workload() throws Exception {
+        // Given
+        float[][] topics = new float[64][];
+        for (int t = 0; t < topics.length; t++) {
+            topics[t] = unitGaussian(null, 1.0f);
+        }
+        UUID[][] pairIds = new UUID[PAIRS][];
+        for (int p = 0; p < PAIRS; p++) {
+            pairIds[p] = new UUID[]{UUID.randomUUID(), UUID.randomUUID()};
+        }
+
+        Map<Integer, List<VectorRecord>> byPair = new HashMap<>();
+        List<VectorRecord> records = new ArrayList<>(MEMORIES);
+        for (int i = 0; i < MEMORIES; i++) {
+            int pair = skewedPair();
+            VectorRecord record = VectorRecord.builder()
+                    .id(UUID.randomUUID())
+                    .userId(pairIds[pair][0])
+                    .characterId(pairIds[pair][1])
+                    .vector(unitGaussian(topics[random.nextInt(topics.length)], 0.9f))
+                    .build();
+            records.add(record);
+            byPair.computeIfAbsent(pair, p -> new ArrayList<>()).add(record);
+        }
+        List<Integer> pairs = new ArrayList<>(byPair.keySet());
+
+        // When: batched upserts
+        long start = System.nanoTime();
+        for (int from = 0; from < records.size(); from += BATCH) {
+            store.upsertAll(records.subList(from, Math.min(records.size(), from + BATCH)));
+        }
+        double upsertSeconds = (System.nanoTime() - start) / 1e9;
+        afterLoad(store);
+
+        // When: filtered top-k searches
+        Histogram latency = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+        double found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            int pair = pairs.get(random.nextInt(pairs.size()));
+            List<VectorRecord> owned = byPair.get(pair);
+            float[] query = unitGaussian(owned.get(random.nextInt(owned.size())).getVector(), 0.3f);
+
+            start = System.nanoTime();
+            List<VectorMatch> matches = store.search(pairIds[pair][0], pairIds[pair][1], query, K);
+            latency.recordValue(System.nanoTime() - start);
+
+            Set<UUID> truth = exactTopK(owned, query);
+            found += matches.stream().filter(match -> truth.contains(match.getId())).count()
+                    / (double) Math.min(K, owned.size());
+        }
+
+        // When: deletes, then the same pairs searched again
+        int pair = pairs.get(0);
+        List<UUID> deleted = byPair.get(pair).stream()
+                .limit(Math.max(1, byPair.get(pair).size() / 10))
+                .map(VectorRecord::getId)
+                .collect(Collectors.toList());
+        store.delete(deleted);
+        long visible = 0;
+        for (UUID id : deleted) {
+            float[] vector = byPair.get(pair).stream().filter(record -> record.getId().equals(id)).findFirst()
+                    .map(VectorRecord::getVector).orElseThrow();
+            visible += store.search(pairIds[pair][0], pairIds[pair][1], vector, K).stream()
+                    .filter(match -> match.getId().equals(id))
+                    .count();
+        }
+
+        // Then
+        double recall = found / QUERIES;
+        System.out.printf(Locale.ROOT, "%s memories=%d pairs=%d dimension=%d k=%d batch=%d queries=%d%n",
+                store.name(), MEMORIES, pairs.size(), DIMENSION, K, BATCH, QUERIES);
+        System.out.printf(Locale.ROOT, "%-9s upsert=%.0f vectors/s  search p50=%.3fms p95=%.3fms p99=%.3fms  recall@%d=%.4f  "
+                        + "deleted still returned=%d/%d%n",
+                store.name(), MEMORIES / upsertSeconds, latency.getValueAtPercentile(50) / 1e6,
+                latency.getValueAtPercentile(95) / 1e6, latency.getValueAtPercentile(99) / 1e6, K, recall,
+                visible, deleted.size());
+        assertThat(recall).isGreaterThan(0.8);
+        assertThat(visible).isZero();
+    }
+
+    private Set<UUID> exactTopK(List<VectorRecord> owned, float[] query) {
+        return owned.stream()
+                .sorted(Comparator.comparingDouble((VectorRecord record) -> dot(query, record.getVector())).reversed())
+                .limit(K)
+                .map(VectorRecord::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private int skewedPair() {
+        // Roughly Zipf: a few pairs hold most memories
+        return (int) Math.min(PAIRS - 1, Math.floor(Math.pow(random.nextDouble(), 2.5) * PAIRS));
+    }
+
+    private float[] unitGaussian(float[] center, float spread) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (center != null ? center[d] : 0f) + (float) random.nextGaussian() * spread / (float) Math.sqrt(DIMENSION);
+            norm += vector[d] * vector[d];
+        }
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,116 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * End-to-end latency/throughput run of conversation-service against {@link StubModelServer}.
+ * <p>
+ * Excluded from the default build; run with {@code mvn verify -Pbenchmark}. Load and model
+ * shape are tunable with system properties, e.g.
+ * {@code -Dbenchmark.users=50 -Dbenchmark.turns=10 -Dbenchmark.ttft-ms=300 -Dbenchmark.tokens-per-second=30}.
+ */
+class ConversationPipelineBenchmark extends AbstractConversationBenchmark {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 20);
+    private static final int TURNS = Integer.getInteger("benchmark.turns", 5);
+
+    @Test
+    @DisplayName("REST: full response latency and throughput")
+    void restPipeline() {
+        WebClient client = apiClient();
+        // Recorded from the flatMap threads of all users at once
+        Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(5), 3);
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+
+        Flux.range(0, USERS)
+                .flatMap(user -> {
+                    String token = UUID.randomUUID().toString();
+                    return createConversation(client, token)
+                            .flatMapMany(conversationId -> Flux.range(0, TURNS)
+                                    .concatMap(turn -> {
+                                        long sent = System.nanoTime();
+                                        return sendMessage(client, token, conversationId, "Tell me something, turn " + turn)
+                                                .doOnSuccess(response -> latency.recordValue(System.nanoTime() - sent))
+                                                .onErrorResume(error -> {
+                                                    errors.incrementAndGet();
+                                                    return Mono.empty();
+                                                });
+                                    }));
+                }, USERS)
+                .blockLast(Duration.ofMinutes(10));
+
+        report("REST response", latency, errors.get(), System.nanoTime() - start);
+        assertThat(latency.getTotalCount()).isPositive();
+    }
+
+    @Test
+    @DisplayName("WebSocket: time to first chunk and full stream latency")
+    void webSocketPipeline() {
+        WebClient client = apiClient();
+        ReactorNettyWebSocketClient wsClient = new ReactorNettyWebSocketClient();
+        Histogram firstChunk = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(5), 3);
+        Histogram complete = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(5), 3);
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+
+        Flux.range(0, USERS)
+                .flatMap(user -> {
+                    String token = UUID.randomUUID().toString();
+                    return createConversation(client, token)
+                            .flatMap(conversationId -> wsClient.execute(
+                                    URI.create("ws://localhost:" + port + "/ws/conversations?token=" + token),
+                                    session -> runTurns(session, conversationId, firstChunk, complete)))
+                            .onErrorResume(error -> {
+                                errors.incrementAndGet();
+                                return Mono.empty();
+                            });
+                }, USERS)
+                .blockLast(Duration.ofMinutes(10));
+
+        report("WebSocket first chunk", firstChunk, errors.get(), System.nanoTime() - start);
+        report("WebSocket full stream", complete, errors.get(), System.nanoTime() - start);
+        assertThat(complete.getTotalCount()).isPositive();
+    }
+
+    private Mono<Void> runTurns(WebSocketSession session, String conversationId, Histogram firstChunk, Histogram complete) {
+        AtomicLong sentAt = new AtomicLong();
+        AtomicBoolean awaitingFirst = new AtomicBoolean();
+        Sinks.Many<String> outgoing = Sinks.many().unicast().onBackpressureBuffer();
+        // Unicast: session.send is the only subscriber of outgoing, the end of the run is signalled apart
+        Sinks.Empty<Void> done = Sinks.empty();
+        AtomicInteger turn = new AtomicInteger();
+
+        Runnable sendNext = () -> {
+            sentAt.set(System.nanoTime());
+            awaitingFirst.set(true);
+            outgoing.tryEmitNext(toJson(Map.of("type", "MESSAGE", "payload",
+                    Map.of("conversationId", conversationId, "content", "Tell me something, turn " + turn.get()))));
+        };
+
+        Mono<Void> receive = session.receive()
+                .map(WebSocketMessage::getPayloadAsText)
+                .map(this::readTree)
+                .filter(message -> "AI_RESPONSE_CHUNK".equals(message.path("type").asText()))
+                .doOnNext(message -> {
+                    long elapsed = System.nanoTime() - sentAt.get();
+                    if (awaitingFirst.compareAndSet(true, false)) {
+                        firstChunk.recordValue(elapsed);
+                    }
+                    if (message.path("payload").path("isComplete").asBoolean()) {
+                        complete.recordValue(elapsed);
+                        if (turn.incrementAndGet() < TURNS) {
+                            sendNext.run();
+                        } else {
+                            outgoing.tryEmitComplete();
+                            done.tryEmitEmpty();
+                        }
+                    }
+                })
+                .takeUntilOther(done.asMono())
+                .then();
+
+        outgoing.tryEmitNext(toJson(Map.of("type", "JOIN_CONVERSATION", "payload", Map.of("conversationId", conversationId))));
+        sendNext.run();
+
+        return Mono.zip(session.send(outgoing.asFlux().map(session::textMessage)), receive).then();
+    }
+}
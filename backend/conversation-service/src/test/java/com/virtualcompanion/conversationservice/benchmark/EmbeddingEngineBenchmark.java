@@ -0,0 +1,169 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Benchmarks of the in-process embedding engine against a real model export
+ * ({@code -Dbenchmark.embedding-model=<dir with model.onnx and vocab.txt>}):
+ * <ul>
+ *   <li>{@link #batchSizeSweep()}: JMH throughput of the encoder per batch size, reported as
+ *   texts per second;</li>
+ *   <li>{@link #workload()}: concurrent callers drawing texts from a Zipf distribution through
+ *   {@link EmbeddingServiceImpl}, reporting throughput, latency and cache hit rate.</li>
+ * </ul>
+ * Excluded from the default build; run with
+ * {@code mvn verify -Pbenchmark -Dtest=EmbeddingEngineBenchmark -Dbenchmark.embedding-model=...}.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+public class EmbeddingEngineBenchmark {
+
+    private static final String MODEL_DIR = System.getProperty("benchmark.embedding-model");
+
+    private static final String[] WORDS = {
+            "I", "you", "we", "really", "love", "hiking", "in", "the", "mountains", "with", "my", "dog",
+            "remember", "that", "yesterday", "was", "hard", "at", "work", "because", "of", "a", "meeting",
+            "favorite", "movie", "is", "about", "space", "travel", "and", "friendship", "tell", "me",
+            "story", "sister", "lives", "Paris", "coffee", "morning", "rain", "music", "guitar", "tired"
+    };
+
+    @Param({"1", "4", "8", "16", "32", "64"})
+    public int batchSize;
+
+    @Param("")
+    public String modelDir;
+
+    private OnnxSentenceEncoder encoder;
+    private List<String> batch;
+
+    @Setup
+    public void setUp() throws Exception {
+        encoder = OnnxSentenceEncoder.load(Path.of(modelDir), 256, 0);
+        batch = sentences(batchSize, new Random(7));
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoder.close();
+    }
+
+    @Benchmark
+    public float[][] encode() {
+        return encoder.encode(batch);
+    }
+
+    @Test
+    @DisplayName("Embedding: encoder throughput per batch size")
+    void batchSizeSweep() throws RunnerException {
+        assumeTrue(MODEL_DIR != null, "set -Dbenchmark.embedding-model=<model directory>");
+
+        Options options = new OptionsBuilder()
+                .include(EmbeddingEngineBenchmark.class.getSimpleName() + ".encode")
+                .param("modelDir", MODEL_DIR)
+                .forks(Integer.getInteger("benchmark.jmh.forks", 1))
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        for (RunResult result : results) {
+            int size = Integer.parseInt(result.getParams().getParam("batchSize"));
+            double batchesPerSecond = result.getPrimaryResult().getScore();
+            System.out.printf(Locale.ROOT, "batch=%-3d %10.1f batches/s %10.1f texts/s %8.2f ms/batch%n",
+                    size, batchesPerSecond, batchesPerSecond * size, 1000.0 / batchesPerSecond);
+        }
+        assertThat(results).isNotEmpty();
+    }
+
+    @Test
+    @DisplayName("Embedding: concurrent Zipf workload through the micro-batcher and cache")
+    void workload() throws Exception {
+        assumeTrue(MODEL_DIR != null, "set -Dbenchmark.embedding-model=<model directory>");
+
+        // Given
+        int callers = Integer.getInteger("benchmark.embedding.callers", 16);
+        int requests = Integer.getInteger("benchmark.embedding.requests", 20_000);
+        int distinct = Integer.getInteger("benchmark.embedding.distinct", 5_000);
+        double skew = Double.parseDouble(System.getProperty("benchmark.embedding.zipf", "1.0"));
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EmbeddingServiceImpl service = new EmbeddingServiceImpl(registry);
+        ReflectionTestUtils.setField(service, "modelName", "sentence-transformers/all-MiniLM-L6-v2");
+        ReflectionTestUtils.setField(service, "modelPath", MODEL_DIR);
+        ReflectionTestUtils.setField(service, "maxSequenceLength", 256);
+        ReflectionTestUtils.setField(service, "maxBatchSize", Integer.getInteger("benchmark.embedding.batch", 32));
+        ReflectionTestUtils.setField(service, "maxBatchDelay", Duration.ofMillis(Long.getLong("benchmark.embedding.delay-ms", 5)));
+        ReflectionTestUtils.setField(service, "queueCapacity", requests);
+        ReflectionTestUtils.setField(service, "timeout", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(service, "cacheMaxEntries", (long) distinct);
+        ReflectionTestUtils.setField(service, "cacheDirectory", "");
+        service.init();
+
+        List<String> corpus = sentences(distinct, new Random(42));
+        double[] cumulative = zipf(distinct, skew);
+        Histogram latency = new Histogram(TimeUnit.MINUTES.toNanos(1), 3);
+        AtomicInteger remaining = new AtomicInteger(requests);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        long start = System.nanoTime();
+
+        // When
+        List<Future<?>> workers = new ArrayList<>();
+        for (int c = 0; c < callers; c++) {
+            Random random = new Random(c);
+            workers.add(executor.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    int index = Arrays.binarySearch(cumulative, random.nextDouble());
+                    String text = corpus.get(Math.min(distinct - 1, index >= 0 ? index : -index - 1));
+                    long sent = System.nanoTime();
+                    service.generateEmbedding(text);
+                    synchronized (latency) {
+                        latency.recordValue(System.nanoTime() - sent);
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        service.stop();
+
+        // Then
+        DistributionSummary batches = registry.get("ai.embedding.batch.size").summary();
+        System.out.printf(Locale.ROOT,
+                "callers=%d requests=%d distinct=%d zipf=%.2f throughput=%.1f/s p50=%.2fms p99=%.2fms "
+                        + "hit-rate=%.3f model-batches=%d mean-batch=%.1f%n",
+                callers, requests, distinct, skew, requests / (elapsed / 1e9),
+                latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                registry.get("ai.embedding.cache.hit.ratio").gauge().value(), batches.count(), batches.mean());
+        assertThat(latency.getTotalCount()).isEqualTo(requests);
+    }
+
+    private static List<String> sentences(int count, Random random) {
+        List<String> sentences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = 4 + random.nextInt(28);
+            StringBuilder sentence = new StringBuilder();
+            for (int w = 0; w < length; w++) {
+                sentence.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            sentences.add(sentence.append(" #").append(i).toString());
+        }
+        return sentences;
+    }
+
+    private static double[] zipf(int size, double skew) {
+        double[] cumulative = new double[size];
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= total;
+        }
+        return cumulative;
+    }
+}
@@ -0,0 +1,89 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * JMH comparison of {@link EmotionAnalysisServiceImpl} with {@link NaiveEmotionAnalyzer}:
+ * throughput and, through the GC profiler, bytes allocated per message
+ * ({@code gc.alloc.rate.norm}).
+ * <p>
+ * Excluded from the default build; run with
+ * {@code mvn verify -Pbenchmark -Dtest=EmotionAnalyzerBenchmark}.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EmotionAnalyzerBenchmark {
+
+    private static final String[] MESSAGES = {
+            "Oh, I'm so happy you came back! I really missed talking with you.",
+            "*smiles softly* That sounds wonderful. Tell me everything about the trip, I love hearing your stories.",
+            "I'm not angry, just a little disappointed that you didn't tell me sooner. Why didn't you?",
+            "Je suis vraiment contente de te voir ! Tu m’as manqué, tu sais.",
+            "The train leaves at 9:40 from platform 3, so we should head out around nine.",
+            "WOW, that's AMAZING news!!! I can't believe it, congratulations!",
+            "Hmm, I don't know. It's hard to say without more details, but I'm a bit worried about it.",
+            "That was honestly disgusting. I never want to see that again, it was horrible."
+    };
+
+    private EmotionAnalysisServiceImpl lexiconAnalyzer;
+    private NaiveEmotionAnalyzer naiveAnalyzer;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        ClassPathResource lexicon = new ClassPathResource("emotion-lexicon.tsv");
+
+        lexiconAnalyzer = new EmotionAnalysisServiceImpl();
+        ReflectionTestUtils.setField(lexiconAnalyzer, "lexiconResource", lexicon);
+        ReflectionTestUtils.setField(lexiconAnalyzer, "negationWindow", 3);
+        ReflectionTestUtils.setField(lexiconAnalyzer, "intensifierWindow", 2);
+        lexiconAnalyzer.init();
+
+        try (InputStream source = lexicon.getInputStream()) {
+            naiveAnalyzer = new NaiveEmotionAnalyzer(
+                    new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8)).lines().toList());
+        }
+    }
+
+    @Benchmark
+    public EmotionData lexicon() {
+        return lexiconAnalyzer.analyzeEmotion(nextMessage(), null);
+    }
+
+    @Benchmark
+    public double lexiconSentiment() {
+        return lexiconAnalyzer.analyzeSentiment(nextMessage());
+    }
+
+    @Benchmark
+    public Map<String, Double> naive() {
+        return naiveAnalyzer.analyze(nextMessage());
+    }
+
+    private String nextMessage() {
+        next = (next + 1) % MESSAGES.length;
+        return MESSAGES[next];
+    }
+
+    @Test
+    @DisplayName("Emotion analysis: lexicon trie vs naive tokenizing, throughput and allocation")
+    void run() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EmotionAnalyzerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(Integer.getInteger("benchmark.jmh.forks", 1))
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        for (RunResult result : results) {
+            Result<?> allocation = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            System.out.printf(Locale.ROOT, "%-34s %12.1f ops/ms %10.1f B/op%n",
+                    result.getParams().getBenchmark(), result.getPrimaryResult().getScore(),
+                    allocation != null ? allocation.getScore() : Double.NaN);
+        }
+        assertThat(results).isNotEmpty();
+    }
+}
@@ -0,0 +1,227 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Offline recall@k and latency of memory retrieval: vector only ({@link HnswIndex}), lexical
+ * only ({@link Bm25Index}) and the hybrid path of {@code HybridMemoryRetriever} (lexical early
+ * exit on few confident matches, otherwise reciprocal rank fusion of both).
+ * <p>
+ * The corpus is synthetic so that relevance is known. Every memory states a fact about a named
+ * entity, on one of a set of topics, with one of a set of attributes; its vector is drawn around
+ * the topic and attribute, and knows nothing of the name. Two kinds of queries are asked:
+ * <ul>
+ *   <li>named: "what about Kovela?", relevant memories are the ones naming that entity; words
+ *   carry the answer, the query vector is mostly noise</li>
+ *   <li>paraphrased: the topic and attribute in other words than the memories use, relevant
+ *   memories are the ones on that topic with that attribute; only vectors can find them</li>
+ * </ul>
+ * Sizes are set with {@code -Dbenchmark.hybrid.pairs}, {@code .memories-per-pair},
+ * {@code .queries}, {@code .k} and {@code .dimension}. Excluded from the default build; run with
+ * {@code mvn verify -Pbenchmark -Dtest=HybridRetrievalBenchmark}.
+ */
+@Tag("benchmark")
+class HybridRetrievalBenchmark {
+
+    private static final int PAIRS = Integer.getInteger("benchmark.hybrid.pairs", 50);
+    private static final int MEMORIES_PER_PAIR = Integer.getInteger("benchmark.hybrid.memories-per-pair", 2_000);
+    private static final int QUERIES = Integer.getInteger("benchmark.hybrid.queries", 2_000);
+    private static final int K = Integer.getInteger("benchmark.hybrid.k", 5);
+    private static final int DIMENSION = Integer.getInteger("benchmark.hybrid.dimension", 384);
+
+    // Same defaults as conversation.memory.hybrid.*
+    private static final int CANDIDATE_FACTOR = 4;
+    private static final int RRF_K = 60;
+    private static final double EARLY_EXIT_COVERAGE = 0.9;
+
+    private static final int TOPICS = 24;
+    private static final int ATTRIBUTES = 12;
+
+    private final Random random = new Random(42);
+
+    @Test
+    @DisplayName("Memory retrieval: vector vs lexical vs hybrid, recall@k and latency")
+    void recallAndLatency() {
+        // Given
+        float[][] topicCentres = new float[TOPICS][];
+        float[][] attributeCentres = new float[ATTRIBUTES][];
+        for (int t = 0; t < TOPICS; t++) {
+            topicCentres[t] = unitGaussian(null, 1.0f);
+        }
+        for (int a = 0; a < ATTRIBUTES; a++) {
+            attributeCentres[a] = unitGaussian(null, 1.0f);
+        }
+
+        List<Pair> pairs = new ArrayList<>();
+        for (int p = 0; p < PAIRS; p++) {
+            Pair pair = new Pair();
+            for (int i = 0; i < MEMORIES_PER_PAIR; i++) {
+                int topic = random.nextInt(TOPICS);
+                int attribute = random.nextInt(ATTRIBUTES);
+                String name = name();
+                UUID id = UUID.randomUUID();
+
+                pair.vectors.add(id, unitGaussian(mix(topicCentres[topic], attributeCentres[attribute]), 0.6f));
+                pair.lexical.add(id, "User mentioned " + name + ": " + word("topic", topic) + " "
+                        + word("attribute", attribute) + " " + filler());
+                pair.byName.computeIfAbsent(name, n -> new HashSet<>()).add(id);
+                pair.byFact.computeIfAbsent(topic * ATTRIBUTES + attribute, f -> new HashSet<>()).add(id);
+                pair.names.add(name);
+            }
+            pairs.add(pair);
+        }
+
+        Recall vector = new Recall("vector");
+        Recall lexical = new Recall("lexical");
+        Recall hybrid = new Recall("hybrid");
+        int earlyExits = 0;
+
+        // When
+        for (int q = 0; q < QUERIES; q++) {
+            Pair pair = pairs.get(random.nextInt(pairs.size()));
+            boolean named = q % 2 == 0;
+
+            String text;
+            float[] embedding;
+            Set<UUID> relevant;
+            if (named) {
+                String name = pair.names.get(random.nextInt(pair.names.size()));
+                text = "what about " + name + "?";
+                embedding = unitGaussian(null, 1.0f);
+                relevant = pair.byName.get(name);
+            } else {
+                int topic = random.nextInt(TOPICS);
+                int attribute = random.nextInt(ATTRIBUTES);
+                text = word("subject", topic) + " " + word("quality", attribute);
+                embedding = unitGaussian(mix(topicCentres[topic], attributeCentres[attribute]), 0.6f);
+                relevant = pair.byFact.getOrDefault(topic * ATTRIBUTES + attribute, Set.of());
+            }
+            if (relevant.isEmpty()) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            List<UUID> vectorIds = pair.vectors.search(embedding, K * CANDIDATE_FACTOR, 64).stream()
+                    .map(HnswIndex.Neighbour::id)
+                    .collect(Collectors.toList());
+            vector.record(named, vectorIds, relevant, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            List<Bm25Index.Hit> hits = pair.lexical.search(text, K * CANDIDATE_FACTOR);
+            List<UUID> lexicalIds = hits.stream().map(Bm25Index.Hit::id).collect(Collectors.toList());
+            long lexicalNanos = System.nanoTime() - start;
+            lexical.record(named, lexicalIds, relevant, lexicalNanos);
+
+            // Hybrid: the lexical search already ran, then either early exit or vector + fusion
+            start = System.nanoTime();
+            List<UUID> hybridIds;
+            List<UUID> confident = hits.stream()
+                    .filter(hit -> hit.coverage() >= EARLY_EXIT_COVERAGE)
+                    .map(Bm25Index.Hit::id)
+                    .collect(Collectors.toList());
+            if (!confident.isEmpty() && confident.size() <= K) {
+                earlyExits++;
+                hybridIds = confident;
+            } else {
+                List<UUID> candidates = pair.vectors.search(embedding, K * CANDIDATE_FACTOR, 64).stream()
+                        .map(HnswIndex.Neighbour::id)
+                        .collect(Collectors.toList());
+                hybridIds = HybridMemoryRetriever.fuse(List.of(candidates, lexicalIds), RRF_K, K);
+            }
+            hybrid.record(named, hybridIds, relevant, lexicalNanos + System.nanoTime() - start);
+        }
+
+        // Then
+        System.out.printf(Locale.ROOT, "pairs=%d memories/pair=%d dimension=%d k=%d queries=%d early exits=%d%n",
+                PAIRS, MEMORIES_PER_PAIR, DIMENSION, K, QUERIES, earlyExits);
+        vector.print();
+        lexical.print();
+        hybrid.print();
+        assertThat(hybrid.overall()).isGreaterThanOrEqualTo(Math.max(vector.overall(), lexical.overall()));
+    }
+
+    private float[] mix(float[] topic, float[] attribute) {
+        float[] mixed = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            mixed[d] = topic[d] + 0.7f * attribute[d];
+        }
+        return mixed;
+    }
+
+    private float[] unitGaussian(float[] center, float spread) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (center != null ? center[d] : 0f) + (float) random.nextGaussian() * spread / (float) Math.sqrt(DIMENSION);
+            norm += vector[d] * vector[d];
+        }
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private String name() {
+        String[] syllables = {"ka", "lo", "mi", "ve", "tor", "an", "si", "ru", "bel", "do", "na", "zu", "fe", "ri"};
+        StringBuilder name = new StringBuilder();
+        int length = 2 + random.nextInt(2);
+        for (int i = 0; i < length; i++) {
+            name.append(syllables[random.nextInt(syllables.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    private String filler() {
+        String[] words = {"yesterday", "again", "recently", "often", "last week", "at home", "with friends"};
+        return words[random.nextInt(words.length)];
+    }
+
+    private static String word(String kind, int index) {
+        return kind + (char) ('a' + index % 26) + (char) ('a' + index / 26);
+    }
+
+    private static final class Pair {
+
+        private final HnswIndex vectors = new HnswIndex(DIMENSION, 16, 100);
+        private final Bm25Index lexical = new Bm25Index();
+        private final Map<String, Set<UUID>> byName = new HashMap<>();
+        private final Map<Integer, Set<UUID>> byFact = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+    }
+
+    private static final class Recall {
+
+        private final String name;
+        private final Histogram latency = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+        private double namedFound;
+        private int namedQueries;
+        private double paraphrasedFound;
+        private int paraphrasedQueries;
+
+        Recall(String name) {
+            this.name = name;
+        }
+
+        void record(boolean named, List<UUID> results, Set<UUID> relevant, long nanos) {
+            long found = results.stream().limit(K).filter(relevant::contains).count();
+            double recall = found / (double) Math.min(K, relevant.size());
+            if (named) {
+                namedFound += recall;
+                namedQueries++;
+            } else {
+                paraphrasedFound += recall;
+                paraphrasedQueries++;
+            }
+            latency.recordValue(nanos);
+        }
+
+        double overall() {
+            return (namedFound + paraphrasedFound) / Math.max(1, namedQueries + paraphrasedQueries);
+        }
+
+        void print() {
+            System.out.printf(Locale.ROOT, "%-8s recall@%d named=%.4f paraphrased=%.4f overall=%.4f  p50=%.3fms p99=%.3fms%n",
+                    name, K, namedFound / Math.max(1, namedQueries), paraphrasedFound / Math.max(1, paraphrasedQueries),
+                    overall(), latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * {@link AbstractVectorStoreBenchmark} on {@link InMemoryVectorStore}.
+ */
+class InMemoryVectorStoreBenchmark extends AbstractVectorStoreBenchmark {
+
+    @Override
+    protected VectorStore open() {
+        return new InMemoryVectorStore(DIMENSION, 16, 100, 64, 2);
+    }
+}
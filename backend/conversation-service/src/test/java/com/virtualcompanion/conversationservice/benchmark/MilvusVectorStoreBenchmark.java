@@ -0,0 +1,39 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * {@link AbstractVectorStoreBenchmark} on {@link MilvusVectorStore}, against a running Milvus
+ * given with {@code -Dbenchmark.milvus.host} (and {@code .port}, 19530 by default); skipped
+ * without one. Each run uses a fresh collection, dropped afterwards.
+ */
+class MilvusVectorStoreBenchmark extends AbstractVectorStoreBenchmark {
+
+    private static final String HOST = System.getProperty("benchmark.milvus.host");
+    private static final int PORT = Integer.getInteger("benchmark.milvus.port", 19530);
+
+    private MilvusServiceClient client;
+    private String collection;
+
+    @Override
+    protected VectorStore open() {
+        Assumptions.assumeTrue(HOST != null, "benchmark.milvus.host not set");
+
+        client = new MilvusServiceClient(ConnectParam.newBuilder().withHost(HOST).withPort(PORT).build());
+        collection = "benchmark_" + Long.toHexString(System.nanoTime());
+        MilvusVectorStore store = new MilvusVectorStore(client, collection, DIMENSION, MetricType.COSINE, 16, 100, 64, BATCH);
+        store.ensureCollection();
+        return store;
+    }
+
+    @Override
+    protected void afterLoad(VectorStore store) {
+        client.flush(FlushParam.newBuilder().addCollectionName(collection).build());
+    }
+
+    @AfterEach
+    void dropCollection() {
+        // Runs before the inherited closeStore(), while the client is still open
+        if (client != null) {
+            client.dropCollection(DropCollectionParam.newBuilder().withCollectionName(collection).build());
+        }
+    }
+}
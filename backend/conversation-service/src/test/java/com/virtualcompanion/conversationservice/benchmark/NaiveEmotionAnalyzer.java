@@ -0,0 +1,77 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Baseline for {@link EmotionAnalyzerBenchmark}: the keyword approach the lexicon analyzer
+ * replaces. It lowercases the whole message, splits it with a regex, looks every token up in
+ * string-keyed maps and builds a score map per call. It reads the same lexicon file, so both
+ * sides do the same amount of matching work.
+ */
+class NaiveEmotionAnalyzer {
+
+    private final Map<String, String> emotions = new HashMap<>();
+    private final Map<String, Double> weights = new HashMap<>();
+    private final Set<String> negations = new HashSet<>();
+    private final Map<String, Double> intensifiers = new HashMap<>();
+
+    NaiveEmotionAnalyzer(List<String> lexicon) {
+        for (String line : lexicon) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\t");
+            switch (fields[1]) {
+                case "@negation" -> negations.add(fields[0]);
+                case "@intensifier" -> intensifiers.put(fields[0], Double.parseDouble(fields[2]));
+                default -> {
+                    emotions.put(fields[0], fields[1]);
+                    weights.put(fields[0], Double.parseDouble(fields[2]));
+                }
+            }
+        }
+    }
+
+    Map<String, Double> analyze(String text) {
+        Map<String, Double> scores = new HashMap<>();
+        String[] tokens = text.toLowerCase(Locale.ROOT).replace('’', '\'').split("[^\\p{L}\\p{N}']+");
+
+        boolean negated = false;
+        double intensifier = 1.0;
+        for (String token : tokens) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (negations.contains(token)) {
+                negated = true;
+                continue;
+            }
+            if (intensifiers.containsKey(token)) {
+                intensifier = intensifiers.get(token);
+                continue;
+            }
+            String emotion = emotions.get(token);
+            if (emotion == null) {
+                continue;
+            }
+            double weight = weights.get(token) * intensifier;
+            if (negated) {
+                emotion = switch (emotion) {
+                    case "happy" -> "sad";
+                    case "sad" -> "happy";
+                    default -> null;
+                };
+                weight *= 0.5;
+                negated = false;
+            }
+            if (emotion != null) {
+                scores.merge(emotion, weight, Double::sum);
+            }
+            intensifier = 1.0;
+        }
+
+        double total = scores.values().stream().mapToDouble(Double::doubleValue).sum();
+        Map<String, Double> normalized = new HashMap<>();
+        scores.forEach((emotion, score) -> normalized.put(emotion, score / total));
+        return normalized;
+    }
+}
@@ -0,0 +1,45 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * {@link AbstractVectorStoreBenchmark} on {@link PgVectorStore}, against pgvector in a
+ * container with the {@code memory_vectors} table of V4. The HNSW index is built before the
+ * vectors are loaded, as in production where it already exists when memories are written.
+ */
+class PgVectorStoreBenchmark extends AbstractVectorStoreBenchmark {
+
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg15").asCompatibleSubstituteFor("postgres"));
+
+    @BeforeAll
+    static void startDatabase() {
+        POSTGRES.start();
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        POSTGRES.stop();
+    }
+
+    @Override
+    protected VectorStore open() {
+        DataSource dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(),
+                POSTGRES.getPassword());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS memory_vectors");
+        jdbcTemplate.execute("CREATE TABLE memory_vectors (id UUID PRIMARY KEY, user_id UUID NOT NULL, "
+                + "character_id UUID NOT NULL, embedding vector(" + DIMENSION + ") NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX idx_memory_vectors_pair ON memory_vectors(user_id, character_id)");
+
+        PgVectorStore store = new PgVectorStore(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), 16, 100, 64, "strict_order", BATCH);
+        store.ensureIndex();
+        return store;
+    }
+
+    @Override
+    protected void afterLoad(VectorStore store) {
+        new JdbcTemplate(new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(),
+                POSTGRES.getPassword())).execute("ANALYZE memory_vectors");
+    }
+}
@@ -0,0 +1,36 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Fixed reply of the stub model for one user message: the tokens to send and how fast.
+ */
+public class ScriptedReply {
+
+    private static final Pattern TOKEN = Pattern.compile("\\s*\\S+");
+
+    private List<String> tokens;
+    private Duration timeToFirstToken;
+    private double tokensPerSecond;
+
+    /**
+     * Rebuilds what the model did in a recorded turn. Model timings are used when the trace has
+     * them; streamed turns fall back to first chunk and total time.
+     */
+    public static ScriptedReply fromTrace(TurnTrace trace) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(trace.getOutput() != null ? trace.getOutput() : "");
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+
+        Map<String, Long> stages = trace.getStages();
+        long firstToken = stages.getOrDefault("ttft", stages.getOrDefault("first_chunk", 0L));
+        long lastToken = stages.getOrDefault("model", stages.getOrDefault("total", firstToken));
+        long decodeNanos = lastToken - firstToken;
+
+        ScriptedReply reply = new ScriptedReply();
+        reply.setTokens(tokens);
+        reply.setTimeToFirstToken(Duration.ofNanos(firstToken));
+        reply.setTokensPerSecond(tokens.size() > 1 && decodeNanos > 0 ? (tokens.size() - 1) / (decodeNanos / 1e9) : 0);
+        return reply;
+    }
+}
@@ -0,0 +1,27 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Latency and failure shape of the stub model. Durations are medians; each request draws its
+ * own value from a log-normal distribution with the given spread, from a seeded generator.
+ */
+public class StubModelProfile {
+
+    private Duration timeToFirstToken = Duration.ofMillis(250);
+    private double tokensPerSecond = 40.0;
+    private double jitter = 0.25;
+    private double errorRate = 0.0;
+    private int completionTokens = 64;
+    private long seed = 42L;
+
+    public static StubModelProfile defaults() {
+        return new StubModelProfile();
+    }
+
+    public static StubModelProfile instant() {
+        StubModelProfile profile = new StubModelProfile();
+        profile.setTimeToFirstToken(Duration.ZERO);
+        profile.setTokensPerSecond(0);
+        profile.setJitter(0);
+        return profile;
+    }
+}
@@ -0,0 +1,345 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * In-process stand-in for Ollama and the OpenAI chat API, for latency and throughput runs
+ * without a GPU or an API bill.
+ * <p>
+ * Implements {@code POST /api/generate} and {@code POST /api/chat} (Ollama, NDJSON when
+ * streaming) and {@code POST /v1/chat/completions} (OpenAI, SSE when streaming). Timing and
+ * failures follow a {@link StubModelProfile}; request {@code n} always draws from
+ * {@code Random(seed + n)}, so a run is reproducible for a given arrival order. A
+ * {@link #script script} can pin the reply and timing for a given user message, which is how
+ * recorded turns are replayed.
+ */
+public class StubModelServer implements AutoCloseable {
+
+    private static final String[] VOCABULARY = {
+            "I", "really", "enjoy", "talking", "with", "you", "about", "this", "it", "reminds",
+            "me", "of", "a", "quiet", "evening", "by", "the", "sea", "and", "how", "the", "light",
+            "changes", "when", "we", "share", "stories", "tell", "me", "more", "please."
+    };
+
+    private final StubModelProfile profile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong requestCounter = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+
+    private volatile Function<String, ScriptedReply> script = message -> null;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public StubModelServer(StubModelProfile profile) {
+        this.profile = profile;
+    }
+
+    public StubModelServer start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 512);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start stub model server", e);
+        }
+
+        // One virtual thread per request: sleeping between tokens costs nothing
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/generate", exchange -> handle(exchange, this::ollama));
+        server.createContext("/api/chat", exchange -> handle(exchange, this::ollama));
+        server.createContext("/v1/chat/completions", exchange -> handle(exchange, this::openAi));
+        server.createContext("/chat/completions", exchange -> handle(exchange, this::openAi));
+        server.start();
+        return this;
+    }
+
+    /**
+     * Replies for requests whose last user message the function recognizes; others fall back
+     * to the profile.
+     */
+    public StubModelServer script(Function<String, ScriptedReply> script) {
+        this.script = script;
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public String openAiBaseUrl() {
+        return baseUrl() + "/v1";
+    }
+
+    public long requestCount() {
+        return requestCounter.get();
+    }
+
+    public long failedRequestCount() {
+        return failedRequests.get();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // ========== Dispatch ==========
+
+    private void handle(HttpExchange exchange, StubHandler handler) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            Random random = new Random(profile.getSeed() + requestCounter.getAndIncrement());
+
+            if (random.nextDouble() < profile.getErrorRate()) {
+                failedRequests.incrementAndGet();
+                sleep(sample(random, profile.getTimeToFirstToken().toNanos()));
+                boolean openAi = exchange.getRequestURI().getPath().endsWith("/chat/completions");
+                writeJson(exchange, openAi ? 429 : 503, openAi
+                        ? Map.of("error", Map.of("message", "stub overloaded", "type", "rate_limit_exceeded"))
+                        : Map.of("error", "stub overloaded"));
+                return;
+            }
+
+            handler.handle(exchange, request, random, script.apply(lastUserMessage(request)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ========== Ollama ==========
+
+    private void ollama(HttpExchange exchange, JsonNode request, Random random, ScriptedReply reply)
+            throws IOException, InterruptedException {
+        boolean chat = exchange.getRequestURI().getPath().equals("/api/chat");
+        boolean stream = request.path("stream").asBoolean(true);
+        String model = request.path("model").asText("stub");
+        int promptTokens = estimatePromptTokens(request);
+        int maxTokens = request.path("options").path("num_predict").asInt(profile.getCompletionTokens());
+        List<String> tokens = tokens(random, reply, maxTokens);
+        Timing timing = timing(reply);
+
+        long start = System.nanoTime();
+        if (!stream) {
+            sleep(totalNanos(random, timing, tokens.size()));
+            Map<String, Object> body = new LinkedHashMap<>(ollamaFrame(model, chat, String.join("", tokens), true));
+            body.putAll(ollamaCounters(promptTokens, tokens.size(), System.nanoTime() - start));
+            writeJson(exchange, 200, body);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+
+        sleep(sample(random, timing.firstTokenNanos));
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i > 0) {
+                sleep(interTokenNanos(random, timing));
+            }
+            writeLine(out, objectMapper.writeValueAsString(ollamaFrame(model, chat, tokens.get(i), false)) + "\n");
+        }
+
+        Map<String, Object> last = new LinkedHashMap<>(ollamaFrame(model, chat, "", true));
+        last.putAll(ollamaCounters(promptTokens, tokens.size(), System.nanoTime() - start));
+        writeLine(out, objectMapper.writeValueAsString(last) + "\n");
+    }
+
+    private Map<String, Object> ollamaFrame(String model, boolean chat, String content, boolean done) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("model", model);
+        frame.put("created_at", Instant.now().toString());
+        if (chat) {
+            frame.put("message", Map.of("role", "assistant", "content", content));
+        } else {
+            frame.put("response", content);
+        }
+        frame.put("done", done);
+        return frame;
+    }
+
+    private Map<String, Object> ollamaCounters(int promptTokens, int evalTokens, long totalNanos) {
+        return Map.of(
+                "total_duration", totalNanos,
+                "prompt_eval_count", promptTokens,
+                "eval_count", evalTokens);
+    }
+
+    // ========== OpenAI ==========
+
+    private void openAi(HttpExchange exchange, JsonNode request, Random random, ScriptedReply reply)
+            throws IOException, InterruptedException {
+        boolean stream = request.path("stream").asBoolean(false);
+        String model = request.path("model").asText("stub");
+        String id = "chatcmpl-stub-" + requestCounter.get();
+        long created = Instant.now().getEpochSecond();
+        int promptTokens = estimatePromptTokens(request);
+        int maxTokens = request.path("max_tokens").asInt(profile.getCompletionTokens());
+        List<String> tokens = tokens(random, reply, maxTokens);
+        Timing timing = timing(reply);
+
+        if (!stream) {
+            sleep(totalNanos(random, timing, tokens.size()));
+            writeJson(exchange, 200, Map.of(
+                    "id", id,
+                    "object", "chat.completion",
+                    "created", created,
+                    "model", model,
+                    "choices", List.of(Map.of(
+                            "index", 0,
+                            "message", Map.of("role", "assistant", "content", String.join("", tokens)),
+                            "finish_reason", "stop")),
+                    "usage", Map.of(
+                            "prompt_tokens", promptTokens,
+                            "completion_tokens", tokens.size(),
+                            "total_tokens", promptTokens + tokens.size())));
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+
+        sleep(sample(random, timing.firstTokenNanos));
+        writeEvent(out, openAiChunk(id, created, model, Map.of("role", "assistant", "content", ""), null));
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i > 0) {
+                sleep(interTokenNanos(random, timing));
+            }
+            writeEvent(out, openAiChunk(id, created, model, Map.of("content", tokens.get(i)), null));
+        }
+        writeEvent(out, openAiChunk(id, created, model, Map.of(), "stop"));
+        writeLine(out, "data: [DONE]\n\n");
+    }
+
+    private String openAiChunk(String id, long created, String model, Map<String, Object> delta, String finishReason)
+            throws IOException {
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+
+        return objectMapper.writeValueAsString(Map.of(
+                "id", id,
+                "object", "chat.completion.chunk",
+                "created", created,
+                "model", model,
+                "choices", List.of(choice)));
+    }
+
+    // ========== Timing ==========
+
+    private long sample(Random random, long medianNanos) {
+        if (medianNanos <= 0) {
+            return 0;
+        }
+        return (long) (medianNanos * Math.exp(profile.getJitter() * random.nextGaussian()));
+    }
+
+    private long interTokenNanos(Random random, Timing timing) {
+        if (timing.tokensPerSecond <= 0) {
+            return 0;
+        }
+        return sample(random, (long) (1e9 / timing.tokensPerSecond));
+    }
+
+    private long totalNanos(Random random, Timing timing, int tokenCount) {
+        long total = sample(random, timing.firstTokenNanos);
+        for (int i = 1; i < tokenCount; i++) {
+            total += interTokenNanos(random, timing);
+        }
+        return total;
+    }
+
+    private Timing timing(ScriptedReply reply) {
+        return reply != null
+                ? new Timing(reply.getTimeToFirstToken().toNanos(), reply.getTokensPerSecond())
+                : new Timing(profile.getTimeToFirstToken().toNanos(), profile.getTokensPerSecond());
+    }
+
+    private static final class Timing {
+
+        private final long firstTokenNanos;
+        private final double tokensPerSecond;
+
+        Timing(long firstTokenNanos, double tokensPerSecond) {
+            this.firstTokenNanos = firstTokenNanos;
+            this.tokensPerSecond = tokensPerSecond;
+        }
+    }
+
+    private static void sleep(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            Thread.sleep(Duration.ofNanos(nanos));
+        }
+    }
+
+    // ========== Utility Methods ==========
+
+    private List<String> tokens(Random random, ScriptedReply reply, int maxTokens) {
+        if (reply != null) {
+            return reply.getTokens().subList(0, Math.min(maxTokens, reply.getTokens().size()));
+        }
+        return completion(random, Math.min(maxTokens, profile.getCompletionTokens()));
+    }
+
+    private List<String> completion(Random random, int tokenCount) {
+        List<String> tokens = new ArrayList<>(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            String word = VOCABULARY[random.nextInt(VOCABULARY.length)];
+            tokens.add(i == 0 ? word : " " + word);
+        }
+        return tokens;
+    }
+
+    private static String lastUserMessage(JsonNode request) {
+        if (request.has("prompt")) {
+            return request.path("prompt").asText("");
+        }
+        String last = "";
+        for (JsonNode message : request.path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                last = message.path("content").asText("");
+            }
+        }
+        return last;
+    }
+
+    private static int estimatePromptTokens(JsonNode request) {
+        int chars = request.path("prompt").asText("").length() + request.path("system").asText("").length();
+        for (JsonNode message : request.path("messages")) {
+            chars += message.path("content").asText("").length();
+        }
+        return chars / 4 + 1;
+    }
+
+    private void writeJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void writeEvent(OutputStream out, String json) throws IOException {
+        writeLine(out, "data: " + json + "\n\n");
+    }
+
+    private static void writeLine(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    @FunctionalInterface
+    private interface StubHandler {
+        void handle(HttpExchange exchange, JsonNode request, Random random, ScriptedReply reply)
+                throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,93 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+class StubModelServerTest {
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Should stream Ollama NDJSON ending with token counters")
+    void ollamaGenerate_Streaming() throws Exception {
+        // Given
+        try (StubModelServer server = new StubModelServer(StubModelProfile.instant()).start()) {
+
+            // When
+            List<String> lines = post(server.baseUrl() + "/api/generate", "{\"model\":\"llama2\",\"prompt\":\"hello\"}")
+                    .body().lines().toList();
+
+            // Then
+            assertThat(lines).hasSize(65);
+            JsonNode last = objectMapper.readTree(lines.get(lines.size() - 1));
+            assertThat(last.get("done").asBoolean()).isTrue();
+            assertThat(last.get("eval_count").asInt()).isEqualTo(64);
+            assertThat(objectMapper.readTree(lines.get(0)).get("response").asText()).isNotEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("Should stream OpenAI chat completion chunks as SSE")
+    void openAiChat_Streaming() throws Exception {
+        // Given
+        try (StubModelServer server = new StubModelServer(StubModelProfile.instant()).start()) {
+
+            // When
+            String body = post(server.openAiBaseUrl() + "/chat/completions",
+                    "{\"model\":\"gpt-4\",\"stream\":true,\"max_tokens\":5,\"messages\":[{\"role\":\"user\",\"content\":\"hi\"}]}")
+                    .body();
+
+            // Then
+            List<String> events = body.lines().filter(line -> line.startsWith("data: ")).toList();
+            assertThat(events).hasSize(8); // role, 5 tokens, finish, [DONE]
+            assertThat(events.get(events.size() - 1)).isEqualTo("data: [DONE]");
+            assertThat(objectMapper.readTree(events.get(6).substring(6))
+                    .at("/choices/0/finish_reason").asText()).isEqualTo("stop");
+        }
+    }
+
+    @Test
+    @DisplayName("Should replay the same completions for the same seed")
+    void deterministicOutput() throws Exception {
+        // Given
+        String request = "{\"model\":\"llama2\",\"prompt\":\"hello\",\"stream\":false}";
+        String first;
+        String second;
+
+        // When
+        try (StubModelServer server = new StubModelServer(StubModelProfile.instant()).start()) {
+            first = objectMapper.readTree(post(server.baseUrl() + "/api/generate", request).body()).get("response").asText();
+        }
+        try (StubModelServer server = new StubModelServer(StubModelProfile.instant()).start()) {
+            second = objectMapper.readTree(post(server.baseUrl() + "/api/generate", request).body()).get("response").asText();
+        }
+
+        // Then
+        assertThat(first).isNotBlank().isEqualTo(second);
+    }
+
+    @Test
+    @DisplayName("Should fail requests at the configured error rate")
+    void errorRate() throws Exception {
+        // Given
+        StubModelProfile profile = StubModelProfile.instant();
+        profile.setErrorRate(1.0);
+
+        try (StubModelServer server = new StubModelServer(profile).start()) {
+
+            // When
+            HttpResponse<String> response = post(server.openAiBaseUrl() + "/chat/completions",
+                    "{\"model\":\"gpt-4\",\"messages\":[]}");
+
+            // Then
+            assertThat(response.statusCode()).isEqualTo(429);
+            assertThat(server.failedRequestCount()).isEqualTo(1);
+        }
+    }
+
+    private HttpResponse<String> post(String url, String json) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
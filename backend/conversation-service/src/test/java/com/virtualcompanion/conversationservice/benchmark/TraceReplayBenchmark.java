@@ -0,0 +1,106 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Replays a captured turn trace file ({@code conversation.trace.enabled=true}) through the
+ * service, with the stub model reproducing each recorded reply and its timing.
+ * <p>
+ * Turns keep their conversation order and are sent at their recorded offsets, divided by
+ * {@code benchmark.speedup} (0 sends each turn as soon as the previous one of its conversation
+ * answered). The run captures its own traces and prints their per-stage report and the delta
+ * against {@code benchmark.baseline}, by default the input capture itself. To compare builds,
+ * replay the same capture on each and pass the first run's output as baseline of the second:
+ * <pre>
+ * mvn verify -Pbenchmark -Dtest=TraceReplayBenchmark -Dbenchmark.trace=turns.jsonl \
+ *     -Dbenchmark.replay-output=target/replay/candidate.jsonl -Dbenchmark.baseline=base.jsonl
+ * </pre>
+ * Streamed turns are replayed through the REST endpoint. Add {@code -Dbenchmark.jitter=0} to
+ * reproduce the recorded model timings exactly.
+ */
+class TraceReplayBenchmark extends AbstractConversationBenchmark {
+
+    private static final String TRACE = System.getProperty("benchmark.trace");
+    private static final double SPEEDUP = Double.parseDouble(System.getProperty("benchmark.speedup", "1"));
+    private static final Path OUTPUT = Path.of(System.getProperty("benchmark.replay-output",
+            "target/replay/turns-" + System.currentTimeMillis() + ".jsonl"));
+
+    @DynamicPropertySource
+    static void captureProperties(DynamicPropertyRegistry registry) {
+        registry.add("conversation.trace.enabled", () -> "true");
+        registry.add("conversation.trace.sample-rate", () -> "1.0");
+        registry.add("conversation.trace.path", OUTPUT::toString);
+    }
+
+    @Autowired
+    private TurnTraceRecorder traceRecorder;
+
+    @Test
+    @DisplayName("Replay: per-stage latency against the baseline capture")
+    void replay() throws Exception {
+        assumeTrue(TRACE != null, "set -Dbenchmark.trace=<captured turns.jsonl>");
+
+        // Given
+        List<TurnTrace> traces = TraceReport.read(Path.of(TRACE));
+        assumeTrue(!traces.isEmpty(), "trace file is empty");
+
+        Map<String, ScriptedReply> replies = new HashMap<>();
+        Map<String, List<TurnTrace>> conversations = new LinkedHashMap<>();
+        for (TurnTrace trace : traces) {
+            replies.putIfAbsent(trace.getInput(), ScriptedReply.fromTrace(trace));
+            conversations.computeIfAbsent(trace.getConversation(), id -> new ArrayList<>()).add(trace);
+        }
+        MODEL.script(replies::get);
+
+        WebClient client = apiClient();
+        // Recorded from the flatMap threads of all conversations at once
+        Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(5), 3);
+        AtomicInteger errors = new AtomicInteger();
+        Instant origin = traces.get(0).getRecordedAt();
+        long start = System.nanoTime();
+
+        // When
+        Flux.fromIterable(conversations.values())
+                .flatMap(turns -> {
+                    String token = UUID.nameUUIDFromBytes(turns.get(0).getUser().getBytes(StandardCharsets.UTF_8)).toString();
+                    return createConversation(client, token)
+                            .flatMapMany(conversationId -> Flux.fromIterable(turns)
+                                    .concatMap(trace -> Mono.delay(delayUntil(origin, trace, start))
+                                            .then(Mono.defer(() -> {
+                                                long sent = System.nanoTime();
+                                                return sendMessage(client, token, conversationId, trace.getInput())
+                                                        .doOnSuccess(done -> latency.recordValue(System.nanoTime() - sent));
+                                            }))
+                                            .onErrorResume(error -> {
+                                                errors.incrementAndGet();
+                                                return Mono.empty();
+                                            })));
+                }, Math.max(1, conversations.size()))
+                .blockLast(Duration.ofHours(1));
+
+        awaitCaptureWritten();
+
+        // Then
+        report("Replay response", latency, errors.get(), System.nanoTime() - start);
+        TraceReport candidate = TraceReport.load(OUTPUT);
+        TraceReport baseline = TraceReport.load(Path.of(System.getProperty("benchmark.baseline", TRACE)));
+        System.out.println("Replay capture written to " + OUTPUT.toAbsolutePath());
+        System.out.print(candidate.format());
+        System.out.print(candidate.diff(baseline));
+        assertThat(candidate.turns()).isPositive();
+    }
+
+    private static Duration delayUntil(Instant origin, TurnTrace trace, long startNanos) {
+        if (SPEEDUP <= 0) {
+            return Duration.ZERO;
+        }
+        long offset = (long) (Duration.between(origin, trace.getRecordedAt()).toNanos() / SPEEDUP);
+        return Duration.ofNanos(Math.max(0, offset - (System.nanoTime() - startNanos)));
+    }
+
+    private void awaitCaptureWritten() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        // Traces are batched for up to a second before they are written
+        while (traceRecorder.pending() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Per-stage latency distribution of a turn trace file, and the delta against another one.
+ * <p>
+ * Compare two builds by replaying the same capture on each and diffing the outputs, either from
+ * {@link TraceReplayBenchmark} ({@code -Dbenchmark.baseline=...}) or offline:
+ * {@code java ... TraceReport baseline.jsonl candidate.jsonl}.
+ */
+public class TraceReport {
+
+    private static final List<String> STAGE_ORDER = List.of(
+            "context", "queue_wait", "ttft", "model", "generation", "persist", "first_chunk", "total");
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .findAndRegisterModules()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Map<String, Histogram> stages = new LinkedHashMap<>();
+    private int turns;
+    private int errors;
+
+    public static List<TurnTrace> read(Path file) throws IOException {
+        List<TurnTrace> traces = new ArrayList<>();
+        try (Stream<String> lines = Files.lines(file)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                if (!line.isBlank()) {
+                    traces.add(OBJECT_MAPPER.readValue(line, TurnTrace.class));
+                }
+            }
+        }
+        traces.sort(Comparator.comparing(TurnTrace::getRecordedAt));
+        return traces;
+    }
+
+    public static TraceReport load(Path file) throws IOException {
+        return of(read(file));
+    }
+
+    public static TraceReport of(List<TurnTrace> traces) {
+        TraceReport report = new TraceReport();
+        for (TurnTrace trace : traces) {
+            report.turns++;
+            if (trace.getError() != null) {
+                report.errors++;
+                continue;
+            }
+            trace.getStages().forEach((stage, nanos) -> report.stages
+                    .computeIfAbsent(stage, name -> new Histogram(TimeUnit.HOURS.toNanos(1), 3))
+                    .recordValue(Math.max(0, Math.min(nanos, TimeUnit.HOURS.toNanos(1)))));
+        }
+        return report;
+    }
+
+    public int turns() {
+        return turns;
+    }
+
+    public int errors() {
+        return errors;
+    }
+
+    /**
+     * Percentile of a stage in milliseconds, or NaN when the stage was never recorded.
+     */
+    public double percentileMillis(String stage, double percentile) {
+        Histogram histogram = stages.get(stage);
+        return histogram != null && histogram.getTotalCount() > 0
+                ? histogram.getValueAtPercentile(percentile) / 1e6
+                : Double.NaN;
+    }
+
+    public String format() {
+        StringBuilder out = new StringBuilder(String.format(Locale.ROOT, "turns=%d errors=%d%n", turns, errors));
+        out.append(String.format(Locale.ROOT, "%-12s %8s %10s %10s %10s%n", "stage", "n", "p50 ms", "p95 ms", "p99 ms"));
+        for (String stage : orderedStages(this)) {
+            out.append(String.format(Locale.ROOT, "%-12s %8d %10.1f %10.1f %10.1f%n", stage,
+                    stages.get(stage).getTotalCount(), percentileMillis(stage, 50),
+                    percentileMillis(stage, 95), percentileMillis(stage, 99)));
+        }
+        return out.toString();
+    }
+
+    /**
+     * p50 and p95 of every stage next to the baseline's, with the relative change.
+     */
+    public String diff(TraceReport baseline) {
+        StringBuilder out = new StringBuilder(String.format(Locale.ROOT,
+                "turns %d -> %d, errors %d -> %d%n", baseline.turns, turns, baseline.errors, errors));
+        out.append(String.format(Locale.ROOT, "%-12s %10s %10s %8s %10s %10s %8s%n",
+                "stage", "base p50", "p50", "delta", "base p95", "p95", "delta"));
+        for (String stage : orderedStages(baseline, this)) {
+            double baseP50 = baseline.percentileMillis(stage, 50);
+            double p50 = percentileMillis(stage, 50);
+            double baseP95 = baseline.percentileMillis(stage, 95);
+            double p95 = percentileMillis(stage, 95);
+            out.append(String.format(Locale.ROOT, "%-12s %10.1f %10.1f %8s %10.1f %10.1f %8s%n",
+                    stage, baseP50, p50, delta(baseP50, p50), baseP95, p95, delta(baseP95, p95)));
+        }
+        return out.toString();
+    }
+
+    public static double relativeChange(double baseline, double candidate) {
+        return baseline > 0 ? (candidate - baseline) / baseline : Double.NaN;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: TraceReport <baseline.jsonl> <candidate.jsonl>");
+            System.exit(2);
+        }
+        System.out.print(load(Path.of(args[1])).diff(load(Path.of(args[0]))));
+    }
+
+    private static String delta(double baseline, double candidate) {
+        double change = relativeChange(baseline, candidate);
+        return Double.isNaN(change) ? "-" : String.format(Locale.ROOT, "%+.1f%%", change * 100);
+    }
+
+    private static List<String> orderedStages(TraceReport... reports) {
+        Set<String> present = new LinkedHashSet<>();
+        for (TraceReport report : reports) {
+            present.addAll(report.stages.keySet());
+        }
+        List<String> ordered = new ArrayList<>();
+        STAGE_ORDER.stream().filter(present::contains).forEach(ordered::add);
+        present.stream().filter(stage -> !STAGE_ORDER.contains(stage)).sorted().forEach(ordered::add);
+        return ordered;
+    }
+}
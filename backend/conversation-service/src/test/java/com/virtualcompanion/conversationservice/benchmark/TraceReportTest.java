@@ -0,0 +1,65 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+class TraceReportTest {
+
+    @Test
+    @DisplayName("Should report per-stage percentiles and relative change against a baseline")
+    void diff_StageDeltas() {
+        // Given
+        TraceReport baseline = TraceReport.of(List.of(trace(100, 400), trace(100, 400)));
+        TraceReport candidate = TraceReport.of(List.of(trace(150, 400), trace(150, 400)));
+
+        // When
+        String diff = candidate.diff(baseline);
+
+        // Then
+        assertThat(candidate.percentileMillis("context", 50)).isCloseTo(150, within(1.0));
+        assertThat(TraceReport.relativeChange(baseline.percentileMillis("context", 50),
+                candidate.percentileMillis("context", 50))).isCloseTo(0.5, within(0.01));
+        assertThat(diff).contains("context").contains("+50.0%").contains("+0.0%");
+    }
+
+    @Test
+    @DisplayName("Should count failed turns without their timings")
+    void of_Errors() {
+        // Given
+        TurnTrace failed = trace(100, 400);
+        failed.setError("TimeoutException");
+
+        // When
+        TraceReport report = TraceReport.of(List.of(failed, trace(100, 400)));
+
+        // Then
+        assertThat(report.turns()).isEqualTo(2);
+        assertThat(report.errors()).isEqualTo(1);
+        assertThat(report.format()).contains("turns=2 errors=1");
+    }
+
+    @Test
+    @DisplayName("Should rebuild the recorded reply and decode rate")
+    void scriptedReply_FromTrace() {
+        // Given
+        TurnTrace trace = trace(10, 1000);
+        trace.setOutput("Xyz abc, qrs tuv");
+        trace.getStages().put("ttft", Duration.ofMillis(200).toNanos());
+        trace.getStages().put("model", Duration.ofMillis(500).toNanos());
+
+        // When
+        ScriptedReply reply = ScriptedReply.fromTrace(trace);
+
+        // Then
+        assertThat(reply.getTokens()).containsExactly("Xyz", " abc,", " qrs", " tuv");
+        assertThat(reply.getTimeToFirstToken()).isEqualTo(Duration.ofMillis(200));
+        assertThat(reply.getTokensPerSecond()).isCloseTo(10.0, within(0.01));
+    }
+
+    private static TurnTrace trace(long contextMillis, long totalMillis) {
+        Map<String, Long> stages = new LinkedHashMap<>();
+        stages.put("context", Duration.ofMillis(contextMillis).toNanos());
+        stages.put("total", Duration.ofMillis(totalMillis).toNanos());
+        return TurnTrace.builder()
+                .recordedAt(Instant.now())
+                .stages(stages)
+                .build();
+    }
+}
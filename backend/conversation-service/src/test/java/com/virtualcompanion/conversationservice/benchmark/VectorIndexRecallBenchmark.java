@@ -0,0 +1,152 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Recall@k and latency of the in-process {@link HnswIndex} against an exact pgvector query
+ * ({@code ORDER BY embedding <-> :query LIMIT :k} over the pair's rows, no vector index).
+ * <p>
+ * Memories are synthetic unit vectors drawn around topic centres, spread over pairs as in
+ * production: a few heavy users and many light ones. Sizes are set with
+ * {@code -Dbenchmark.index.memories}, {@code .pairs}, {@code .queries}, {@code .k} and
+ * {@code .dimension}. Excluded from the default build; run with
+ * {@code mvn verify -Pbenchmark -Dtest=VectorIndexRecallBenchmark}.
+ */
+@Tag("benchmark")
+class VectorIndexRecallBenchmark {
+
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg15").asCompatibleSubstituteFor("postgres"));
+
+    private static final int MEMORIES = Integer.getInteger("benchmark.index.memories", 50_000);
+    private static final int PAIRS = Integer.getInteger("benchmark.index.pairs", 100);
+    private static final int QUERIES = Integer.getInteger("benchmark.index.queries", 1_000);
+    private static final int K = Integer.getInteger("benchmark.index.k", 5);
+    private static final int DIMENSION = Integer.getInteger("benchmark.index.dimension", 384);
+
+    private final Random random = new Random(42);
+
+    @BeforeAll
+    static void startDatabase() {
+        POSTGRES.start();
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        POSTGRES.stop();
+    }
+
+    @Test
+    @DisplayName("Memory retrieval: HNSW int8 vs exact pgvector, recall@k and latency")
+    void recallAndLatency() throws Exception {
+        // Given
+        float[][] topics = new float[64][];
+        for (int t = 0; t < topics.length; t++) {
+            topics[t] = unitGaussian(null, 1.0f);
+        }
+
+        Map<Integer, HnswIndex> shards = new HashMap<>();
+        Map<Integer, List<float[]>> pairVectors = new HashMap<>();
+        try (Connection connection = connect()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE EXTENSION IF NOT EXISTS vector");
+                statement.execute("CREATE TABLE memories (id uuid PRIMARY KEY, pair int NOT NULL, embedding vector(" + DIMENSION + "))");
+                statement.execute("CREATE INDEX idx_memories_pair ON memories(pair)");
+            }
+
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO memories VALUES (?, ?, ?::vector)")) {
+                for (int i = 0; i < MEMORIES; i++) {
+                    int pair = skewedPair();
+                    float[] vector = unitGaussian(topics[random.nextInt(topics.length)], 0.9f);
+                    UUID id = UUID.randomUUID();
+
+                    insert.setObject(1, id);
+                    insert.setInt(2, pair);
+                    insert.setString(3, Arrays.toString(vector));
+                    insert.addBatch();
+                    if (i % 1000 == 999) {
+                        insert.executeBatch();
+                    }
+
+                    shards.computeIfAbsent(pair, p -> new HnswIndex(DIMENSION, 16, 100)).add(id, vector);
+                    pairVectors.computeIfAbsent(pair, p -> new ArrayList<>()).add(vector);
+                }
+                insert.executeBatch();
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE memories");
+            }
+
+            List<Integer> pairs = new ArrayList<>(shards.keySet());
+            Histogram exactLatency = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+            Histogram indexLatency = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+            double found = 0;
+            double foundOversampled = 0;
+
+            // When
+            try (PreparedStatement exact = connection.prepareStatement(
+                    "SELECT id FROM memories WHERE pair = ? ORDER BY embedding <-> ?::vector LIMIT ?")) {
+                for (int q = 0; q < QUERIES; q++) {
+                    int pair = pairs.get(random.nextInt(pairs.size()));
+                    List<float[]> owned = pairVectors.get(pair);
+                    float[] query = unitGaussian(owned.get(random.nextInt(owned.size())), 0.3f);
+
+                    long start = System.nanoTime();
+                    exact.setInt(1, pair);
+                    exact.setString(2, Arrays.toString(query));
+                    exact.setInt(3, K);
+                    Set<UUID> truth = new HashSet<>();
+                    try (ResultSet rows = exact.executeQuery()) {
+                        while (rows.next()) {
+                            truth.add(rows.getObject(1, UUID.class));
+                        }
+                    }
+                    exactLatency.recordValue(System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    List<HnswIndex.Neighbour> approximate = shards.get(pair).search(query, K * 2, 64);
+                    indexLatency.recordValue(System.nanoTime() - start);
+
+                    found += approximate.stream().limit(K).filter(neighbour -> truth.contains(neighbour.id())).count();
+                    foundOversampled += approximate.stream().filter(neighbour -> truth.contains(neighbour.id())).count();
+                }
+            }
+
+            // Then
+            double recall = found / (QUERIES * (double) K);
+            System.out.printf(Locale.ROOT, "memories=%d pairs=%d dimension=%d k=%d queries=%d%n",
+                    MEMORIES, pairs.size(), DIMENSION, K, QUERIES);
+            System.out.printf(Locale.ROOT, "recall@%d=%.4f  recall@%d in top %d (before exact rerank)=%.4f%n",
+                    K, recall, K, 2 * K, foundOversampled / (QUERIES * (double) K));
+            printLatency("pgvector exact", exactLatency);
+            printLatency("hnsw int8", indexLatency);
+            assertThat(recall).isGreaterThan(0.8);
+        }
+    }
+
+    private int skewedPair() {
+        // Roughly Zipf: a few pairs hold most memories
+        return (int) Math.min(PAIRS - 1, Math.floor(Math.pow(random.nextDouble(), 2.5) * PAIRS));
+    }
+
+    private float[] unitGaussian(float[] center, float spread) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (center != null ? center[d] : 0f) + (float) random.nextGaussian() * spread / (float) Math.sqrt(DIMENSION);
+            norm += vector[d] * vector[d];
+        }
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static void printLatency(String name, Histogram histogram) {
+        System.out.printf(Locale.ROOT, "%-16s p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms%n", name,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(95) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6, histogram.getMaxValue() / 1e6);
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+}
@@ -0,0 +1,176 @@
+package com.virtualcompanion.conversationservice.benchmark;
+
+/**
+ * Bytes on the wire and server CPU per 1k streamed tokens for WebSocket protocol v1 (one JSON
+ * frame per token) and v2 (tokens coalesced as {@link ChunkCoalescer} does, CBOR frames from
+ * {@link CborFrameCodec}), each with and without permessage-deflate.
+ * <p>
+ * Tokens arrive every {@code token-interval-ms} of simulated time, so frames group as many
+ * tokens as the production coalescer would without the benchmark sleeping. Deflate keeps its
+ * context across the frames of a connection and strips the sync-flush trailer, as RFC 7692
+ * does; byte counts include the 2 or 4 byte server frame header. CPU is thread CPU time spent
+ * encoding and compressing, after a warm-up pass. Sizes are set with
+ * {@code -Dbenchmark.wire.streams}, {@code .tokens}, {@code .token-interval-ms},
+ * {@code .flush-interval-ms} and {@code .flush-bytes}. Excluded from the default build; run with
+ * {@code mvn verify -Pbenchmark -Dtest=WireProtocolBenchmark}.
+ */
+@Tag("benchmark")
+class WireProtocolBenchmark {
+
+    private static final int STREAMS = Integer.getInteger("benchmark.wire.streams", 200);
+    private static final int TOKENS = Integer.getInteger("benchmark.wire.tokens", 400);
+    private static final int TOKEN_INTERVAL_MS = Integer.getInteger("benchmark.wire.token-interval-ms", 15);
+    private static final int FLUSH_INTERVAL_MS = Integer.getInteger("benchmark.wire.flush-interval-ms", 40);
+    private static final int FLUSH_BYTES = Integer.getInteger("benchmark.wire.flush-bytes", 512);
+
+    private static final String[] WORDS = {" the", " a", " I", " you", " feel", " that", " really", " is", " so",
+            " happy", " to", " hear", " about", " your", " day", ",", ".", " and", " we", " could", " talk", " more"};
+
+    private final ObjectMapper jsonMapper = new ObjectMapper().findAndRegisterModules();
+    private final ObjectMapper cborMapper = jsonMapper.copyWith(new CBORFactory());
+    private final Random random = new Random(42);
+
+    @Test
+    @DisplayName("WebSocket protocol v1 vs v2, with and without deflate: bytes and CPU per 1k tokens")
+    void bytesAndCpu() {
+        // Given
+        List<List<String>> streams = new ArrayList<>();
+        for (int s = 0; s < STREAMS; s++) {
+            List<String> tokens = new ArrayList<>(TOKENS);
+            for (int t = 0; t < TOKENS; t++) {
+                tokens.add(WORDS[random.nextInt(WORDS.length)]);
+            }
+            streams.add(tokens);
+        }
+
+        // When
+        List<Result> results = new ArrayList<>();
+        for (boolean deflate : new boolean[]{false, true}) {
+            run(streams, false, deflate);
+            results.add(run(streams, false, deflate));
+            run(streams, true, deflate);
+            results.add(run(streams, true, deflate));
+        }
+
+        // Then
+        System.out.printf(Locale.ROOT, "streams=%d tokens/stream=%d token interval=%dms v2 flush=%dms/%dB%n",
+                STREAMS, TOKENS, TOKEN_INTERVAL_MS, FLUSH_INTERVAL_MS, FLUSH_BYTES);
+        results.forEach(Result::print);
+        assertThat(results.get(1).bytes).isLessThan(results.get(0).bytes / 3);
+        assertThat(results.get(1).cpuNanos).isLessThan(results.get(0).cpuNanos);
+    }
+
+    private Result run(List<List<String>> streams, boolean v2, boolean deflate) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Result result = new Result((v2 ? "v2 cbor" : "v1 json") + (deflate ? " +deflate" : ""));
+        long start = threads.getCurrentThreadCpuTime();
+
+        for (List<String> tokens : streams) {
+            String conversationId = UUID.randomUUID().toString();
+            CborFrameCodec codec = new CborFrameCodec(cborMapper, jsonMapper);
+            Deflater deflater = deflate ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+
+            List<String> frames = v2 ? coalesce(tokens) : tokens;
+            for (int f = 0; f < frames.size(); f++) {
+                WebSocketMessageDto message = WebSocketMessageDto.builder()
+                        .type(MessageType.AI_RESPONSE_CHUNK)
+                        .payload(AIResponseChunk.builder()
+                                .conversationId(conversationId)
+                                .chunk(frames.get(f))
+                                .isComplete(f == frames.size() - 1)
+                                .build())
+                        .timestamp(LocalDateTime.now())
+                        .build();
+                byte[] payload = v2 ? codec.toBytes(message) : toJson(message);
+                result.frame(deflater != null ? deflate(deflater, payload) : payload.length);
+            }
+            result.tokens += tokens.size();
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        result.cpuNanos = threads.getCurrentThreadCpuTime() - start;
+        return result;
+    }
+
+    /**
+     * Frames as {@link ChunkCoalescer} would send them: the first token alone, then what
+     * arrived within the flush interval of the first held token, or up to the byte budget.
+     */
+    private static List<String> coalesce(List<String> tokens) {
+        List<String> frames = new ArrayList<>();
+        frames.add(tokens.get(0));
+        StringBuilder held = new StringBuilder();
+        long heldSince = -1;
+        for (int t = 1; t < tokens.size(); t++) {
+            long now = (long) t * TOKEN_INTERVAL_MS;
+            if (heldSince >= 0 && now - heldSince >= FLUSH_INTERVAL_MS) {
+                frames.add(held.toString());
+                held.setLength(0);
+                heldSince = -1;
+            }
+            if (heldSince < 0) {
+                heldSince = now;
+            }
+            held.append(tokens.get(t));
+            if (ChunkCoalescer.utf8Length(held) >= FLUSH_BYTES) {
+                frames.add(held.toString());
+                held.setLength(0);
+                heldSince = -1;
+            }
+        }
+        if (held.length() > 0) {
+            frames.add(held.toString());
+        }
+        return frames;
+    }
+
+    private byte[] toJson(WebSocketMessageDto message) {
+        try {
+            return jsonMapper.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int deflate(Deflater deflater, byte[] payload) {
+        deflater.setInput(payload);
+        byte[] buffer = new byte[payload.length + 64];
+        int length = 0;
+        int written;
+        do {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            written = deflater.deflate(buffer, length, buffer.length - length, Deflater.SYNC_FLUSH);
+            length += written;
+        } while (length == buffer.length);
+        // RFC 7692: the 00 00 FF FF tail of the sync flush is not sent
+        return length - 4;
+    }
+
+    private static final class Result {
+
+        private final String name;
+        private long tokens;
+        private long frames;
+        private long bytes;
+        private long cpuNanos;
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        void frame(int payloadLength) {
+            frames++;
+            bytes += payloadLength + (payloadLength < 126 ? 2 : 4);
+        }
+
+        void print() {
+            double perThousand = 1000.0 / tokens;
+            System.out.printf(Locale.ROOT, "%-18s frames/1k tokens=%7.1f  bytes/1k tokens=%9.0f  cpu/1k tokens=%8.1fus%n",
+                    name, frames * perThousand, bytes * perThousand, cpuNanos / 1e3 * perThousand);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.virtualcompanion.conversationservice.service;
+
+class Bm25IndexTest {
+
+    private final Bm25Index index = new Bm25Index();
+    private final UUID name = UUID.randomUUID();
+    private final UUID hiking = UUID.randomUUID();
+    private final UUID birthday = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        index.add(name, "User's name: Sam Walker");
+        index.add(hiking, "User preference: I love hiking in the Alps");
+        index.add(birthday, "Important: my sister's birthday is on 12 March");
+    }
+
+    @Test
+    @DisplayName("Should keep names, dates and numbers and drop function words")
+    void tokenize_KeepsContentTerms() {
+        // When
+        List<String> terms = Bm25Index.tokenize("What's my sister's birthday, 12 March?");
+
+        // Then
+        assertThat(terms).containsExactly("sister", "birthday", "12", "march");
+    }
+
+    @Test
+    @DisplayName("Should drop French function words too")
+    void tokenize_DropsFrenchFunctionWords() {
+        // When
+        List<String> terms = Bm25Index.tokenize("Quand est l'anniversaire de ma sœur ?");
+
+        // Then
+        assertThat(terms).containsExactly("anniversaire", "sœur");
+    }
+
+    @Test
+    @DisplayName("Should rank the memory stating the query terms first, with full coverage")
+    void search_ExactMatch() {
+        // When
+        List<Bm25Index.Hit> hits = index.search("When is my sister's birthday?", 5);
+
+        // Then
+        assertThat(hits).extracting(Bm25Index.Hit::id).containsExactly(birthday);
+        assertThat(hits.get(0).coverage()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should report partial coverage when only some query terms match")
+    void search_PartialMatch() {
+        // When
+        List<Bm25Index.Hit> hits = index.search("hiking in March", 5);
+
+        // Then
+        assertThat(hits).extracting(Bm25Index.Hit::id).containsExactlyInAnyOrder(hiking, birthday);
+        assertThat(hits).allSatisfy(hit -> assertThat(hit.coverage()).isCloseTo(0.5, within(1e-9)));
+    }
+
+    @Test
+    @DisplayName("Should count query words no document uses against coverage")
+    void search_UnknownTermsLowerCoverage() {
+        // When
+        List<Bm25Index.Hit> hits = index.search("do you remember Sam from the trip?", 5);
+
+        // Then
+        assertThat(hits).extracting(Bm25Index.Hit::id).containsExactly(name);
+        assertThat(hits.get(0).coverage()).isLessThan(0.5);
+    }
+
+    @Test
+    @DisplayName("Should forget removed and replaced texts")
+    void removeAndReplace() {
+        // When
+        index.remove(birthday);
+        index.add(name, "User's name: Alex");
+
+        // Then
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.search("birthday", 5)).isEmpty();
+        assertThat(index.search("Sam Walker", 5)).isEmpty();
+        assertThat(index.search("Alex", 5)).extracting(Bm25Index.Hit::id).containsExactly(name);
+    }
+}
@@ -0,0 +1,86 @@
+package com.virtualcompanion.conversationservice.service;
+
+class BrownoutControllerTest {
+
+    private BrownoutController brownoutController;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        brownoutController = new BrownoutController(registry, new LlmRequestScheduler(registry));
+        ReflectionTestUtils.setField(brownoutController, "enabled", true);
+        ReflectionTestUtils.setField(brownoutController, "queueDepthTarget", 50);
+        ReflectionTestUtils.setField(brownoutController, "latencySlo", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(brownoutController, "recoverThreshold", 0.7);
+        ReflectionTestUtils.setField(brownoutController, "recoveryEvaluations", 3);
+        ReflectionTestUtils.setField(brownoutController, "sampleWindow", 100);
+        ReflectionTestUtils.setField(brownoutController, "shortMaxTokens", 200);
+        ReflectionTestUtils.setField(brownoutController, "cheapModel", "cheap");
+        brownoutController.init();
+    }
+
+    @Test
+    @DisplayName("Should escalate one level per evaluation while latency exceeds the SLO")
+    void evaluate_Escalates() {
+        // Given
+        slowInterval();
+        brownoutController.evaluate();
+        slowInterval();
+
+        // When
+        brownoutController.evaluate();
+
+        // Then
+        assertThat(brownoutController.level()).isEqualTo(BrownoutLevel.NO_RETRIEVAL);
+        assertThat(brownoutController.maxTokens(500)).isEqualTo(200);
+        assertThat(brownoutController.model("gpt-4")).isEqualTo("gpt-4");
+        assertThat(registry.get("ai.brownout.level").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should step down only after consecutive calm evaluations")
+    void evaluate_RecoversWithHysteresis() {
+        // Given
+        slowInterval();
+        brownoutController.evaluate();
+
+        // When
+        brownoutController.evaluate();
+        brownoutController.evaluate();
+        BrownoutLevel beforeRecovery = brownoutController.level();
+        brownoutController.evaluate();
+
+        // Then
+        assertThat(beforeRecovery).isEqualTo(BrownoutLevel.SHORT_RESPONSES);
+        assertThat(brownoutController.level()).isEqualTo(BrownoutLevel.NORMAL);
+        assertThat(brownoutController.maxTokens(500)).isEqualTo(500);
+    }
+
+    @Test
+    @DisplayName("Should release deferred work once the level drops below the stage")
+    void awaitBelow_CompletesOnRecovery() {
+        // Given
+        ReflectionTestUtils.setField(brownoutController, "recoveryEvaluations", 1);
+        for (int i = 0; i < 3; i++) {
+            slowInterval();
+            brownoutController.evaluate();
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        brownoutController.awaitBelow(BrownoutLevel.DEFERRED_ENRICHMENT).subscribe(null, null, () -> released.set(true));
+
+        // When
+        boolean releasedWhileDegraded = released.get();
+        brownoutController.evaluate();
+
+        // Then
+        assertThat(releasedWhileDegraded).isFalse();
+        assertThat(released).isTrue();
+    }
+
+    private void slowInterval() {
+        for (int i = 0; i < 20; i++) {
+            brownoutController.recordTimeToFirstToken(Duration.ofSeconds(2).toNanos());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.virtualcompanion.conversationservice.service;
+
+class CharacterContextWriterTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private CharacterContextWriter writer;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        writer = new CharacterContextWriter(mongoTemplate, registry);
+        ReflectionTestUtils.setField(writer, "sharedMemoriesLimit", 100);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(CharacterContext.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @Test
+    @DisplayName("Should apply all changes of a turn as one bounded atomic update")
+    void apply_SingleBoundedUpdate() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        UUID characterId = UUID.randomUUID();
+
+        // When
+        boolean applied = writer.update(userId, characterId)
+                .addSharedMemory("Likes hiking")
+                .addSharedMemories(List.of("Has a cat", " "))
+                .incrementRelationshipLevel(2)
+                .setPreference("tone", "casual")
+                .apply();
+
+        // Then
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(CharacterContext.class));
+        assertThat(applied).isTrue();
+        assertThat(query.getValue().getQueryObject())
+                .containsEntry("userId", userId)
+                .containsEntry("characterId", characterId);
+
+        Document document = update.getValue().getUpdateObject();
+        Document push = document.get("$push", Document.class).get("sharedMemories", Document.class);
+        assertThat(push.get("$each", List.class)).containsExactly("Likes hiking", "Has a cat");
+        assertThat(push.get("$slice")).isEqualTo(-100);
+        assertThat(document.get("$inc", Document.class)).containsEntry("relationshipLevel", 2);
+        assertThat(document.get("$set", Document.class))
+                .containsEntry("preferences.tone", "casual")
+                .containsKey("lastUpdated");
+        assertThat(registry.get("conversation.character-context.update").tag("outcome", "applied").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not touch Mongo when there is nothing to apply")
+    void apply_EmptyUpdate() {
+        // When
+        boolean applied = writer.update(UUID.randomUUID(), UUID.randomUUID())
+                .addSharedMemories(List.of())
+                .apply();
+
+        // Then
+        assertThat(applied).isFalse();
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    @DisplayName("Should report a missing character context")
+    void apply_MissingContext() {
+        // Given
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(CharacterContext.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // When
+        boolean applied = writer.update(UUID.randomUUID(), UUID.randomUUID())
+                .addSharedMemory("Likes hiking")
+                .apply();
+
+        // Then
+        assertThat(applied).isFalse();
+        assertThat(registry.get("conversation.character-context.update").tag("outcome", "missing").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should reject preference keys that would address another field")
+    void setPreference_InvalidKey() {
+        // Given
+        CharacterContextUpdate update = writer.update(UUID.randomUUID(), UUID.randomUUID());
+
+        // When / Then
+        assertThatThrownBy(() -> update.setPreference("a.b", "x"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> update.setPreference("$set", "x"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
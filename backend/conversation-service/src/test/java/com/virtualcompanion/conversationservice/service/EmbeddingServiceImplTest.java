@@ -0,0 +1,158 @@
+package com.virtualcompanion.conversationservice.service;
+
+class EmbeddingServiceImplTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    private SimpleMeterRegistry registry;
+    private EmbeddingServiceImpl embeddingService;
+
+    @BeforeEach
+    void setUp() {
+        embeddingService = newService(new RecordingEncoder());
+    }
+
+    @AfterEach
+    void tearDown() {
+        embeddingService.stop();
+    }
+
+    @Test
+    @DisplayName("Should gather concurrent misses into one model batch")
+    void embed_MicroBatchesConcurrentMisses() {
+        // Given
+        List<CompletableFuture<float[]>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            futures.add(embeddingService.embed("message " + i));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        // Then
+        assertThat(batches).hasSizeLessThanOrEqualTo(2);
+        assertThat(batches.stream().mapToInt(List::size).sum()).isEqualTo(20);
+        assertThat(batches.get(0).size()).isGreaterThan(1);
+        assertThat(registry.get("ai.embedding.batch.size").summary().max()).isGreaterThan(1);
+    }
+
+    @Test
+    @DisplayName("Should compute a repeated text once and serve it from memory")
+    void generateEmbedding_CachesByContent() {
+        // When
+        float[] first = embeddingService.generateEmbedding("I love hiking");
+        float[] second = embeddingService.generateEmbedding("I love hiking");
+
+        // Then
+        assertThat(second).isEqualTo(first);
+        assertThat(batches).hasSize(1);
+        assertThat(registry.get("ai.embedding.lookups").tag("tier", "memory").counter().count()).isEqualTo(1);
+        assertThat(registry.get("ai.embedding.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("Should return batch embeddings in input order")
+    void generateEmbeddings_KeepsOrder() {
+        // When
+        List<float[]> embeddings = embeddingService.generateEmbeddings(List.of("a", "bbb", "cc"));
+
+        // Then
+        assertThat(embeddings).extracting(vector -> vector[0]).containsExactly(1f, 3f, 2f);
+    }
+
+    @Test
+    @DisplayName("Should reuse vectors from the disk cache after a restart")
+    void generateEmbedding_SurvivesRestartThroughDisk() throws Exception {
+        // Given
+        float[] original = embeddingService.generateEmbedding("my dog is called Rex");
+        awaitDiskEntries(1);
+        embeddingService.stop();
+        batches.clear();
+
+        // When
+        embeddingService = newService(new RecordingEncoder());
+        float[] reloaded = embeddingService.generateEmbedding("my dog is called Rex");
+
+        // Then
+        assertThat(reloaded).isEqualTo(original);
+        assertThat(batches).isEmpty();
+        assertThat(registry.get("ai.embedding.lookups").tag("tier", "disk").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should surface model failures and not cache them")
+    void generateEmbedding_FailureNotCached() {
+        // Given
+        embeddingService.stop();
+        RecordingEncoder encoder = new RecordingEncoder();
+        encoder.failing = true;
+        embeddingService = newService(encoder);
+
+        // When / Then
+        assertThatThrownBy(() -> embeddingService.generateEmbedding("hello"))
+                .isInstanceOf(EmbeddingException.class);
+
+        encoder.failing = false;
+        assertThat(embeddingService.generateEmbedding("hello")).hasSize(2);
+    }
+
+    private EmbeddingServiceImpl newService(SentenceEncoder encoder) {
+        registry = new SimpleMeterRegistry();
+        EmbeddingServiceImpl service = new EmbeddingServiceImpl(registry);
+        ReflectionTestUtils.setField(service, "encoder", encoder);
+        ReflectionTestUtils.setField(service, "modelName", "test-model");
+        ReflectionTestUtils.setField(service, "maxBatchSize", 32);
+        ReflectionTestUtils.setField(service, "maxBatchDelay", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(service, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(service, "timeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(service, "cacheMaxEntries", 1000L);
+        ReflectionTestUtils.setField(service, "cacheDirectory", cacheDirectory.toString());
+        service.init();
+        return service;
+    }
+
+    private void awaitDiskEntries(long expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            try (Stream<Path> files = Files.walk(cacheDirectory)) {
+                if (files.filter(file -> file.toString().endsWith(".f32")).count() >= expected) {
+                    return;
+                }
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("disk cache not written");
+    }
+
+    /**
+     * Encodes a text as (length, 1) and records every batch it is given.
+     */
+    private final class RecordingEncoder implements SentenceEncoder {
+
+        private volatile boolean failing;
+
+        @Override
+        public float[][] encode(List<String> texts) {
+            if (failing) {
+                throw new EmbeddingException("model crashed");
+            }
+            batches.add(List.copyOf(texts));
+            float[][] vectors = new float[texts.size()][];
+            for (int i = 0; i < texts.size(); i++) {
+                vectors[i] = new float[]{texts.get(i).length(), 1f};
+            }
+            return vectors;
+        }
+
+        @Override
+        public int dimension() {
+            return 2;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.virtualcompanion.conversationservice.service;
+
+class EmotionAnalysisServiceImplTest {
+
+    private EmotionAnalysisServiceImpl emotionService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        emotionService = new EmotionAnalysisServiceImpl();
+        ReflectionTestUtils.setField(emotionService, "lexiconResource", new ClassPathResource("emotion-lexicon.tsv"));
+        ReflectionTestUtils.setField(emotionService, "negationWindow", 3);
+        ReflectionTestUtils.setField(emotionService, "intensifierWindow", 2);
+        emotionService.init();
+    }
+
+    @Test
+    @DisplayName("Should detect the primary emotion regardless of case and punctuation")
+    void analyzeEmotion_DetectsPrimary() {
+        // When
+        EmotionData emotion = emotionService.analyzeEmotion("Honestly, I'm so Happy today.", null);
+
+        // Then
+        assertThat(emotion.getPrimary()).isEqualTo("happy");
+        assertThat(emotion.getExpression()).isEqualTo("smile");
+        assertThat(emotion.getIntensity()).isBetween(0.0, 1.0);
+        assertThat(emotion.getEmotionScores()).containsOnlyKeys("happy");
+    }
+
+    @Test
+    @DisplayName("Should flip a negated emotion within the negation window, in English and French")
+    void analyzeEmotion_Negation() {
+        // When
+        EmotionData english = emotionService.analyzeEmotion("I am not really happy", null);
+        EmotionData french = emotionService.analyzeEmotion("Je ne suis pas heureux", null);
+        EmotionData curlyApostrophe = emotionService.analyzeEmotion("I don’t feel happy", null);
+
+        // Then
+        assertThat(english.getPrimary()).isEqualTo("sad");
+        assertThat(french.getPrimary()).isEqualTo("sad");
+        assertThat(curlyApostrophe.getPrimary()).isEqualTo("sad");
+    }
+
+    @Test
+    @DisplayName("Should end negation and intensifier scopes at a clause boundary")
+    void analyzeEmotion_ScopeEndsAtPunctuation() {
+        // When
+        EmotionData negation = emotionService.analyzeEmotion("No. Happy", null);
+        double plain = emotionService.analyzeEmotion("happy", null).getIntensity();
+        double intensified = emotionService.analyzeEmotion("very happy", null).getIntensity();
+        double interrupted = emotionService.analyzeEmotion("very, happy", null).getIntensity();
+
+        // Then
+        assertThat(negation.getPrimary()).isEqualTo("happy");
+        assertThat(intensified).isGreaterThan(plain);
+        assertThat(interrupted).isEqualTo(plain);
+    }
+
+    @Test
+    @DisplayName("Should scale intensity with shouting and with the character's neuroticism")
+    void analyzeEmotion_Intensity() {
+        // Given
+        PersonalityTraitsDto calm = PersonalityTraitsDto.builder().neuroticism(0.0).build();
+        PersonalityTraitsDto anxious = PersonalityTraitsDto.builder().neuroticism(1.0).build();
+
+        // When
+        double plain = emotionService.analyzeEmotion("I am angry", null).getIntensity();
+        double shouted = emotionService.analyzeEmotion("I am ANGRY!!", null).getIntensity();
+        double calmIntensity = emotionService.analyzeEmotion("I am angry", calm).getIntensity();
+        double anxiousIntensity = emotionService.analyzeEmotion("I am angry", anxious).getIntensity();
+
+        // Then
+        assertThat(shouted).isGreaterThan(plain);
+        assertThat(calmIntensity).isLessThan(plain);
+        assertThat(anxiousIntensity).isGreaterThan(plain);
+    }
+
+    @Test
+    @DisplayName("Should return neutral for text without emotion words")
+    void analyzeEmotion_Neutral() {
+        // When
+        EmotionData emotion = emotionService.analyzeEmotion("The train leaves at 9:40 from platform 3", null);
+
+        // Then
+        assertThat(emotion.getPrimary()).isEqualTo("neutral");
+        assertThat(emotion.getIntensity()).isZero();
+        assertThat(emotion.getEmotionScores()).isEmpty();
+        assertThat(emotionService.analyzeSentiment("The train leaves at 9:40")).isZero();
+    }
+
+    @Test
+    @DisplayName("Should score sentiment sign and keep it within [-1, 1]")
+    void analyzeSentiment_Sign() {
+        // When
+        double positive = emotionService.analyzeSentiment("I love you, this is wonderful!!!");
+        double negative = emotionService.analyzeSentiment("I hate this, it's awful and I'm sad");
+        double negated = emotionService.analyzeSentiment("not bad at all");
+
+        // Then
+        assertThat(positive).isPositive().isLessThanOrEqualTo(1.0);
+        assertThat(negative).isNegative().isGreaterThanOrEqualTo(-1.0);
+        assertThat(negated).isPositive();
+    }
+
+    @Test
+    @DisplayName("Should reject a lexicon line with an unknown emotion")
+    void lexicon_RejectsUnknownEmotion() {
+        assertThatThrownBy(() -> EmotionLexicon.parse(List.of("meh\tbored\t0.5")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("bored");
+    }
+}
@@ -0,0 +1,54 @@
+package com.virtualcompanion.conversationservice.service;
+
+class GenerationMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private GenerationMetrics generationMetrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        BrownoutController brownoutController = new BrownoutController(registry, new LlmRequestScheduler(registry));
+        ReflectionTestUtils.setField(brownoutController, "sampleWindow", 16);
+        brownoutController.init();
+        generationMetrics = new GenerationMetrics(registry, brownoutController);
+    }
+
+    @Test
+    @DisplayName("Should record TTFT, inter-token gaps and token counts for a stream")
+    void observation_StreamedGeneration() {
+        // Given
+        GenerationObservation observation = generationMetrics.start("ollama", "llama2", "PREMIUM", System.nanoTime());
+
+        // When
+        observation.modelStarted();
+        observation.onToken();
+        observation.onToken();
+        observation.onToken();
+        observation.complete(120, null);
+
+        // Then
+        assertThat(registry.get("ai.generation.ttft").tag("tier", "premium").timer().count()).isEqualTo(1);
+        assertThat(registry.get("ai.generation.inter.token").timer().count()).isEqualTo(2);
+        assertThat(registry.get("ai.generation.tokens").tag("kind", "prompt").summary().totalAmount()).isEqualTo(120);
+        assertThat(registry.get("ai.generation.tokens").tag("kind", "completion").summary().totalAmount()).isEqualTo(3);
+        assertThat(registry.get("ai.generation.requests").tag("outcome", "success").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should record a failure only once")
+    void observation_Failure() {
+        // Given
+        GenerationObservation observation = generationMetrics.start("openai", "gpt-4", null, System.nanoTime());
+
+        // When
+        observation.modelStarted();
+        observation.fail(new IllegalStateException("boom"));
+        observation.complete(null, null);
+
+        // Then
+        assertThat(registry.get("ai.generation.requests").tag("outcome", "error").counter().count()).isEqualTo(1);
+        assertThat(registry.find("ai.generation.requests").tag("outcome", "success").counter()).isNull();
+        assertThat(registry.get("ai.generation.ttft").tag("tier", "unknown").timer().count()).isZero();
+    }
+}
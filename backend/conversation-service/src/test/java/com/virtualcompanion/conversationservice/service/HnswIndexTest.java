@@ -0,0 +1,142 @@
+package com.virtualcompanion.conversationservice.service;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 64;
+
+    private final Random random = new Random(7);
+    private final List<UUID> ids = new ArrayList<>();
+    private final List<float[]> vectors = new ArrayList<>();
+    private HnswIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new HnswIndex(DIMENSION, 16, 100);
+        float[][] centers = new float[20][];
+        for (int c = 0; c < centers.length; c++) {
+            centers[c] = gaussian(1.0f, null);
+        }
+        for (int i = 0; i < 3000; i++) {
+            float[] vector = gaussian(0.8f, centers[random.nextInt(centers.length)]);
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            vectors.add(vector);
+            index.add(id, vector);
+        }
+    }
+
+    @Test
+    @DisplayName("Should find at least 95% of the exact top 10 on int8 codes")
+    void search_RecallAgainstExact() {
+        // Given
+        int queries = 100;
+        int k = 10;
+        double found = 0;
+
+        // When
+        for (int q = 0; q < queries; q++) {
+            float[] query = vectors.get(random.nextInt(vectors.size())).clone();
+            query[0] += 0.05f;
+            Set<UUID> exact = exactTop(query, k);
+            found += index.search(query, k, 64).stream().filter(neighbour -> exact.contains(neighbour.id())).count();
+        }
+
+        // Then
+        assertThat(found / (queries * k)).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    @DisplayName("Should never return removed or replaced vectors")
+    void remove_HidesVector() {
+        // Given
+        UUID removed = ids.get(0);
+        UUID replaced = ids.get(1);
+        float[] elsewhere = gaussian(1.0f, null);
+
+        // When
+        index.remove(removed);
+        index.add(replaced, elsewhere);
+
+        // Then
+        assertThat(index.size()).isEqualTo(2999);
+        assertThat(index.search(vectors.get(0), 5, 64)).extracting(HnswIndex.Neighbour::id).doesNotContain(removed);
+        assertThat(index.search(elsewhere, 1, 64).get(0).id()).isEqualTo(replaced);
+    }
+
+    @Test
+    @DisplayName("Should answer identically after a snapshot round trip")
+    void snapshot_RoundTrip() throws IOException {
+        // Given
+        index.remove(ids.get(2));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+
+        // When
+        HnswIndex restored = HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // Then
+        float[] query = vectors.get(3);
+        assertThat(restored.size()).isEqualTo(index.size());
+        assertThat(restored.search(query, 10, 64)).extracting(HnswIndex.Neighbour::id)
+                .containsExactlyElementsOf(index.search(query, 10, 64).stream().map(HnswIndex.Neighbour::id).toList());
+    }
+
+    @Test
+    @DisplayName("Should rebuild from live nodes only past the removed ratio, and leave removed nodes out of snapshots")
+    void compactIfNeeded_DropsRemovedNodes() throws IOException {
+        // Given
+        for (int i = 0; i < 1500; i++) {
+            index.remove(ids.get(i));
+        }
+        ByteArrayOutputStream before = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(before));
+
+        // When
+        boolean belowThreshold = index.compactIfNeeded(1.0);
+        boolean aboveThreshold = index.compactIfNeeded(0.3);
+        HnswIndex restored = HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(before.toByteArray())));
+
+        // Then
+        assertThat(belowThreshold).isFalse();
+        assertThat(aboveThreshold).isTrue();
+        assertThat(index.size()).isEqualTo(1500);
+        assertThat(index.contains(ids.get(0))).isFalse();
+        assertThat(restored.size()).isEqualTo(1500);
+        assertThat(restored.search(vectors.get(0), 10, 64)).extracting(HnswIndex.Neighbour::id)
+                .doesNotContainAnyElementsOf(ids.subList(0, 1500));
+        float[] query = vectors.get(2000);
+        assertThat(index.search(query, 1, 64).get(0).id()).isEqualTo(ids.get(2000));
+        assertThat(index.search(vectors.get(0), 10, 64)).extracting(HnswIndex.Neighbour::id)
+                .doesNotContainAnyElementsOf(ids.subList(0, 1500));
+    }
+
+    private Set<UUID> exactTop(float[] query, int k) {
+        Integer[] order = new Integer[vectors.size()];
+        double[] scores = new double[vectors.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            for (int d = 0; d < DIMENSION; d++) {
+                scores[i] += query[d] * vectors.get(i)[d];
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        Set<UUID> top = new HashSet<>();
+        for (int i = 0; i < k; i++) {
+            top.add(ids.get(order[i]));
+        }
+        return top;
+    }
+
+    private float[] gaussian(float spread, float[] center) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (center != null ? center[d] : 0f) + (float) random.nextGaussian() * spread;
+            norm += vector[d] * vector[d];
+        }
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,158 @@
+package com.virtualcompanion.conversationservice.service;
+
+class HybridMemoryRetrieverTest {
+
+    @Mock
+    private MemoryLexicalIndex lexicalIndex;
+
+    @Mock
+    private MemoryVectorIndex vectorIndex;
+
+    @Mock
+    private VectorStore vectorStore;
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    @Mock
+    private ConversationMemoryRepository memoryRepository;
+
+    private HybridMemoryRetriever retriever;
+    private final UUID userId = UUID.randomUUID();
+    private final UUID characterId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        retriever = new HybridMemoryRetriever(lexicalIndex, vectorIndex, vectorStore, embeddingService, memoryRepository,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(retriever, "candidateFactor", 2);
+        ReflectionTestUtils.setField(retriever, "rrfK", 60);
+        ReflectionTestUtils.setField(retriever, "earlyExitCoverage", 0.9);
+        retriever.init();
+    }
+
+    @Test
+    @DisplayName("Should rank first what both rankings agree on")
+    void fuse_ReciprocalRank() {
+        // Given
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+
+        // When
+        List<UUID> fused = HybridMemoryRetriever.fuse(List.of(List.of(a, b), List.of(b, c)), 60, 2);
+
+        // Then
+        assertThat(fused).containsExactly(b, a);
+    }
+
+    @Test
+    @DisplayName("Should answer from the lexical index alone when its match is confident")
+    void retrieve_LexicalEarlyExit() {
+        // Given
+        ConversationMemory birthday = memory("Important: my sister's birthday is on 12 March");
+        when(lexicalIndex.search(userId, characterId, "sister's birthday", 4))
+                .thenReturn(Optional.of(List.of(new Bm25Index.Hit(birthday.getId(), 3.2, 1.0),
+                        new Bm25Index.Hit(UUID.randomUUID(), 0.4, 0.3))));
+        when(memoryRepository.findAllById(List.of(birthday.getId()))).thenReturn(List.of(birthday));
+
+        // When
+        List<ConversationMemory> memories = retriever.retrieve(userId, characterId, "sister's birthday", 2);
+
+        // Then
+        assertThat(memories).containsExactly(birthday);
+        verifyNoInteractions(embeddingService, vectorIndex, vectorStore);
+    }
+
+    @Test
+    @DisplayName("Should fuse lexical and vector candidates otherwise")
+    void retrieve_Hybrid() {
+        // Given
+        ConversationMemory both = memory("User preference: I love hiking in the Alps");
+        ConversationMemory vectorOnly = memory("User preference: I like mountains");
+        ConversationMemory lexicalOnly = memory("Important: hiking boots are broken");
+        float[] embedding = {1f, 0f};
+        when(lexicalIndex.search(userId, characterId, "hiking plans", 6))
+                .thenReturn(Optional.of(List.of(new Bm25Index.Hit(lexicalOnly.getId(), 1.1, 0.5),
+                        new Bm25Index.Hit(both.getId(), 1.0, 0.5))));
+        when(embeddingService.generateEmbedding("hiking plans")).thenReturn(embedding);
+        when(vectorIndex.findSimilar(userId, characterId, embedding, 6))
+                .thenReturn(Optional.of(List.of(vectorOnly, both)));
+        when(memoryRepository.findAllById(List.of(lexicalOnly.getId()))).thenReturn(List.of(lexicalOnly));
+
+        // When
+        List<ConversationMemory> memories = retriever.retrieve(userId, characterId, "hiking plans", 3);
+
+        // Then
+        assertThat(memories).containsExactly(both, vectorOnly, lexicalOnly);
+    }
+
+    @Test
+    @DisplayName("Should stay vector only while the lexical index loads")
+    void retrieve_LexicalNotReady() {
+        // Given
+        ConversationMemory memory = memory("User's name: Sam");
+        float[] embedding = {1f, 0f};
+        when(lexicalIndex.search(any(), any(), any(), anyInt())).thenReturn(Optional.empty());
+        when(embeddingService.generateEmbedding("name")).thenReturn(embedding);
+        when(vectorIndex.findSimilar(userId, characterId, embedding, 4)).thenReturn(Optional.of(List.of(memory)));
+
+        // When
+        List<ConversationMemory> memories = retriever.retrieve(userId, characterId, "name", 2);
+
+        // Then
+        assertThat(memories).containsExactly(memory);
+        verify(memoryRepository, never()).findAllById(any());
+        verifyNoInteractions(vectorStore);
+    }
+
+    @Test
+    @DisplayName("Should search the vector store while the in-process index loads, keeping its order")
+    void retrieve_VectorStoreFallback() {
+        // Given
+        ConversationMemory closest = memory("User preference: I love hiking in the Alps");
+        ConversationMemory second = memory("User preference: I like mountains");
+        float[] embedding = {1f, 0f};
+        when(lexicalIndex.search(any(), any(), any(), anyInt())).thenReturn(Optional.empty());
+        when(embeddingService.generateEmbedding("mountains")).thenReturn(embedding);
+        when(vectorIndex.findSimilar(userId, characterId, embedding, 4)).thenReturn(Optional.empty());
+        when(vectorStore.search(userId, characterId, embedding, 4)).thenReturn(List.of(
+                VectorMatch.builder().id(closest.getId()).similarity(0.9).build(),
+                VectorMatch.builder().id(second.getId()).similarity(0.7).build()));
+        when(memoryRepository.findAllById(List.of(closest.getId(), second.getId()))).thenReturn(List.of(second, closest));
+
+        // When
+        List<ConversationMemory> memories = retriever.retrieve(userId, characterId, "mountains", 2);
+
+        // Then
+        assertThat(memories).containsExactly(closest, second);
+    }
+
+    @Test
+    @DisplayName("Should store HOT memories in the vector store and drop removed ones")
+    void addAndRemove_VectorStore() {
+        // Given
+        ConversationMemory memory = memory("User's name: Sam");
+        memory.setEmbedding(new float[]{1f, 0f});
+
+        // When
+        retriever.add(memory);
+        retriever.remove(memory);
+
+        // Then
+        verify(vectorStore).upsert(argThat(record -> record.getId().equals(memory.getId())
+                && record.getUserId().equals(userId) && record.getCharacterId().equals(characterId)));
+        verify(vectorStore).delete(List.of(memory.getId()));
+    }
+
+    private ConversationMemory memory(String content) {
+        return ConversationMemory.builder()
+                .id(UUID.randomUUID())
+                .userId(userId)
+                .characterId(characterId)
+                .content(content)
+                .tier(MemoryTier.HOT)
+                .build();
+    }
+}
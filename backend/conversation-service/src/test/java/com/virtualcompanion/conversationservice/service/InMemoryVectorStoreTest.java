@@ -0,0 +1,71 @@
+package com.virtualcompanion.conversationservice.service;
+
+class InMemoryVectorStoreTest {
+
+    private final InMemoryVectorStore store = new InMemoryVectorStore(2, 16, 100, 64, 2);
+    private final UUID userId = UUID.randomUUID();
+    private final UUID characterId = UUID.randomUUID();
+
+    @Test
+    @DisplayName("Should return the pair's closest vectors first, with their cosine similarity")
+    void search_ClosestFirst() {
+        // Given
+        UUID east = UUID.randomUUID();
+        UUID north = UUID.randomUUID();
+        store.upsertAll(List.of(record(east, userId, characterId, 1f, 0f), record(north, userId, characterId, 0f, 1f)));
+
+        // When
+        List<VectorMatch> matches = store.search(userId, characterId, new float[]{0.8f, 0.6f}, 2);
+
+        // Then
+        assertThat(matches).extracting(VectorMatch::getId).containsExactly(east, north);
+        assertThat(matches.get(0).getSimilarity()).isCloseTo(0.8, within(1e-6));
+    }
+
+    @Test
+    @DisplayName("Should only search the vectors of the requested pair")
+    void search_FilteredByPair() {
+        // Given
+        UUID own = UUID.randomUUID();
+        store.upsert(record(own, userId, characterId, 0f, 1f));
+        store.upsert(record(UUID.randomUUID(), userId, UUID.randomUUID(), 1f, 0f));
+        store.upsert(record(UUID.randomUUID(), UUID.randomUUID(), characterId, 1f, 0f));
+
+        // When
+        List<VectorMatch> matches = store.search(userId, characterId, new float[]{1f, 0f}, 5);
+
+        // Then
+        assertThat(matches).extracting(VectorMatch::getId).containsExactly(own);
+    }
+
+    @Test
+    @DisplayName("Should replace the vector on upsert and stop returning deleted ids")
+    void upsertAndDelete() {
+        // Given
+        UUID id = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        store.upsert(record(id, userId, characterId, 1f, 0f));
+        store.upsert(record(other, userId, characterId, 0.6f, 0.8f));
+
+        // When
+        store.upsert(record(id, userId, characterId, 0f, 1f));
+        List<VectorMatch> afterUpsert = store.search(userId, characterId, new float[]{0f, 1f}, 1);
+        store.delete(List.of(id, UUID.randomUUID()));
+        List<VectorMatch> afterDelete = store.search(userId, characterId, new float[]{0f, 1f}, 5);
+
+        // Then
+        assertThat(afterUpsert).extracting(VectorMatch::getId).containsExactly(id);
+        assertThat(afterDelete).extracting(VectorMatch::getId).containsExactly(other);
+    }
+
+    @Test
+    @DisplayName("Should reject vectors of another dimension")
+    void upsert_WrongDimension() {
+        assertThatThrownBy(() -> store.upsert(record(UUID.randomUUID(), userId, characterId, 1f, 0f, 0f)))
+                .isInstanceOf(VectorStoreException.class);
+    }
+
+    private static VectorRecord record(UUID id, UUID userId, UUID characterId, float... vector) {
+        return VectorRecord.builder().id(id).userId(userId).characterId(characterId).vector(vector).build();
+    }
+}
@@ -0,0 +1,108 @@
+package com.virtualcompanion.conversationservice.service;
+
+class LlmRequestSchedulerTest {
+
+    private LlmRequestScheduler scheduler;
+    private SimpleMeterRegistry registry;
+    private List<String> started;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        scheduler = new LlmRequestScheduler(registry);
+        ReflectionTestUtils.setField(scheduler, "enabled", true);
+        ReflectionTestUtils.setField(scheduler, "defaultMaxConcurrent", 1);
+        ReflectionTestUtils.setField(scheduler, "maxQueueSize", 100);
+        ReflectionTestUtils.setField(scheduler, "userQuantum", 10);
+        ReflectionTestUtils.setField(scheduler, "vipWeight", 16);
+        ReflectionTestUtils.setField(scheduler, "premiumWeight", 8);
+        ReflectionTestUtils.setField(scheduler, "standardWeight", 4);
+        ReflectionTestUtils.setField(scheduler, "freeWeight", 2);
+        ReflectionTestUtils.setField(scheduler, "backgroundWeight", 1);
+        ReflectionTestUtils.setField(scheduler, "backgroundMaxConcurrent", 1);
+        ReflectionTestUtils.setField(scheduler, "interactiveDeadline", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(scheduler, "backgroundDeadline", Duration.ofSeconds(5));
+        scheduler.init();
+        started = new CopyOnWriteArrayList<>();
+    }
+
+    @Test
+    @DisplayName("Should admit a waiting VIP request before earlier free requests")
+    void schedule_TierPriority() {
+        // Given
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        submit("blocker", UUID.randomUUID(), SchedulingTier.FREE, blocker.asMono());
+        submit("free", UUID.randomUUID(), SchedulingTier.FREE, Mono.empty());
+        submit("vip", UUID.randomUUID(), SchedulingTier.VIP, Mono.empty());
+
+        // When
+        blocker.tryEmitEmpty();
+
+        // Then
+        assertThat(started).containsExactly("blocker", "vip", "free");
+    }
+
+    @Test
+    @DisplayName("Should interleave users of the same tier instead of serving a flood first")
+    void schedule_PerUserFairness() {
+        // Given
+        UUID flooder = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        submit("blocker", UUID.randomUUID(), SchedulingTier.STANDARD, blocker.asMono());
+        submit("flood-1", flooder, SchedulingTier.STANDARD, Mono.empty());
+        submit("flood-2", flooder, SchedulingTier.STANDARD, Mono.empty());
+        submit("flood-3", flooder, SchedulingTier.STANDARD, Mono.empty());
+        submit("other", other, SchedulingTier.STANDARD, Mono.empty());
+
+        // When
+        blocker.tryEmitEmpty();
+
+        // Then
+        assertThat(started.indexOf("other")).isLessThan(started.indexOf("flood-3"));
+    }
+
+    @Test
+    @DisplayName("Should drop requests once the queue is full")
+    void schedule_QueueFull() {
+        // Given
+        ReflectionTestUtils.setField(scheduler, "maxQueueSize", 1);
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        submit("blocker", UUID.randomUUID(), SchedulingTier.FREE, blocker.asMono());
+        submit("queued", UUID.randomUUID(), SchedulingTier.FREE, Mono.empty());
+
+        // When / Then
+        StepVerifier.create(scheduler.schedule("test", UUID.randomUUID(), SchedulingTier.FREE, 1, Mono.just("x")))
+                .expectError(ModelOverloadedException.class)
+                .verify();
+        assertThat(registry.get("ai.scheduler.dropped").tag("reason", "queue_full").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should stop counting a cancelled request against the queue at once")
+    void schedule_CancelledFreesQueue() {
+        // Given
+        ReflectionTestUtils.setField(scheduler, "maxQueueSize", 1);
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        submit("blocker", UUID.randomUUID(), SchedulingTier.FREE, blocker.asMono());
+        Disposable queued = scheduler.schedule("test", UUID.randomUUID(), SchedulingTier.FREE, 10, Mono.just("x")).subscribe();
+        assertThat(scheduler.queueDepth()).isEqualTo(1);
+
+        // When
+        queued.dispose();
+
+        // Then
+        assertThat(scheduler.queueDepth()).isZero();
+        submit("next", UUID.randomUUID(), SchedulingTier.FREE, Mono.empty());
+        blocker.tryEmitEmpty();
+        assertThat(started).containsExactly("blocker", "next");
+        assertThat(registry.find("ai.scheduler.dropped").tag("reason", "queue_full").counter()).isNull();
+    }
+
+    private void submit(String name, UUID userId, SchedulingTier tier, Mono<Void> work) {
+        scheduler.schedule("test", userId, tier, 10, Mono.defer(() -> {
+            started.add(name);
+            return work;
+        })).subscribe();
+    }
+}
@@ -0,0 +1,86 @@
+package com.virtualcompanion.conversationservice.service;
+
+class MemoryAccessAccumulatorTest {
+
+    @Mock
+    private ConversationMemoryRepository memoryRepository;
+
+    private MemoryAccessAccumulator accumulator;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        accumulator = new MemoryAccessAccumulator(memoryRepository, registry);
+        ReflectionTestUtils.setField(accumulator, "maxPending", 3);
+        ReflectionTestUtils.setField(accumulator, "chunkSize", 2);
+        accumulator.init();
+        when(memoryRepository.incrementAccess(anyCollection(), anyInt(), any()))
+                .thenAnswer(invocation -> invocation.<Collection<UUID>>getArgument(0).size());
+    }
+
+    @Test
+    @DisplayName("Should not touch the database when accesses are recorded")
+    void record_DoesNotWrite() {
+        // When
+        accumulator.record(List.of(UUID.randomUUID(), UUID.randomUUID()));
+
+        // Then
+        verifyNoInteractions(memoryRepository);
+        assertThat(accumulator.pending()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should write one additive update per distinct access count")
+    void flush_GroupsByDelta() {
+        // Given
+        UUID often = UUID.randomUUID();
+        UUID once = UUID.randomUUID();
+        accumulator.record(List.of(often, once));
+        accumulator.record(List.of(often));
+        accumulator.record(List.of(often));
+
+        // When
+        accumulator.flush();
+
+        // Then
+        verify(memoryRepository).incrementAccess(eq(List.of(often)), eq(3), any());
+        verify(memoryRepository).incrementAccess(eq(List.of(once)), eq(1), any());
+        verifyNoMoreInteractions(memoryRepository);
+        assertThat(accumulator.pending()).isZero();
+        assertThat(registry.get("conversation.memory.access.rows").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should split large groups into chunks")
+    void flush_Chunks() {
+        // Given
+        accumulator.record(List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()));
+
+        // When
+        accumulator.flush();
+
+        // Then
+        verify(memoryRepository, times(2)).incrementAccess(anyCollection(), eq(1), any());
+    }
+
+    @Test
+    @DisplayName("Should drop new memories beyond the pending bound and after a failed flush")
+    void record_BoundedAndLossTolerant() {
+        // Given
+        UUID tracked = UUID.randomUUID();
+        accumulator.record(List.of(tracked, UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()));
+        accumulator.record(List.of(tracked));
+        when(memoryRepository.incrementAccess(anyCollection(), anyInt(), any()))
+                .thenThrow(new IllegalStateException("database down"));
+
+        // When
+        accumulator.flush();
+
+        // Then
+        assertThat(accumulator.pending()).isZero();
+        assertThat(registry.get("conversation.memory.access.recorded").counter().count()).isEqualTo(4);
+        assertThat(registry.get("conversation.memory.access.dropped").counter().count()).isEqualTo(5);
+    }
+}
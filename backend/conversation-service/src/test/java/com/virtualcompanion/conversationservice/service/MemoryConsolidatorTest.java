@@ -0,0 +1,216 @@
+package com.virtualcompanion.conversationservice.service;
+
+class MemoryConsolidatorTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private CharacterContextWriter characterContextWriter;
+
+    private MemoryConsolidator consolidator;
+    private Conversation conversation;
+    private int sequence;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        consolidator = new MemoryConsolidator(messageRepository, mongoTemplate, characterContextWriter,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(consolidator, "chunkSize", 4);
+        ReflectionTestUtils.setField(consolidator, "intervalTurns", 20);
+        ReflectionTestUtils.setField(consolidator, "importanceThreshold", 0.7);
+        ReflectionTestUtils.setField(consolidator, "threads", 1);
+        consolidator.init();
+
+        conversation = Conversation.builder()
+                .id(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .characterId(UUID.randomUUID())
+                .build();
+
+        when(characterContextWriter.update(any(), any()))
+                .thenAnswer(invocation -> new CharacterContextUpdate(characterContextWriter,
+                        invocation.getArgument(0), invocation.getArgument(1)));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ConversationContext.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        consolidator.stop();
+    }
+
+    @Test
+    @DisplayName("Should read only the messages after the high-water mark, chunk by chunk")
+    void consolidate_FromHighWaterMark() {
+        // Given
+        givenMark(T0);
+        List<Message> messages = List.of(
+                message("user", "I always love hiking, it is important", 1),
+                message("assistant", "Noted!", 2),
+                message("user", "How are you?", 3),
+                message("assistant", "Fine", 4),
+                message("user", "My name is Sam, it is important, remember it always", 5),
+                message("assistant", "I'll remember", 6));
+        when(messageRepository.findAfterMarkAsc(eq(conversation.getId()), any(), any(), any()))
+                .thenAnswer(invocation -> after(messages, invocation.getArgument(1), invocation.getArgument(2), 4));
+
+        // When
+        int consumed = consolidator.consolidate(conversation);
+
+        // Then
+        assertThat(consumed).isEqualTo(6);
+        verify(messageRepository).findAfterMarkAsc(conversation.getId(), T0, null, PageRequest.of(0, 4));
+        verify(messageRepository).findAfterMarkAsc(
+                conversation.getId(), T0.plusMinutes(4), messages.get(3).getId(), PageRequest.of(0, 4));
+
+        ArgumentCaptor<CharacterContextUpdate> updates = ArgumentCaptor.forClass(CharacterContextUpdate.class);
+        verify(characterContextWriter, times(2)).update(conversation.getUserId(), conversation.getCharacterId());
+        verify(characterContextWriter, times(2)).apply(updates.capture());
+        assertThat(updates.getAllValues()).extracting(update -> sharedMemories(update).size())
+                .containsExactly(1, 1);
+
+        ArgumentCaptor<Update> marks = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), marks.capture(), eq(ConversationContext.class));
+        assertThat(marks.getAllValues()).extracting(update -> update.getUpdateObject()
+                        .get("$set", Document.class).get("memoryConsolidatedUpTo"))
+                .containsExactly(T0.plusMinutes(4), T0.plusMinutes(6));
+    }
+
+    @Test
+    @DisplayName("Should leave an unanswered user message for the next run")
+    void consolidate_UnansweredMessagePending() {
+        // Given
+        givenMark(null);
+        List<Message> messages = List.of(
+                message("user", "Hi", 1),
+                message("assistant", "Hello", 2),
+                message("user", "I love jazz", 3));
+        when(messageRepository.findAfterMarkAsc(eq(conversation.getId()), any(), any(), any()))
+                .thenAnswer(invocation -> after(messages, invocation.getArgument(1), invocation.getArgument(2), 4));
+
+        // When
+        int consumed = consolidator.consolidate(conversation);
+
+        // Then
+        assertThat(consumed).isEqualTo(2);
+        ArgumentCaptor<Update> mark = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), mark.capture(), eq(ConversationContext.class));
+        assertThat(mark.getValue().getUpdateObject().get("$set", Document.class))
+                .containsEntry("memoryConsolidatedUpTo", T0.plusMinutes(2));
+    }
+
+    @Test
+    @DisplayName("Should do nothing when there is nothing new")
+    void consolidate_NothingNew() {
+        // Given
+        givenMark(T0);
+        when(messageRepository.findAfterMarkAsc(any(), any(), any(), any()))
+                .thenReturn(List.of());
+
+        // When
+        int consumed = consolidator.consolidate(conversation);
+
+        // Then
+        assertThat(consumed).isZero();
+        verifyNoInteractions(characterContextWriter);
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(ConversationContext.class));
+    }
+
+    @Test
+    @DisplayName("Should not push again a memory the character already shares")
+    void consolidate_SkipsSharedMemories() {
+        // Given
+        givenMark(T0);
+        Message hiking = message("user", "I always love hiking, it is important", 1);
+        Message noted = message("assistant", "Noted!", 2);
+        Message name = message("user", "My name is Sam, it is important, remember it always", 3);
+        Message remembered = message("assistant", "I'll remember", 4);
+        List<Message> messages = List.of(hiking, noted, name, remembered);
+        when(messageRepository.findAfterMarkAsc(eq(conversation.getId()), any(), any(), any()))
+                .thenAnswer(invocation -> after(messages, invocation.getArgument(1), invocation.getArgument(2), 4));
+        when(mongoTemplate.findOne(any(Query.class), eq(CharacterContext.class)))
+                .thenReturn(CharacterContext.builder()
+                        .sharedMemories(new ArrayList<>(List.of(
+                                MemoryHeuristics.extractMemoryContent(hiking.getContent(), noted.getContent()))))
+                        .build());
+
+        // When
+        consolidator.consolidate(conversation);
+
+        // Then
+        ArgumentCaptor<CharacterContextUpdate> update = ArgumentCaptor.forClass(CharacterContextUpdate.class);
+        verify(characterContextWriter).apply(update.capture());
+        assertThat(sharedMemories(update.getValue())).containsExactly(
+                MemoryHeuristics.extractMemoryContent(name.getContent(), remembered.getContent()));
+    }
+
+    @Test
+    @DisplayName("Should not skip a message sharing its timestamp with the mark")
+    void consolidate_TiedTimestampAcrossChunks() {
+        // Given
+        givenMark(T0);
+        Message noted = message("assistant", "Noted!", 4);
+        Message name = message("user", "My name is Sam, it is important, remember it always", 4);
+        List<Message> messages = List.of(
+                message("user", "Hi", 1),
+                message("assistant", "Hello", 2),
+                message("user", "I always love hiking, it is important", 3),
+                noted,
+                name,
+                message("assistant", "I'll remember", 5));
+        when(messageRepository.findAfterMarkAsc(eq(conversation.getId()), any(), any(), any()))
+                .thenAnswer(invocation -> after(messages, invocation.getArgument(1), invocation.getArgument(2), 4));
+
+        // When
+        int consumed = consolidator.consolidate(conversation);
+
+        // Then
+        assertThat(consumed).isEqualTo(6);
+        verify(messageRepository).findAfterMarkAsc(
+                conversation.getId(), T0.plusMinutes(4), noted.getId(), PageRequest.of(0, 4));
+        ArgumentCaptor<CharacterContextUpdate> updates = ArgumentCaptor.forClass(CharacterContextUpdate.class);
+        verify(characterContextWriter, times(2)).apply(updates.capture());
+        assertThat(sharedMemories(updates.getAllValues().get(1))).containsExactly(
+                MemoryHeuristics.extractMemoryContent(name.getContent(), "I'll remember"));
+    }
+
+    private void givenMark(LocalDateTime mark) {
+        when(mongoTemplate.findOne(any(Query.class), eq(ConversationContext.class)))
+                .thenReturn(ConversationContext.builder()
+                        .conversationId(conversation.getId())
+                        .memoryConsolidatedUpTo(mark)
+                        .build());
+    }
+
+    private Message message(String role, String content, int minute) {
+        return Message.builder()
+                .id(String.format("%024x", ++sequence))
+                .conversationId(conversation.getId())
+                .role(role)
+                .content(content)
+                .timestamp(T0.plusMinutes(minute))
+                .build();
+    }
+
+    // Keyset on (timestamp, id), as MessageRepository.findAfterMarkAsc
+    private static List<Message> after(List<Message> messages, LocalDateTime markTimestamp, String markId, int limit) {
+        return messages.stream()
+                .filter(message -> message.getTimestamp().isAfter(markTimestamp)
+                        || markId != null && message.getTimestamp().equals(markTimestamp) && message.getId().compareTo(markId) > 0)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> sharedMemories(CharacterContextUpdate update) {
+        Document push = update.toUpdate(100, T0).getUpdateObject().get("$push", Document.class);
+        return push == null ? List.of() : push.get("sharedMemories", Document.class).get("$each", List.class);
+    }
+}
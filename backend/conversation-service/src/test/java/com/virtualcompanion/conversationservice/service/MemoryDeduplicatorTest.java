@@ -0,0 +1,143 @@
+package com.virtualcompanion.conversationservice.service;
+
+class MemoryDeduplicatorTest {
+
+    @Mock
+    private ConversationMemoryRepository memoryRepository;
+
+    private MemoryDeduplicator deduplicator;
+    private SimpleMeterRegistry registry;
+    private final UUID userId = UUID.randomUUID();
+    private final UUID characterId = UUID.randomUUID();
+    private final UUID dog = UUID.randomUUID();
+    private final UUID birthday = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        deduplicator = new MemoryDeduplicator(memoryRepository, registry);
+        ReflectionTestUtils.setField(deduplicator, "enabled", true);
+        ReflectionTestUtils.setField(deduplicator, "similarity", 0.8);
+        ReflectionTestUtils.setField(deduplicator, "importanceBoost", 0.05);
+        ReflectionTestUtils.setField(deduplicator, "rebuildPageSize", 100);
+        ReflectionTestUtils.setField(deduplicator, "catchUpOverlap", Duration.ofMinutes(1));
+        when(memoryRepository.findTextsAfter(any(), any(), any())).thenReturn(List.of());
+        when(memoryRepository.findTextsAfter(eq(MemoryTier.HOT), any(), any())).thenReturn(List.of(
+                text(dog, "User preference: I love my dog Max"),
+                text(birthday, "Important: my sister's birthday is on 12 March")));
+        when(memoryRepository.mergeDuplicate(any(), anyDouble(), anyDouble())).thenReturn(1);
+        deduplicator.init();
+        deduplicator.load();
+    }
+
+    @Test
+    @DisplayName("Should merge a repeated fact into the memory already stored")
+    void absorb_NearDuplicate() {
+        // When
+        Optional<UUID> merged = deduplicator.absorb(userId, characterId, "User preference: I really love my dog Max!", 0.6);
+
+        // Then
+        assertThat(merged).contains(dog);
+        verify(memoryRepository).mergeDuplicate(dog, 0.6, 0.05);
+        assertThat(registry.get("conversation.memory.dedup").tag("outcome", "merged").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should keep facts that differ in one telling word")
+    void absorb_DistinctFact() {
+        // When
+        Optional<UUID> merged = deduplicator.absorb(userId, characterId, "Important: my brother's birthday is on 12 March", 0.9);
+
+        // Then
+        assertThat(merged).isEmpty();
+        verify(memoryRepository, never()).mergeDuplicate(any(), anyDouble(), anyDouble());
+        assertThat(registry.get("conversation.memory.dedup").tag("outcome", "unique").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should only compare memories of the same user and character")
+    void absorb_OtherPair() {
+        // When
+        Optional<UUID> merged = deduplicator.absorb(userId, UUID.randomUUID(), "User preference: I love my dog Max", 0.6);
+
+        // Then
+        assertThat(merged).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should forget a memory archived since it was indexed and store the new one")
+    void absorb_StaleSignature() {
+        // Given
+        when(memoryRepository.mergeDuplicate(eq(dog), anyDouble(), anyDouble())).thenReturn(0);
+
+        // When
+        Optional<UUID> first = deduplicator.absorb(userId, characterId, "User preference: I love my dog Max", 0.6);
+        Optional<UUID> second = deduplicator.absorb(userId, characterId, "User preference: I love my dog Max", 0.6);
+
+        // Then
+        assertThat(first).isEmpty();
+        assertThat(second).isEmpty();
+        verify(memoryRepository, times(1)).mergeDuplicate(eq(dog), anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should match memories added after the load")
+    void add_ThenAbsorb() {
+        // Given
+        ConversationMemory hiking = ConversationMemory.builder()
+                .id(UUID.randomUUID())
+                .userId(userId)
+                .characterId(characterId)
+                .content("User preference: I love hiking in the Alps")
+                .tier(MemoryTier.HOT)
+                .build();
+        deduplicator.add(hiking);
+
+        // When
+        Optional<UUID> merged = deduplicator.absorb(userId, characterId, "User preference: I love hiking in the Alps!", 0.6);
+
+        // Then
+        assertThat(merged).contains(hiking.getId());
+    }
+
+    @Test
+    @DisplayName("Should match memories another replica saved once caught up")
+    void catchUp_ThenAbsorb() {
+        // Given
+        UUID hiking = UUID.randomUUID();
+        when(memoryRepository.findTextsCreatedAfter(eq(MemoryTier.HOT), any(), any())).thenReturn(List.of(
+                text(hiking, "User preference: I love hiking in the Alps")));
+
+        // When
+        deduplicator.catchUp();
+        Optional<UUID> merged = deduplicator.absorb(userId, characterId, "User preference: I love hiking in the Alps!", 0.6);
+
+        // Then
+        assertThat(merged).contains(hiking);
+    }
+
+    private ConversationMemoryRepository.MemoryText text(UUID id, String content) {
+        return new ConversationMemoryRepository.MemoryText() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public UUID getUserId() {
+                return userId;
+            }
+
+            @Override
+            public UUID getCharacterId() {
+                return characterId;
+            }
+
+            @Override
+            public String getContent() {
+                return content;
+            }
+        };
+    }
+}
@@ -0,0 +1,225 @@
+package com.virtualcompanion.conversationservice.service;
+
+class MemoryTieringJobTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    @Mock
+    private ConversationMemoryRepository memoryRepository;
+
+    @Mock
+    private HybridMemoryRetriever memoryRetriever;
+
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    private MemoryTieringJob job;
+    private SimpleMeterRegistry registry;
+    private final UUID userId = UUID.randomUUID();
+    private final UUID characterId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.just(1L));
+        when(memoryRepository.archive(anyCollection(), any())).thenAnswer(invocation -> invocation.<Collection<?>>getArgument(0).size());
+        job = new MemoryTieringJob(memoryRepository, memoryRetriever, redisTemplate, registry);
+        ReflectionTestUtils.setField(job, "enabled", true);
+        ReflectionTestUtils.setField(job, "usersPerRun", 10);
+        ReflectionTestUtils.setField(job, "chunkSize", 10);
+        ReflectionTestUtils.setField(job, "pageSize", 10);
+        ReflectionTestUtils.setField(job, "lockTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(job, "hotBudget", 1);
+        ReflectionTestUtils.setField(job, "warmBudget", 2);
+        ReflectionTestUtils.setField(job, "halfLife", Duration.ofDays(30));
+        ReflectionTestUtils.setField(job, "accessWeight", 0.1);
+        ReflectionTestUtils.setField(job, "coldScore", 0.02);
+        ReflectionTestUtils.setField(job, "summaryMaxLength", 200);
+        job.init();
+    }
+
+    @Test
+    @DisplayName("Should halve the score every half-life and reward retrievals")
+    void score_DecaysAndReinforces() {
+        // Given
+        Candidate fresh = new Candidate(MemoryTier.HOT, 0.8, 0, NOW);
+        Candidate month = new Candidate(MemoryTier.HOT, 0.8, 0, NOW.minusDays(30));
+        Candidate retrieved = new Candidate(MemoryTier.HOT, 0.8, 10, NOW.minusDays(30));
+
+        // When / Then
+        assertThat(job.score(fresh, NOW)).isCloseTo(0.8, within(1e-9));
+        assertThat(job.score(month, NOW)).isCloseTo(0.4, within(1e-9));
+        assertThat(job.score(retrieved, NOW)).isGreaterThan(job.score(month, NOW));
+    }
+
+    @Test
+    @DisplayName("Should keep the best memories hot, the next warm and archive the rest under a summary")
+    void tierUser_AppliesBudget() {
+        // Given
+        Candidate best = new Candidate(MemoryTier.WARM, 0.9, 5, NOW.minusDays(1));
+        Candidate second = new Candidate(MemoryTier.HOT, 0.6, 0, NOW.minusDays(2));
+        Candidate third = new Candidate(MemoryTier.HOT, 0.5, 0, NOW.minusDays(3));
+        when(memoryRepository.findTierCandidatesAfter(eq(userId), any(), any())).thenReturn(List.of(third, second, best));
+        when(memoryRepository.findAllById(List.of(best.getId()))).thenReturn(List.of(memory(best, "Likes hiking")));
+        when(memoryRepository.findAllById(List.of(third.getId()))).thenReturn(List.of(memory(third, "Has a cat")));
+        when(memoryRepository.save(any(ConversationMemory.class))).thenAnswer(invocation -> {
+            ConversationMemory summary = invocation.getArgument(0);
+            summary.setId(UUID.randomUUID());
+            return summary;
+        });
+
+        // When
+        job.tierUser(userId, NOW);
+
+        // Then
+        verify(memoryRepository).updateTier(List.of(best.getId()), MemoryTier.HOT);
+        verify(memoryRepository).updateTier(List.of(second.getId()), MemoryTier.WARM);
+        verify(memoryRetriever).remove(userId, characterId, second.getId());
+
+        ArgumentCaptor<ConversationMemory> summary = ArgumentCaptor.forClass(ConversationMemory.class);
+        verify(memoryRepository).save(summary.capture());
+        assertThat(summary.getValue().getTier()).isEqualTo(MemoryTier.WARM);
+        assertThat(summary.getValue().getContent()).isEqualTo("Earlier memories: Has a cat");
+        verify(memoryRepository).archive(List.of(third.getId()), summary.getValue().getId());
+        assertThat(registry.get("conversation.memory.tiering.moved").tag("tier", "cold").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should archive long unused memories even under budget")
+    void tierUser_ArchivesDecayed() {
+        // Given
+        ReflectionTestUtils.setField(job, "warmBudget", 100);
+        Candidate forgotten = new Candidate(MemoryTier.HOT, 0.5, 0, NOW.minusDays(365));
+        when(memoryRepository.findTierCandidatesAfter(eq(userId), any(), any())).thenReturn(List.of(forgotten));
+        when(memoryRepository.findAllById(List.of(forgotten.getId())))
+                .thenReturn(List.of(memory(forgotten, "Went to Rome")));
+        when(memoryRepository.save(any(ConversationMemory.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        job.tierUser(userId, NOW);
+
+        // Then
+        verify(memoryRepository).archive(eq(List.of(forgotten.getId())), any());
+        verify(memoryRepository, never()).updateTier(anyCollection(), any());
+    }
+
+    @Test
+    @DisplayName("Should drop the summary when none of its memories could be archived")
+    void tierUser_DropsOrphanSummary() {
+        // Given
+        ReflectionTestUtils.setField(job, "warmBudget", 100);
+        Candidate forgotten = new Candidate(MemoryTier.HOT, 0.5, 0, NOW.minusDays(365));
+        when(memoryRepository.findTierCandidatesAfter(eq(userId), any(), any())).thenReturn(List.of(forgotten));
+        when(memoryRepository.findAllById(List.of(forgotten.getId())))
+                .thenReturn(List.of(memory(forgotten, "Went to Rome")));
+        when(memoryRepository.save(any(ConversationMemory.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(memoryRepository.archive(anyCollection(), any())).thenReturn(0);
+
+        // When
+        job.tierUser(userId, NOW);
+
+        // Then
+        verify(memoryRepository).delete(any(ConversationMemory.class));
+        verify(memoryRetriever, never()).remove(any(ConversationMemory.class));
+        assertThat(registry.get("conversation.memory.tiering.moved").tag("tier", "cold").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should leave a user alone while another replica tiers it")
+    void tierUser_SkipsLockedUser() {
+        // Given
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(Mono.just(false));
+
+        // When
+        job.tierUser(userId, NOW);
+
+        // Then
+        verify(memoryRepository, never()).findTierCandidatesAfter(any(), any(), any());
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), anyList());
+    }
+
+    @Test
+    @DisplayName("Should release the user's lock only if this replica still holds it")
+    void tierUser_ReleasesOwnLock() {
+        // Given
+        when(memoryRepository.findTierCandidatesAfter(eq(userId), any(), any())).thenReturn(List.of());
+
+        // When
+        job.tierUser(userId, NOW);
+
+        // Then
+        ArgumentCaptor<String> owner = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations).setIfAbsent(eq("memory:tiering:" + userId), owner.capture(), any(Duration.class));
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("memory:tiering:" + userId)), eq(List.of(owner.getValue())));
+    }
+
+    private ConversationMemory memory(Candidate candidate, String content) {
+        return ConversationMemory.builder()
+                .id(candidate.getId())
+                .userId(userId)
+                .characterId(characterId)
+                .content(content)
+                .embedding(new float[]{1f, 0f})
+                .importance(candidate.getImportance())
+                .tier(candidate.getTier())
+                .build();
+    }
+
+    private final class Candidate implements ConversationMemoryRepository.TierCandidate {
+
+        private final UUID id = UUID.randomUUID();
+        private final MemoryTier tier;
+        private final double importance;
+        private final int accessCount;
+        private final LocalDateTime lastAccessed;
+
+        Candidate(MemoryTier tier, double importance, int accessCount, LocalDateTime lastAccessed) {
+            this.tier = tier;
+            this.importance = importance;
+            this.accessCount = accessCount;
+            this.lastAccessed = lastAccessed;
+        }
+
+        @Override
+        public UUID getId() {
+            return id;
+        }
+
+        @Override
+        public UUID getCharacterId() {
+            return characterId;
+        }
+
+        @Override
+        public MemoryTier getTier() {
+            return tier;
+        }
+
+        @Override
+        public Double getImportance() {
+            return importance;
+        }
+
+        @Override
+        public Integer getAccessCount() {
+            return accessCount;
+        }
+
+        @Override
+        public LocalDateTime getLastAccessed() {
+            return lastAccessed;
+        }
+
+        @Override
+        public LocalDateTime getCreatedAt() {
+            return lastAccessed;
+        }
+    }
+}
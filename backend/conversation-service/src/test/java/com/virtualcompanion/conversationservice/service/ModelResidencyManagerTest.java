@@ -0,0 +1,163 @@
+package com.virtualcompanion.conversationservice.service;
+
+class ModelResidencyManagerTest {
+
+    private static final long HOT_KEEP_ALIVE = Duration.ofHours(2).toSeconds();
+    private static final long DEFAULT_KEEP_ALIVE = Duration.ofMinutes(10).toSeconds();
+    private static final long GB = 1L << 30;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Bodies of the generate requests the manager sent, in order
+    private final List<JsonNode> generated = new CopyOnWriteArrayList<>();
+    private volatile String runningModels = "{\"models\":[]}";
+    private volatile Mono<Void> loadGate = Mono.empty();
+
+    private ModelResidencyManager manager;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        manager = new ModelResidencyManager(WebClient.builder().exchangeFunction(this::ollama), registry);
+        ReflectionTestUtils.setField(manager, "enabled", true);
+        ReflectionTestUtils.setField(manager, "ollamaBaseUrl", "http://ollama");
+        ReflectionTestUtils.setField(manager, "warmModels", List.of());
+        ReflectionTestUtils.setField(manager, "demandHalfLife", Duration.ofHours(1));
+        ReflectionTestUtils.setField(manager, "hotThreshold", 10.0);
+        ReflectionTestUtils.setField(manager, "hotKeepAlive", Duration.ofHours(2));
+        ReflectionTestUtils.setField(manager, "defaultKeepAlive", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(manager, "memoryBudget", DataSize.ofBytes(0));
+        ReflectionTestUtils.setField(manager, "refreshInterval", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(manager, "loadTimeout", Duration.ofSeconds(5));
+        manager.init();
+    }
+
+    @Test
+    @DisplayName("Should pin a model with the long keep_alive only while its decayed demand is above the threshold")
+    void keepAliveFor_HotThreshold() throws InterruptedException {
+        // Given
+        demand("llama3", 9);
+        long belowThreshold = manager.keepAliveFor("llama3");
+        demand("llama3", 3);
+        long aboveThreshold = manager.keepAliveFor("llama3");
+
+        // When
+        ReflectionTestUtils.setField(manager, "demandHalfLife", Duration.ofMillis(10));
+        Thread.sleep(100);
+        long decayed = manager.keepAliveFor("llama3");
+
+        // Then
+        assertThat(belowThreshold).isEqualTo(DEFAULT_KEEP_ALIVE);
+        assertThat(aboveThreshold).isEqualTo(HOT_KEEP_ALIVE);
+        assertThat(decayed).isEqualTo(DEFAULT_KEEP_ALIVE);
+    }
+
+    @Test
+    @DisplayName("Should re-pin hot models about to expire, and leave the others to expire")
+    void refresh_RepinsHotModels() {
+        // Given
+        demand("hot", 12);
+        demand("cold", 1);
+        Instant soon = Instant.now().plusSeconds(30);
+        running(model("hot", GB, soon), model("cold", GB, soon));
+        generated.clear();
+
+        // When
+        manager.refresh();
+
+        // Then
+        assertThat(generated).extracting(body -> body.get("model").asText()).containsExactly("hot");
+        assertThat(generated.get(0).get("keep_alive").asLong()).isEqualTo(HOT_KEEP_ALIVE);
+    }
+
+    @Test
+    @DisplayName("Should unload the least demanded models first under memory pressure, never a hot one")
+    void refresh_UnloadsLeastDemandedFirst() {
+        // Given
+        ReflectionTestUtils.setField(manager, "memoryBudget", DataSize.ofGigabytes(5));
+        demand("rare", 1);
+        demand("occasional", 3);
+        demand("busy", 12);
+        Instant later = Instant.now().plus(Duration.ofHours(1));
+        running(model("busy", 6 * GB, later), model("occasional", 6 * GB, later), model("rare", 6 * GB, later));
+        generated.clear();
+
+        // When
+        manager.refresh();
+
+        // Then
+        assertThat(generated).extracting(body -> body.get("model").asText()).containsExactly("rare", "occasional");
+        assertThat(generated).extracting(body -> body.get("keep_alive").asLong()).containsOnly(0L);
+        assertThat(registry.get("ai.model.unloads").tag("reason", "memory_pressure").counters()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Should share one load between the callers that ask for a model while it is loading")
+    void ensureLoaded_ConcurrentCallersShareOneLoad() {
+        // Given
+        Sinks.Empty<Void> gate = Sinks.empty();
+        loadGate = gate.asMono();
+        AtomicInteger completed = new AtomicInteger();
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            manager.ensureLoaded("llama3").subscribe(null, null, completed::incrementAndGet);
+        }
+        int whileLoading = completed.get();
+        gate.tryEmitEmpty();
+        manager.ensureLoaded("llama3").block();
+
+        // Then
+        assertThat(whileLoading).isZero();
+        assertThat(completed.get()).isEqualTo(3);
+        assertThat(generated).hasSize(1);
+        assertThat(generated.get(0).get("keep_alive").asLong()).isEqualTo(DEFAULT_KEEP_ALIVE);
+    }
+
+    private void demand(String model, int requests) {
+        for (int i = 0; i < requests; i++) {
+            manager.ensureLoaded(model).block();
+        }
+    }
+
+    private void running(String... models) {
+        runningModels = "{\"models\":[" + String.join(",", models) + "]}";
+    }
+
+    private static String model(String name, long size, Instant expiresAt) {
+        return "{\"name\":\"" + name + "\",\"size_vram\":" + size + ",\"expires_at\":\"" + expiresAt.atOffset(ZoneOffset.UTC) + "\"}";
+    }
+
+    // Stands in for Ollama: /api/ps lists the running models, /api/generate is recorded and held until the gate opens
+    private Mono<ClientResponse> ollama(ClientRequest request) {
+        if ("/api/ps".equals(request.url().getPath())) {
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(runningModels)
+                    .build());
+        }
+
+        MockClientHttpRequest body = new MockClientHttpRequest(request.method(), request.url());
+        return request.body().insert(body, new BodyInserter.Context() {
+                    @Override
+                    public List<HttpMessageWriter<?>> messageWriters() {
+                        return ExchangeStrategies.withDefaults().messageWriters();
+                    }
+
+                    @Override
+                    public Optional<ServerHttpRequest> serverRequest() {
+                        return Optional.empty();
+                    }
+
+                    @Override
+                    public Map<String, Object> hints() {
+                        return Map.of();
+                    }
+                })
+                .then(body.getBodyAsString())
+                .flatMap(json -> Mono.fromCallable(() -> objectMapper.readTree(json)))
+                .doOnNext(generated::add)
+                .then(loadGate)
+                .thenReturn(ClientResponse.create(HttpStatus.OK).build());
+    }
+}
@@ -0,0 +1,146 @@
+package com.virtualcompanion.conversationservice.service;
+
+class ResponseCacheServiceImplTest {
+
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    private ResponseCacheServiceImpl cache;
+    private SimpleMeterRegistry registry;
+    // Stands in for Redis
+    private final Map<String, String> stored = new ConcurrentHashMap<>();
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private final UUID characterId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString()))
+                .thenAnswer(invocation -> Mono.justOrEmpty(stored.get(invocation.<String>getArgument(0))));
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> Mono.just(stored.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null));
+
+        registry = new SimpleMeterRegistry();
+        cache = new ResponseCacheServiceImpl(redisTemplate, embeddingService, registry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "localTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(cache, "redisTtl", Duration.ofHours(6));
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "maxPromptWords", 8);
+        ReflectionTestUtils.setField(cache, "maxResponseLength", 600);
+        ReflectionTestUtils.setField(cache, "admissionThreshold", 2);
+        ReflectionTestUtils.setField(cache, "semanticEnabled", false);
+        ReflectionTestUtils.setField(cache, "similarityThreshold", 0.95);
+        ReflectionTestUtils.setField(cache, "maxSemanticEntries", 16);
+        cache.init();
+    }
+
+    @Test
+    @DisplayName("Should cache only short impersonal turns without per-request overrides")
+    void isCacheable_ShortImpersonalTurns() {
+        // When / Then
+        assertThat(cache.isCacheable("Hello there!", null)).isTrue();
+        assertThat(cache.isCacheable("Do you remember my dog?", null)).isFalse();
+        assertThat(cache.isCacheable("See you at 5", null)).isFalse();
+        assertThat(cache.isCacheable("what do you think about the weather today and tomorrow then", null)).isFalse();
+        assertThat(cache.isCacheable("Hello there!", MessageOptions.builder().preferredTone("playful").build())).isFalse();
+        assertThat(cache.isCacheable("   ", null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should key prompts that differ only in case, spacing and punctuation alike")
+    void keyFor_Normalizes() {
+        // When
+        ResponseCacheKey first = cache.keyFor(alice, characterId, "gpt-4", null, "Hello,   THERE!");
+        ResponseCacheKey second = cache.keyFor(alice, characterId, "gpt-4", null, "hello there");
+
+        // Then
+        assertThat(first.getNormalizedPrompt()).isEqualTo("hello there");
+        assertThat(first.getPromptHash()).isEqualTo(second.getPromptHash());
+    }
+
+    @Test
+    @DisplayName("Should keep an answer only once its prompt has missed twice")
+    void store_AdmissionAfterTwoMisses() {
+        // Given
+        ResponseCacheKey key = cache.keyFor(alice, characterId, "gpt-4", null, "hello there");
+
+        // When
+        cache.store(key, "Hi! Lovely to see you.").block();
+        String afterFirst = cache.lookup(key).block();
+        cache.store(key, "Hi! Lovely to see you.").block();
+        String afterSecond = cache.lookup(key).block();
+
+        // Then
+        assertThat(afterFirst).isNull();
+        assertThat(afterSecond).isEqualTo("Hi! Lovely to see you.");
+        assertThat(registry.get("ai.response.cache.rejected").tag("reason", "admission").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should never keep answers carrying links, addresses or numbers")
+    void store_RejectsSensitiveContent() {
+        // Given
+        ResponseCacheKey key = cache.keyFor(alice, characterId, "gpt-4", null, "hello there");
+
+        // When
+        cache.store(key, "Write to me at sam@example.com").block();
+        cache.store(key, "Write to me at sam@example.com").block();
+
+        // Then
+        assertThat(stored).isEmpty();
+        verify(valueOperations, never()).setIfAbsent(anyString(), anyString(), any(Duration.class));
+        assertThat(registry.get("ai.response.cache.rejected").tag("reason", "sensitive_content").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should keep each user's answers apart for the same character and prompt")
+    void lookup_SeparateUsers() {
+        // Given
+        ResponseCacheKey aliceKey = cache.keyFor(alice, characterId, "gpt-4", null, "hi");
+        ResponseCacheKey bobKey = cache.keyFor(bob, characterId, "gpt-4", null, "hi");
+        cache.store(aliceKey, "Hi Alice, how's Max?").block();
+        cache.store(aliceKey, "Hi Alice, how's Max?").block();
+
+        // When
+        String forAlice = cache.lookup(aliceKey).block();
+        String forBob = cache.lookup(bobKey).block();
+
+        // Then
+        assertThat(aliceKey.getPromptHash()).isNotEqualTo(bobKey.getPromptHash());
+        assertThat(forAlice).isEqualTo("Hi Alice, how's Max?");
+        assertThat(forBob).isNull();
+    }
+
+    @Test
+    @DisplayName("Should answer a paraphrase from the semantic tier only above the similarity threshold")
+    void lookup_SemanticThreshold() {
+        // Given
+        ReflectionTestUtils.setField(cache, "semanticEnabled", true);
+        when(embeddingService.generateEmbedding("hello there")).thenReturn(new float[]{1f, 0f});
+        when(embeddingService.generateEmbedding("hello you")).thenReturn(new float[]{0.99f, 0.1f});
+        when(embeddingService.generateEmbedding("good evening")).thenReturn(new float[]{0.6f, 0.8f});
+        ResponseCacheKey original = cache.keyFor(alice, characterId, "gpt-4", null, "hello there");
+        cache.lookup(original).block();
+        cache.store(original, "Hi! Lovely to see you.").block();
+        cache.store(original, "Hi! Lovely to see you.").block();
+
+        // When
+        String close = cache.lookup(cache.keyFor(alice, characterId, "gpt-4", null, "hello you")).block();
+        String far = cache.lookup(cache.keyFor(alice, characterId, "gpt-4", null, "good evening")).block();
+
+        // Then
+        assertThat(close).isEqualTo("Hi! Lovely to see you.");
+        assertThat(far).isNull();
+        assertThat(registry.get("ai.response.cache.lookups").tag("tier", "semantic").counter().count()).isEqualTo(1.0);
+    }
+}
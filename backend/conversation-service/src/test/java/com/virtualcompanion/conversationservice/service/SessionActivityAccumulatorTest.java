@@ -0,0 +1,67 @@
+package com.virtualcompanion.conversationservice.service;
+
+class SessionActivityAccumulatorTest {
+
+    @Mock
+    private StreamingSessionRepository streamingSessionRepository;
+
+    private SessionActivityAccumulator accumulator;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        accumulator = new SessionActivityAccumulator(streamingSessionRepository, registry);
+        ReflectionTestUtils.setField(accumulator, "chunkSize", 2);
+        accumulator.init();
+        when(streamingSessionRepository.updatePings(anyCollection(), any()))
+                .thenAnswer(invocation -> invocation.<Collection<String>>getArgument(0).size());
+    }
+
+    @Test
+    @DisplayName("Should not touch the database when a pong is recorded")
+    void record_DoesNotWrite() {
+        // When
+        accumulator.record("s1");
+        accumulator.record("s1");
+
+        // Then
+        verifyNoInteractions(streamingSessionRepository);
+        assertThat(accumulator.pending()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should write each session once per flush, in chunks")
+    void flush_CoalescesAndChunks() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            accumulator.record("s1");
+        }
+        accumulator.record("s2");
+        accumulator.record("s3");
+
+        // When
+        accumulator.flush();
+
+        // Then
+        verify(streamingSessionRepository, times(2)).updatePings(anyCollection(), any());
+        assertThat(registry.get("websocket.session.activity.rows").counter().count()).isEqualTo(3.0);
+        assertThat(accumulator.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should drop a failed chunk instead of holding it")
+    void flush_DropsOnFailure() {
+        // Given
+        when(streamingSessionRepository.updatePings(anyCollection(), any())).thenThrow(new RuntimeException("down"));
+        accumulator.record("s1");
+
+        // When
+        accumulator.flush();
+
+        // Then
+        assertThat(accumulator.pending()).isZero();
+        assertThat(registry.get("websocket.session.activity.dropped").counter().count()).isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,114 @@
+package com.virtualcompanion.conversationservice.service;
+
+class StreamGuardTest {
+
+    private StreamGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        guard = new StreamGuard(true, 64, 16, 3, 8, 24, 80);
+    }
+
+    @Test
+    @DisplayName("Should clean whitespace and pass normal text through")
+    void accept_CleanText() {
+        // When
+        String streamed = feed("Hello", " there", ",  how   are", " you?\n\n\n\nFine.");
+
+        // Then
+        assertThat(guard.isStopped()).isFalse();
+        assertThat(streamed).isEqualTo("Hello there, how are you?\n\nFine.");
+        assertThat(guard.getContent()).isEqualTo(streamed);
+    }
+
+    @Test
+    @DisplayName("Should stop a repetition loop and keep its first occurrence")
+    void accept_RepetitionLoop() {
+        // When
+        feed("I", " love", " you.", " I", " love", " you.", " I", " love", " you.", " I", " love", " you.", " more");
+
+        // Then
+        assertThat(guard.getStopReason()).isEqualTo("repetition");
+        assertThat(guard.getContent()).isEqualTo("I love you.");
+    }
+
+    @Test
+    @DisplayName("Should stop when the model starts writing the user's turn")
+    void accept_RoleLeak() {
+        // When
+        String streamed = feed("Sure thing!\n", "Us", "er", ": what about me");
+
+        // Then
+        assertThat(guard.getStopReason()).isEqualTo("role_leak");
+        assertThat(streamed).doesNotContain("User");
+        assertThat(guard.getContent()).isEqualTo("Sure thing!");
+    }
+
+    @Test
+    @DisplayName("Should release held text when it is not a role marker")
+    void accept_HeldPrefixReleased() {
+        // When
+        String streamed = feed("Sure thing!\n", "Us", "eful tip");
+
+        // Then
+        assertThat(guard.isStopped()).isFalse();
+        assertThat(streamed).isEqualTo("Sure thing!\nUseful tip");
+    }
+
+    @Test
+    @DisplayName("Should cut a stop sequence split across tokens")
+    void accept_SplitStopSequence() {
+        // When
+        String streamed = feed("Bye now<|im", "_end|>garbage");
+
+        // Then
+        assertThat(guard.getStopReason()).isEqualTo("stop_sequence");
+        assertThat(streamed).isEqualTo("Bye now");
+    }
+
+    @Test
+    @DisplayName("Should stop degenerate character runs")
+    void accept_CharacterRun() {
+        // When
+        feed("Wow", "!".repeat(40));
+
+        // Then
+        assertThat(guard.getStopReason()).isEqualTo("char_run");
+    }
+
+    @Test
+    @DisplayName("Should let long Japanese and Chinese sentences through, written without spaces")
+    void accept_UnspacedScripts() {
+        // Given
+        String sentence = "今日はとても良い天気ですね公園を散歩して川沿いのカフェでコーヒーを飲みながら"
+                + "昨日読み始めた小説の続きをゆっくり楽しみました夕方には友達と駅前のレストランで晩ご飯を食べる約束があります";
+
+        // When
+        String streamed = feed(sentence.substring(0, 40), sentence.substring(40));
+
+        // Then
+        assertThat(sentence.length()).isGreaterThan(80);
+        assertThat(guard.isStopped()).isFalse();
+        assertThat(streamed).isEqualTo(sentence);
+    }
+
+    @Test
+    @DisplayName("Should stop a repetition loop in Chinese, one character per word")
+    void accept_UnspacedRepetitionLoop() {
+        // When
+        feed("我爱你。", "我爱你。", "我爱你。", "我爱你。", "我爱你。");
+
+        // Then
+        assertThat(guard.getStopReason()).isEqualTo("repetition");
+        assertThat(guard.getContent()).isEqualTo("我爱你。");
+    }
+
+    private String feed(String... tokens) {
+        StringBuilder streamed = new StringBuilder();
+        for (String token : tokens) {
+            streamed.append(guard.accept(token));
+        }
+        streamed.append(guard.finish());
+        return streamed.toString();
+    }
+}
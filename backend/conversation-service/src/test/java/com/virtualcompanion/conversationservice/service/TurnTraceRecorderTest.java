@@ -0,0 +1,64 @@
+package com.virtualcompanion.conversationservice.service;
+
+class TurnTraceRecorderTest {
+
+    private TurnTraceRecorder traceRecorder;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BrownoutController brownoutController = new BrownoutController(registry, new LlmRequestScheduler(registry));
+        traceRecorder = new TurnTraceRecorder(new ObjectMapper(), registry, brownoutController);
+        ReflectionTestUtils.setField(traceRecorder, "salt", "test-salt");
+        traceRecorder.init();
+    }
+
+    @Test
+    @DisplayName("Should replace words while keeping length, case, punctuation and repetition")
+    void anonymize_PreservesShape() {
+        // Given
+        String text = "Hello Anna, my PIN is 4242. Hello again!";
+
+        // When
+        String anonymized = traceRecorder.anonymize(text);
+
+        // Then
+        assertThat(anonymized).hasSameSizeAs(text);
+        assertThat(anonymized).doesNotContain("Anna", "4242", "Hello");
+        assertThat(anonymized).matches("[A-Z][a-z]{4} [A-Z][a-z]{3}, [a-z]{2} [A-Z]{3} [a-z]{2} \\d{4}\\. [A-Z][a-z]{4} [a-z]{5}!");
+        assertThat(anonymized.substring(0, 5)).isEqualTo(anonymized.substring(28, 33));
+    }
+
+    @Test
+    @DisplayName("Should map ids to stable pseudonyms")
+    void pseudonym_Stable() {
+        // Given
+        UUID userId = UUID.randomUUID();
+
+        // When
+        String first = traceRecorder.pseudonym(userId);
+        String second = traceRecorder.pseudonym(userId);
+
+        // Then
+        assertThat(first).isEqualTo(second).hasSize(16).isNotEqualTo(traceRecorder.pseudonym(UUID.randomUUID()));
+        assertThat(userId.toString()).doesNotContain(first);
+    }
+
+    @Test
+    @DisplayName("Should not trace turns while capture is off")
+    void begin_Disabled() {
+        // Given
+        Conversation conversation = Conversation.builder()
+                .id(UUID.randomUUID())
+                .userId(UUID.randomUUID())
+                .characterId(UUID.randomUUID())
+                .build();
+        Message message = Message.builder().content("hi").build();
+
+        // When
+        TurnTrace trace = traceRecorder.begin(conversation, message, "rest");
+
+        // Then
+        assertThat(trace).isNull();
+    }
+}
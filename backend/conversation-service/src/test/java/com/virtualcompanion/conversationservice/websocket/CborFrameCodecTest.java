@@ -0,0 +1,67 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+class CborFrameCodecTest {
+
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+    private final CborFrameCodec codec = new CborFrameCodec(cborMapper, new ObjectMapper());
+
+    @Test
+    @DisplayName("Should bind a stream number on the first chunk and release it on the last")
+    void toBytes_InternsStreams() throws Exception {
+        // When
+        List<?> first = decode(chunk("c1", "Hel", false));
+        List<?> next = decode(chunk("c1", "lo", false));
+        List<?> last = decode(chunk("c1", "!", true));
+        List<?> reopened = decode(chunk("c1", "Again", false));
+
+        // Then
+        assertThat(first).containsExactly(1, 0, "Hel", "c1");
+        assertThat(next).containsExactly(1, 0, "lo");
+        assertThat(last).containsExactly(2, 0, "!");
+        assertThat(reopened).containsExactly(1, 1, "Again", "c1");
+    }
+
+    @Test
+    @DisplayName("Should frame other messages with their type and payload")
+    void toBytes_Event() throws Exception {
+        // When
+        List<?> frame = decode(WebSocketMessageDto.builder()
+                .type(MessageType.MESSAGE_SENT)
+                .payload(Map.of("id", "m1"))
+                .build());
+
+        // Then
+        assertThat(frame).containsExactly(0, "MESSAGE_SENT", Map.of("id", "m1"), null);
+    }
+
+    @Test
+    @DisplayName("Should be several times smaller than the v1 JSON frame of a chunk")
+    void toBytes_SmallerThanJson() throws Exception {
+        // Given
+        WebSocketMessageDto message = chunk(UUID.randomUUID().toString(), " token", false);
+        codec.toBytes(message);
+
+        // When
+        int v2 = codec.toBytes(message).length;
+        int v1 = new ObjectMapper().findAndRegisterModules().writeValueAsBytes(message).length;
+
+        // Then
+        assertThat(v2 * 4).isLessThan(v1);
+    }
+
+    private List<?> decode(WebSocketMessageDto message) throws Exception {
+        return cborMapper.readValue(codec.toBytes(message), List.class);
+    }
+
+    private static WebSocketMessageDto chunk(String conversationId, String text, boolean complete) {
+        return WebSocketMessageDto.builder()
+                .type(MessageType.AI_RESPONSE_CHUNK)
+                .payload(AIResponseChunk.builder()
+                        .conversationId(conversationId)
+                        .chunk(text)
+                        .isComplete(complete)
+                        .build())
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+class ChunkCoalescerTest {
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+    private final TestPublisher<AIResponseChunk> source = TestPublisher.create();
+
+    @Test
+    @DisplayName("Should send the first chunk at once and hold the next ones for the interval")
+    void coalesce_ByInterval() {
+        // Given
+        Flux<AIResponseChunk> coalesced = ChunkCoalescer.coalesce(source.flux(), Duration.ofMillis(40), 512, scheduler);
+
+        // When / Then
+        StepVerifier.create(coalesced)
+                .then(() -> source.next(chunk("Hel", false)))
+                .assertNext(chunk -> assertThat(chunk.getChunk()).isEqualTo("Hel"))
+                .then(() -> {
+                    source.next(chunk("lo", false));
+                    source.next(chunk(" the", false));
+                    scheduler.advanceTimeBy(Duration.ofMillis(39));
+                })
+                .expectNoEvent(Duration.ZERO)
+                .then(() -> scheduler.advanceTimeBy(Duration.ofMillis(1)))
+                .assertNext(chunk -> assertThat(chunk.getChunk()).isEqualTo("lo the"))
+                .then(() -> source.next(chunk("re", true)))
+                .assertNext(chunk -> {
+                    assertThat(chunk.getChunk()).isEqualTo("re");
+                    assertThat(chunk.isComplete()).isTrue();
+                })
+                .then(source::complete)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should send held chunks as soon as they reach the byte budget")
+    void coalesce_ByBytes() {
+        // Given
+        Flux<AIResponseChunk> coalesced = ChunkCoalescer.coalesce(source.flux(), Duration.ofSeconds(1), 4, scheduler);
+
+        // When / Then
+        StepVerifier.create(coalesced)
+                .then(() -> source.next(chunk("a", false), chunk("bb", false), chunk("cé", false)))
+                .assertNext(chunk -> assertThat(chunk.getChunk()).isEqualTo("a"))
+                .assertNext(chunk -> assertThat(chunk.getChunk()).isEqualTo("bbcé"))
+                .then(source::complete)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should count UTF-8 bytes, not characters")
+    void utf8Length() {
+        assertThat(ChunkCoalescer.utf8Length("aé€😀")).isEqualTo(1 + 2 + 3 + 4);
+    }
+
+    private static AIResponseChunk chunk(String text, boolean complete) {
+        return AIResponseChunk.builder()
+                .conversationId("c1")
+                .chunk(text)
+                .isComplete(complete)
+                .build();
+    }
+}
@@ -0,0 +1,196 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+class ClusterFanoutTest {
+
+    // One broker for all nodes, standing in for the Redis they share
+    private final InMemoryFanoutBroker broker = new InMemoryFanoutBroker();
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+
+    private Node a;
+    private Node b;
+
+    @BeforeEach
+    void setUp() {
+        a = new Node("node-a");
+        b = new Node("node-b");
+    }
+
+    @Test
+    @DisplayName("Should deliver to sessions on every node, in publish order, in one batch per window")
+    void publish_ReachesOtherNodesInOrder() {
+        // Given
+        OutboundQueue alice = a.connect("a1", "alice", "c1");
+        OutboundQueue bob = b.connect("b1", "bob", "c1");
+        OutboundQueue carol = b.connect("b2", "carol", "c1");
+
+        // When
+        a.fanout.publish("c1", message("1"), "alice");
+        a.fanout.publish("c1", message("2"), "alice");
+        a.fanout.publish("c1", message("3"), "alice");
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+        // Then
+        assertThat(alice.depth()).isZero();
+        assertThat(payloads(bob)).containsExactly("1", "2", "3");
+        assertThat(payloads(carol)).containsExactly("1", "2", "3");
+        assertThat(a.meters.get("websocket.fanout.batches").tag("outcome", "published").counter().count()).isEqualTo(1.0);
+        assertThat(a.meters.get("websocket.fanout.batch.size").summary().max()).isEqualTo(3.0);
+        assertThat(b.meters.get("websocket.fanout.received").counter().count()).isEqualTo(6.0);
+    }
+
+    @Test
+    @DisplayName("Should deliver locally at once and keep the batch off the broker when no other node holds the conversation")
+    void publish_LocalOnly() {
+        // Given
+        OutboundQueue alice = a.connect("a1", "alice", "c1");
+        b.connect("b1", "bob", "c2");
+
+        // When
+        a.fanout.publish("c1", message("1"), "bob");
+
+        // Then
+        assertThat(alice.depth()).isEqualTo(1);
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+        assertThat(a.meters.get("websocket.fanout.batches").tag("outcome", "local").counter().count()).isEqualTo(1.0);
+        assertThat(a.meters.get("websocket.fanout.batches").tag("outcome", "published").counter().count()).isZero();
+        assertThat(b.meters.get("websocket.fanout.received").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should reach a node as soon as it joins, despite a cached answer that none did")
+    void publish_AfterJoinNotice() {
+        // Given
+        a.connect("a1", "alice", "c1");
+        a.fanout.publish("c1", message("before"), "alice");
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+        // When
+        OutboundQueue bob = b.connect("b1", "bob", "c1");
+        a.fanout.publish("c1", message("after"), "alice");
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+        // Then
+        assertThat(payloads(bob)).containsExactly("after");
+    }
+
+    @Test
+    @DisplayName("Should stop receiving once the last session of the node leaves")
+    void disconnect_Unsubscribes() {
+        // Given
+        a.connect("a1", "alice", "c1");
+        b.connect("b1", "bob", "c1");
+
+        // When
+        b.fanout.disconnect("b1");
+        a.fanout.publish("c1", message("1"), "alice");
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+        // Then
+        assertThat(b.registry.conversations()).isEmpty();
+        assertThat(b.meters.get("websocket.fanout.subscriptions").gauge().value()).isZero();
+        assertThat(b.meters.get("websocket.fanout.received").counter().count()).isZero();
+        assertThat(broker.present("ws:presence:conversation:c1").block()).containsExactly("node-a");
+    }
+
+    @Test
+    @DisplayName("Should reach every session of the user, on every node, and only those")
+    void sendToUser_ReachesOtherNodes() {
+        // Given
+        OutboundQueue alicePhone = a.connect("a1", "alice", "c1");
+        OutboundQueue aliceLaptop = b.connect("b1", "alice", "c2");
+        OutboundQueue bob = b.connect("b2", "bob", "c2");
+
+        // When
+        a.fanout.sendToUser("alice", message("1"));
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+        // Then
+        assertThat(payloads(alicePhone)).containsExactly("1");
+        assertThat(payloads(aliceLaptop)).containsExactly("1");
+        assertThat(bob.depth()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should hand remote sessions the payload as the class it was sent as")
+    void publish_KeepsPayloadType() {
+        // Given
+        a.connect("a1", "alice", "c1");
+        OutboundQueue bob = b.connect("b1", "bob", "c1");
+
+        // When
+        a.fanout.publish("c1", WebSocketMessageDto.builder()
+                .type(MessageType.AI_RESPONSE_CHUNK)
+                .payload(AIResponseChunk.builder().conversationId("c1").chunk("Bonjour").isComplete(true).build())
+                .timestamp(LocalDateTime.now())
+                .build(), "alice");
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+        // Then
+        assertThat(payloads(bob)).singleElement()
+                .isInstanceOfSatisfying(AIResponseChunk.class, chunk -> assertThat(chunk.getChunk()).isEqualTo("Bonjour"));
+    }
+
+    @Test
+    @DisplayName("Should deliver through a new outbox once the idle one is evicted")
+    void refreshPresence_EvictsIdleOutboxes() {
+        // Given
+        a.connect("a1", "alice", "c1");
+        OutboundQueue bob = b.connect("b1", "bob", "c1");
+        a.fanout.publish("c1", message("1"), "alice");
+        scheduler.advanceTimeBy(Duration.ofMinutes(1));
+
+        // When
+        a.fanout.refreshPresence();
+        a.fanout.publish("c1", message("2"), "alice");
+        scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+        // Then
+        assertThat(payloads(bob)).containsExactly("1", "2");
+        assertThat(b.meters.get("websocket.fanout.gaps").counter().count()).isZero();
+    }
+
+    private static List<Object> payloads(OutboundQueue queue) {
+        return queue.flux().take(queue.depth()).map(WebSocketMessageDto::getPayload).collectList().block();
+    }
+
+    private static WebSocketMessageDto message(String text) {
+        return WebSocketMessageDto.builder()
+                .type(MessageType.MESSAGES_READ)
+                .payload(text)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private final class Node {
+
+        private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        private final LocalSessionRegistry registry = new LocalSessionRegistry();
+        private final OutboundQueues queues = new OutboundQueues(meters);
+        private final ClusterFanout fanout;
+
+        Node(String nodeId) {
+            ReflectionTestUtils.setField(queues, "capacity", 16);
+            ReflectionTestUtils.setField(queues, "ephemeralDepth", 16);
+            ReflectionTestUtils.setField(queues, "coalesceDepth", 16);
+            ReflectionTestUtils.setField(queues, "overflow", "drop");
+            queues.init();
+
+            fanout = new ClusterFanout(broker, registry, queues, objectMapper, meters);
+            ReflectionTestUtils.setField(fanout, "nodeId", nodeId);
+            ReflectionTestUtils.setField(fanout, "batchWindow", Duration.ofMillis(10));
+            ReflectionTestUtils.setField(fanout, "batchMax", 64);
+            ReflectionTestUtils.setField(fanout, "presenceTtl", Duration.ofSeconds(30));
+            ReflectionTestUtils.setField(fanout, "presenceCache", Duration.ofSeconds(1));
+            ReflectionTestUtils.setField(fanout, "scheduler", scheduler);
+            fanout.init();
+        }
+
+        OutboundQueue connect(String sessionId, String userId, String conversationId) {
+            OutboundQueue queue = queues.open(sessionId, () -> { });
+            fanout.connect(sessionId, userId);
+            fanout.join(sessionId, conversationId);
+            return queue;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+class HeartbeatWheelTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+    private HeartbeatWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new HeartbeatWheel(registry);
+        ReflectionTestUtils.setField(wheel, "interval", Duration.ofSeconds(3));
+        ReflectionTestUtils.setField(wheel, "tick", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(wheel, "idleTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(wheel, "scheduler", scheduler);
+        wheel.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    @DisplayName("Should ping each session once per interval, a full turn after it opened")
+    void tick_PingsOncePerTurn() {
+        // Given
+        List<Long> first = new ArrayList<>();
+        List<Long> second = new ArrayList<>();
+        wheel.open("s1", () -> { }).pings().subscribe(first::add);
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+        wheel.open("s2", () -> { }).pings().subscribe(second::add);
+
+        // When
+        scheduler.advanceTimeBy(Duration.ofSeconds(5));
+
+        // Then
+        assertThat(first).containsExactly(0L, 1L);
+        assertThat(second).containsExactly(0L);
+        assertThat(registry.get("websocket.heartbeat.pings").counter().count()).isEqualTo(3.0);
+        assertThat(registry.get("websocket.heartbeat.tick").timer().count()).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("Should close sessions silent past the idle timeout and keep the ones heard from")
+    void tick_ReapsIdleSessions() {
+        // Given
+        AtomicBoolean silentClosed = new AtomicBoolean();
+        AtomicBoolean liveClosed = new AtomicBoolean();
+        wheel.open("silent", () -> silentClosed.set(true));
+        HeartbeatWheel.Heartbeat live = wheel.open("live", () -> liveClosed.set(true));
+        wheel.open("sse", null);
+
+        // When
+        scheduler.advanceTimeBy(Duration.ofSeconds(5));
+        live.touch();
+        scheduler.advanceTimeBy(Duration.ofSeconds(7));
+
+        // Then
+        assertThat(silentClosed).isTrue();
+        assertThat(liveClosed).isFalse();
+        assertThat(wheel.get("silent")).isNull();
+        assertThat(wheel.size()).isEqualTo(2);
+        assertThat(registry.get("websocket.heartbeat.reaped").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should stop pinging a closed session and complete its signal")
+    void close_CompletesPings() {
+        // Given
+        HeartbeatWheel.Heartbeat heartbeat = wheel.open("s1", () -> { });
+
+        // When
+        wheel.close("s1");
+
+        // Then
+        StepVerifier.create(heartbeat.pings()).verifyComplete();
+        scheduler.advanceTimeBy(Duration.ofSeconds(3));
+        assertThat(registry.get("websocket.heartbeat.pings").counter().count()).isZero();
+    }
+}
@@ -0,0 +1,125 @@
+package com.virtualcompanion.conversationservice.websocket;
+
+class OutboundQueueTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicBoolean disconnected = new AtomicBoolean();
+    private OutboundQueues queues;
+
+    @BeforeEach
+    void setUp() {
+        queues = new OutboundQueues(registry);
+        ReflectionTestUtils.setField(queues, "capacity", 4);
+        ReflectionTestUtils.setField(queues, "ephemeralDepth", 2);
+        ReflectionTestUtils.setField(queues, "coalesceDepth", 1);
+        ReflectionTestUtils.setField(queues, "overflow", "disconnect");
+        queues.init();
+    }
+
+    @Test
+    @DisplayName("Should send in offer order, only as fast as the socket requests")
+    void flux_OrderedWithBackpressure() {
+        // Given
+        OutboundQueue queue = queues.open("s1", () -> disconnected.set(true));
+        queue.offer(message(MessageType.MESSAGE_SENT));
+        queue.offer(message(MessageType.CONVERSATION_HISTORY));
+
+        // When / Then
+        StepVerifier.create(queue.flux(), 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(10))
+                .thenRequest(1)
+                .assertNext(sent -> assertThat(sent.getType()).isEqualTo(MessageType.MESSAGE_SENT))
+                .then(() -> assertThat(queue.depth()).isEqualTo(1))
+                .thenRequest(1)
+                .assertNext(sent -> assertThat(sent.getType()).isEqualTo(MessageType.CONVERSATION_HISTORY))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should append stream chunks to the waiting one when the consumer lags")
+    void offer_CoalescesChunks() {
+        // Given
+        OutboundQueue queue = queues.open("s1", () -> disconnected.set(true));
+
+        // When
+        queue.offer(message(MessageType.MESSAGE_SENT));
+        queue.offer(chunk("Hel", false));
+        queue.offer(chunk("lo", false));
+        queue.offer(chunk(" there", true));
+
+        // Then
+        assertThat(queue.depth()).isEqualTo(2);
+        StepVerifier.create(queue.flux())
+                .assertNext(sent -> assertThat(sent.getType()).isEqualTo(MessageType.MESSAGE_SENT))
+                .assertNext(sent -> {
+                    AIResponseChunk chunk = (AIResponseChunk) sent.getPayload();
+                    assertThat(chunk.getChunk()).isEqualTo("Hello there");
+                    assertThat(chunk.isComplete()).isTrue();
+                })
+                .thenCancel()
+                .verify();
+        assertThat(registry.get("websocket.outbound.coalesced").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should drop typing indicators first when messages pile up")
+    void offer_DropsEphemeralFirst() {
+        // Given
+        OutboundQueue queue = queues.open("s1", () -> disconnected.set(true));
+        queue.offer(message(MessageType.USER_TYPING));
+        queue.offer(message(MessageType.MESSAGE_SENT));
+
+        // When
+        boolean typing = queue.offer(message(MessageType.USER_TYPING));
+        queue.offer(message(MessageType.MESSAGE_SENT));
+        queue.offer(message(MessageType.MESSAGE_SENT));
+        boolean essential = queue.offer(message(MessageType.MESSAGES_READ));
+
+        // Then
+        assertThat(typing).isFalse();
+        assertThat(essential).isTrue();
+        assertThat(disconnected).isFalse();
+        assertThat(queue.dropped()).isEqualTo(2);
+        assertThat(registry.get("websocket.outbound.dropped").tag("reason", "ephemeral").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Should disconnect a consumer whose queue stays full")
+    void offer_DisconnectsWhenFull() {
+        // Given
+        OutboundQueue queue = queues.open("s1", () -> disconnected.set(true));
+        for (int i = 0; i < 4; i++) {
+            queue.offer(message(MessageType.MESSAGE_SENT));
+        }
+
+        // When
+        boolean accepted = queue.offer(message(MessageType.MESSAGE_SENT));
+
+        // Then
+        assertThat(accepted).isFalse();
+        assertThat(disconnected).isTrue();
+        assertThat(queue.depth()).isZero();
+        assertThat(queue.offer(message(MessageType.MESSAGE_SENT))).isFalse();
+    }
+
+    private static WebSocketMessageDto message(MessageType type) {
+        return WebSocketMessageDto.builder()
+                .type(type)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private static WebSocketMessageDto chunk(String text, boolean complete) {
+        return WebSocketMessageDto.builder()
+                .type(MessageType.AI_RESPONSE_CHUNK)
+                .payload(AIResponseChunk.builder()
+                        .conversationId("c1")
+                        .chunk(text)
+                        .isComplete(complete)
+                        .build())
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
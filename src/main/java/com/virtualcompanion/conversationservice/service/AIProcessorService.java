@@ -10,6 +10,11 @@ public class AIProcessorService {
     private final CharacterServiceClient characterClient;
     private final ReactiveRedisTemplate<String, String> redisTemplate;
     private final ObjectMapper objectMapper;
+    private final GenerationMetrics generationMetrics;
+    private final LlmRequestScheduler requestScheduler;
+    private final UserTierResolver tierResolver;
+    private final ModelResidencyManager residencyManager;
+    private final BrownoutController brownoutController;
 
     // ========== Response Generation ==========
 
@@ -54,16 +59,26 @@ public class AIProcessorService {
 
     private Mono<String> generateAIResponse(ConversationContext context, MessageDto userMessage) {
         OllamaRequest request = buildOllamaRequest(context, userMessage.getContent());
+        UUID userId = context.getUserId();
 
-        return ollamaClient.post()
+        Mono<String> call = ollamaClient.post()
                 .uri("/api/generate")
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(Mono.just(request), OllamaRequest.class)
                 .retrieve()
                 .bodyToMono(OllamaResponse.class)
                 .timeout(Duration.ofSeconds(aiConfig.getResponseTimeout()))
-                .retryWhen(Retry.backoff(3, Duration.ofSeconds(2)))
-                .map(OllamaResponse::getResponse)
+                .map(OllamaResponse::getResponse);
+
+        // Chaque tentative repasse par l'ordonnanceur : une rafale de retries ne peut pas affamer les autres
+        Mono<String> scheduled = tierResolver.resolve(userId)
+                .flatMap(tier -> requestScheduler.schedule("ollama", userId, tier, aiConfig.getMaxTokens(), call))
+                .retryWhen(Retry.backoff(3, Duration.ofSeconds(2))
+                        .filter(error -> !(error instanceof ModelOverloadedException)));
+
+        // Attendre le chargement du modèle hors ordonnanceur : un chargement à froid ne bloque pas de permis
+        return residencyManager.ensureLoaded(request.getModel())
+                .then(scheduled)
                 .flatMap(response -> postProcessResponse(response, context));
     }
 
@@ -73,19 +88,30 @@ public class AIProcessorService {
 
         AtomicInteger tokenCount = new AtomicInteger(0);
         StringBuilder fullResponse = new StringBuilder();
+        GenerationObservation observation = generationMetrics.start("ollama", request.getModel(),
+                GenerationMetrics.tierOf(context.getCharacter().getAccessLevel()), System.nanoTime());
 
-        return ollamaClient.post()
+        Flux<String> stream = ollamaClient.post()
                 .uri("/api/generate")
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(Mono.just(request), OllamaRequest.class)
                 .retrieve()
                 .bodyToFlux(String.class)
+                .doOnSubscribe(subscription -> observation.modelStarted())
                 .map(chunk -> {
                     try {
                         JsonNode node = objectMapper.readTree(chunk);
                         String token = node.get("response").asText();
                         fullResponse.append(token);
                         tokenCount.incrementAndGet();
+                        // La dernière ligne NDJSON porte les compteurs de tokens d'Ollama
+                        if (node.path("done").asBoolean(false)) {
+                            observation.complete(
+                                    node.hasNonNull("prompt_eval_count") ? node.get("prompt_eval_count").asInt() : null,
+                                    node.hasNonNull("eval_count") ? node.get("eval_count").asInt() : null);
+                        } else if (!token.isEmpty()) {
+                            observation.onToken();
+                        }
                         return token;
                     } catch (Exception e) {
                         log.error("Error parsing stream chunk: ", e);
@@ -93,13 +119,21 @@ public class AIProcessorService {
                     }
                 })
                 .filter(token -> !token.isEmpty())
+                .doOnError(observation::fail)
                 .doOnComplete(() -> {
+                    // Sans ligne "done", on enregistre quand même les temps mesurés
+                    observation.complete(null, null);
                     // Sauvegarder la réponse complète
                     saveStreamedResponse(context.getConversationId(), fullResponse.toString());
                     // Mettre à jour les métriques
                     updateTokenMetrics(context.getConversationId(), tokenCount.get());
                 })
                 .subscribeOn(Schedulers.boundedElastic());
+
+        UUID userId = context.getUserId();
+        return residencyManager.ensureLoaded(request.getModel())
+                .then(tierResolver.resolve(userId))
+                .flatMapMany(tier -> requestScheduler.scheduleMany("ollama", userId, tier, aiConfig.getMaxTokens(), stream));
     }
 
     // ========== Request Building ==========
@@ -127,9 +161,10 @@ public class AIProcessorService {
                 .temperature(calculateTemperature(character))
                 .topP(aiConfig.getTopP())
                 .topK(aiConfig.getTopK())
-                .numPredict(aiConfig.getMaxTokens())
+                .numPredict(brownoutController.maxTokens(aiConfig.getMaxTokens()))
                 .repeatPenalty(1.1f)
                 .stream(false)
+                .keepAlive(residencyManager.keepAliveFor(aiConfig.getModel()))
                 .options(buildModelOptions(character))
                 .build();
     }
@@ -198,8 +233,8 @@ public class AIProcessorService {
                     // Nettoyer la réponse
                     String cleaned = cleanResponse(response);
 
-                    // Vérifier la cohérence avec le personnage
-                    if (!isResponseCoherent(cleaned, context)) {
+                    // Vérifier la cohérence avec le personnage (pas de seconde génération en brownout)
+                    if (!isResponseCoherent(cleaned, context) && brownoutController.level() == BrownoutLevel.NORMAL) {
                         log.warn("Response not coherent with character, regenerating...");
                         return regenerateWithConstraints(context, cleaned);
                     }
@@ -234,11 +269,26 @@ public class AIProcessorService {
     // ========== Caching ==========
 
     private String generateCacheKey(ConversationContext context, String message) {
-        String characterId = context.getCharacter().getId();
-        String messageHash = Integer.toHexString(message.hashCode());
-        String contextHash = Integer.toHexString(context.getRecentMessages().hashCode());
+        // SHA-256 du prompt normalisé : String.hashCode() provoquait des collisions entre prompts
+        StringBuilder prompt = new StringBuilder(normalizePrompt(message));
+        for (MessageDto recent : context.getRecentMessages()) {
+            prompt.append('\n').append(recent.getRole()).append(':').append(normalizePrompt(recent.getContent()));
+        }
 
-        return String.format("ai:response:%s:%s:%s", characterId, messageHash, contextHash);
+        return String.format("ai:response:%s:%s", context.getCharacter().getId(), sha256Hex(prompt.toString()));
+    }
+
+    private String normalizePrompt(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}']+", " ").trim();
+    }
+
+    private String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     private Mono<String> checkCache(String cacheKey) {